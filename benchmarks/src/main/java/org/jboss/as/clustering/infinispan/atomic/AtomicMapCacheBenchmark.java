@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.atomic;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.jboss.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the compact storage of {@link AtomicMapCache} against the default atomic map storage, i.e. {@link org.infinispan.atomic.AtomicMapLookup},
+ * for maps of many small attributes.
+ * Reports the latency of reading and writing a single attribute, and logs the heap used per entry after populating the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AtomicMapCacheBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(AtomicMapCacheBenchmark.class);
+
+    private static final int ENTRIES = 10000;
+    private static final String VALUE = "0123456789abcdef0123456789abcdef";
+
+    @Param({ "COARSE_GRAINED", "COMPACT" })
+    public AtomicMapCache.Mode mode;
+
+    @Param({ "100" })
+    public int attributes;
+
+    private EmbeddedCacheManager manager;
+    private Cache<Integer, Map<String, String>> cache;
+    private final Random random = new Random();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        GlobalConfigurationBuilder global = new GlobalConfigurationBuilder();
+        global.globalJmxStatistics().allowDuplicateDomains(true);
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.invocationBatching().enable();
+        this.manager = new DefaultCacheManager(global.build(), builder.build());
+        AdvancedCache<Integer, Map<String, String>> cache = this.manager.<Integer, Map<String, String>>getCache().getAdvancedCache();
+        this.cache = new AtomicMapCache<Integer, String, String>(cache, this.mode);
+
+        long heap = usedHeap();
+        Map<String, String> attributes = new HashMap<String, String>();
+        for (int i = 0; i < this.attributes; ++i) {
+            attributes.put("attribute-" + i, VALUE);
+        }
+        for (int i = 0; i < ENTRIES; ++i) {
+            this.cache.put(Integer.valueOf(i), attributes);
+        }
+        heap = usedHeap() - heap;
+
+        LOGGER.infof("%s: %d bytes of heap per entry of %d attributes", this.mode, Long.valueOf(heap / ENTRIES), Integer.valueOf(this.attributes));
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        this.manager.stop();
+    }
+
+    @Benchmark
+    public String getAttribute() {
+        return this.cache.get(this.randomKey()).get(this.randomAttribute());
+    }
+
+    @Benchmark
+    public String putAttribute() {
+        return this.cache.get(this.randomKey()).put(this.randomAttribute(), Integer.toHexString(this.random.nextInt()));
+    }
+
+    private Integer randomKey() {
+        return Integer.valueOf(this.random.nextInt(ENTRIES));
+    }
+
+    private String randomAttribute() {
+        return "attribute-" + this.random.nextInt(this.attributes);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
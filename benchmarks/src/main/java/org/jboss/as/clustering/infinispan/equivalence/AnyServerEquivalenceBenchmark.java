@@ -0,0 +1,140 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.equivalence;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.commons.equivalence.Equivalence;
+import org.infinispan.commons.util.concurrent.jdk8backported.EquivalentConcurrentHashMapV8;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the cost of hashing, and of looking up, byte[] keys in a data container map, using:
+ * <ul>
+ * <li>LEGACY: the former {@link AnyServerEquivalence} byte[] check, i.e. via getClass(), and Arrays.hashCode(byte[]) on every lookup</li>
+ * <li>BYTE_ARRAY: {@link AnyServerEquivalence} with raw byte[] keys, i.e. Arrays.hashCode(byte[]) on every lookup</li>
+ * <li>BYTE_ARRAY_KEY: {@link AnyServerEquivalence} with {@link ByteArrayKey}s, i.e. MurmurHash3 once per key</li>
+ * </ul>
+ * Lookups use copies of the stored keys, as would a server decoding keys from the wire.
+ * For BYTE_ARRAY_KEY, lookup keys are wrapped during setup, as they would be once by a decoder, thus the benchmark measures the cost of repeated lookups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AnyServerEquivalenceBenchmark {
+
+    public enum Type {
+        LEGACY, BYTE_ARRAY, BYTE_ARRAY_KEY;
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Param({ "LEGACY", "BYTE_ARRAY", "BYTE_ARRAY_KEY" })
+    public Type type;
+
+    @Param({ "16", "64", "512" })
+    public int keySize;
+
+    @Param({ "65536" })
+    public int keys;
+
+    private Equivalence<Object> equivalence;
+    private ConcurrentMap<Object, Object> map;
+    private Object[] lookups;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.equivalence = (this.type == Type.LEGACY) ? new LegacyEquivalence() : new AnyServerEquivalence();
+        this.map = new EquivalentConcurrentHashMapV8<Object, Object>(this.keys, this.equivalence, this.equivalence);
+        this.lookups = new Object[this.keys];
+        for (int i = 0; i < this.keys; ++i) {
+            byte[] bytes = this.createKey(i);
+            this.map.put(this.wrap(bytes), Boolean.TRUE);
+            this.lookups[i] = this.wrap(bytes.clone());
+        }
+    }
+
+    @Benchmark
+    public int hash() {
+        return this.equivalence.hashCode(this.nextKey());
+    }
+
+    @Benchmark
+    public Object lookup() {
+        return this.map.get(this.nextKey());
+    }
+
+    private Object nextKey() {
+        int next = this.next;
+        this.next = (next + 1) % this.keys;
+        return this.lookups[next];
+    }
+
+    private Object wrap(byte[] bytes) {
+        return (this.type == Type.BYTE_ARRAY_KEY) ? new ByteArrayKey(bytes) : bytes;
+    }
+
+    /**
+     * Creates a marshalled string key of the configured size, whose distinguishing characters are at the end, e.g. "user:...:000042".
+     */
+    private byte[] createKey(int index) {
+        StringBuilder builder = new StringBuilder(this.keySize);
+        builder.append("user:");
+        String suffix = String.format(":%06d", index);
+        while (builder.length() < this.keySize - 3 - suffix.length()) {
+            builder.append('x');
+        }
+        byte[] string = builder.append(suffix).toString().getBytes(UTF8);
+        // Mimic the header written by the marshaller of a Hot Rod client
+        byte[] bytes = new byte[string.length + 3];
+        bytes[0] = 0x03;
+        bytes[1] = 0x3e;
+        bytes[2] = (byte) string.length;
+        System.arraycopy(string, 0, bytes, 3, string.length);
+        return bytes;
+    }
+
+    /**
+     * The former byte[] check of {@link AnyServerEquivalence}.
+     */
+    static class LegacyEquivalence extends AnyServerEquivalence {
+        @Override
+        public int hashCode(Object obj) {
+            if (byte[].class == obj.getClass()) {
+                return 41 + Arrays.hashCode((byte[]) obj);
+            }
+            return obj.hashCode();
+        }
+    }
+}
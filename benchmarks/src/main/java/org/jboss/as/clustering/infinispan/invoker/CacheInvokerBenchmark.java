@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.context.Flag;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the per-invocation cost of each invoker of the synchronous invocation chain, for a trivial read of a local cache.
+ * Run with the GC profiler to report bytes/op, which should be ~0 for the steady state, e.g.:
+ * <pre>java -jar benchmarks/target/benchmarks.jar CacheInvokerBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheInvokerBenchmark {
+
+    private static final Integer KEY = Integer.valueOf(0);
+    private static final Flag[] NO_FLAGS = new Flag[0];
+    private static final Flag[] FLAGS = new Flag[] { Flag.SKIP_LOCKING, Flag.FAIL_SILENTLY };
+
+    @Param({ "simple", "batch", "retrying", "retrying-breaker", "single-flight" })
+    public String invokerType;
+
+    @Param({ "false", "true" })
+    public boolean flagged;
+
+    private EmbeddedCacheManager manager;
+    private Cache<Integer, String> cache;
+    private CacheInvoker invoker;
+    private Flag[] flags;
+    private final CacheInvoker.Operation<Integer, String, String> operation = new GetOperation<Integer, String>(KEY);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        GlobalConfigurationBuilder global = new GlobalConfigurationBuilder();
+        global.globalJmxStatistics().allowDuplicateDomains(true);
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.invocationBatching().enable();
+        this.manager = new DefaultCacheManager(global.build(), builder.build());
+        this.cache = this.manager.getCache();
+        this.cache.put(KEY, "value");
+        this.invoker = createInvoker(this.invokerType);
+        this.flags = this.flagged ? FLAGS : NO_FLAGS;
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        this.manager.stop();
+    }
+
+    private static CacheInvoker createInvoker(String type) {
+        if ("batch".equals(type)) {
+            return new BatchCacheInvoker();
+        }
+        if ("retrying".equals(type)) {
+            return new RetryingCacheInvoker(0, 10, 100);
+        }
+        if ("retrying-breaker".equals(type)) {
+            return new RetryingCacheInvoker(new SimpleCacheInvoker(), new FixedRetryPolicy(0, 10, 100), 5, 1000);
+        }
+        if ("single-flight".equals(type)) {
+            return new SingleFlightCacheInvoker();
+        }
+        return new SimpleCacheInvoker();
+    }
+
+    @Benchmark
+    public String invoke() {
+        return this.invoker.invoke(this.cache, this.operation, this.flags);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures the number of backend calls per cache miss, when 64 threads read the same small set of missing keys.
+ * Each miss is simulated by a read that sleeps for the configured latency, as a cache loader or remote owner would.
+ * The reads and backend calls of each iteration are reported as auxiliary counters, whose ratio is the number of backend calls per read.
+ */
+@State(Scope.Benchmark)
+@Threads(64)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SingleFlightCacheInvokerBenchmark {
+
+    @Param({ "simple", "single-flight" })
+    public String invokerType;
+
+    @Param({ "1", "16" })
+    public int keys;
+
+    @Param({ "1000" })
+    public long missLatencyMicros;
+
+    private EmbeddedCacheManager manager;
+    private Cache<Integer, String> cache;
+    private CacheInvoker invoker;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.manager = new DefaultCacheManager(new GlobalConfigurationBuilder().build(), new ConfigurationBuilder().build());
+        this.cache = this.manager.getCache();
+        this.invoker = "single-flight".equals(this.invokerType) ? new SingleFlightCacheInvoker() : new SimpleCacheInvoker();
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        this.manager.stop();
+    }
+
+    @Benchmark
+    public String miss(ThreadState state, Counters counters) {
+        counters.reads += 1;
+        return this.invoker.invoke(this.cache, new BackendGetOperation(state.nextKey(this.keys), counters));
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private int next = 0;
+
+        Integer nextKey(int keys) {
+            int key = this.next;
+            this.next = (key + 1) % keys;
+            return Integer.valueOf(key);
+        }
+    }
+
+    /**
+     * Per-thread event counts, which JMH sums over all threads and reports alongside the primary result.
+     * A backend call is counted by the thread that performs it, which, for a collapsed read, is not the reading thread.
+     */
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class Counters {
+        public long reads;
+        public long backendCalls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.reads = 0;
+            this.backendCalls = 0;
+        }
+    }
+
+    /**
+     * A read that always misses, and pays the latency of a backend call.
+     */
+    private class BackendGetOperation extends GetOperation<Integer, String> {
+        private final Counters counters;
+
+        BackendGetOperation(Integer key, Counters counters) {
+            super(key);
+            this.counters = counters;
+        }
+
+        @Override
+        public String invoke(Cache<Integer, String> cache) {
+            this.counters.backendCalls += 1;
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(SingleFlightCacheInvokerBenchmark.this.missLatencyMicros));
+            return super.invoke(cache);
+        }
+    }
+}
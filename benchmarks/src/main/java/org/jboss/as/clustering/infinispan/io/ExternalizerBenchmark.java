@@ -0,0 +1,259 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.io;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.jboss.as.clustering.HashableMarshalledValue;
+import org.jboss.as.clustering.MarshallingContext;
+import org.jboss.as.clustering.SimpleMarshalledValue;
+import org.jboss.as.clustering.VersionedMarshallingConfiguration;
+import org.jboss.as.clustering.infinispan.compression.CompressedValue;
+import org.jboss.marshalling.Marshalling;
+import org.jboss.marshalling.MarshallingConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the round trip of a value through the cache marshaller, for each externalizer of this subsystem.
+ * Each invocation creates the value to marshal, marshals it to a byte array, then unmarshals it, including any nested payload.
+ * The payload is a JSON-like document of the given size, so that it compresses as typical cache values do.
+ * UUIDs have a fixed size, and ignore the payload size.
+ * Run with the GC profiler to report the allocation rate and bytes/op alongside the throughput, e.g.:
+ * <pre>java -jar benchmarks/target/benchmarks.jar ExternalizerBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Externalizers(@Externalizers.Externalizer(value = ExternalizerBenchmark.Payload.class, serialVersionUID = 2148962337549125873L))
+public class ExternalizerBenchmark {
+
+    private static final int EXTERNALIZER_ID = 1000;
+    private static final int PAYLOAD_EXTERNALIZER_ID = 1001;
+
+    @Param({ "UUID", "EXTERNALIZABLE", "EXTERNALIZABLE_REFLECTIVE", "SIMPLE_MARSHALLED_VALUE", "HASHABLE_MARSHALLED_VALUE", "COMPRESSED_VALUE" })
+    public Type type;
+
+    @Param({ "64", "65536" })
+    public int size;
+
+    EmbeddedCacheManager manager;
+    StreamingMarshaller marshaller;
+    MarshallingContext context;
+    Payload payload;
+    UUID uuid;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        GlobalConfigurationBuilder global = new GlobalConfigurationBuilder();
+        global.globalJmxStatistics().allowDuplicateDomains(true);
+        SimpleExternalizer<?> externalizer = this.type.createExternalizer();
+        if (externalizer != null) {
+            global.serialization().addAdvancedExternalizer(EXTERNALIZER_ID, externalizer);
+        }
+        // The reflective externalizer replaces the generated externalizer of the payload
+        if (this.type != Type.EXTERNALIZABLE_REFLECTIVE) {
+            global.serialization().addAdvancedExternalizer(PAYLOAD_EXTERNALIZER_ID, new PayloadExternalizer());
+        }
+        this.manager = new DefaultCacheManager(global.build(), new ConfigurationBuilder().build());
+        this.marshaller = this.manager.getCache().getAdvancedCache().getComponentRegistry().getComponent(StreamingMarshaller.class, KnownComponentNames.CACHE_MARSHALLER);
+        final MarshallingConfiguration configuration = new MarshallingConfiguration();
+        VersionedMarshallingConfiguration versionedConfiguration = new VersionedMarshallingConfiguration() {
+            @Override
+            public int getCurrentMarshallingVersion() {
+                return 0;
+            }
+
+            @Override
+            public MarshallingConfiguration getMarshallingConfiguration(int version) {
+                return configuration;
+            }
+        };
+        this.context = new MarshallingContext(Marshalling.getProvidedMarshallerFactory("river"), versionedConfiguration);
+        this.payload = new Payload(createDocument(this.size));
+        this.uuid = UUID.randomUUID();
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        this.manager.stop();
+    }
+
+    @Benchmark
+    public Object roundTrip() throws Exception {
+        byte[] bytes = this.marshaller.objectToByteBuffer(this.type.create(this));
+        return this.type.read(this, this.marshaller.objectFromByteBuffer(bytes));
+    }
+
+    private static byte[] createDocument(int size) {
+        Random random = new Random(0);
+        StringBuilder builder = new StringBuilder(size + 64).append('[');
+        while (builder.length() < size) {
+            builder.append(String.format("{\"id\":%d,\"name\":\"user-%d\",\"active\":%s,\"score\":%d},", Integer.valueOf(random.nextInt(100000)), Integer.valueOf(random.nextInt(1000)), Boolean.valueOf(random.nextBoolean()), Integer.valueOf(random.nextInt(100))));
+        }
+        builder.setLength(size - 1);
+        return builder.append(']').toString().getBytes();
+    }
+
+    public enum Type {
+        UUID() {
+            @Override
+            SimpleExternalizer<?> createExternalizer() {
+                return new UUIDExternalizer();
+            }
+
+            @Override
+            Object create(ExternalizerBenchmark benchmark) {
+                return benchmark.uuid;
+            }
+        },
+        EXTERNALIZABLE(),
+        EXTERNALIZABLE_REFLECTIVE() {
+            @Override
+            SimpleExternalizer<?> createExternalizer() {
+                return new ExternalizableExternalizer<Payload>(Payload.class);
+            }
+        },
+        SIMPLE_MARSHALLED_VALUE() {
+            @Override
+            SimpleExternalizer<?> createExternalizer() {
+                return new SimpleMarshalledValueExternalizer();
+            }
+
+            @Override
+            Object create(ExternalizerBenchmark benchmark) {
+                return new SimpleMarshalledValue<Payload>(benchmark.payload, benchmark.context);
+            }
+
+            @Override
+            Object read(ExternalizerBenchmark benchmark, Object value) throws Exception {
+                @SuppressWarnings("unchecked")
+                SimpleMarshalledValue<Payload> marshalledValue = (SimpleMarshalledValue<Payload>) value;
+                return marshalledValue.get(benchmark.context);
+            }
+        },
+        HASHABLE_MARSHALLED_VALUE() {
+            @Override
+            SimpleExternalizer<?> createExternalizer() {
+                return new HashableMarshalledValueExternalizer();
+            }
+
+            @Override
+            Object create(ExternalizerBenchmark benchmark) throws Exception {
+                return new HashableMarshalledValue<Payload>(benchmark.payload, benchmark.context);
+            }
+
+            @Override
+            Object read(ExternalizerBenchmark benchmark, Object value) throws Exception {
+                @SuppressWarnings("unchecked")
+                HashableMarshalledValue<Payload> marshalledValue = (HashableMarshalledValue<Payload>) value;
+                return marshalledValue.get(benchmark.context);
+            }
+        },
+        COMPRESSED_VALUE() {
+            @Override
+            SimpleExternalizer<?> createExternalizer() {
+                return new CompressedValueExternalizer();
+            }
+
+            @Override
+            Object create(ExternalizerBenchmark benchmark) throws Exception {
+                return CompressedValue.compress(benchmark.marshaller.objectToByteBuffer(benchmark.payload));
+            }
+
+            @Override
+            Object read(ExternalizerBenchmark benchmark, Object value) throws Exception {
+                return benchmark.marshaller.objectFromByteBuffer(((CompressedValue) value).getBytes());
+            }
+        };
+
+        /**
+         * Returns the externalizer under test, or null, if only the payload externalizer is needed.
+         */
+        SimpleExternalizer<?> createExternalizer() {
+            return null;
+        }
+
+        /**
+         * Creates the value to marshal.
+         */
+        Object create(ExternalizerBenchmark benchmark) throws Exception {
+            return benchmark.payload;
+        }
+
+        /**
+         * Extracts the payload from an unmarshalled value.
+         */
+        Object read(ExternalizerBenchmark benchmark, Object value) throws Exception {
+            return value;
+        }
+    }
+
+    /**
+     * Externalizable payload, whose externalizer is generated.
+     */
+    public static class Payload implements Externalizable {
+        private static final long serialVersionUID = -8716536446376632154L;
+
+        private byte[] data;
+
+        public Payload() {
+            // For deserialization only
+        }
+
+        Payload(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput output) throws IOException {
+            output.writeInt(this.data.length);
+            output.write(this.data);
+        }
+
+        @Override
+        public void readExternal(ObjectInput input) throws IOException {
+            this.data = new byte[input.readInt()];
+            input.readFully(this.data);
+        }
+    }
+}
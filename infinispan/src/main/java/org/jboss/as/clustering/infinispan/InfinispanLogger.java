@@ -23,10 +23,14 @@
 package org.jboss.as.clustering.infinispan;
 
 import static org.jboss.logging.Logger.Level.DEBUG;
+import static org.jboss.logging.Logger.Level.ERROR;
 import static org.jboss.logging.Logger.Level.INFO;
 import static org.jboss.logging.Logger.Level.WARN;
 
+import java.io.File;
+
 import org.jboss.logging.BasicLogger;
+import org.jboss.logging.annotations.Cause;
 import org.jboss.logging.annotations.LogMessage;
 import org.jboss.logging.Logger;
 import org.jboss.logging.annotations.Message;
@@ -108,4 +112,47 @@ public interface InfinispanLogger extends BasicLogger {
     @Message(id = 10286, value = "Attribute 'virtual-nodes' has been deprecated and has no effect.")
     void virtualNodesAttributeDeprecated();
 
+    /**
+     * Logs a warning message indicating that the background preload of a cache failed.
+     *
+     * @param cause     the cause of the failure.
+     * @param cacheName the name of the cache.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 10287, value = "Background preload of %s cache failed; remaining entries will be loaded on demand")
+    void backgroundPreloadFailed(@Cause Throwable cause, String cacheName);
+
+    /**
+     * Logs a warning message indicating that the hot key list of a cache could not be read or written.
+     *
+     * @param cause     the cause of the failure.
+     * @param cacheName the name of the cache.
+     * @param file      the hot key list file.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 10288, value = "Failed to access the hot key list of %s cache at %s")
+    void hotKeysAccessFailed(@Cause Throwable cause, String cacheName, File file);
+
+    /**
+     * Logs a warning message indicating that modifications recorded by a write-behind store could not be written to the store.
+     *
+     * @param cause         the cause of the failure.
+     * @param modifications the number of modifications.
+     * @param cacheName     the name of the cache.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 10289, value = "Failed to write %d modifications of %s cache to its store")
+    void writeBehindFlushFailed(@Cause Throwable cause, int modifications, String cacheName);
+
+    /**
+     * Logs an error message indicating that modifications recorded by a write-behind store were discarded, since they could not be written before the cache stopped.
+     *
+     * @param modifications the number of modifications.
+     * @param cacheName     the name of the cache.
+     * @param timeout       the shutdown timeout, in milliseconds.
+     */
+    @LogMessage(level = ERROR)
+    @Message(id = 10386, value = "Discarded %d modifications of %s cache, which could not be written to its store within %d ms of the cache stopping")
+    void writeBehindModificationsLost(int modifications, String cacheName, long timeout);
+
 }
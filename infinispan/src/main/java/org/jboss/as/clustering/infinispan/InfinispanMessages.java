@@ -22,10 +22,12 @@
 
 package org.jboss.as.clustering.infinispan;
 
+import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.Properties;
 
 import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.util.concurrent.TimeoutException;
 import org.jboss.as.controller.OperationFailedException;
 import org.jboss.as.controller.persistence.ConfigurationPersistenceException;
 import org.jboss.as.network.OutboundSocketBinding;
@@ -243,4 +245,277 @@ public interface InfinispanMessages {
      */
     @Message(id = 11003, value = "%s is not a valid marshaller")
     IllegalArgumentException invalidCompatibilityMarshaller(@Cause Throwable cause, String marshallerClassName);
+
+    /**
+     * Creates an exception indicating that a cache operation was rejected by an open circuit breaker.
+     *
+     * @param cacheName the name of the cache.
+     *
+     * @return a {@link RuntimeException} for the error.
+     */
+    @Message(id = 11004, value = "Rejecting operation on cache %s: too many consecutive timeouts.")
+    RuntimeException circuitBreakerOpen(String cacheName);
+
+    /**
+     * Creates an exception indicating that no key can be generated for the specified address,
+     * since it does not belong to the topology of the specified cache.
+     *
+     * @param address the requested address.
+     * @param cacheName the name of the cache.
+     *
+     * @return an {@link IllegalArgumentException} for the error.
+     */
+    @Message(id = 11005, value = "Cannot generate key for %s: not a member of the topology of cache %s")
+    IllegalArgumentException addressNotInCacheTopology(Object address, String cacheName);
+
+    /**
+     * Creates an exception indicating that segment key affinity is not supported by the specified cache,
+     * since it is not distributed.
+     *
+     * @param cacheName the name of the cache.
+     *
+     * @return an {@link IllegalArgumentException} for the error.
+     */
+    @Message(id = 11006, value = "Segment key affinity requires a distributed cache, but cache %s is not distributed")
+    IllegalArgumentException cacheNotDistributed(String cacheName);
+
+    /**
+     * Creates an exception indicating that no key can be generated for the specified owners,
+     * since they do not own any segment of the specified cache.
+     *
+     * @param owners the requested owners.
+     * @param cacheName the name of the cache.
+     *
+     * @return an {@link IllegalArgumentException} for the error.
+     */
+    @Message(id = 11007, value = "Cannot generate keys for %s: no segment of cache %s is owned by exactly these members")
+    IllegalArgumentException noSegmentsForOwners(Object owners, String cacheName);
+
+    /**
+     * Creates an exception indicating that no key can be generated for the specified locality,
+     * since no segment of the specified cache is primarily owned by a member of that locality.
+     *
+     * @param locality the requested site or rack.
+     * @param cacheName the name of the cache.
+     *
+     * @return an {@link IllegalArgumentException} for the error.
+     */
+    @Message(id = 11008, value = "Cannot generate keys for %s: no segment of cache %s is primarily owned by a member of this locality")
+    IllegalArgumentException noSegmentsForLocality(Object locality, String cacheName);
+
+    /**
+     * Creates an exception indicating that the specified atomic map entry could not be serialized.
+     *
+     * @param cause the cause of the error.
+     * @param value the key or value of the atomic map entry.
+     *
+     * @return an {@link IllegalArgumentException} for the error.
+     */
+    @Message(id = 11009, value = "Cannot serialize atomic map entry %s")
+    IllegalArgumentException atomicMapEntryNotSerializable(@Cause Throwable cause, Object value);
+
+    /**
+     * Creates an exception indicating that an atomic map entry could not be deserialized.
+     *
+     * @param cause the cause of the error.
+     *
+     * @return an {@link IllegalStateException} for the error.
+     */
+    @Message(id = 11010, value = "Cannot deserialize atomic map entry")
+    IllegalStateException atomicMapEntryNotDeserializable(@Cause Throwable cause);
+
+    /**
+     * Creates an exception indicating that the id configured for an externalizer is not valid.
+     *
+     * @param id the configured id.
+     * @param className the target class of the externalizer.
+     * @param minId the lowest id available to externalizers, since lower ids are reserved by Infinispan.
+     *
+     * @return an {@link OperationFailedException} for the error.
+     */
+    @Message(id = 11011, value = "Invalid externalizer id %s for %s: must be an integer no less than %d")
+    OperationFailedException invalidExternalizerId(String id, String className, int minId);
+
+    /**
+     * Creates an exception indicating that the same id was assigned to multiple externalizers.
+     *
+     * @param id the duplicate id.
+     * @param className the target class of one externalizer.
+     * @param otherClassName the target class of the other externalizer.
+     *
+     * @return an {@link OperationFailedException} for the error.
+     */
+    @Message(id = 11012, value = "Externalizer id %d is assigned to both %s and %s")
+    OperationFailedException duplicateExternalizerId(int id, String className, String otherClassName);
+
+    /**
+     * Creates an exception indicating that a compressed value was written using an unknown format.
+     *
+     * @param tag the format tag.
+     *
+     * @return an {@link IOException} for the error.
+     */
+    @Message(id = 11013, value = "Unknown compressed value format %d")
+    IOException unknownCompressedValueTag(byte tag);
+
+    /**
+     * Creates an exception indicating that a compressed value is truncated.
+     *
+     * @param length the expected number of bytes.
+     * @param actual the number of bytes decompressed.
+     *
+     * @return an {@link IOException} for the error.
+     */
+    @Message(id = 11014, value = "Compressed value is truncated: expected %d bytes, but found %d")
+    IOException invalidCompressedValue(int length, int actual);
+
+    /**
+     * Creates an exception indicating that the specified key, value or metadata could not be stored in binary form.
+     *
+     * @param cause the cause of the error.
+     * @param value the key, value or metadata of the cache entry.
+     *
+     * @return an {@link IllegalArgumentException} for the error.
+     */
+    @Message(id = 11015, value = "Cannot serialize cache entry %s")
+    IllegalArgumentException cacheEntryNotSerializable(@Cause Throwable cause, Object value);
+
+    /**
+     * Creates an exception indicating that a binary cache entry could not be deserialized.
+     *
+     * @param cause the cause of the error.
+     *
+     * @return an {@link IllegalStateException} for the error.
+     */
+    @Message(id = 11016, value = "Cannot deserialize cache entry")
+    IllegalStateException cacheEntryNotDeserializable(@Cause Throwable cause);
+
+    /**
+     * Creates an exception indicating that the eviction strategy cannot be used with binary storage, i.e. off-heap storage or max-memory.
+     *
+     * @param strategy the eviction strategy.
+     *
+     * @return an {@link OperationFailedException} for the error.
+     */
+    @Message(id = 11017, value = "Eviction strategy %s cannot be combined with off-heap storage or max-memory")
+    OperationFailedException evictionStrategyNotSupported(String strategy);
+
+    /**
+     * Creates an exception indicating that a store cannot be preloaded in the background if passivation is enabled.
+     *
+     * @return an {@link OperationFailedException} for the error.
+     */
+    @Message(id = 11018, value = "Background preload cannot be combined with passivation")
+    OperationFailedException backgroundPreloadWithPassivation();
+
+    /**
+     * Creates an exception indicating that the modifications of a store cannot be coalesced if passivation is enabled.
+     *
+     * @return an {@link OperationFailedException} for the error.
+     */
+    @Message(id = 11019, value = "Coalescing write-behind cannot be combined with passivation")
+    OperationFailedException coalescingWriteBehindWithPassivation();
+
+    /**
+     * Creates an exception indicating that the modifications of a store cannot be coalesced if the cache is transactional.
+     *
+     * @return an {@link OperationFailedException} for the error.
+     */
+    @Message(id = 11020, value = "Coalescing write-behind cannot be combined with transactions or batching")
+    OperationFailedException coalescingWriteBehindWithTransactions();
+
+    /**
+     * Creates an exception indicating that a write-behind store did not complete its flush in time.
+     *
+     * @param cacheName the name of the cache.
+     *
+     * @return a {@link TimeoutException} for the error.
+     */
+    @Message(id = 11021, value = "Timed out waiting for the write-behind store of %s cache to flush")
+    TimeoutException writeBehindFlushTimeout(String cacheName);
+
+    /**
+     * Creates an exception indicating that the key affinity refill threshold is not less than the buffer size.
+     *
+     * @param refillThreshold the refill threshold.
+     * @param bufferSize the buffer size.
+     *
+     * @return an {@link OperationFailedException} for the error.
+     */
+    @Message(id = 11022, value = "Affinity refill threshold %d must be less than the affinity buffer size %d")
+    OperationFailedException invalidAffinityRefillThreshold(int refillThreshold, int bufferSize);
+
+    /**
+     * Creates an exception indicating that no key can be generated for the specified address,
+     * since it does not belong to the locality of the key affinity service.
+     *
+     * @param address the requested address.
+     * @param locality the site or rack of the key affinity service.
+     *
+     * @return an {@link IllegalArgumentException} for the error.
+     */
+    @Message(id = 11023, value = "Cannot generate key for %s: not a member of %s")
+    IllegalArgumentException addressNotInLocality(Object address, Object locality);
+
+    /**
+     * Creates an exception indicating that fine-grained atomic maps require a transactional cache.
+     *
+     * @param cacheName the name of the cache.
+     *
+     * @return an {@link IllegalArgumentException} for the error.
+     */
+    @Message(id = 11024, value = "Fine-grained atomic maps require a transactional cache, but cache %s is not transactional")
+    IllegalArgumentException fineGrainedAtomicMapRequiresTransactions(String cacheName);
+
+    /**
+     * Creates an exception indicating that the keys of a compact atomic map cannot be of the specified type.
+     *
+     * @param type the type of the key.
+     *
+     * @return an {@link IllegalArgumentException} for the error.
+     */
+    @Message(id = 11025, value = "Keys of compact atomic maps must be strings, integers, longs, booleans or byte arrays, but found %s")
+    IllegalArgumentException compactAtomicMapKeyNotSupported(String type);
+
+    /**
+     * Creates an exception indicating that multiple externalizers were found for the same class.
+     *
+     * @param className the target class of the externalizers.
+     * @param externalizer the class of one externalizer.
+     * @param otherExternalizer the class of the other externalizer.
+     *
+     * @return a {@link StartException} for the error.
+     */
+    @Message(id = 11026, value = "Multiple externalizers found for %s: %s and %s")
+    StartException duplicateExternalizer(String className, String externalizer, String otherExternalizer);
+
+    /**
+     * Creates an exception indicating that a compressed cache value could not be read.
+     *
+     * @param cause the cause of the error.
+     *
+     * @return an {@link IllegalStateException} for the error.
+     */
+    @Message(id = 11027, value = "Cannot read compressed cache value")
+    IllegalStateException compressedValueNotReadable(@Cause Throwable cause);
+
+    /**
+     * Creates an exception indicating that a store cannot be preloaded in parallel or in the background, since its cache container defines no preload executor.
+     *
+     * @param cacheName the name of the cache.
+     *
+     * @return an {@link OperationFailedException} for the error.
+     */
+    @Message(id = 11028, value = "The store of %s cache cannot be preloaded in parallel or in the background, since its cache container defines no preload-executor")
+    OperationFailedException preloadExecutorRequired(String cacheName);
+
+    /**
+     * Creates an exception indicating that the store of a cache with a coalescing write-behind cannot be written.
+     *
+     * @param cacheName the name of the cache.
+     *
+     * @return an {@link IllegalStateException} for the error.
+     */
+    @Message(id = 11029, value = "The write-behind store of %s cache cannot be written")
+    IllegalStateException writeBehindStoreNotWritable(String cacheName);
 }
@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.affinity;
+
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.infinispan.Cache;
+import org.infinispan.affinity.KeyAffinityService;
+import org.infinispan.affinity.KeyGenerator;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.remoting.transport.Address;
+
+/**
+ * Key affinity service for distributed caches that buffers keys for a set of addresses in lock-free queues.
+ * Buffers are refilled by a single task at a time, submitted to a shared executor, whenever a buffer drops to the refill threshold.
+ * Callers never block: a caller that finds its buffer empty generates a key itself, which is counted as a starvation.
+ * Rather than listening for topology changes, a buffered key is validated when it is handed out, and discarded if its owner has changed.
+ * @param <K> the key type
+ */
+class BufferedKeyAffinityService<K> implements KeyAffinityService<K>, Runnable {
+
+    // The number of keys generated per missing buffered key per member, before a refill gives up
+    private static final int REFILL_ATTEMPTS_PER_KEY = 10;
+
+    private final Cache<K, ?> cache;
+    private final KeyGenerator<K> generator;
+    private final Executor executor;
+    private final int bufferSize;
+    private final int refillThreshold;
+    private final KeyAffinityStatistics statistics;
+    private final ConcurrentMap<Address, KeyBuffer<K>> buffers = new ConcurrentHashMap<Address, KeyBuffer<K>>();
+    private final AtomicBoolean refilling = new AtomicBoolean(false);
+    private volatile boolean started = false;
+
+    BufferedKeyAffinityService(Cache<K, ?> cache, KeyGenerator<K> generator, Collection<Address> addresses, Executor executor, int bufferSize, int refillThreshold, KeyAffinityStatistics statistics) {
+        this.cache = cache;
+        this.generator = generator;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.refillThreshold = refillThreshold;
+        this.statistics = statistics;
+        for (Address address: addresses) {
+            this.buffers.put(address, new KeyBuffer<K>());
+        }
+    }
+
+    @Override
+    public void start() {
+        this.started = true;
+        this.scheduleRefill();
+    }
+
+    @Override
+    public void stop() {
+        this.started = false;
+        for (KeyBuffer<K> buffer: this.buffers.values()) {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public boolean isStarted() {
+        return this.started;
+    }
+
+    @Override
+    public K getKeyForAddress(Address address) {
+        KeyBuffer<K> buffer = this.buffers.get(address);
+        if (buffer != null) {
+            ConsistentHash hash = this.getConsistentHash();
+            K key = buffer.poll();
+            while (key != null) {
+                if (address.equals(hash.locatePrimaryOwner(key))) {
+                    if (buffer.size() <= this.refillThreshold) {
+                        this.scheduleRefill();
+                    }
+                    return key;
+                }
+                this.statistics.discarded();
+                key = buffer.poll();
+            }
+            this.statistics.starved();
+            this.scheduleRefill();
+        }
+        return this.generateKey(address);
+    }
+
+    @Override
+    public K getCollocatedKey(K otherKey) {
+        return this.getKeyForAddress(this.getConsistentHash().locatePrimaryOwner(otherKey));
+    }
+
+    /**
+     * Refills all buffers.
+     */
+    @Override
+    public void run() {
+        try {
+            ConsistentHash hash = this.getConsistentHash();
+            int attempts = this.bufferSize * this.buffers.size() * hash.getMembers().size() * REFILL_ATTEMPTS_PER_KEY;
+            while (this.started && (attempts-- > 0) && !this.isFull()) {
+                K key = this.generator.getKey();
+                KeyBuffer<K> buffer = this.buffers.get(hash.locatePrimaryOwner(key));
+                if ((buffer != null) && (buffer.size() < this.bufferSize)) {
+                    buffer.offer(key);
+                }
+            }
+            this.statistics.refilled();
+        } finally {
+            this.refilling.set(false);
+        }
+    }
+
+    private boolean isFull() {
+        for (KeyBuffer<K> buffer: this.buffers.values()) {
+            if (buffer.size() < this.bufferSize) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void scheduleRefill() {
+        if (this.started && this.refilling.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                this.refilling.set(false);
+            }
+        }
+    }
+
+    private K generateKey(Address address) {
+        ConsistentHash hash = this.getConsistentHash();
+        if (!hash.getMembers().contains(address)) {
+            throw MESSAGES.addressNotInCacheTopology(address, this.cache.getName());
+        }
+        while (true) {
+            K key = this.generator.getKey();
+            if (address.equals(hash.locatePrimaryOwner(key))) {
+                return key;
+            }
+        }
+    }
+
+    private ConsistentHash getConsistentHash() {
+        return this.cache.getAdvancedCache().getDistributionManager().getConsistentHash();
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.affinity;
+
+import static org.jboss.as.clustering.infinispan.InfinispanLogger.ROOT_LOGGER;
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.infinispan.Cache;
+import org.infinispan.affinity.KeyGenerator;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.remoting.transport.Address;
+
+/**
+ * Segment key affinity service that buffers keys per segment of the consistent hash.
+ * Buffers are created on demand, per requested segment, and refilled by a single task at a time, submitted to a shared executor.
+ * Since the segment of a key does not depend on the topology, buffered keys remain valid across topology changes.
+ * Only the index of segments by owner is affected by a topology change, and this is updated incrementally,
+ * i.e. only for those segments whose owners changed.
+ * Callers never block: keys missing from a buffer are generated by the calling thread, which is counted as a starvation.
+ * @param <K> the key type
+ */
+class BufferedSegmentKeyAffinityService<K> implements SegmentKeyAffinityService<K>, Runnable {
+
+    // The number of keys generated per missing buffered key per segment, before a refill gives up
+    private static final int REFILL_ATTEMPTS_PER_KEY = 10;
+
+    private final Cache<K, ?> cache;
+    private final KeyGenerator<K> generator;
+    private final Executor executor;
+    private final int bufferSize;
+    private final int refillThreshold;
+    private final KeyAffinityStatistics statistics;
+    private final AtomicReferenceArray<KeyBuffer<K>> buffers;
+    private final AtomicBoolean refilling = new AtomicBoolean(false);
+    // The number of keys missing from the buffers created so far, which makes the fullness check of a refill constant-time
+    private final AtomicInteger missing = new AtomicInteger();
+    private volatile SegmentIndex index;
+    private volatile boolean started = false;
+
+    BufferedSegmentKeyAffinityService(Cache<K, ?> cache, KeyGenerator<K> generator, Executor executor, int bufferSize, int refillThreshold, KeyAffinityStatistics statistics) {
+        this.cache = cache;
+        this.generator = generator;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.refillThreshold = refillThreshold;
+        this.statistics = statistics;
+        ConsistentHash hash = this.getConsistentHash();
+        this.buffers = new AtomicReferenceArray<KeyBuffer<K>>(hash.getNumSegments());
+        this.index = new SegmentIndex(hash);
+    }
+
+    @Override
+    public void start() {
+        this.started = true;
+    }
+
+    @Override
+    public void stop() {
+        this.started = false;
+        for (int i = 0; i < this.buffers.length(); ++i) {
+            KeyBuffer<K> buffer = this.buffers.get(i);
+            if (buffer != null) {
+                while (this.poll(buffer) != null) {
+                    // Drain
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isStarted() {
+        return this.started;
+    }
+
+    @Override
+    public Set<Integer> getSegmentsForPrimaryOwner(Address address) {
+        Set<Integer> segments = this.getIndex().segmentsByPrimaryOwner.get(address);
+        return (segments != null) ? Collections.unmodifiableSet(segments) : Collections.<Integer>emptySet();
+    }
+
+    @Override
+    public Set<Integer> getSegmentsForOwners(Collection<Address> owners) {
+        Set<Integer> segments = this.getIndex().segmentsByOwners.get(new HashSet<Address>(owners));
+        return (segments != null) ? Collections.unmodifiableSet(segments) : Collections.<Integer>emptySet();
+    }
+
+    @Override
+    public Set<Integer> getSegmentsForLocality(Locality locality) {
+        return Collections.unmodifiableSet(this.getIndex().getSegments(locality));
+    }
+
+    @Override
+    public List<K> getKeysForSegment(int segment, int count) {
+        return this.getKeysForSegments(Collections.singleton(Integer.valueOf(segment)), count);
+    }
+
+    @Override
+    public List<K> getKeysForOwners(Collection<Address> owners, int count) {
+        Set<Integer> segments = this.getSegmentsForOwners(owners);
+        if (segments.isEmpty()) {
+            throw MESSAGES.noSegmentsForOwners(owners, this.cache.getName());
+        }
+        return this.getKeysForSegments(segments, count);
+    }
+
+    @Override
+    public List<K> getKeysForLocality(Locality locality, int count) {
+        Set<Integer> segments = this.getSegmentsForLocality(locality);
+        if (segments.isEmpty()) {
+            throw MESSAGES.noSegmentsForLocality(locality, this.cache.getName());
+        }
+        return this.getKeysForSegments(segments, count);
+    }
+
+    @Override
+    public K getKeyForAddress(Address address) {
+        Set<Integer> segments = this.getSegmentsForPrimaryOwner(address);
+        if (segments.isEmpty()) {
+            throw MESSAGES.addressNotInCacheTopology(address, this.cache.getName());
+        }
+        return this.getKeysForSegments(segments, 1).get(0);
+    }
+
+    @Override
+    public K getCollocatedKey(K otherKey) {
+        return this.getKeysForSegment(this.getConsistentHash().getSegment(otherKey), 1).get(0);
+    }
+
+    /**
+     * Refills all buffers created so far.
+     */
+    @Override
+    public void run() {
+        try {
+            ConsistentHash hash = this.getConsistentHash();
+            int attempts = this.bufferSize * this.buffers.length() * REFILL_ATTEMPTS_PER_KEY;
+            while (this.started && (attempts-- > 0) && (this.missing.get() > 0)) {
+                K key = this.generator.getKey();
+                KeyBuffer<K> buffer = this.buffers.get(hash.getSegment(key));
+                // Only this task adds keys, so a buffer cannot grow beyond its size
+                if ((buffer != null) && (buffer.size() < this.bufferSize)) {
+                    buffer.offer(key);
+                    this.missing.decrementAndGet();
+                }
+            }
+            this.statistics.refilled();
+        } finally {
+            this.refilling.set(false);
+        }
+    }
+
+    /**
+     * Returns the specified number of keys mapping to any of the specified segments.
+     * @param segments a non-empty set of segments
+     * @param count the number of keys to generate
+     * @return a list of keys
+     */
+    List<K> getKeysForSegments(Set<Integer> segments, int count) {
+        List<K> keys = new ArrayList<K>(count);
+        // Drain the buffers of the requested segments round-robin, so that keys are spread evenly across segments
+        boolean drained = false;
+        while ((keys.size() < count) && !drained) {
+            drained = true;
+            for (Integer segment: segments) {
+                KeyBuffer<K> buffer = this.getBuffer(segment.intValue());
+                K key = (keys.size() < count) ? this.poll(buffer) : null;
+                if (key != null) {
+                    keys.add(key);
+                    drained = false;
+                }
+                if (buffer.size() <= this.refillThreshold) {
+                    this.scheduleRefill();
+                }
+            }
+        }
+        if (keys.size() < count) {
+            this.statistics.starved();
+            ConsistentHash hash = this.getConsistentHash();
+            while (keys.size() < count) {
+                K key = this.generator.getKey();
+                if (segments.contains(Integer.valueOf(hash.getSegment(key)))) {
+                    keys.add(key);
+                }
+            }
+        }
+        return keys;
+    }
+
+    private KeyBuffer<K> getBuffer(int segment) {
+        KeyBuffer<K> buffer = this.buffers.get(segment);
+        if (buffer == null) {
+            if (this.buffers.compareAndSet(segment, null, new KeyBuffer<K>())) {
+                this.missing.addAndGet(this.bufferSize);
+            }
+            buffer = this.buffers.get(segment);
+        }
+        return buffer;
+    }
+
+    private K poll(KeyBuffer<K> buffer) {
+        K key = buffer.poll();
+        if (key != null) {
+            this.missing.incrementAndGet();
+        }
+        return key;
+    }
+
+    private void scheduleRefill() {
+        if (this.started && this.refilling.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                this.refilling.set(false);
+            }
+        }
+    }
+
+    private SegmentIndex getIndex() {
+        ConsistentHash hash = this.getConsistentHash();
+        SegmentIndex index = this.index;
+        if (index.hash != hash) {
+            synchronized (this) {
+                index = this.index;
+                if (index.hash != hash) {
+                    index = index.update(hash);
+                    this.index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private ConsistentHash getConsistentHash() {
+        return this.cache.getAdvancedCache().getDistributionManager().getConsistentHash();
+    }
+
+    /**
+     * Immutable index of segments by owners, for a given consistent hash.
+     */
+    private static class SegmentIndex {
+        final ConsistentHash hash;
+        final List<Set<Address>> owners;
+        final List<Address> primaryOwners;
+        final Map<Set<Address>, Set<Integer>> segmentsByOwners;
+        final Map<Address, Set<Integer>> segmentsByPrimaryOwner;
+        // Computed on demand, since only a few localities are ever requested
+        private final ConcurrentMap<Locality, Set<Integer>> segmentsByLocality = new ConcurrentHashMap<Locality, Set<Integer>>();
+
+        SegmentIndex(ConsistentHash hash) {
+            this.hash = hash;
+            int segments = hash.getNumSegments();
+            this.owners = new ArrayList<Set<Address>>(segments);
+            this.primaryOwners = new ArrayList<Address>(segments);
+            this.segmentsByOwners = new HashMap<Set<Address>, Set<Integer>>();
+            this.segmentsByPrimaryOwner = new HashMap<Address, Set<Integer>>();
+            for (int i = 0; i < segments; ++i) {
+                Integer segment = Integer.valueOf(i);
+                Set<Address> owners = new HashSet<Address>(hash.locateOwnersForSegment(i));
+                Address primaryOwner = hash.locatePrimaryOwnerForSegment(i);
+                this.owners.add(owners);
+                this.primaryOwners.add(primaryOwner);
+                add(this.segmentsByOwners, owners, segment, null);
+                add(this.segmentsByPrimaryOwner, primaryOwner, segment, null);
+            }
+        }
+
+        private SegmentIndex(ConsistentHash hash, List<Set<Address>> owners, List<Address> primaryOwners, Map<Set<Address>, Set<Integer>> segmentsByOwners, Map<Address, Set<Integer>> segmentsByPrimaryOwner) {
+            this.hash = hash;
+            this.owners = owners;
+            this.primaryOwners = primaryOwners;
+            this.segmentsByOwners = segmentsByOwners;
+            this.segmentsByPrimaryOwner = segmentsByPrimaryOwner;
+        }
+
+        Set<Integer> getSegments(Locality locality) {
+            Set<Integer> segments = this.segmentsByLocality.get(locality);
+            if (segments == null) {
+                segments = new HashSet<Integer>();
+                for (Map.Entry<Address, Set<Integer>> entry: this.segmentsByPrimaryOwner.entrySet()) {
+                    if (locality.contains(entry.getKey())) {
+                        segments.addAll(entry.getValue());
+                    }
+                }
+                Set<Integer> existing = this.segmentsByLocality.putIfAbsent(locality, segments);
+                if (existing != null) {
+                    segments = existing;
+                }
+            }
+            return segments;
+        }
+
+        /**
+         * Returns an index for the specified consistent hash, reusing the entries of this index that were unaffected by the topology change.
+         */
+        SegmentIndex update(ConsistentHash hash) {
+            if (hash.getNumSegments() != this.owners.size()) {
+                return new SegmentIndex(hash);
+            }
+            List<Set<Address>> owners = new ArrayList<Set<Address>>(this.owners);
+            List<Address> primaryOwners = new ArrayList<Address>(this.primaryOwners);
+            Map<Set<Address>, Set<Integer>> segmentsByOwners = new HashMap<Set<Address>, Set<Integer>>(this.segmentsByOwners);
+            Map<Address, Set<Integer>> segmentsByPrimaryOwner = new HashMap<Address, Set<Integer>>(this.segmentsByPrimaryOwner);
+            // Tracks the entries already copied, which can therefore be modified
+            Set<Object> copied = new HashSet<Object>();
+            int affected = 0;
+            for (int i = 0; i < owners.size(); ++i) {
+                Integer segment = Integer.valueOf(i);
+                Set<Address> segmentOwners = new HashSet<Address>(hash.locateOwnersForSegment(i));
+                if (!segmentOwners.equals(owners.get(i))) {
+                    remove(segmentsByOwners, owners.get(i), segment, copied);
+                    add(segmentsByOwners, segmentOwners, segment, copied);
+                    owners.set(i, segmentOwners);
+                    affected += 1;
+                }
+                Address primaryOwner = hash.locatePrimaryOwnerForSegment(i);
+                if (!primaryOwner.equals(primaryOwners.get(i))) {
+                    remove(segmentsByPrimaryOwner, primaryOwners.get(i), segment, copied);
+                    add(segmentsByPrimaryOwner, primaryOwner, segment, copied);
+                    primaryOwners.set(i, primaryOwner);
+                }
+            }
+            ROOT_LOGGER.tracef("Topology change affected %d of %d segments", affected, owners.size());
+            return new SegmentIndex(hash, owners, primaryOwners, segmentsByOwners, segmentsByPrimaryOwner);
+        }
+
+        private static <T> void add(Map<T, Set<Integer>> index, T key, Integer segment, Set<Object> copied) {
+            Set<Integer> segments = index.get(key);
+            if (segments == null) {
+                segments = new HashSet<Integer>();
+                index.put(key, segments);
+                if (copied != null) {
+                    copied.add(key);
+                }
+            } else if ((copied != null) && copied.add(key)) {
+                segments = new HashSet<Integer>(segments);
+                index.put(key, segments);
+            }
+            segments.add(segment);
+        }
+
+        private static <T> void remove(Map<T, Set<Integer>> index, T key, Integer segment, Set<Object> copied) {
+            Set<Integer> segments = index.get(key);
+            if (segments == null) {
+                return;
+            }
+            if (copied.add(key)) {
+                segments = new HashSet<Integer>(segments);
+            }
+            segments.remove(segment);
+            if (segments.isEmpty()) {
+                index.remove(key);
+            } else {
+                index.put(key, segments);
+            }
+        }
+    }
+}
@@ -38,4 +38,24 @@ public interface KeyAffinityServiceFactory {
      * @return a key affinity service
      */
     <K> KeyAffinityService<K> createService(Cache<K, ?> cache, KeyGenerator<K> generator);
+
+    /**
+     * Creates a key affinity service for use with the specified cache, that generates keys, using the specified generator, whose primary owner belongs to the specified locality.
+     * Backup owners are not constrained, since a topology aware consistent hash deliberately places them in other sites or racks.
+     * Since all members own every key of a non-distributed cache, such keys have no affinity.
+     * @param cache
+     * @param generator
+     * @param locality a site or rack
+     * @return a key affinity service
+     */
+    <K> KeyAffinityService<K> createService(Cache<K, ?> cache, KeyGenerator<K> generator, Locality locality);
+
+    /**
+     * Creates a segment key affinity service for use with the specified distributed cache, that generates keys using the specified generator.
+     * @param cache a distributed cache
+     * @param generator
+     * @return a segment key affinity service
+     * @throws IllegalArgumentException if the cache is not distributed
+     */
+    <K> SegmentKeyAffinityService<K> createSegmentService(Cache<K, ?> cache, KeyGenerator<K> generator);
 }
@@ -22,42 +22,80 @@
 
 package org.jboss.as.clustering.infinispan.affinity;
 
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
+
 import java.security.AccessController;
 import java.util.Collections;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.infinispan.Cache;
 import org.infinispan.affinity.KeyAffinityService;
-import org.infinispan.affinity.KeyAffinityServiceImpl;
 import org.infinispan.affinity.KeyGenerator;
 import org.infinispan.remoting.transport.Address;
+import org.jboss.msc.inject.Injector;
 import org.jboss.msc.service.Service;
 import org.jboss.msc.service.ServiceName;
 import org.jboss.msc.service.StartContext;
 import org.jboss.msc.service.StartException;
 import org.jboss.msc.service.StopContext;
+import org.jboss.msc.value.InjectedValue;
 import org.jboss.threads.JBossThreadFactory;
 
 /**
  * Key affinity service factory that will only generates keys for use by the local node.
  * Returns a trivial implementation if the specified cache is not distributed.
+ * Keys may also be restricted to those owned only by members of a given site or rack, as identified by the topology of the transport.
+ * Keys are generated by a bounded executor, either from the threads subsystem, or, if none was injected, a private pool with a bounded queue.
  * @author Paul Ferraro
  */
 public class KeyAffinityServiceFactoryService implements Service<KeyAffinityServiceFactory>, KeyAffinityServiceFactory {
 
     private static final ServiceName SERVICE_NAME = ServiceName.JBOSS.append("infinispan", "affinity");
+    // The number of refill tasks the private pool queues, beyond which refills are rejected
+    static final int DEFAULT_QUEUE_SIZE = 256;
 
     public static ServiceName getServiceName(String container) {
         return SERVICE_NAME.append(container);
     }
 
+    private final InjectedValue<Executor> executorValue = new InjectedValue<Executor>();
+    private final KeyAffinityStatistics statistics = new KeyAffinityStatistics();
     private final int bufferSize;
-    private volatile ExecutorService executor;
+    private final int refillThreshold;
+    private volatile Executor executor;
+    private volatile ThreadPoolExecutor defaultExecutor;
 
     public KeyAffinityServiceFactoryService(int bufferSize) {
+        this(bufferSize, bufferSize / 2);
+    }
+
+    /**
+     * Creates a new key affinity service factory.
+     * @param bufferSize the number of keys to buffer per address
+     * @param refillThreshold the number of buffered keys at or below which a buffer is refilled, which must be less than the buffer size
+     */
+    public KeyAffinityServiceFactoryService(int bufferSize, int refillThreshold) {
+        if (refillThreshold >= bufferSize) {
+            throw new IllegalArgumentException(String.format("Refill threshold %d must be less than buffer size %d", refillThreshold, bufferSize));
+        }
         this.bufferSize = bufferSize;
+        this.refillThreshold = refillThreshold;
+    }
+
+    public Injector<Executor> getExecutorInjector() {
+        return this.executorValue;
+    }
+
+    Executor getExecutor() {
+        return this.executor;
+    }
+
+    public KeyAffinityStatistics getStatistics() {
+        return this.statistics;
     }
 
     @Override
@@ -67,22 +105,47 @@ public class KeyAffinityServiceFactoryService implements Service<KeyAffinityServ
 
     @Override
     public void start(StartContext context) throws StartException {
-        final ThreadGroup threadGroup = new ThreadGroup("KeyAffinityService ThreadGroup");
-        final String namePattern = "KeyAffinityService Thread Pool -- %t";
-        final ThreadFactory threadFactory = new JBossThreadFactory(threadGroup, Boolean.FALSE, null, namePattern, null, null, AccessController.getContext());
-
-        this.executor = Executors.newCachedThreadPool(threadFactory);
+        Executor executor = this.executorValue.getOptionalValue();
+        if (executor == null) {
+            final ThreadGroup threadGroup = new ThreadGroup("KeyAffinityService ThreadGroup");
+            final String namePattern = "KeyAffinityService Thread Pool -- %t";
+            final ThreadFactory threadFactory = new JBossThreadFactory(threadGroup, Boolean.FALSE, null, namePattern, null, null, AccessController.getContext());
+            // Each key affinity service submits at most one task at a time, and generates keys itself if its task is rejected
+            int threads = Runtime.getRuntime().availableProcessors();
+            this.defaultExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(DEFAULT_QUEUE_SIZE), threadFactory);
+            this.defaultExecutor.allowCoreThreadTimeOut(true);
+            executor = this.defaultExecutor;
+        }
+        this.executor = executor;
     }
 
     @Override
     public void stop(StopContext context) {
-        this.executor.shutdown();
+        if (this.defaultExecutor != null) {
+            this.defaultExecutor.shutdown();
+            this.defaultExecutor = null;
+        }
+        this.executor = null;
     }
 
     @Override
     public <K> KeyAffinityService<K> createService(Cache<K, ?> cache, KeyGenerator<K> generator) {
         boolean distributed = cache.getCacheConfiguration().clustering().cacheMode().isDistributed();
-        return distributed ? new KeyAffinityServiceImpl<K>(this.executor, cache, generator, this.bufferSize, Collections.singleton(cache.getCacheManager().getAddress()), false) : new SimpleKeyAffinityService<K>(generator);
+        return distributed ? new BufferedKeyAffinityService<K>(cache, generator, Collections.singleton(cache.getCacheManager().getAddress()), this.executor, this.bufferSize, this.refillThreshold, this.statistics) : new SimpleKeyAffinityService<K>(generator);
+    }
+
+    @Override
+    public <K> KeyAffinityService<K> createService(Cache<K, ?> cache, KeyGenerator<K> generator, Locality locality) {
+        boolean distributed = cache.getCacheConfiguration().clustering().cacheMode().isDistributed();
+        return distributed ? new LocalityKeyAffinityService<K>(cache, new BufferedSegmentKeyAffinityService<K>(cache, generator, this.executor, this.bufferSize, this.refillThreshold, this.statistics), locality) : new SimpleKeyAffinityService<K>(generator);
+    }
+
+    @Override
+    public <K> SegmentKeyAffinityService<K> createSegmentService(Cache<K, ?> cache, KeyGenerator<K> generator) {
+        if (!cache.getCacheConfiguration().clustering().cacheMode().isDistributed()) {
+            throw MESSAGES.cacheNotDistributed(cache.getName());
+        }
+        return new BufferedSegmentKeyAffinityService<K>(cache, generator, this.executor, this.bufferSize, this.refillThreshold, this.statistics);
     }
 
     private static class SimpleKeyAffinityService<K> implements KeyAffinityService<K> {
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.affinity;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runtime statistics gathered by the key affinity services of a cache container.
+ */
+public class KeyAffinityStatistics {
+
+    private final AtomicLong refills = new AtomicLong();
+    private final AtomicLong starvations = new AtomicLong();
+    private final AtomicLong discards = new AtomicLong();
+
+    void refilled() {
+        this.refills.incrementAndGet();
+    }
+
+    void starved() {
+        this.starvations.incrementAndGet();
+    }
+
+    void discarded() {
+        this.discards.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of times a key buffer was refilled by the key generation executor.
+     * @return a number of refills
+     */
+    public long getRefills() {
+        return this.refills.get();
+    }
+
+    /**
+     * Returns the number of key requests that found their buffer empty, and had to generate a key on the calling thread.
+     * @return a number of starved requests
+     */
+    public long getStarvations() {
+        return this.starvations.get();
+    }
+
+    /**
+     * Returns the number of buffered keys discarded since they no longer mapped to their address, following a topology change.
+     * @return a number of discarded keys
+     */
+    public long getDiscards() {
+        return this.discards.get();
+    }
+}
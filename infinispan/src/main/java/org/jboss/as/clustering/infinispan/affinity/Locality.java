@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.affinity;
+
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.TopologyAwareAddress;
+
+/**
+ * Identifies a site, or a rack within a site, of the cluster topology.
+ * Membership is determined by the site and rack ids of topology aware addresses,
+ * i.e. as configured by the topology of the transport.
+ */
+public class Locality {
+
+    private final String siteId;
+    private final String rackId;
+
+    /**
+     * Returns the locality of the specified site.
+     * @param siteId a site id
+     * @return a locality
+     */
+    public static Locality site(String siteId) {
+        return new Locality(siteId, null);
+    }
+
+    /**
+     * Returns the locality of the specified rack.
+     * @param siteId a site id
+     * @param rackId a rack id
+     * @return a locality
+     */
+    public static Locality rack(String siteId, String rackId) {
+        return new Locality(siteId, rackId);
+    }
+
+    /**
+     * Returns the locality of the site of the specified address.
+     * @param address a cluster member
+     * @return a locality
+     */
+    public static Locality siteOf(Address address) {
+        return site((address instanceof TopologyAwareAddress) ? ((TopologyAwareAddress) address).getSiteId() : null);
+    }
+
+    /**
+     * Returns the locality of the rack of the specified address.
+     * @param address a cluster member
+     * @return a locality
+     */
+    public static Locality rackOf(Address address) {
+        if (address instanceof TopologyAwareAddress) {
+            TopologyAwareAddress topologyAddress = (TopologyAwareAddress) address;
+            return rack(topologyAddress.getSiteId(), topologyAddress.getRackId());
+        }
+        return rack(null, null);
+    }
+
+    private Locality(String siteId, String rackId) {
+        this.siteId = siteId;
+        this.rackId = rackId;
+    }
+
+    public String getSiteId() {
+        return this.siteId;
+    }
+
+    public String getRackId() {
+        return this.rackId;
+    }
+
+    /**
+     * Indicates whether the specified address belongs to this locality.
+     * An address without topology information only belongs to a locality without site and rack ids.
+     * @param address a cluster member
+     * @return true, if the address belongs to this locality, false otherwise
+     */
+    public boolean contains(Address address) {
+        if (address instanceof TopologyAwareAddress) {
+            TopologyAwareAddress topologyAddress = (TopologyAwareAddress) address;
+            return equals(this.siteId, topologyAddress.getSiteId()) && ((this.rackId == null) || equals(this.rackId, topologyAddress.getRackId()));
+        }
+        return (this.siteId == null) && (this.rackId == null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (this.siteId != null) ? this.siteId.hashCode() : 0;
+        return 31 * result + ((this.rackId != null) ? this.rackId.hashCode() : 0);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof Locality)) {
+            return false;
+        }
+        Locality locality = (Locality) object;
+        return equals(this.siteId, locality.siteId) && equals(this.rackId, locality.rackId);
+    }
+
+    @Override
+    public String toString() {
+        return (this.rackId != null) ? String.format("site %s, rack %s", this.siteId, this.rackId) : String.format("site %s", this.siteId);
+    }
+
+    private static boolean equals(String value1, String value2) {
+        return (value1 != null) ? value1.equals(value2) : (value2 == null);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.affinity;
+
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
+
+import org.infinispan.Cache;
+import org.infinispan.affinity.KeyAffinityService;
+import org.infinispan.remoting.transport.Address;
+
+/**
+ * Key affinity service that only generates keys primarily owned by a member of a given site or rack.
+ * Backup owners are not constrained, since a topology aware consistent hash deliberately spreads them across sites and racks.
+ * @param <K> the key type
+ */
+class LocalityKeyAffinityService<K> implements KeyAffinityService<K> {
+
+    private final Cache<K, ?> cache;
+    private final BufferedSegmentKeyAffinityService<K> service;
+    private final Locality locality;
+
+    LocalityKeyAffinityService(Cache<K, ?> cache, BufferedSegmentKeyAffinityService<K> service, Locality locality) {
+        this.cache = cache;
+        this.service = service;
+        this.locality = locality;
+    }
+
+    @Override
+    public void start() {
+        this.service.start();
+    }
+
+    @Override
+    public void stop() {
+        this.service.stop();
+    }
+
+    @Override
+    public boolean isStarted() {
+        return this.service.isStarted();
+    }
+
+    @Override
+    public K getKeyForAddress(Address address) {
+        if (!this.locality.contains(address)) {
+            throw MESSAGES.addressNotInLocality(address, this.locality);
+        }
+        return this.service.getKeyForAddress(address);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The returned key maps to the same segment as the specified key, i.e. shares all of its owners.
+     * @throws IllegalArgumentException if the primary owner of the specified key does not belong to the locality of this service
+     */
+    @Override
+    public K getCollocatedKey(K otherKey) {
+        Address owner = this.cache.getAdvancedCache().getDistributionManager().getPrimaryLocation(otherKey);
+        if (!this.locality.contains(owner)) {
+            throw MESSAGES.addressNotInLocality(owner, this.locality);
+        }
+        return this.service.getCollocatedKey(otherKey);
+    }
+}
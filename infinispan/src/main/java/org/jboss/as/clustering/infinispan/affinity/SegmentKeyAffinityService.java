@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.affinity;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.infinispan.affinity.KeyAffinityService;
+import org.infinispan.remoting.transport.Address;
+
+/**
+ * Key affinity service that generates batches of keys mapping to a given segment of the consistent hash, or to a given set of owners.
+ * Unlike {@link KeyAffinityService#getKeyForAddress(Address)}, keys mapping to the same segment share all of their owners, not just their primary owner.
+ * @param <K> the key type
+ */
+public interface SegmentKeyAffinityService<K> extends KeyAffinityService<K> {
+    /**
+     * Returns the segments whose primary owner is the specified address, according to the current topology.
+     * @param address a cluster member
+     * @return a set of segments
+     */
+    Set<Integer> getSegmentsForPrimaryOwner(Address address);
+
+    /**
+     * Returns the segments owned by exactly the specified owners, according to the current topology.
+     * @param owners a set of cluster members
+     * @return a set of segments
+     */
+    Set<Integer> getSegmentsForOwners(Collection<Address> owners);
+
+    /**
+     * Returns the segments whose primary owner belongs to the specified locality, according to the current topology.
+     * @param locality a site or rack
+     * @return a set of segments
+     */
+    Set<Integer> getSegmentsForLocality(Locality locality);
+
+    /**
+     * Returns the specified number of keys mapping to the specified segment.
+     * @param segment a segment of the consistent hash
+     * @param count the number of keys to generate
+     * @return a list of keys
+     */
+    List<K> getKeysForSegment(int segment, int count);
+
+    /**
+     * Returns the specified number of keys owned by exactly the specified owners, according to the current topology.
+     * @param owners a set of cluster members
+     * @param count the number of keys to generate
+     * @return a list of keys
+     */
+    List<K> getKeysForOwners(Collection<Address> owners, int count);
+
+    /**
+     * Returns the specified number of keys whose primary owner belongs to the specified locality, according to the current topology.
+     * @param locality a site or rack
+     * @param count the number of keys to generate
+     * @return a list of keys
+     */
+    List<K> getKeysForLocality(Locality locality, int count);
+}
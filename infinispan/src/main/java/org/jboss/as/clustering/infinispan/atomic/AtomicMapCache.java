@@ -19,19 +19,36 @@
  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
  */
-
 package org.jboss.as.clustering.infinispan.atomic;
 
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import org.infinispan.AbstractDelegatingAdvancedCache;
 import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.atomic.AtomicHashMapDelta;
 import org.infinispan.atomic.AtomicMapLookup;
+import org.infinispan.context.Flag;
 import org.infinispan.util.concurrent.NotifyingFuture;
+import org.jboss.as.clustering.infinispan.invoker.AsyncCacheInvoker;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvoker.Operation;
+import org.jboss.as.clustering.infinispan.invoker.SimpleAsyncCacheInvoker;
 
 /**
  * A cache wrapper that simplifies atomic map semantics.
+ * Writing a map only writes those entries of the atomic map that changed, so that only these are replicated.
+ * In fine-grained mode, entries of the atomic map are also locked individually, which requires a transactional cache.
+ * In compact mode, each atomic map is stored as a single block of encoded entries, see {@link CompactMap}.
+ * Asynchronous operations run the corresponding synchronous operation via an {@link AsyncCacheInvoker}.
+ * Like {@link Map#put(Object, Object)}, writes return a copy of the previous atomic map, unless {@link Flag#IGNORE_RETURN_VALUES} is specified.
  * @author Paul Ferraro
  * @param <K> the cache key
  * @param <MK> the atomic map key
@@ -39,169 +56,460 @@ import org.infinispan.util.concurrent.NotifyingFuture;
  */
 public class AtomicMapCache<K, MK, MV> extends AbstractDelegatingAdvancedCache<K, Map<MK, MV>> {
 
+    private static final long IMMORTAL = -1;
+
+    private static final Executor CALLER_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    /**
+     * Determines how atomic maps are stored and locked.
+     */
+    public enum Mode {
+        /** Atomic maps are locked as a whole. */
+        COARSE_GRAINED,
+        /** Entries of atomic maps are locked individually. */
+        FINE_GRAINED,
+        /** Atomic maps are locked as a whole, and stored as compact blocks of encoded entries, whose keys must be strings, numbers, booleans or byte arrays. */
+        COMPACT
+    }
+
+    private final Mode mode;
+    private final AsyncCacheInvoker invoker;
+    private final boolean ignoreReturnValues;
+    private final CompactCodec codec;
+
     public AtomicMapCache(AdvancedCache<K, Map<MK, MV>> cache) {
+        this(cache, Mode.COARSE_GRAINED);
+    }
+
+    /**
+     * Creates a new AtomicMapCache, whose asynchronous operations complete on the calling thread.
+     * @param cache a cache of atomic maps
+     * @param mode determines how atomic maps are stored and locked
+     * @throws IllegalArgumentException if fine-grained mode is requested for a non-transactional cache
+     */
+    public AtomicMapCache(AdvancedCache<K, Map<MK, MV>> cache, Mode mode) {
+        this(cache, mode, CALLER_EXECUTOR);
+    }
+
+    /**
+     * Creates a new AtomicMapCache, whose asynchronous operations run using the specified executor.
+     * The executor should be dedicated to the application, since the operations it runs block on the cache.
+     * @param cache a cache of atomic maps
+     * @param mode determines how atomic maps are stored and locked
+     * @param executor runs asynchronous operations
+     * @throws IllegalArgumentException if fine-grained mode is requested for a non-transactional cache
+     */
+    public AtomicMapCache(AdvancedCache<K, Map<MK, MV>> cache, Mode mode, Executor executor) {
+        this(cache, mode, new SimpleAsyncCacheInvoker(executor));
+    }
+
+    /**
+     * Creates a new AtomicMapCache.
+     * @param cache a cache of atomic maps
+     * @param mode determines how atomic maps are stored and locked
+     * @param invoker runs asynchronous operations
+     * @throws IllegalArgumentException if fine-grained mode is requested for a non-transactional cache
+     */
+    public AtomicMapCache(AdvancedCache<K, Map<MK, MV>> cache, Mode mode, AsyncCacheInvoker invoker) {
+        this(cache, mode, invoker, false);
+        if ((mode == Mode.FINE_GRAINED) && !cache.getCacheConfiguration().transaction().transactionMode().isTransactional()) {
+            throw MESSAGES.fineGrainedAtomicMapRequiresTransactions(cache.getName());
+        }
+    }
+
+    private AtomicMapCache(AdvancedCache<K, Map<MK, MV>> cache, final Mode mode, final AsyncCacheInvoker invoker, final boolean ignoreReturnValues) {
         super(cache, new AdvancedCacheWrapper<K, Map<MK, MV>>() {
                 @Override
                 public AdvancedCache<K, Map<MK, MV>> wrap(AdvancedCache<K, Map<MK, MV>> cache) {
-                    return new AtomicMapCache<K, MK, MV>(cache);
+                    return new AtomicMapCache<K, MK, MV>(cache, mode, invoker, ignoreReturnValues);
                 }
             }
         );
+        this.mode = mode;
+        this.invoker = invoker;
+        this.ignoreReturnValues = ignoreReturnValues;
+        this.codec = (mode == Mode.COMPACT) ? new CompactCodec(cache.getComponentRegistry().getCacheMarshaller()) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * {@link Flag#IGNORE_RETURN_VALUES} only applies to this wrapper, since the atomic map operations of the cache depend on return values.
+     */
+    @Override
+    public AdvancedCache<K, Map<MK, MV>> withFlags(Flag... flags) {
+        List<Flag> cacheFlags = new ArrayList<Flag>(Arrays.asList(flags));
+        boolean ignoreReturnValues = cacheFlags.remove(Flag.IGNORE_RETURN_VALUES) || this.ignoreReturnValues;
+        AdvancedCache<K, Map<MK, MV>> cache = cacheFlags.isEmpty() ? this.cache : this.cache.withFlags(cacheFlags.toArray(new Flag[cacheFlags.size()]));
+        return new AtomicMapCache<K, MK, MV>(cache, this.mode, this.invoker, ignoreReturnValues);
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public Map<MK, MV> get(Object key) {
-        return AtomicMapLookup.getAtomicMap(this.cache, (K) key, false);
+        return this.getAtomicMap((K) key, false);
     }
 
     @Override
     public Map<MK, MV> putIfAbsent(K key, Map<MK, MV> value) {
-        return AtomicMapLookup.getAtomicMap(this.cache, key, true);
+        return this.putIfAbsent(key, value, IMMORTAL, TimeUnit.MILLISECONDS, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * {@inheritDoc}
+     * Writes the specified map only if no atomic map exists with the specified key.
+     * Like {@link Cache#putForExternalRead(Object, Object)}, the write does not wait for locks, and fails silently.
+     */
     @Override
     public void putForExternalRead(K key, Map<MK, MV> value) {
-        throw new UnsupportedOperationException();
+        if (this.getAtomicMap(key, false) == null) {
+            this.withFlags(Flag.FAIL_SILENTLY, Flag.ZERO_LOCK_ACQUISITION_TIMEOUT, Flag.IGNORE_RETURN_VALUES).put(key, value);
+        }
+    }
+
+    @Override
+    public Map<MK, MV> put(K key, Map<MK, MV> value) {
+        return this.put(key, value, IMMORTAL, TimeUnit.MILLISECONDS, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public Map<MK, MV> put(K key, Map<MK, MV> value, long lifespan, TimeUnit unit) {
-        throw new UnsupportedOperationException();
+        return this.put(key, value, lifespan, unit, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
+    @Override
+    public Map<MK, MV> put(K key, Map<MK, MV> value, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
+        boolean started = this.beginBatch();
+        boolean success = false;
+        try {
+            Map<MK, MV> map = this.getAtomicMap(key, false);
+            Map<MK, MV> previous = this.copy(map);
+            this.write(key, map, value, lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+            success = true;
+            return previous;
+        } finally {
+            this.endBatch(started, success);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Like {@link #get(Object)}, but creates the atomic map if it does not exist.  The specified value is ignored.
+     */
     @Override
     public Map<MK, MV> putIfAbsent(K key, Map<MK, MV> value, long lifespan, TimeUnit unit) {
-        throw new UnsupportedOperationException();
+        return this.putIfAbsent(key, value, lifespan, unit, IMMORTAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Like {@link #get(Object)}, but creates the atomic map, with the specified expiration, if it does not exist.  The specified value is ignored.
+     */
+    @Override
+    public Map<MK, MV> putIfAbsent(K key, Map<MK, MV> value, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
+        Map<MK, MV> map = this.getAtomicMap(key, false);
+        if (map != null) {
+            return map;
+        }
+        boolean started = this.beginBatch();
+        boolean success = false;
+        try {
+            map = this.create(key, lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+            success = true;
+            return map;
+        } finally {
+            this.endBatch(started, success);
+        }
     }
 
     @Override
     public void putAll(Map<? extends K, ? extends Map<MK, MV>> map, long lifespan, TimeUnit unit) {
-        throw new UnsupportedOperationException();
+        this.putAll(map, lifespan, unit, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
-    public Map<MK, MV> replace(K key, Map<MK, MV> value, long lifespan, TimeUnit unit) {
-        throw new UnsupportedOperationException();
+    public void putAll(Map<? extends K, ? extends Map<MK, MV>> map, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
+        boolean started = this.beginBatch();
+        boolean success = false;
+        try {
+            for (Map.Entry<? extends K, ? extends Map<MK, MV>> entry: map.entrySet()) {
+                this.put(entry.getKey(), entry.getValue(), lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+            }
+            success = true;
+        } finally {
+            this.endBatch(started, success);
+        }
     }
 
     @Override
-    public boolean replace(K key, Map<MK, MV> oldValue, Map<MK, MV> value, long lifespan, TimeUnit unit) {
-        throw new UnsupportedOperationException();
+    public Map<MK, MV> replace(K key, Map<MK, MV> value) {
+        return this.replace(key, value, IMMORTAL, TimeUnit.MILLISECONDS, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
-    public Map<MK, MV> put(K key, Map<MK, MV> value, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
-        throw new UnsupportedOperationException();
+    public Map<MK, MV> replace(K key, Map<MK, MV> value, long lifespan, TimeUnit unit) {
+        return this.replace(key, value, lifespan, unit, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
-    public Map<MK, MV> putIfAbsent(K key, Map<MK, MV> value, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
-        throw new UnsupportedOperationException();
+    public Map<MK, MV> replace(K key, Map<MK, MV> value, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
+        boolean started = this.beginBatch();
+        boolean success = false;
+        try {
+            Map<MK, MV> map = this.getAtomicMap(key, false);
+            Map<MK, MV> previous = null;
+            if (map != null) {
+                previous = this.copy(map);
+                this.write(key, map, value, lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+            }
+            success = true;
+            return previous;
+        } finally {
+            this.endBatch(started, success);
+        }
     }
 
     @Override
-    public void putAll(Map<? extends K, ? extends Map<MK, MV>> map, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
-        throw new UnsupportedOperationException();
+    public boolean replace(K key, Map<MK, MV> oldValue, Map<MK, MV> newValue) {
+        return this.replace(key, oldValue, newValue, IMMORTAL, TimeUnit.MILLISECONDS, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
-    public Map<MK, MV> replace(K key, Map<MK, MV> value, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
-        throw new UnsupportedOperationException();
+    public boolean replace(K key, Map<MK, MV> oldValue, Map<MK, MV> value, long lifespan, TimeUnit unit) {
+        return this.replace(key, oldValue, value, lifespan, unit, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public boolean replace(K key, Map<MK, MV> oldValue, Map<MK, MV> value, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
-        throw new UnsupportedOperationException();
+        boolean started = this.beginBatch();
+        boolean success = false;
+        try {
+            Map<MK, MV> map = this.getAtomicMap(key, false);
+            // Atomic map proxies do not implement equals(...)
+            boolean replaced = (map != null) && (oldValue != null) && oldValue.equals(map);
+            if (replaced) {
+                this.write(key, map, value, lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+            }
+            success = true;
+            return replaced;
+        } finally {
+            this.endBatch(started, success);
+        }
     }
 
     @Override
     public NotifyingFuture<Map<MK, MV>> putAsync(K key, Map<MK, MV> value) {
-        throw new UnsupportedOperationException();
+        return this.putAsync(key, value, IMMORTAL, TimeUnit.MILLISECONDS, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public NotifyingFuture<Map<MK, MV>> putAsync(K key, Map<MK, MV> value, long lifespan, TimeUnit unit) {
-        throw new UnsupportedOperationException();
+        return this.putAsync(key, value, lifespan, unit, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
-    public NotifyingFuture<Map<MK, MV>> putAsync(K key, Map<MK, MV> value, long lifespan, TimeUnit lifespanUnit, long maxIdle, TimeUnit maxIdleUnit) {
-        throw new UnsupportedOperationException();
+    public NotifyingFuture<Map<MK, MV>> putAsync(final K key, final Map<MK, MV> value, final long lifespan, final TimeUnit lifespanUnit, final long maxIdle, final TimeUnit maxIdleUnit) {
+        return this.invoker.invokeAsync(this, new Operation<K, Map<MK, MV>, Map<MK, MV>>() {
+            @Override
+            public Map<MK, MV> invoke(Cache<K, Map<MK, MV>> cache) {
+                return cache.put(key, value, lifespan, lifespanUnit, maxIdle, maxIdleUnit);
+            }
+        });
     }
 
     @Override
     public NotifyingFuture<Void> putAllAsync(Map<? extends K, ? extends Map<MK, MV>> data) {
-        throw new UnsupportedOperationException();
+        return this.putAllAsync(data, IMMORTAL, TimeUnit.MILLISECONDS, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public NotifyingFuture<Void> putAllAsync(Map<? extends K, ? extends Map<MK, MV>> data, long lifespan, TimeUnit unit) {
-        throw new UnsupportedOperationException();
+        return this.putAllAsync(data, lifespan, unit, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
-    public NotifyingFuture<Void> putAllAsync(Map<? extends K, ? extends Map<MK, MV>> data, long lifespan, TimeUnit lifespanUnit, long maxIdle, TimeUnit maxIdleUnit) {
-        throw new UnsupportedOperationException();
+    public NotifyingFuture<Void> putAllAsync(final Map<? extends K, ? extends Map<MK, MV>> data, final long lifespan, final TimeUnit lifespanUnit, final long maxIdle, final TimeUnit maxIdleUnit) {
+        return this.invoker.invokeAsync(this, new Operation<K, Map<MK, MV>, Void>() {
+            @Override
+            public Void invoke(Cache<K, Map<MK, MV>> cache) {
+                cache.putAll(data, lifespan, lifespanUnit, maxIdle, maxIdleUnit);
+                return null;
+            }
+        });
     }
 
     @Override
     public NotifyingFuture<Map<MK, MV>> putIfAbsentAsync(K key, Map<MK, MV> value) {
-        throw new UnsupportedOperationException();
+        return this.putIfAbsentAsync(key, value, IMMORTAL, TimeUnit.MILLISECONDS, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public NotifyingFuture<Map<MK, MV>> putIfAbsentAsync(K key, Map<MK, MV> value, long lifespan, TimeUnit unit) {
-        throw new UnsupportedOperationException();
+        return this.putIfAbsentAsync(key, value, lifespan, unit, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
-    public NotifyingFuture<Map<MK, MV>> putIfAbsentAsync(K key, Map<MK, MV> value, long lifespan, TimeUnit lifespanUnit, long maxIdle, TimeUnit maxIdleUnit) {
-        throw new UnsupportedOperationException();
+    public NotifyingFuture<Map<MK, MV>> putIfAbsentAsync(final K key, final Map<MK, MV> value, final long lifespan, final TimeUnit lifespanUnit, final long maxIdle, final TimeUnit maxIdleUnit) {
+        return this.invoker.invokeAsync(this, new Operation<K, Map<MK, MV>, Map<MK, MV>>() {
+            @Override
+            public Map<MK, MV> invoke(Cache<K, Map<MK, MV>> cache) {
+                return cache.putIfAbsent(key, value, lifespan, lifespanUnit, maxIdle, maxIdleUnit);
+            }
+        });
     }
 
     @Override
     public NotifyingFuture<Map<MK, MV>> replaceAsync(K key, Map<MK, MV> value) {
-        throw new UnsupportedOperationException();
+        return this.replaceAsync(key, value, IMMORTAL, TimeUnit.MILLISECONDS, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public NotifyingFuture<Map<MK, MV>> replaceAsync(K key, Map<MK, MV> value, long lifespan, TimeUnit unit) {
-        throw new UnsupportedOperationException();
+        return this.replaceAsync(key, value, lifespan, unit, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
-    public NotifyingFuture<Map<MK, MV>> replaceAsync(K key, Map<MK, MV> value, long lifespan, TimeUnit lifespanUnit, long maxIdle, TimeUnit maxIdleUnit) {
-        throw new UnsupportedOperationException();
+    public NotifyingFuture<Map<MK, MV>> replaceAsync(final K key, final Map<MK, MV> value, final long lifespan, final TimeUnit lifespanUnit, final long maxIdle, final TimeUnit maxIdleUnit) {
+        return this.invoker.invokeAsync(this, new Operation<K, Map<MK, MV>, Map<MK, MV>>() {
+            @Override
+            public Map<MK, MV> invoke(Cache<K, Map<MK, MV>> cache) {
+                return cache.replace(key, value, lifespan, lifespanUnit, maxIdle, maxIdleUnit);
+            }
+        });
     }
 
     @Override
     public NotifyingFuture<Boolean> replaceAsync(K key, Map<MK, MV> oldValue, Map<MK, MV> newValue) {
-        throw new UnsupportedOperationException();
+        return this.replaceAsync(key, oldValue, newValue, IMMORTAL, TimeUnit.MILLISECONDS, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public NotifyingFuture<Boolean> replaceAsync(K key, Map<MK, MV> oldValue, Map<MK, MV> newValue, long lifespan, TimeUnit unit) {
-        throw new UnsupportedOperationException();
+        return this.replaceAsync(key, oldValue, newValue, lifespan, unit, IMMORTAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
-    public NotifyingFuture<Boolean> replaceAsync(K key, Map<MK, MV> oldValue, Map<MK, MV> newValue, long lifespan, TimeUnit lifespanUnit, long maxIdle, TimeUnit maxIdleUnit) {
-        throw new UnsupportedOperationException();
+    public NotifyingFuture<Boolean> replaceAsync(final K key, final Map<MK, MV> oldValue, final Map<MK, MV> newValue, final long lifespan, final TimeUnit lifespanUnit, final long maxIdle, final TimeUnit maxIdleUnit) {
+        return this.invoker.invokeAsync(this, new Operation<K, Map<MK, MV>, Boolean>() {
+            @Override
+            public Boolean invoke(Cache<K, Map<MK, MV>> cache) {
+                return Boolean.valueOf(cache.replace(key, oldValue, newValue, lifespan, lifespanUnit, maxIdle, maxIdleUnit));
+            }
+        });
     }
 
-    @Override
-    public boolean replace(K key, Map<MK, MV> oldValue, Map<MK, MV> newValue) {
-        throw new UnsupportedOperationException();
+    private Map<MK, MV> getAtomicMap(K key, boolean createIfAbsent) {
+        switch (this.mode) {
+            case FINE_GRAINED: {
+                return AtomicMapLookup.getFineGrainedAtomicMap(this.cache, key, createIfAbsent);
+            }
+            case COMPACT: {
+                if (createIfAbsent) {
+                    this.getObjectCache().putIfAbsent(key, new CompactMap());
+                }
+                return (this.cache.get(key) != null) ? new CompactAtomicMap<K, MK, MV>(this.getObjectCache(), key, this.codec) : null;
+            }
+            default: {
+                return AtomicMapLookup.getAtomicMap(this.cache, key, createIfAbsent);
+            }
+        }
+    }
+
+    /**
+     * Creates the atomic map with the specified key, with the specified expiration.
+     * Except in compact mode, the requested expiration is applied after creating the atomic map, which, in fine-grained mode, locks the whole atomic map.
+     */
+    private Map<MK, MV> create(K key, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
+        if (this.mode == Mode.COMPACT) {
+            this.getObjectCache().putIfAbsent(key, new CompactMap(), lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+            return new CompactAtomicMap<K, MK, MV>(this.getObjectCache(), key, this.codec);
+        }
+        Map<MK, MV> map = this.getAtomicMap(key, true);
+        this.expire(key, lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+        return map;
+    }
+
+    /**
+     * Writes the specified content to the atomic map with the specified key, with the specified expiration.
+     * Only changed entries are written.
+     * In compact mode, changes are applied as a single delta, which, if expiring, is written with the requested expiration.
+     */
+    private void write(K key, Map<MK, MV> map, Map<MK, MV> value, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
+        if (this.mode == Mode.COMPACT) {
+            CompactMap compactMap = (CompactMap) this.getObjectCache().get(key);
+            CompactMapDelta delta = CompactMapDelta.diff(compactMap, value, this.codec);
+            // A delta can only be applied to an existing entry
+            if ((compactMap == null) || (lifespan >= 0) || (maxIdleTime >= 0)) {
+                this.getObjectCache().put(key, delta, lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+            } else if (!delta.isEmpty()) {
+                this.cache.applyDelta(key, delta, key);
+            }
+        } else {
+            Map<MK, MV> atomicMap = (map != null) ? map : this.getAtomicMap(key, true);
+            // A batch cannot write a value after a delta of the same entry, so the expiration must be written first
+            this.expire(key, lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+            update(atomicMap, value);
+        }
+    }
+
+    /**
+     * Applies the specified expiration to the atomic map with the specified key, which must exist.
+     * This writes an empty delta with the requested expiration, so neither the content of the atomic map is rewritten, nor replicated.
+     * In fine-grained mode, this locks the whole atomic map.
+     */
+    private void expire(K key, long lifespan, TimeUnit lifespanUnit, long maxIdleTime, TimeUnit maxIdleTimeUnit) {
+        if ((lifespan >= 0) || (maxIdleTime >= 0)) {
+            this.getObjectCache().put(key, new AtomicHashMapDelta(), lifespan, lifespanUnit, maxIdleTime, maxIdleTimeUnit);
+        }
+    }
+
+    /**
+     * Returns a view of the cache whose values are not restricted to maps, i.e. to which compact maps and deltas can be written.
+     */
+    @SuppressWarnings("unchecked")
+    private AdvancedCache<K, Object> getObjectCache() {
+        return ((AdvancedCache<K, Object>) (AdvancedCache<K, ?>) this.cache);
     }
 
-    @Override
-    public Map<MK, MV> replace(K key, Map<MK, MV> value) {
-        throw new UnsupportedOperationException();
+    /**
+     * Returns a copy of the specified atomic map, to be returned as the previous value of a write, or null if return values are ignored.
+     */
+    private Map<MK, MV> copy(Map<MK, MV> map) {
+        return ((map != null) && !this.ignoreReturnValues) ? new HashMap<MK, MV>(map) : null;
     }
 
-    @Override
-    public Map<MK, MV> put(K key, Map<MK, MV> value) {
-        throw new UnsupportedOperationException();
+    private boolean beginBatch() {
+        return this.cache.getCacheConfiguration().invocationBatching().enabled() && this.cache.startBatch();
+    }
+
+    private void endBatch(boolean started, boolean success) {
+        if (started) {
+            this.cache.endBatch(success);
+        }
+    }
+
+    /**
+     * Updates the specified atomic map with the content of the specified map,
+     * writing only those entries that were added, changed, or removed.
+     * Values mutated in place compare equal to themselves, and must be written to the atomic map directly.
+     */
+    private static <MK, MV> void update(Map<MK, MV> map, Map<MK, MV> value) {
+        for (MK key: new ArrayList<MK>(map.keySet())) {
+            if (!value.containsKey(key)) {
+                map.remove(key);
+            }
+        }
+        for (Map.Entry<MK, MV> entry: value.entrySet()) {
+            MK key = entry.getKey();
+            MV newValue = entry.getValue();
+            MV oldValue = map.get(key);
+            if (((oldValue != null) ? !oldValue.equals(newValue) : ((newValue != null) || !map.containsKey(key)))) {
+                map.put(key, newValue);
+            }
+        }
     }
 }
@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.atomic;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.infinispan.AdvancedCache;
+
+/**
+ * Write-through view of the {@link CompactMap} stored under a given key.
+ * Reads only decode the requested entry.  Writes are applied to the cache as a delta, which patches the stored block in place.
+ * @param <K> the cache key
+ * @param <MK> the atomic map key
+ * @param <MV> the atomic map value
+ */
+class CompactAtomicMap<K, MK, MV> extends AbstractMap<MK, MV> {
+
+    private final AdvancedCache<K, Object> cache;
+    private final K key;
+    private final CompactCodec codec;
+
+    CompactAtomicMap(AdvancedCache<K, Object> cache, K key, CompactCodec codec) {
+        this.cache = cache;
+        this.key = key;
+        this.codec = codec;
+    }
+
+    @Override
+    public int size() {
+        CompactMap map = this.getMap();
+        return (map != null) ? map.size() : 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        CompactMap map = this.getMap();
+        return (map != null) && (map.getEncoded(CompactCodec.encodeKey(key)) != null);
+    }
+
+    @Override
+    public MV get(Object key) {
+        CompactMap map = this.getMap();
+        return (map != null) ? this.decode(map.getEncoded(CompactCodec.encodeKey(key))) : null;
+    }
+
+    @Override
+    public MV put(MK key, MV value) {
+        byte[] encodedKey = CompactCodec.encodeKey(key);
+        byte[] encodedValue = this.codec.encode(value);
+        CompactMap map = this.getMap();
+        byte[] previous = (map != null) ? map.getEncoded(encodedKey) : null;
+        if (!Arrays.equals(previous, encodedValue)) {
+            CompactMapDelta delta = new CompactMapDelta();
+            delta.put(encodedKey, encodedValue);
+            this.cache.applyDelta(this.key, delta, this.key);
+        }
+        return this.decode(previous);
+    }
+
+    @Override
+    public MV remove(Object key) {
+        byte[] encodedKey = CompactCodec.encodeKey(key);
+        CompactMap map = this.getMap();
+        byte[] previous = (map != null) ? map.getEncoded(encodedKey) : null;
+        if (previous != null) {
+            CompactMapDelta delta = new CompactMapDelta();
+            delta.remove(encodedKey);
+            this.cache.applyDelta(this.key, delta, this.key);
+        }
+        return this.decode(previous);
+    }
+
+    @Override
+    public void clear() {
+        CompactMap map = this.getMap();
+        if ((map != null) && (map.size() > 0)) {
+            CompactMapDelta delta = new CompactMapDelta();
+            for (byte[] key: map.getEncodedKeys()) {
+                delta.remove(key);
+            }
+            this.cache.applyDelta(this.key, delta, this.key);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the entries of the stored map, which decodes every entry.
+     */
+    @Override
+    public Set<Map.Entry<MK, MV>> entrySet() {
+        CompactMap map = this.getMap();
+        if (map == null) {
+            return Collections.emptySet();
+        }
+        final List<Map.Entry<MK, MV>> entries = new ArrayList<Map.Entry<MK, MV>>(map.size());
+        for (Map.Entry<byte[], byte[]> entry: map.getEncodedEntries()) {
+            @SuppressWarnings("unchecked")
+            MK key = (MK) this.codec.decode(entry.getKey());
+            entries.add(new AbstractMap.SimpleImmutableEntry<MK, MV>(key, this.decode(entry.getValue())));
+        }
+        return new AbstractSet<Map.Entry<MK, MV>>() {
+            @Override
+            public Iterator<Map.Entry<MK, MV>> iterator() {
+                return entries.iterator();
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
+    private CompactMap getMap() {
+        return (CompactMap) this.cache.get(this.key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private MV decode(byte[] value) {
+        return (value != null) ? (MV) this.codec.decode(value) : null;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.atomic;
+
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.infinispan.commons.marshall.Marshaller;
+
+/**
+ * Encodes the keys and values of a {@link CompactMap}.
+ * Common types are encoded using a one byte tag followed by their raw content.
+ * Keys must be of one of these types, since entries are matched by the encoded form of their key, which must therefore be cheap to compute and deterministic.
+ * Values of any other type are marshalled using the marshaller of the cache, which resolves application classes via the class resolver of the cache container.
+ */
+class CompactCodec {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte BYTES = 5;
+    private static final byte MARSHALLED = 6;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final Marshaller marshaller;
+
+    CompactCodec(Marshaller marshaller) {
+        this.marshaller = marshaller;
+    }
+
+    /**
+     * Encodes the specified key of a compact map.
+     * @param key a string, integer, long, boolean, or byte array, or null
+     * @return the encoded key
+     * @throws IllegalArgumentException if the key is of any other type
+     */
+    static byte[] encodeKey(Object key) {
+        byte[] bytes = encodeNative(key);
+        if (bytes == null) {
+            throw MESSAGES.compactAtomicMapKeyNotSupported(key.getClass().getName());
+        }
+        return bytes;
+    }
+
+    byte[] encode(Object value) {
+        byte[] bytes = encodeNative(value);
+        return (bytes != null) ? bytes : this.marshal(value);
+    }
+
+    Object decode(byte[] bytes) {
+        switch (bytes[0]) {
+            case NULL: {
+                return null;
+            }
+            case STRING: {
+                return new String(bytes, 1, bytes.length - 1, CHARSET);
+            }
+            case INTEGER: {
+                return Integer.valueOf((int) readLong(bytes, 4));
+            }
+            case LONG: {
+                return Long.valueOf(readLong(bytes, 8));
+            }
+            case BOOLEAN: {
+                return Boolean.valueOf(bytes[1] != 0);
+            }
+            case BYTES: {
+                byte[] result = new byte[bytes.length - 1];
+                System.arraycopy(bytes, 1, result, 0, result.length);
+                return result;
+            }
+            case MARSHALLED: {
+                try {
+                    // Not all marshallers honour the offset of objectFromByteBuffer(byte[], int, int)
+                    return this.marshaller.objectFromByteBuffer(Arrays.copyOfRange(bytes, 1, bytes.length));
+                } catch (IOException e) {
+                    throw MESSAGES.atomicMapEntryNotDeserializable(e);
+                } catch (ClassNotFoundException e) {
+                    throw MESSAGES.atomicMapEntryNotDeserializable(e);
+                }
+            }
+            default: {
+                throw MESSAGES.atomicMapEntryNotDeserializable(new IOException(String.valueOf(bytes[0])));
+            }
+        }
+    }
+
+    /**
+     * Encodes the specified object using a tag followed by its raw content.
+     * @return the encoded object, or null, if the object is not of a natively encoded type
+     */
+    private static byte[] encodeNative(Object object) {
+        if (object == null) {
+            return new byte[] { NULL };
+        }
+        if (object instanceof String) {
+            return tag(STRING, ((String) object).getBytes(CHARSET));
+        }
+        if (object instanceof Integer) {
+            return writeLong(INTEGER, ((Integer) object).intValue(), 4);
+        }
+        if (object instanceof Long) {
+            return writeLong(LONG, ((Long) object).longValue(), 8);
+        }
+        if (object instanceof Boolean) {
+            return new byte[] { BOOLEAN, (byte) (((Boolean) object).booleanValue() ? 1 : 0) };
+        }
+        if (object instanceof byte[]) {
+            return tag(BYTES, (byte[]) object);
+        }
+        return null;
+    }
+
+    private byte[] marshal(Object object) {
+        try {
+            return tag(MARSHALLED, this.marshaller.objectToByteBuffer(object));
+        } catch (IOException e) {
+            throw MESSAGES.atomicMapEntryNotSerializable(e, object);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw MESSAGES.atomicMapEntryNotSerializable(e, object);
+        }
+    }
+
+    private static byte[] tag(byte tag, byte[] content) {
+        byte[] bytes = new byte[content.length + 1];
+        bytes[0] = tag;
+        System.arraycopy(content, 0, bytes, 1, content.length);
+        return bytes;
+    }
+
+    private static byte[] writeLong(byte tag, long value, int length) {
+        byte[] bytes = new byte[length + 1];
+        bytes[0] = tag;
+        for (int i = length; i > 0; --i) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    private static long readLong(byte[] bytes, int length) {
+        long value = 0;
+        for (int i = 1; i <= length; ++i) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+}
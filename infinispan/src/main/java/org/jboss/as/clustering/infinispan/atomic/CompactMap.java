@@ -0,0 +1,291 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.atomic;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.infinispan.atomic.Delta;
+import org.infinispan.atomic.DeltaAware;
+
+/**
+ * The storage of a compact atomic map: a single heap block of encoded entries, see {@link CompactCodec}.
+ * Each entry is encoded as: key hash, key length, key, value length, value.
+ * Entries are located via an open addressing table of their offsets, indexed by the hash of their encoded key, which is rebuilt rather than serialized.
+ * Writes patch the block in place if the length of the value is unchanged; otherwise, the entry is moved to the end of the block,
+ * compacting the block and rebuilding the table.
+ * Entries are only decoded by the {@link CompactAtomicMap} view of the cache, which is why this is not itself a map.
+ * Being {@link DeltaAware}, only changed entries are replicated, as a {@link CompactMapDelta}, which patches the block of each owner in place.
+ */
+public class CompactMap implements DeltaAware, Externalizable {
+    private static final long serialVersionUID = 4476374233394236423L;
+
+    // Key hash, key length, value length
+    private static final int ENTRY_OVERHEAD = 12;
+    private static final int INITIAL_CAPACITY = 256;
+    // Must be a power of 2
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    private byte[] block = new byte[INITIAL_CAPACITY];
+    private int length = 0;
+    private int size = 0;
+    // The offset, plus 1, of each entry; 0 indicates an empty slot.  Kept at most half full.
+    private transient int[] table = new int[INITIAL_TABLE_SIZE];
+
+    /**
+     * Returns the number of bytes used by the block of this map.
+     * @return a number of bytes
+     */
+    public synchronized int getBlockLength() {
+        return this.length;
+    }
+
+    /**
+     * Returns the number of bytes allocated for the block of this map.
+     * @return a number of bytes
+     */
+    public synchronized int getBlockCapacity() {
+        return this.block.length;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * {@inheritDoc}
+     * A compact map is never modified directly, only by merging deltas, so there are never any changes to extract.
+     */
+    @Override
+    public Delta delta() {
+        return new CompactMapDelta();
+    }
+
+    @Override
+    public void commit() {
+        // Nothing to commit
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput output) throws IOException {
+        byte[] bytes;
+        int size;
+        synchronized (this) {
+            bytes = Arrays.copyOf(this.block, this.length);
+            size = this.size;
+        }
+        output.writeInt(size);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    @Override
+    public void readExternal(ObjectInput input) throws IOException {
+        int size = input.readInt();
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        synchronized (this) {
+            this.block = bytes;
+            this.length = bytes.length;
+            this.size = size;
+            int tableSize = INITIAL_TABLE_SIZE;
+            while (tableSize < size * 2) {
+                tableSize <<= 1;
+            }
+            this.rebuildTable(tableSize);
+        }
+    }
+
+    /**
+     * Returns the encoded value of the entry with the specified encoded key.
+     * @param key an encoded key
+     * @return an encoded value, or null, if this map contains no such entry
+     */
+    synchronized byte[] getEncoded(byte[] key) {
+        int offset = this.table[this.findSlot(key, Arrays.hashCode(key))] - 1;
+        return (offset >= 0) ? this.getValue(offset, key.length) : null;
+    }
+
+    /**
+     * Returns the encoded keys of this map.
+     * @return a list of encoded keys
+     */
+    synchronized List<byte[]> getEncodedKeys() {
+        List<byte[]> keys = new ArrayList<byte[]>(this.size);
+        for (int offset = 0; offset < this.length; offset = this.next(offset)) {
+            keys.add(this.getKey(offset));
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the encoded entries of this map.
+     * @return a list of encoded entries
+     */
+    synchronized List<Map.Entry<byte[], byte[]>> getEncodedEntries() {
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<Map.Entry<byte[], byte[]>>(this.size);
+        for (int offset = 0; offset < this.length; offset = this.next(offset)) {
+            byte[] key = this.getKey(offset);
+            entries.add(new AbstractMap.SimpleImmutableEntry<byte[], byte[]>(key, this.getValue(offset, key.length)));
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the specified entry, in place if its value has the same length as the existing value.
+     * @return the previous encoded value, or null, if there was none
+     */
+    synchronized byte[] putEncoded(byte[] key, byte[] value) {
+        int hash = Arrays.hashCode(key);
+        int slot = this.findSlot(key, hash);
+        byte[] previous = null;
+        if (this.table[slot] != 0) {
+            int offset = this.table[slot] - 1;
+            int valueOffset = offset + ENTRY_OVERHEAD + key.length;
+            int valueLength = getInt(this.block, valueOffset - 4);
+            previous = Arrays.copyOfRange(this.block, valueOffset, valueOffset + valueLength);
+            if (valueLength == value.length) {
+                System.arraycopy(value, 0, this.block, valueOffset, value.length);
+                return previous;
+            }
+            this.removeAt(offset, ENTRY_OVERHEAD + key.length + valueLength);
+            slot = this.findSlot(key, hash);
+        }
+        int offset = this.length;
+        int end = offset + ENTRY_OVERHEAD + key.length + value.length;
+        if (end > this.block.length) {
+            this.block = Arrays.copyOf(this.block, Math.max(end, this.block.length + (this.block.length >> 1)));
+        }
+        putInt(this.block, offset, hash);
+        putInt(this.block, offset + 4, key.length);
+        System.arraycopy(key, 0, this.block, offset + 8, key.length);
+        putInt(this.block, offset + 8 + key.length, value.length);
+        System.arraycopy(value, 0, this.block, offset + ENTRY_OVERHEAD + key.length, value.length);
+        this.length = end;
+        this.size += 1;
+        if (this.size * 2 > this.table.length) {
+            this.rebuildTable(this.table.length << 1);
+        } else {
+            this.table[slot] = offset + 1;
+        }
+        return previous;
+    }
+
+    /**
+     * Removes the entry with the specified encoded key.
+     * @return the previous encoded value, or null, if there was none
+     */
+    synchronized byte[] removeEncoded(byte[] key) {
+        int offset = this.table[this.findSlot(key, Arrays.hashCode(key))] - 1;
+        if (offset < 0) {
+            return null;
+        }
+        byte[] previous = this.getValue(offset, key.length);
+        this.removeAt(offset, ENTRY_OVERHEAD + key.length + previous.length);
+        return previous;
+    }
+
+    /**
+     * Returns the slot of the table containing the entry with the specified encoded key, or, if there is no such entry, the empty slot at which it would be inserted.
+     */
+    private int findSlot(byte[] key, int hash) {
+        int mask = this.table.length - 1;
+        int slot = spread(hash) & mask;
+        while (this.table[slot] != 0) {
+            int offset = this.table[slot] - 1;
+            if ((getInt(this.block, offset) == hash) && (getInt(this.block, offset + 4) == key.length) && this.matches(offset + 8, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean matches(int offset, byte[] key) {
+        for (int i = 0; i < key.length; ++i) {
+            if (this.block[offset + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the entry at the specified offset, by shifting all subsequent entries, which invalidates their slots.
+     */
+    private void removeAt(int offset, int entryLength) {
+        int end = offset + entryLength;
+        System.arraycopy(this.block, end, this.block, offset, this.length - end);
+        this.length -= entryLength;
+        this.size -= 1;
+        this.rebuildTable(this.table.length);
+    }
+
+    private void rebuildTable(int tableSize) {
+        this.table = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int offset = 0; offset < this.length; offset = this.next(offset)) {
+            int slot = spread(getInt(this.block, offset)) & mask;
+            while (this.table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.table[slot] = offset + 1;
+        }
+    }
+
+    private int next(int offset) {
+        int keyLength = getInt(this.block, offset + 4);
+        return offset + ENTRY_OVERHEAD + keyLength + getInt(this.block, offset + 8 + keyLength);
+    }
+
+    private byte[] getKey(int offset) {
+        return Arrays.copyOfRange(this.block, offset + 8, offset + 8 + getInt(this.block, offset + 4));
+    }
+
+    private byte[] getValue(int offset, int keyLength) {
+        int valueOffset = offset + ENTRY_OVERHEAD + keyLength;
+        return Arrays.copyOfRange(this.block, valueOffset, valueOffset + getInt(this.block, valueOffset - 4));
+    }
+
+    // Since slots are selected by the low bits of the hash, mix in the high bits
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
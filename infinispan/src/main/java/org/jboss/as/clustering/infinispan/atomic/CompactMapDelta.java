@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.atomic;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.infinispan.atomic.Delta;
+import org.infinispan.atomic.DeltaAware;
+
+/**
+ * The changed entries of a {@link CompactMap}, in encoded form.
+ * Merging patches the target map in place, without deserializing any entry.
+ */
+public class CompactMapDelta implements Delta, Externalizable {
+    private static final long serialVersionUID = -1810364283213475011L;
+
+    private final List<byte[]> keys = new ArrayList<byte[]>();
+    // A null value indicates a removed entry
+    private final List<byte[]> values = new ArrayList<byte[]>();
+
+    /**
+     * Creates the delta that would update the specified map, if any, to the content of the specified map.
+     * Entries are compared in their encoded form, so unchanged entries are neither deserialized nor included.
+     * @param map a compact map, or null, if none exists
+     * @param value the new content of the map
+     * @param codec encodes the entries of the new content
+     * @return a delta
+     */
+    static <K, V> CompactMapDelta diff(CompactMap map, Map<K, V> value, CompactCodec codec) {
+        CompactMapDelta delta = new CompactMapDelta();
+        // Byte buffers compare by content
+        Set<ByteBuffer> encodedKeys = new HashSet<ByteBuffer>();
+        for (Map.Entry<K, V> entry: value.entrySet()) {
+            byte[] key = CompactCodec.encodeKey(entry.getKey());
+            byte[] encodedValue = codec.encode(entry.getValue());
+            encodedKeys.add(ByteBuffer.wrap(key));
+            if ((map == null) || !Arrays.equals(map.getEncoded(key), encodedValue)) {
+                delta.put(key, encodedValue);
+            }
+        }
+        if (map != null) {
+            for (byte[] key: map.getEncodedKeys()) {
+                if (!encodedKeys.contains(ByteBuffer.wrap(key))) {
+                    delta.remove(key);
+                }
+            }
+        }
+        return delta;
+    }
+
+    public boolean isEmpty() {
+        return this.keys.isEmpty();
+    }
+
+    void put(byte[] key, byte[] value) {
+        this.keys.add(key);
+        this.values.add(value);
+    }
+
+    void remove(byte[] key) {
+        this.keys.add(key);
+        this.values.add(null);
+    }
+
+    @Override
+    public DeltaAware merge(DeltaAware target) {
+        CompactMap map = (target instanceof CompactMap) ? (CompactMap) target : new CompactMap();
+        for (int i = 0; i < this.keys.size(); ++i) {
+            byte[] value = this.values.get(i);
+            if (value != null) {
+                map.putEncoded(this.keys.get(i), value);
+            } else {
+                map.removeEncoded(this.keys.get(i));
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput output) throws IOException {
+        output.writeInt(this.keys.size());
+        for (int i = 0; i < this.keys.size(); ++i) {
+            write(output, this.keys.get(i));
+            write(output, this.values.get(i));
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput input) throws IOException {
+        int size = input.readInt();
+        for (int i = 0; i < size; ++i) {
+            this.keys.add(read(input));
+            this.values.add(read(input));
+        }
+    }
+
+    private static void write(ObjectOutput output, byte[] bytes) throws IOException {
+        output.writeInt((bytes != null) ? bytes.length : -1);
+        if (bytes != null) {
+            output.write(bytes);
+        }
+    }
+
+    private static byte[] read(ObjectInput input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.compression;
+
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The marshalled form of a cache value, compressed using deflate.
+ * The stream form is prefixed by a tag, so that values which did not compress well can be stored as is,
+ * alongside compressed values.
+ * Equality is based on the stored bytes, in the same manner as Infinispan's MarshalledValue.
+ */
+public class CompressedValue implements Externalizable {
+    private static final long serialVersionUID = -2962384906361632385L;
+
+    private static final byte UNCOMPRESSED = 0;
+    private static final byte DEFLATED = 1;
+
+    private static final ThreadLocal<Deflater> deflater = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED);
+        }
+    };
+    private static final ThreadLocal<Inflater> inflater = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+
+    private boolean compressed;
+    // The length of the uncompressed bytes
+    private int length;
+    private byte[] bytes;
+    private transient int hashCode;
+
+    /**
+     * Compresses the specified marshalled value.
+     * If compression would not reduce its size, the bytes are retained uncompressed.
+     * @param bytes a marshalled value
+     * @return a compressed value
+     */
+    public static CompressedValue compress(byte[] bytes) {
+        Deflater deflater = CompressedValue.deflater.get();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            // Compressed form is only useful if smaller than the original
+            byte[] buffer = new byte[bytes.length];
+            int length = 0;
+            while (!deflater.finished() && (length < buffer.length)) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            if (!deflater.finished() || (length >= bytes.length)) {
+                return new CompressedValue(false, bytes.length, bytes);
+            }
+            return new CompressedValue(true, bytes.length, Arrays.copyOf(buffer, length));
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    public CompressedValue() {
+        // For deserialization only
+    }
+
+    private CompressedValue(boolean compressed, int length, byte[] bytes) {
+        this.compressed = compressed;
+        this.length = length;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Indicates whether the stored bytes are compressed.
+     * @return true, if the stored bytes are compressed, false otherwise
+     */
+    public boolean isCompressed() {
+        return this.compressed;
+    }
+
+    /**
+     * Returns the number of bytes stored by this value.
+     * @return the stored length
+     */
+    public int getStoredLength() {
+        return this.bytes.length;
+    }
+
+    /**
+     * Returns the number of bytes of the uncompressed marshalled value.
+     * @return the uncompressed length
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * Returns the uncompressed marshalled value.
+     * @return the marshalled value
+     * @throws IOException if the stored bytes could not be decompressed
+     */
+    public byte[] getBytes() throws IOException {
+        if (!this.compressed) {
+            return this.bytes;
+        }
+        Inflater inflater = CompressedValue.inflater.get();
+        try {
+            inflater.setInput(this.bytes);
+            byte[] result = new byte[this.length];
+            int offset = 0;
+            while (offset < result.length) {
+                int count = inflater.inflate(result, offset, result.length - offset);
+                if ((count == 0) && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw MESSAGES.invalidCompressedValue(this.length, offset);
+                }
+                offset += count;
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput output) throws IOException {
+        output.writeByte(this.compressed ? DEFLATED : UNCOMPRESSED);
+        if (this.compressed) {
+            output.writeInt(this.length);
+        }
+        output.writeInt(this.bytes.length);
+        output.write(this.bytes);
+    }
+
+    @Override
+    public void readExternal(ObjectInput input) throws IOException {
+        byte tag = input.readByte();
+        switch (tag) {
+            case UNCOMPRESSED: {
+                this.compressed = false;
+                this.bytes = new byte[input.readInt()];
+                this.length = this.bytes.length;
+                break;
+            }
+            case DEFLATED: {
+                this.compressed = true;
+                this.length = input.readInt();
+                this.bytes = new byte[input.readInt()];
+                break;
+            }
+            default: {
+                throw MESSAGES.unknownCompressedValueTag(tag);
+            }
+        }
+        input.readFully(this.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = this.hashCode;
+        if (result == 0) {
+            result = Arrays.hashCode(this.bytes);
+            this.hashCode = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof CompressedValue)) {
+            return false;
+        }
+        CompressedValue value = (CompressedValue) object;
+        return (this.compressed == value.compressed) && Arrays.equals(this.bytes, value.bytes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[compressed=%s, length=%d, stored=%d]", this.getClass().getSimpleName(), this.compressed, this.length, this.bytes.length);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.compression;
+
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
+
+import java.io.IOException;
+
+import org.infinispan.commons.equivalence.Equivalence;
+import org.jboss.as.clustering.infinispan.equivalence.AnyServerEquivalence;
+
+/**
+ * Value equivalence of a cache that uses a {@link CompressionInterceptor}.
+ * Values are compared in their decompressed form, so that conditional replace and remove operations
+ * match values that are equal, even if their marshalled forms differ.
+ * Decompressed values are compared via {@link AnyServerEquivalence}, thus byte[] values are compared by content.
+ */
+public class CompressedValueEquivalence implements Equivalence<Object> {
+    private static final long serialVersionUID = -1722843637329465385L;
+
+    private final transient CompressionInterceptor interceptor;
+    private final Equivalence<Object> equivalence = new AnyServerEquivalence();
+
+    public CompressedValueEquivalence(CompressionInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    @Override
+    public int hashCode(Object obj) {
+        return this.equivalence.hashCode(this.decompress(obj));
+    }
+
+    @Override
+    public boolean equals(Object obj, Object otherObj) {
+        if (obj == otherObj) {
+            return true;
+        }
+        return this.equivalence.equals(this.decompress(obj), this.decompress(otherObj));
+    }
+
+    @Override
+    public String toString(Object obj) {
+        return this.equivalence.toString(obj);
+    }
+
+    @Override
+    public boolean isComparable(Object obj) {
+        return this.equivalence.isComparable(this.decompress(obj));
+    }
+
+    @Override
+    public int compare(Object obj, Object otherObj) {
+        return this.equivalence.compare(this.decompress(obj), this.decompress(otherObj));
+    }
+
+    private Object decompress(Object value) {
+        try {
+            return this.interceptor.decompress(value);
+        } catch (IOException e) {
+            throw MESSAGES.compressedValueNotReadable(e);
+        } catch (ClassNotFoundException e) {
+            throw MESSAGES.compressedValueNotReadable(e);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.compression;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.infinispan.atomic.DeltaAware;
+import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.read.ValuesCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.commands.write.RemoveCommand;
+import org.infinispan.commands.write.ReplaceCommand;
+import org.infinispan.commons.marshall.Marshaller;
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.container.InternalEntryFactory;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.factories.ComponentRegistry;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.interceptors.base.BaseCustomInterceptor;
+
+/**
+ * Custom interceptor that transparently compresses cache values whose marshalled form reaches a given threshold.
+ * Values are compressed by the originating node, before they are replicated or written to a cache store,
+ * and are decompressed when returned to the application.  Smaller values, values that do not shrink when compressed,
+ * and delta aware values (e.g. atomic maps), are stored as is, thus a cache may contain both forms, e.g. following a change of threshold.
+ * Values are stored compressed in memory, and are decompressed on every read.
+ * Bulk operations, and AdvancedCache.getCacheEntry(...), return copies of the cache contents.
+ * Conditional operations compare expected values via {@link CompressedValueEquivalence}, which must be configured as the value equivalence of the cache.
+ */
+public class CompressionInterceptor extends BaseCustomInterceptor {
+
+    private final int threshold;
+    private volatile Marshaller marshaller;
+    private volatile InternalEntryFactory entryFactory;
+
+    private final AtomicLong compressionAttempts = new AtomicLong();
+    private final AtomicLong compressions = new AtomicLong();
+    private final AtomicLong compressionTime = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong decompressions = new AtomicLong();
+    private final AtomicLong decompressionTime = new AtomicLong();
+
+    /**
+     * Creates a new compression interceptor.
+     * @param threshold the size, in bytes, of the marshalled form of a value at or above which it will be compressed
+     */
+    public CompressionInterceptor(int threshold) {
+        this(threshold, null);
+    }
+
+    /**
+     * Creates a new compression interceptor using the specified marshaller, instead of the cache marshaller.
+     * @param threshold the size, in bytes, of the marshalled form of a value at or above which it will be compressed
+     * @param marshaller a marshaller
+     */
+    CompressionInterceptor(int threshold, Marshaller marshaller) {
+        this.threshold = threshold;
+        this.marshaller = marshaller;
+    }
+
+    public int getThreshold() {
+        return this.threshold;
+    }
+
+    @Override
+    protected void start() {
+        ComponentRegistry registry = this.cache.getAdvancedCache().getComponentRegistry();
+        if (this.marshaller == null) {
+            this.marshaller = registry.getComponent(StreamingMarshaller.class, KnownComponentNames.CACHE_MARSHALLER);
+        }
+        this.entryFactory = registry.getComponent(InternalEntryFactory.class);
+    }
+
+    @Override
+    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
+        if (ctx.isOriginLocal()) {
+            command.setValue(this.compress(command.getValue()));
+        }
+        return this.decompress(ctx, this.invokeNextInterceptor(ctx, command));
+    }
+
+    @Override
+    public Object visitReplaceCommand(InvocationContext ctx, ReplaceCommand command) throws Throwable {
+        if (ctx.isOriginLocal()) {
+            // The expected value is compared with the stored value by CompressedValueEquivalence, so it is left as is
+            command.setNewValue(this.compress(command.getNewValue()));
+        }
+        return this.decompress(ctx, this.invokeNextInterceptor(ctx, command));
+    }
+
+    @Override
+    public Object visitRemoveCommand(InvocationContext ctx, RemoveCommand command) throws Throwable {
+        // The expected value, if any, is compared with the stored value by CompressedValueEquivalence, so it is left as is
+        return this.decompress(ctx, this.invokeNextInterceptor(ctx, command));
+    }
+
+    @Override
+    public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
+        if (ctx.isOriginLocal()) {
+            Map<Object, Object> map = command.getMap();
+            Map<Object, Object> result = new HashMap<Object, Object>(map.size());
+            for (Map.Entry<Object, Object> entry: map.entrySet()) {
+                result.put(entry.getKey(), this.compress(entry.getValue()));
+            }
+            command.setMap(result);
+        }
+        return this.invokeNextInterceptor(ctx, command);
+    }
+
+    @Override
+    public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable {
+        Object result = this.invokeNextInterceptor(ctx, command);
+        if (!ctx.isOriginLocal()) {
+            return result;
+        }
+        if (command.isReturnEntry()) {
+            return this.decompressEntry((CacheEntry) result);
+        }
+        return this.decompress(result);
+    }
+
+    @Override
+    public Object visitValuesCommand(InvocationContext ctx, ValuesCommand command) throws Throwable {
+        Collection<?> values = (Collection<?>) this.invokeNextInterceptor(ctx, command);
+        if (!ctx.isOriginLocal()) {
+            return values;
+        }
+        List<Object> result = new ArrayList<Object>(values.size());
+        for (Object value: values) {
+            result.add(this.decompress(value));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public Object visitEntrySetCommand(InvocationContext ctx, EntrySetCommand command) throws Throwable {
+        @SuppressWarnings("unchecked")
+        Set<Map.Entry<Object, Object>> entries = (Set<Map.Entry<Object, Object>>) this.invokeNextInterceptor(ctx, command);
+        if (!ctx.isOriginLocal()) {
+            return entries;
+        }
+        Set<Map.Entry<Object, Object>> result = new HashSet<Map.Entry<Object, Object>>(entries.size());
+        for (Map.Entry<Object, Object> entry: entries) {
+            result.add(new AbstractMap.SimpleImmutableEntry<Object, Object>(entry.getKey(), this.decompress(entry.getValue())));
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    private Object compress(Object value) throws IOException, InterruptedException {
+        if ((value == null) || (value instanceof CompressedValue) || (value instanceof DeltaAware) || this.isSmall(value)) {
+            return value;
+        }
+        byte[] bytes = this.marshaller.objectToByteBuffer(value);
+        if (bytes.length < this.threshold) {
+            return value;
+        }
+        long start = System.nanoTime();
+        CompressedValue result = CompressedValue.compress(bytes);
+        this.compressionTime.addAndGet(System.nanoTime() - start);
+        this.compressionAttempts.incrementAndGet();
+        if (!result.isCompressed()) {
+            // Wrapping would only add overhead to every read
+            return value;
+        }
+        this.compressions.incrementAndGet();
+        this.uncompressedBytes.addAndGet(result.getLength());
+        this.compressedBytes.addAndGet(result.getStoredLength());
+        return result;
+    }
+
+    /**
+     * Avoids marshalling values whose marshalled form is known to be below the threshold.
+     */
+    private boolean isSmall(Object value) {
+        if ((value instanceof Number) || (value instanceof Boolean) || (value instanceof Character) || (value instanceof Enum)) {
+            return true;
+        }
+        if (value instanceof String) {
+            // A char occupies at most 3 bytes in modified UTF-8
+            return (((String) value).length() * 3L) < this.threshold;
+        }
+        return false;
+    }
+
+    private Object decompress(InvocationContext ctx, Object value) throws IOException, ClassNotFoundException {
+        return ctx.isOriginLocal() ? this.decompress(value) : value;
+    }
+
+    /**
+     * Returns a copy of the specified cache entry, whose value is decompressed, so that the stored entry is not modified.
+     */
+    private CacheEntry decompressEntry(CacheEntry entry) throws IOException, ClassNotFoundException {
+        if ((entry == null) || !(entry.getValue() instanceof CompressedValue)) {
+            return entry;
+        }
+        Object key = entry.getKey();
+        Object value = this.decompress(entry.getValue());
+        return (entry instanceof InternalCacheEntry) ? this.entryFactory.create(key, value, (InternalCacheEntry) entry) : this.entryFactory.create(key, value, entry.getMetadata());
+    }
+
+    Object decompress(Object value) throws IOException, ClassNotFoundException {
+        if (!(value instanceof CompressedValue)) {
+            return value;
+        }
+        CompressedValue compressed = (CompressedValue) value;
+        if (!compressed.isCompressed()) {
+            return this.marshaller.objectFromByteBuffer(compressed.getBytes());
+        }
+        long start = System.nanoTime();
+        byte[] bytes = compressed.getBytes();
+        this.decompressionTime.addAndGet(System.nanoTime() - start);
+        this.decompressions.incrementAndGet();
+        return this.marshaller.objectFromByteBuffer(bytes);
+    }
+
+    /**
+     * Returns the number of values stored in compressed form by this node.
+     * @return a number of values
+     */
+    public long getCompressions() {
+        return this.compressions.get();
+    }
+
+    /**
+     * Returns the ratio of the uncompressed size to the stored size of the values compressed by this node.
+     * @return a compression ratio, or 0, if no values were compressed
+     */
+    public double getCompressionRatio() {
+        long compressed = this.compressedBytes.get();
+        return (compressed > 0) ? (double) this.uncompressedBytes.get() / compressed : 0;
+    }
+
+    /**
+     * Returns the average time spent compressing a value.
+     * @return a time in nanoseconds
+     */
+    public long getAverageCompressionTime() {
+        long count = this.compressionAttempts.get();
+        return (count > 0) ? this.compressionTime.get() / count : 0;
+    }
+
+    /**
+     * Returns the number of values decompressed by this node.
+     * @return a number of values
+     */
+    public long getDecompressions() {
+        return this.decompressions.get();
+    }
+
+    /**
+     * Returns the average time spent decompressing a value.
+     * @return a time in nanoseconds
+     */
+    public long getAverageDecompressionTime() {
+        long count = this.decompressions.get();
+        return (count > 0) ? this.decompressionTime.get() / count : 0;
+    }
+
+    public void resetStatistics() {
+        this.compressionAttempts.set(0);
+        this.compressions.set(0);
+        this.compressionTime.set(0);
+        this.uncompressedBytes.set(0);
+        this.compressedBytes.set(0);
+        this.decompressions.set(0);
+        this.decompressionTime.set(0);
+    }
+}
@@ -0,0 +1,608 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.container;
+
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.InternalEntryFactory;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.container.versioning.NumericVersion;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.PassivationManager;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.factories.annotations.ComponentName;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.Metadata;
+import org.infinispan.util.TimeService;
+import org.jboss.as.clustering.infinispan.equivalence.ByteArrayKey;
+
+/**
+ * Data container that stores its entries in binary form, in buffer pages, which grow from 4KB to 1MB as a segment fills.
+ * Pages are either allocated outside of the heap, so that entries are not traced by the garbage collector, or on the heap.
+ * Keys and values that are byte[] (as for the Hot Rod, memcached and REST connectors) are stored as is, while others are stored in marshalled form.
+ * Likewise, embedded metadata (lifespan, max-idle and numeric version) is stored as primitive fields, while other metadata is marshalled.
+ * Entries are partitioned into {@link BinarySegment}s, each guarded by its own lock, whose number is derived from the lock concurrency level.
+ * Bounded caches evict an approximation of the least recently used entry of a segment, chosen by sampling,
+ * once the segment reaches its share of max-entries, or would exceed its share of max-memory.
+ * Max-memory bounds the memory allocated by a segment, i.e. its pages and index, rather than only its live entries:
+ * an eighth of each share is reserved for removed entries and unused page space, beyond which the segment is compacted,
+ * and pages are no larger than a sixteenth of the share.
+ * A single entry larger than the share of its segment is nevertheless stored, once all other entries of the segment are evicted.
+ * When passivation is enabled, an evicted entry is written to the store without holding the segment lock,
+ * and is only removed from memory afterwards, if it was not replaced in the meantime.
+ * The memory footprint of an entry is its stored size, i.e. the size of its byte[] or marshalled key, value and metadata, plus a fixed header.
+ * Bulk operations, i.e. iteration, keySet(), values() and entrySet(), return on-heap copies.
+ * Native memory is released when the direct buffers of a segment are garbage collected, following compaction, clear(), or cache stop.
+ */
+public class BinaryDataContainer implements DataContainer {
+
+    private static final int MIN_PAGE_SIZE = 1 << 12;
+    private static final int PAGE_SIZE = 1 << 20;
+    private static final int EVICTION_SAMPLES = 8;
+
+    private final BinarySegment.KeyEquivalence keyEquivalence = new BinarySegment.KeyEquivalence() {
+        @Override
+        public boolean equals(Object key, byte[] stored) {
+            return key.equals(BinaryDataContainer.this.unmarshal(stored));
+        }
+    };
+
+    private volatile Configuration configuration;
+    private volatile InternalEntryFactory entryFactory;
+    private volatile EvictionManager evictionManager;
+    private volatile PassivationManager passivator;
+    private volatile StreamingMarshaller marshaller;
+    private volatile TimeService timeService;
+
+    private volatile BinarySegment[] segments = new BinarySegment[0];
+    private volatile int segmentShift;
+    private volatile int maxSegmentEntries;
+    // Memory available to the live entries and index of a segment
+    private volatile long maxSegmentMemory;
+    private volatile boolean passivation;
+
+    private final boolean direct;
+    private final long maxMemory;
+
+    /**
+     * Creates a new binary data container.
+     * @param direct indicates whether entries are stored outside of the heap
+     * @param maxMemory the maximum number of bytes of stored entries, or 0, if unbounded
+     */
+    public BinaryDataContainer(boolean direct, long maxMemory) {
+        this.direct = direct;
+        this.maxMemory = maxMemory;
+    }
+
+    @Inject
+    public void inject(Configuration configuration, InternalEntryFactory entryFactory, EvictionManager evictionManager, PassivationManager passivator,
+            @ComponentName(KnownComponentNames.CACHE_MARSHALLER) StreamingMarshaller marshaller, TimeService timeService) {
+        this.configuration = configuration;
+        this.entryFactory = entryFactory;
+        this.evictionManager = evictionManager;
+        this.passivator = passivator;
+        this.marshaller = marshaller;
+        this.timeService = timeService;
+    }
+
+    @Start
+    public void start() {
+        int concurrencyLevel = this.configuration.locking().concurrencyLevel();
+        boolean bounded = this.configuration.eviction().strategy().isEnabled() && (this.configuration.eviction().maxEntries() > 0);
+        if (bounded) {
+            // Ensure that each segment can hold at least one entry
+            concurrencyLevel = Math.min(concurrencyLevel, this.configuration.eviction().maxEntries());
+        }
+        if (this.maxMemory > 0) {
+            // Ensure that the share of each segment spans several minimum size pages
+            concurrencyLevel = (int) Math.max(Math.min(concurrencyLevel, this.maxMemory / (16 * MIN_PAGE_SIZE)), 1);
+        }
+        int bits = 0;
+        while ((1 << bits) < concurrencyLevel) {
+            bits += 1;
+        }
+        int maxPageSize = PAGE_SIZE;
+        long maxDeadMemory = Long.MAX_VALUE;
+        long maxSegmentMemory = Long.MAX_VALUE;
+        if (this.maxMemory > 0) {
+            long share = this.maxMemory >> bits;
+            maxPageSize = (int) Math.max(Math.min(share / 16, PAGE_SIZE), MIN_PAGE_SIZE);
+            maxDeadMemory = share / 8;
+            maxSegmentMemory = Math.max(share - maxDeadMemory, 1);
+        }
+        BinarySegment[] segments = new BinarySegment[1 << bits];
+        for (int i = 0; i < segments.length; ++i) {
+            segments[i] = new BinarySegment(MIN_PAGE_SIZE, maxPageSize, maxDeadMemory, this.direct, i);
+        }
+        this.maxSegmentEntries = bounded ? Math.max(this.configuration.eviction().maxEntries() >> bits, 1) : Integer.MAX_VALUE;
+        this.maxSegmentMemory = maxSegmentMemory;
+        this.passivation = this.configuration.persistence().passivation();
+        this.segmentShift = 32 - bits;
+        this.segments = segments;
+    }
+
+    @Stop
+    public void stop() {
+        this.segments = new BinarySegment[0];
+    }
+
+    /**
+     * Returns the estimated memory footprint of the entries of this container, in bytes.
+     */
+    public long getMemoryUsed() {
+        long memory = 0;
+        for (BinarySegment segment: this.segments) {
+            synchronized (segment) {
+                memory += segment.getMemoryUsed();
+            }
+        }
+        return memory;
+    }
+
+    /**
+     * Returns the number of bytes of memory allocated by this container, including unused space within its pages and index.
+     */
+    public long getAllocatedMemory() {
+        long memory = 0;
+        for (BinarySegment segment: this.segments) {
+            synchronized (segment) {
+                memory += segment.getAllocatedMemory();
+            }
+        }
+        return memory;
+    }
+
+    @Override
+    public InternalCacheEntry get(Object k) {
+        Key key = this.key(k);
+        BinarySegment segment = this.segment(key.hash);
+        BinarySegment.Entry entry;
+        synchronized (segment) {
+            int slot = key.find(segment);
+            if (slot < 0) {
+                return null;
+            }
+            long address = segment.address(slot);
+            long now = this.timeService.wallClockTime();
+            if (segment.isExpired(address, now)) {
+                segment.remove(slot);
+                return null;
+            }
+            segment.setLastUsed(address, now);
+            entry = segment.read(address, false);
+        }
+        return this.createEntry(k, entry);
+    }
+
+    @Override
+    public InternalCacheEntry peek(Object k) {
+        Key key = this.key(k);
+        BinarySegment segment = this.segment(key.hash);
+        BinarySegment.Entry entry;
+        synchronized (segment) {
+            int slot = key.find(segment);
+            if (slot < 0) {
+                return null;
+            }
+            entry = segment.read(segment.address(slot), false);
+        }
+        return this.createEntry(k, entry);
+    }
+
+    @Override
+    public void put(Object k, Object v, Metadata metadata) {
+        Key key = this.key(k);
+        BinarySegment.Entry entry = new BinarySegment.Entry();
+        entry.keyType = key.type;
+        entry.key = key.bytes;
+        this.setValue(entry, v);
+        this.setMetadata(entry, metadata);
+        long now = this.timeService.wallClockTime();
+        entry.created = now;
+        entry.lastUsed = now;
+        int length = BinarySegment.length(entry);
+
+        BinarySegment segment = this.segment(key.hash);
+        Map<Object, InternalCacheEntry> evicted = null;
+        List<BinarySegment.Entry> evictedEntries = null;
+        // An entry chosen for passivation, which remains in memory until it has been written to the store
+        Key passivatedKey = null;
+        BinarySegment.Entry passivatedEntry = null;
+        InternalCacheEntry passivated = null;
+        while (true) {
+            BinarySegment.Entry victimEntry = null;
+            synchronized (segment) {
+                if (passivated != null) {
+                    int victim = passivatedKey.find(segment);
+                    if (victim >= 0) {
+                        long address = segment.address(victim);
+                        if (segment.matches(address, passivatedEntry)) {
+                            segment.remove(victim);
+                            if (evicted == null) {
+                                evicted = new HashMap<Object, InternalCacheEntry>();
+                            }
+                            evicted.put(passivated.getKey(), passivated);
+                        } else if (!segment.isExpired(address, now)) {
+                            // Replaced while being passivated, so passivate its current state
+                            victimEntry = segment.read(address, true);
+                        }
+                    }
+                    passivatedKey = null;
+                    passivatedEntry = null;
+                    passivated = null;
+                }
+                if (victimEntry == null) {
+                    int slot = key.find(segment);
+                    // The existing entry, if any, will be replaced, so discount its memory
+                    long memory = segment.getMemoryUsed() + length - ((slot >= 0) ? segment.length(segment.address(slot)) : 0);
+                    long indexMemory = (this.maxSegmentMemory < Long.MAX_VALUE) ? segment.getIndexMemory((slot < 0) ? segment.size() + 1 : segment.size()) : 0;
+                    while (((slot < 0) && (segment.size() >= this.maxSegmentEntries)) || (memory + indexMemory > this.maxSegmentMemory)) {
+                        int victim = segment.sample(EVICTION_SAMPLES, now, slot);
+                        if (victim < 0) {
+                            break;
+                        }
+                        long address = segment.address(victim);
+                        if (segment.isExpired(address, now)) {
+                            memory -= segment.length(address);
+                            segment.remove(victim);
+                        } else if (this.passivation) {
+                            // Passivate before removal, so that the entry is always found in either memory or the store
+                            victimEntry = segment.read(address, true);
+                            break;
+                        } else {
+                            if (evictedEntries == null) {
+                                evictedEntries = new ArrayList<BinarySegment.Entry>();
+                            }
+                            evictedEntries.add(segment.read(address, true));
+                            memory -= segment.length(address);
+                            segment.remove(victim);
+                        }
+                        // Removal shifts subsequent slots
+                        slot = key.find(segment);
+                    }
+                    if (victimEntry == null) {
+                        segment.put(slot, key.hash, entry);
+                        break;
+                    }
+                }
+            }
+            // Write to the store without holding the segment lock
+            passivated = this.createEntry(this.decodeKey(victimEntry), victimEntry);
+            passivatedKey = this.key(passivated.getKey());
+            passivatedEntry = victimEntry;
+            this.passivator.passivate(passivated);
+        }
+        if (evictedEntries != null) {
+            if (evicted == null) {
+                evicted = new HashMap<Object, InternalCacheEntry>();
+            }
+            for (BinarySegment.Entry victimEntry: evictedEntries) {
+                InternalCacheEntry victimCacheEntry = this.createEntry(this.decodeKey(victimEntry), victimEntry);
+                evicted.put(victimCacheEntry.getKey(), victimCacheEntry);
+            }
+        }
+        if (evicted != null) {
+            this.evictionManager.onEntryEviction(evicted);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object k) {
+        Key key = this.key(k);
+        BinarySegment segment = this.segment(key.hash);
+        synchronized (segment) {
+            int slot = key.find(segment);
+            if (slot < 0) {
+                return false;
+            }
+            if (segment.isExpired(segment.address(slot), this.timeService.wallClockTime())) {
+                segment.remove(slot);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public InternalCacheEntry remove(Object k) {
+        Key key = this.key(k);
+        BinarySegment segment = this.segment(key.hash);
+        BinarySegment.Entry entry;
+        synchronized (segment) {
+            int slot = key.find(segment);
+            if (slot < 0) {
+                return null;
+            }
+            long address = segment.address(slot);
+            boolean expired = segment.isExpired(address, this.timeService.wallClockTime());
+            entry = expired ? null : segment.read(address, false);
+            segment.remove(slot);
+        }
+        return (entry != null) ? this.createEntry(k, entry) : null;
+    }
+
+    @Override
+    public int size() {
+        long now = this.timeService.wallClockTime();
+        long size = 0;
+        for (BinarySegment segment: this.segments) {
+            synchronized (segment) {
+                size += segment.count(now);
+            }
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void clear() {
+        for (BinarySegment segment: this.segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public Set<Object> keySet() {
+        Set<Object> keys = new HashSet<Object>();
+        for (InternalCacheEntry entry: this) {
+            keys.add(entry.getKey());
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    @Override
+    public Collection<Object> values() {
+        List<Object> values = new ArrayList<Object>();
+        for (InternalCacheEntry entry: this) {
+            values.add(entry.getValue());
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    @Override
+    public Set<InternalCacheEntry> entrySet() {
+        Set<InternalCacheEntry> entries = new HashSet<InternalCacheEntry>();
+        for (InternalCacheEntry entry: this) {
+            entries.add(entry);
+        }
+        return Collections.unmodifiableSet(entries);
+    }
+
+    @Override
+    public void purgeExpired() {
+        long now = this.timeService.wallClockTime();
+        for (BinarySegment segment: this.segments) {
+            synchronized (segment) {
+                segment.purge(now);
+            }
+        }
+    }
+
+    /**
+     * Iterates over the unexpired entries of this container, copying one segment at a time to the heap.
+     */
+    @Override
+    public Iterator<InternalCacheEntry> iterator() {
+        final BinarySegment[] segments = this.segments;
+        return new Iterator<InternalCacheEntry>() {
+            private int segment = 0;
+            private Iterator<InternalCacheEntry> entries = Collections.<InternalCacheEntry>emptyList().iterator();
+            private InternalCacheEntry current = null;
+
+            @Override
+            public boolean hasNext() {
+                while (!this.entries.hasNext() && (this.segment < segments.length)) {
+                    this.entries = BinaryDataContainer.this.entries(segments[this.segment++]).iterator();
+                }
+                return this.entries.hasNext();
+            }
+
+            @Override
+            public InternalCacheEntry next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.current = this.entries.next();
+                return this.current;
+            }
+
+            @Override
+            public void remove() {
+                if (this.current == null) {
+                    throw new IllegalStateException();
+                }
+                BinaryDataContainer.this.remove(this.current.getKey());
+                this.current = null;
+            }
+        };
+    }
+
+    List<InternalCacheEntry> entries(BinarySegment segment) {
+        List<BinarySegment.Entry> entries;
+        synchronized (segment) {
+            entries = segment.entries();
+        }
+        long now = this.timeService.wallClockTime();
+        List<InternalCacheEntry> result = new ArrayList<InternalCacheEntry>(entries.size());
+        for (BinarySegment.Entry entry: entries) {
+            InternalCacheEntry cacheEntry = this.createEntry(this.decodeKey(entry), entry);
+            if (!cacheEntry.isExpired(now)) {
+                result.add(cacheEntry);
+            }
+        }
+        return result;
+    }
+
+    private BinarySegment segment(int hash) {
+        BinarySegment[] segments = this.segments;
+        // A shift of 32 would be a no-op, so mask the result
+        return segments[(hash >>> this.segmentShift) & (segments.length - 1)];
+    }
+
+    private Key key(Object key) {
+        if (key instanceof byte[]) {
+            byte[] bytes = (byte[]) key;
+            // Consistent with AnyServerEquivalence, which does not equate raw and wrapped keys
+            return new Key(key, BinarySegment.BYTES, bytes, Arrays.hashCode(bytes));
+        }
+        if (key instanceof ByteArrayKey) {
+            return new Key(key, BinarySegment.BYTE_ARRAY_KEY, ((ByteArrayKey) key).getBytes(), key.hashCode());
+        }
+        return new Key(key, BinarySegment.OBJECT, this.marshal(key), key.hashCode());
+    }
+
+    private Object decodeKey(BinarySegment.Entry entry) {
+        switch (entry.keyType) {
+            case BinarySegment.BYTES: {
+                return entry.key;
+            }
+            case BinarySegment.BYTE_ARRAY_KEY: {
+                return new ByteArrayKey(entry.key);
+            }
+            default: {
+                return this.unmarshal(entry.key);
+            }
+        }
+    }
+
+    private void setValue(BinarySegment.Entry entry, Object value) {
+        if (value instanceof byte[]) {
+            entry.valueType = BinarySegment.BYTES;
+            entry.value = (byte[]) value;
+        } else {
+            entry.valueType = BinarySegment.OBJECT;
+            entry.value = this.marshal(value);
+        }
+    }
+
+    private void setMetadata(BinarySegment.Entry entry, Metadata metadata) {
+        entry.lifespan = metadata.lifespan();
+        entry.maxIdle = metadata.maxIdle();
+        EntryVersion version = metadata.version();
+        if ((metadata instanceof EmbeddedMetadata) && (version == null)) {
+            entry.metadataType = BinarySegment.EMBEDDED_METADATA;
+            entry.metadata = new byte[0];
+        } else if ((metadata instanceof EmbeddedMetadata) && (version instanceof NumericVersion)) {
+            entry.metadataType = BinarySegment.NUMERIC_VERSION_METADATA;
+            entry.metadata = new byte[0];
+            entry.version = ((NumericVersion) version).getVersion();
+        } else {
+            entry.metadataType = BinarySegment.OBJECT;
+            entry.metadata = this.marshal(metadata);
+        }
+    }
+
+    private InternalCacheEntry createEntry(Object key, BinarySegment.Entry entry) {
+        Object value = (entry.valueType == BinarySegment.BYTES) ? entry.value : this.unmarshal(entry.value);
+        Metadata metadata;
+        switch (entry.metadataType) {
+            case BinarySegment.EMBEDDED_METADATA: {
+                metadata = new EmbeddedMetadata.Builder().lifespan(entry.lifespan).maxIdle(entry.maxIdle).build();
+                break;
+            }
+            case BinarySegment.NUMERIC_VERSION_METADATA: {
+                metadata = new EmbeddedMetadata.Builder().lifespan(entry.lifespan).maxIdle(entry.maxIdle).version(new NumericVersion(entry.version)).build();
+                break;
+            }
+            default: {
+                metadata = (Metadata) this.unmarshal(entry.metadata);
+            }
+        }
+        return this.entryFactory.create(key, value, metadata, entry.created, entry.lifespan, entry.lastUsed, entry.maxIdle);
+    }
+
+    private byte[] marshal(Object object) {
+        try {
+            return this.marshaller.objectToByteBuffer(object);
+        } catch (IOException e) {
+            throw MESSAGES.cacheEntryNotSerializable(e, object);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw MESSAGES.cacheEntryNotSerializable(e, object);
+        }
+    }
+
+    Object unmarshal(byte[] bytes) {
+        try {
+            return this.marshaller.objectFromByteBuffer(bytes);
+        } catch (IOException e) {
+            throw MESSAGES.cacheEntryNotDeserializable(e);
+        } catch (ClassNotFoundException e) {
+            throw MESSAGES.cacheEntryNotDeserializable(e);
+        }
+    }
+
+    /**
+     * The encoded form of a key, and its hash.
+     */
+    private class Key {
+        final Object key;
+        final byte type;
+        final byte[] bytes;
+        final int hash;
+
+        Key(Object key, byte type, byte[] bytes, int hashCode) {
+            this.key = key;
+            this.type = type;
+            this.bytes = bytes;
+            this.hash = spread(hashCode);
+        }
+
+        int find(BinarySegment segment) {
+            return segment.find(this.hash, this.type, this.bytes, this.key, BinaryDataContainer.this.keyEquivalence);
+        }
+    }
+
+    /**
+     * Applies the MurmurHash3 finalizer, since segments are selected using the high bits of the hash, and index slots using the low bits.
+     */
+    static int spread(int hash) {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
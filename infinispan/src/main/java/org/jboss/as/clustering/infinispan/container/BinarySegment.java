@@ -0,0 +1,569 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.container;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A segment of a {@link BinaryDataContainer}, whose entries and hash index are stored in binary form,
+ * either in native memory (i.e. direct buffers) or on the heap.
+ * Entries are appended to buffer pages, and are addressed by page index and offset.
+ * Pages are allocated on demand, and grow with the segment, from the minimum up to the maximum page size,
+ * so that sparsely populated segments do not pin whole pages.
+ * The index is an open addressing hash table, using linear probing, of entry addresses and key hashes.
+ * Space occupied by removed or replaced entries is reclaimed by compacting the live entries into new pages,
+ * once it exceeds the memory of the live entries, or a given limit.
+ * Instances are not thread-safe; callers must synchronize on the segment.
+ */
+class BinarySegment {
+
+    // Key, value and metadata encodings
+    static final byte BYTES = 0;
+    static final byte BYTE_ARRAY_KEY = 1;
+    static final byte OBJECT = 2;
+    static final byte EMBEDDED_METADATA = 3;
+    static final byte NUMERIC_VERSION_METADATA = 4;
+
+    // Entry layout: fixed length header, followed by key, value and metadata bytes
+    private static final int HASH = 0;
+    private static final int KEY_LENGTH = 4;
+    private static final int VALUE_LENGTH = 8;
+    private static final int METADATA_LENGTH = 12;
+    private static final int KEY_TYPE = 16;
+    private static final int VALUE_TYPE = 17;
+    private static final int METADATA_TYPE = 18;
+    private static final int CREATED = 24;
+    private static final int LAST_USED = 32;
+    private static final int LIFESPAN = 40;
+    private static final int MAX_IDLE = 48;
+    private static final int VERSION = 56;
+    private static final int HEADER_SIZE = 64;
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Determines whether a stored key, encoded as {@link #OBJECT}, is equal to the key being looked up.
+     */
+    interface KeyEquivalence {
+        boolean equals(Object key, byte[] stored);
+    }
+
+    /**
+     * An on-heap copy of an entry, read while holding the segment lock, and decoded after releasing it.
+     */
+    static class Entry {
+        byte keyType;
+        byte[] key;
+        byte valueType;
+        byte[] value;
+        byte metadataType;
+        byte[] metadata;
+        long created;
+        long lastUsed;
+        long lifespan;
+        long maxIdle;
+        long version;
+    }
+
+    private final int minPageSize;
+    private final int maxPageSize;
+    private final long maxDeadMemory;
+    private final boolean direct;
+    private List<ByteBuffer> pages = new ArrayList<ByteBuffer>();
+    private ByteBuffer page = null;
+    private int position = 0;
+    // Bytes of allocated pages, and of the live entries within them
+    private long allocated = 0;
+    private long live = 0;
+
+    // Entry address + 1, such that 0 denotes an empty slot
+    private LongBuffer addresses;
+    private IntBuffer hashes;
+    private int mask;
+    private int size = 0;
+    private int random;
+
+    /**
+     * Creates a new segment.
+     * @param minPageSize the size of the first page
+     * @param maxPageSize the size beyond which pages do not grow, unless required by a larger entry
+     * @param maxDeadMemory the number of bytes of removed entries and unused page space, beyond which the segment is compacted
+     * @param direct indicates whether pages are allocated outside of the heap
+     * @param seed the seed for sampling
+     */
+    BinarySegment(int minPageSize, int maxPageSize, long maxDeadMemory, boolean direct, int seed) {
+        this.minPageSize = minPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxDeadMemory = maxDeadMemory;
+        this.direct = direct;
+        this.random = seed | 1;
+        this.createIndex(INITIAL_CAPACITY);
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    int capacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * Returns the number of bytes occupied by the live entries of this segment.
+     */
+    long getMemoryUsed() {
+        return this.live;
+    }
+
+    /**
+     * Returns the number of bytes of memory allocated by this segment, for both entries and index.
+     */
+    long getAllocatedMemory() {
+        return this.allocated + (this.capacity() * 12L);
+    }
+
+    /**
+     * Returns the number of bytes of memory that the index requires to hold the specified number of entries.
+     */
+    long getIndexMemory(int size) {
+        long capacity = this.capacity();
+        while (size * 4L > capacity * 3L) {
+            capacity *= 2;
+        }
+        return capacity * 12L;
+    }
+
+    /**
+     * Returns the index slot of the entry with the specified key, or -1 if no such entry exists.
+     */
+    int find(int hash, byte keyType, byte[] key, Object object, KeyEquivalence equivalence) {
+        for (int i = hash & this.mask; ; i = (i + 1) & this.mask) {
+            long slot = this.addresses.get(i);
+            if (slot == 0) {
+                return -1;
+            }
+            if ((this.hashes.get(i) == hash) && this.keyEquals(slot - 1, keyType, key, object, equivalence)) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Returns the address of the entry in the specified index slot, or -1 if the slot is empty.
+     */
+    long address(int slot) {
+        return this.addresses.get(slot) - 1;
+    }
+
+    long getLastUsed(long address) {
+        return this.page(address).getLong(offset(address) + LAST_USED);
+    }
+
+    void setLastUsed(long address, long time) {
+        this.page(address).putLong(offset(address) + LAST_USED, time);
+    }
+
+    boolean isExpired(long address, long now) {
+        ByteBuffer page = this.page(address);
+        int offset = offset(address);
+        long lifespan = page.getLong(offset + LIFESPAN);
+        if ((lifespan >= 0) && (now > page.getLong(offset + CREATED) + lifespan)) {
+            return true;
+        }
+        long maxIdle = page.getLong(offset + MAX_IDLE);
+        return (maxIdle >= 0) && (now > page.getLong(offset + LAST_USED) + maxIdle);
+    }
+
+    /**
+     * Returns the number of bytes occupied by the entry at the specified address.
+     */
+    int length(long address) {
+        return length(this.page(address), offset(address));
+    }
+
+    /**
+     * Indicates whether the entry at the specified address has the creation time, version and value of the specified entry,
+     * i.e. whether it was not replaced since the specified entry was read.
+     */
+    boolean matches(long address, Entry entry) {
+        ByteBuffer page = this.page(address);
+        int offset = offset(address);
+        if ((page.getLong(offset + CREATED) != entry.created) || (page.getLong(offset + VERSION) != entry.version)) {
+            return false;
+        }
+        if ((page.get(offset + VALUE_TYPE) != entry.valueType) || (page.getInt(offset + VALUE_LENGTH) != entry.value.length)) {
+            return false;
+        }
+        return equals(page, offset + HEADER_SIZE + page.getInt(offset + KEY_LENGTH), entry.value);
+    }
+
+    /**
+     * Copies the entry at the specified address to the heap.
+     * @param includeKey indicates whether the key should also be copied
+     */
+    Entry read(long address, boolean includeKey) {
+        ByteBuffer page = this.page(address);
+        int offset = offset(address);
+        int keyLength = page.getInt(offset + KEY_LENGTH);
+        int valueLength = page.getInt(offset + VALUE_LENGTH);
+        int metadataLength = page.getInt(offset + METADATA_LENGTH);
+        Entry entry = new Entry();
+        entry.keyType = page.get(offset + KEY_TYPE);
+        entry.valueType = page.get(offset + VALUE_TYPE);
+        entry.metadataType = page.get(offset + METADATA_TYPE);
+        entry.created = page.getLong(offset + CREATED);
+        entry.lastUsed = page.getLong(offset + LAST_USED);
+        entry.lifespan = page.getLong(offset + LIFESPAN);
+        entry.maxIdle = page.getLong(offset + MAX_IDLE);
+        entry.version = page.getLong(offset + VERSION);
+        int position = offset + HEADER_SIZE;
+        entry.key = includeKey ? copy(page, position, keyLength) : null;
+        position += keyLength;
+        entry.value = copy(page, position, valueLength);
+        position += valueLength;
+        entry.metadata = copy(page, position, metadataLength);
+        return entry;
+    }
+
+    /**
+     * Stores the specified entry, replacing the entry in the specified slot, if it is non-negative.
+     */
+    void put(int slot, int hash, Entry entry) {
+        if (slot < 0) {
+            if ((this.size + 1) * 4L > this.capacity() * 3L) {
+                this.createIndex(this.capacity() * 2);
+            }
+            slot = hash & this.mask;
+            while (this.addresses.get(slot) != 0) {
+                slot = (slot + 1) & this.mask;
+            }
+            this.size += 1;
+        } else {
+            this.live -= this.length(this.address(slot));
+        }
+        long address = this.append(hash, entry);
+        this.addresses.put(slot, address + 1);
+        this.hashes.put(slot, hash);
+        this.compactIfNecessary();
+    }
+
+    /**
+     * Removes the entry in the specified slot.
+     * Entries that follow it in its probe sequence are shifted back, so no tombstones are needed.
+     */
+    void remove(int slot) {
+        this.live -= this.length(this.address(slot));
+        int i = slot;
+        int j = slot;
+        while (true) {
+            j = (j + 1) & this.mask;
+            long address = this.addresses.get(j);
+            if (address == 0) {
+                break;
+            }
+            int hash = this.hashes.get(j);
+            int k = hash & this.mask;
+            // Move the entry in slot j, unless its ideal slot k lies cyclically within (i, j]
+            if ((i <= j) ? ((i < k) && (k <= j)) : ((i < k) || (k <= j))) {
+                continue;
+            }
+            this.addresses.put(i, address);
+            this.hashes.put(i, hash);
+            i = j;
+        }
+        this.addresses.put(i, 0);
+        this.hashes.put(i, 0);
+        this.size -= 1;
+        if (this.size == 0) {
+            this.clear();
+        } else {
+            this.compactIfNecessary();
+        }
+    }
+
+    /**
+     * Chooses an entry to evict, approximating LRU by sampling the specified number of entries,
+     * and choosing the one least recently used.  Expired entries are chosen first.
+     * @param exclude the slot of an entry that must not be chosen, or -1
+     * @return the slot of the chosen entry, or -1, if this segment contains no other entries
+     */
+    int sample(int samples, long now, int exclude) {
+        int candidates = (exclude >= 0) ? this.size - 1 : this.size;
+        if (candidates <= 0) {
+            return -1;
+        }
+        // xorshift
+        int random = this.random;
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        this.random = random;
+
+        int result = -1;
+        long oldest = Long.MAX_VALUE;
+        int remaining = Math.min(samples, candidates);
+        for (int i = random & this.mask; remaining > 0; i = (i + 1) & this.mask) {
+            long slot = this.addresses.get(i);
+            if ((slot != 0) && (i != exclude)) {
+                long address = slot - 1;
+                if (this.isExpired(address, now)) {
+                    return i;
+                }
+                long lastUsed = this.getLastUsed(address);
+                if (lastUsed < oldest) {
+                    oldest = lastUsed;
+                    result = i;
+                }
+                remaining -= 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all expired entries.
+     * @return the number of removed entries
+     */
+    int purge(long now) {
+        int removed = 0;
+        int i = 0;
+        while ((i < this.capacity()) && (this.size > 0)) {
+            long slot = this.addresses.get(i);
+            if ((slot != 0) && this.isExpired(slot - 1, now)) {
+                // Revisit this slot, into which a subsequent entry may have shifted
+                this.remove(i);
+                removed += 1;
+            } else {
+                i += 1;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of unexpired entries.
+     */
+    int count(long now) {
+        int count = 0;
+        for (int i = 0; i < this.capacity(); ++i) {
+            long slot = this.addresses.get(i);
+            if ((slot != 0) && !this.isExpired(slot - 1, now)) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copies all entries to the heap, including their keys.
+     */
+    List<Entry> entries() {
+        List<Entry> entries = new ArrayList<Entry>(this.size);
+        for (int i = 0; i < this.capacity(); ++i) {
+            long slot = this.addresses.get(i);
+            if (slot != 0) {
+                entries.add(this.read(slot - 1, true));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Removes all entries, and releases their pages.
+     */
+    void clear() {
+        this.pages = new ArrayList<ByteBuffer>();
+        this.page = null;
+        this.position = 0;
+        this.allocated = 0;
+        this.live = 0;
+        this.size = 0;
+        this.addresses = null;
+        this.hashes = null;
+        this.createIndex(INITIAL_CAPACITY);
+    }
+
+    private void createIndex(int capacity) {
+        LongBuffer addresses = this.allocateBuffer(capacity * 8).asLongBuffer();
+        IntBuffer hashes = this.allocateBuffer(capacity * 4).asIntBuffer();
+        int mask = capacity - 1;
+        if (this.addresses != null) {
+            for (int i = 0; i < this.addresses.capacity(); ++i) {
+                long address = this.addresses.get(i);
+                if (address != 0) {
+                    int hash = this.hashes.get(i);
+                    int slot = hash & mask;
+                    while (addresses.get(slot) != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    addresses.put(slot, address);
+                    hashes.put(slot, hash);
+                }
+            }
+        }
+        this.addresses = addresses;
+        this.hashes = hashes;
+        this.mask = mask;
+    }
+
+    private boolean keyEquals(long address, byte keyType, byte[] key, Object object, KeyEquivalence equivalence) {
+        ByteBuffer page = this.page(address);
+        int offset = offset(address);
+        if (page.get(offset + KEY_TYPE) != keyType) {
+            return false;
+        }
+        boolean marshalled = (keyType == OBJECT);
+        int length = page.getInt(offset + KEY_LENGTH);
+        if ((length == key.length) && equals(page, offset + HEADER_SIZE, key)) {
+            return true;
+        }
+        // Equal objects do not necessarily marshal to the same bytes
+        return marshalled && equivalence.equals(object, copy(page, offset + HEADER_SIZE, length));
+    }
+
+    /**
+     * Returns the number of bytes that the specified entry will occupy once stored.
+     */
+    static int length(Entry entry) {
+        return align(HEADER_SIZE + entry.key.length + entry.value.length + entry.metadata.length);
+    }
+
+    private long append(int hash, Entry entry) {
+        int length = length(entry);
+        long address = this.allocate(length);
+        ByteBuffer page = this.page(address);
+        int offset = offset(address);
+        page.putInt(offset + HASH, hash);
+        page.putInt(offset + KEY_LENGTH, entry.key.length);
+        page.putInt(offset + VALUE_LENGTH, entry.value.length);
+        page.putInt(offset + METADATA_LENGTH, entry.metadata.length);
+        page.put(offset + KEY_TYPE, entry.keyType);
+        page.put(offset + VALUE_TYPE, entry.valueType);
+        page.put(offset + METADATA_TYPE, entry.metadataType);
+        page.putLong(offset + CREATED, entry.created);
+        page.putLong(offset + LAST_USED, entry.lastUsed);
+        page.putLong(offset + LIFESPAN, entry.lifespan);
+        page.putLong(offset + MAX_IDLE, entry.maxIdle);
+        page.putLong(offset + VERSION, entry.version);
+        ByteBuffer buffer = page.duplicate();
+        buffer.position(offset + HEADER_SIZE);
+        buffer.put(entry.key).put(entry.value).put(entry.metadata);
+        this.live += length;
+        return address;
+    }
+
+    private long allocate(int length) {
+        if ((this.page == null) || (this.page.capacity() - this.position < length)) {
+            // Double the allocated memory with each page, until pages reach their maximum size
+            int pageSize = (int) Math.min(Math.max(this.allocated, this.minPageSize), this.maxPageSize);
+            this.page = this.allocateBuffer(Math.max(pageSize, length));
+            this.pages.add(this.page);
+            this.position = 0;
+            this.allocated += this.page.capacity();
+        }
+        long address = ((long) (this.pages.size() - 1) << 32) | this.position;
+        this.position += length;
+        return address;
+    }
+
+    /**
+     * Compacts the live entries into new pages, once most of the allocated memory, or more than the maximum dead memory,
+     * is occupied by removed entries or unused.
+     */
+    private void compactIfNecessary() {
+        long dead = this.allocated - this.live;
+        if ((dead <= 2L * this.minPageSize) || ((dead <= this.live) && (dead <= this.maxDeadMemory))) {
+            return;
+        }
+        List<ByteBuffer> pages = this.pages;
+        this.pages = new ArrayList<ByteBuffer>();
+        this.page = null;
+        this.position = 0;
+        this.allocated = 0;
+        for (int i = 0; i < this.capacity(); ++i) {
+            long slot = this.addresses.get(i);
+            if (slot != 0) {
+                long source = slot - 1;
+                ByteBuffer page = pages.get(pageIndex(source));
+                int offset = offset(source);
+                int length = length(page, offset);
+                ByteBuffer buffer = page.duplicate();
+                buffer.limit(offset + length).position(offset);
+                long target = this.allocate(length);
+                ByteBuffer targetBuffer = this.page(target).duplicate();
+                targetBuffer.position(offset(target));
+                targetBuffer.put(buffer);
+                this.addresses.put(i, target + 1);
+            }
+        }
+    }
+
+    private ByteBuffer allocateBuffer(int capacity) {
+        return (this.direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity)).order(ByteOrder.nativeOrder());
+    }
+
+    private ByteBuffer page(long address) {
+        return this.pages.get(pageIndex(address));
+    }
+
+    private static int length(ByteBuffer page, int offset) {
+        return align(HEADER_SIZE + page.getInt(offset + KEY_LENGTH) + page.getInt(offset + VALUE_LENGTH) + page.getInt(offset + METADATA_LENGTH));
+    }
+
+    private static int align(int length) {
+        return (length + 7) & ~7;
+    }
+
+    private static int pageIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static byte[] copy(ByteBuffer page, int offset, int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = page.duplicate();
+        buffer.position(offset);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static boolean equals(ByteBuffer page, int offset, byte[] bytes) {
+        for (int i = 0; i < bytes.length; ++i) {
+            if (page.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
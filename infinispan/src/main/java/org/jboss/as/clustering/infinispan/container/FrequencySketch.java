@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.container;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch estimating the access frequency of keys, used by {@link WindowTinyLfu} to decide whether to admit a key.
+ * Counters are 4 bits wide, and packed 16 per long; each key maps to 4 counters, one per hash function, and its estimate is the minimum of these.
+ * Once the number of recorded accesses reaches 10 times the capacity, all counters are halved, so that the frequencies of keys no longer accessed decay over time.
+ * This class is not thread-safe.
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int sampleSize;
+    private int size = 0;
+
+    /**
+     * Creates a new frequency sketch.
+     * @param capacity the maximum number of keys whose frequency is relevant, i.e. the capacity of the cache
+     */
+    FrequencySketch(int capacity) {
+        int length = 8;
+        while ((length < capacity) && (length < (1 << 30))) {
+            length <<= 1;
+        }
+        this.table = new long[length];
+        this.sampleSize = (int) Math.min(10L * Math.max(capacity, 1), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the estimated number of accesses of the key with the specified hash, between 0 and 15.
+     * @param hash the spread hash of a key
+     */
+    int frequency(int hash) {
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; ++i) {
+            int count = (int) ((this.table[this.index(hash, i)] >>> ((start + i) << 2)) & MAX_COUNT);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access of the key with the specified hash, aging all counters if the sample size is reached.
+     * @param hash the spread hash of a key
+     */
+    void increment(int hash) {
+        int start = (hash & 3) << 2;
+        boolean incremented = false;
+        for (int i = 0; i < SEEDS.length; ++i) {
+            incremented |= this.increment(this.index(hash, i), start + i);
+        }
+        if (incremented && (++this.size == this.sampleSize)) {
+            this.reset();
+        }
+    }
+
+    /**
+     * Resets all counters to 0.
+     */
+    void clear() {
+        Arrays.fill(this.table, 0L);
+        this.size = 0;
+    }
+
+    private boolean increment(int index, int counter) {
+        int offset = counter << 2;
+        long mask = ((long) MAX_COUNT) << offset;
+        if ((this.table[index] & mask) == mask) {
+            return false;
+        }
+        this.table[index] += 1L << offset;
+        return true;
+    }
+
+    /**
+     * Halves every counter.
+     */
+    private void reset() {
+        for (int i = 0; i < this.table.length; ++i) {
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        this.size >>>= 1;
+    }
+
+    private int index(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return ((int) h) & (this.table.length - 1);
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.container;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.infinispan.commons.equivalence.AnyEquivalence;
+import org.infinispan.commons.equivalence.Equivalence;
+import org.infinispan.commons.util.concurrent.jdk8backported.EquivalentConcurrentHashMapV8;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.InternalEntryFactory;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.PassivationManager;
+import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.metadata.Metadata;
+import org.infinispan.util.TimeService;
+
+/**
+ * Bounded data container that evicts entries according to the {@link WindowTinyLfu} policy, rather than LRU or LIRS,
+ * so that its hit ratio survives scans of keys that are accessed only once, e.g. by batch jobs.
+ * Entries are partitioned into segments, whose number is derived from the lock concurrency level, and which are each limited to their share of max-entries.
+ * Segments hold at least {@value #MIN_SEGMENT_ENTRIES} entries, unless max-entries is smaller, since the window and frequency sketch of a small segment
+ * are too coarse for the policy to distinguish frequent keys.
+ * Reads are lock-free; their access is recorded by the policy if the lock of the segment is available, and dropped otherwise,
+ * since a lost access merely reduces the accuracy of the frequency estimate, whereas waiting for the lock would serialize readers.
+ */
+public class TinyLfuDataContainer implements DataContainer {
+
+    static final int MIN_SEGMENT_ENTRIES = 256;
+
+    private volatile Configuration configuration;
+    private volatile InternalEntryFactory entryFactory;
+    private volatile EvictionManager evictionManager;
+    private volatile PassivationManager passivator;
+    private volatile TimeService timeService;
+
+    private volatile Segment[] segments = new Segment[0];
+    private volatile int segmentShift;
+    private volatile boolean passivation;
+    private volatile Equivalence<Object> keyEquivalence;
+
+    @Inject
+    public void inject(Configuration configuration, InternalEntryFactory entryFactory, EvictionManager evictionManager, PassivationManager passivator, TimeService timeService) {
+        this.configuration = configuration;
+        this.entryFactory = entryFactory;
+        this.evictionManager = evictionManager;
+        this.passivator = passivator;
+        this.timeService = timeService;
+    }
+
+    @Start
+    public void start() {
+        int maxEntries = Math.max(this.configuration.eviction().maxEntries(), 1);
+        int bits = segmentBits(this.configuration.locking().concurrencyLevel(), maxEntries);
+        Equivalence<Object> keyEquivalence = this.configuration.dataContainer().keyEquivalence();
+        Segment[] segments = new Segment[1 << bits];
+        for (int i = 0; i < segments.length; ++i) {
+            segments[i] = new Segment(Math.max(maxEntries >> bits, 1), keyEquivalence);
+        }
+        this.keyEquivalence = keyEquivalence;
+        this.passivation = this.configuration.persistence().passivation();
+        this.segmentShift = 32 - bits;
+        this.segments = segments;
+    }
+
+    @Stop
+    public void stop() {
+        this.segments = new Segment[0];
+    }
+
+    /**
+     * Returns the number of bits of the hash of a key that select its segment.
+     * @param concurrencyLevel the lock concurrency level
+     * @param maxEntries the maximum number of entries
+     */
+    static int segmentBits(int concurrencyLevel, int maxEntries) {
+        int segments = Math.max(Math.min(concurrencyLevel, maxEntries / MIN_SEGMENT_ENTRIES), 1);
+        // Round down, so that segments are not smaller than the minimum
+        int bits = 0;
+        while ((2 << bits) <= segments) {
+            bits += 1;
+        }
+        return bits;
+    }
+
+    @Override
+    public InternalCacheEntry get(Object key) {
+        Segment segment = this.segment(key);
+        Node node = segment.entries.get(key);
+        if (node == null) {
+            return null;
+        }
+        InternalCacheEntry entry = node.entry;
+        if (entry.canExpire()) {
+            long now = this.timeService.wallClockTime();
+            if (entry.isExpired(now)) {
+                this.removeExpired(segment, node);
+                return null;
+            }
+            entry.touch(now);
+        }
+        if (segment.tryLock()) {
+            try {
+                // Node may have been removed concurrently
+                if (node.queue != null) {
+                    segment.policy.access(node);
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+        return entry;
+    }
+
+    @Override
+    public InternalCacheEntry peek(Object key) {
+        Node node = this.segment(key).entries.get(key);
+        return (node != null) ? node.entry : null;
+    }
+
+    @Override
+    public void put(Object key, Object value, Metadata metadata) {
+        Segment segment = this.segment(key);
+        InternalCacheEntry evicted = null;
+        segment.lock();
+        try {
+            Node node = segment.entries.get(key);
+            if (node != null) {
+                InternalCacheEntry entry = node.entry;
+                entry.setValue(value);
+                InternalCacheEntry updated = this.entryFactory.update(entry, metadata);
+                // Mortal entries updated in place need to be reincarnated
+                if ((updated == entry) && (updated.getLifespan() > 0)) {
+                    updated.reincarnate(this.timeService.wallClockTime());
+                }
+                node.entry = updated;
+                segment.policy.access(node);
+            } else {
+                node = new Node(key, this.hash(key));
+                node.entry = this.entryFactory.create(key, value, metadata);
+                segment.entries.put(key, node);
+                WindowTinyLfu.Node<Object> victim = segment.policy.add(node);
+                if (victim != null) {
+                    InternalCacheEntry victimEntry = ((Node) victim).entry;
+                    if (!victimEntry.isExpired(this.timeService.wallClockTime())) {
+                        if (this.passivation) {
+                            // Passivate before removal, since reads do not lock, so that the entry is always found in either memory or the store
+                            this.passivator.passivate(victimEntry);
+                        }
+                        evicted = victimEntry;
+                    }
+                    segment.entries.remove(victim.key);
+                }
+            }
+        } finally {
+            segment.unlock();
+        }
+        if (evicted != null) {
+            this.evictionManager.onEntryEviction(Collections.singletonMap(evicted.getKey(), evicted));
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Segment segment = this.segment(key);
+        Node node = segment.entries.get(key);
+        if (node == null) {
+            return false;
+        }
+        InternalCacheEntry entry = node.entry;
+        if (entry.canExpire() && entry.isExpired(this.timeService.wallClockTime())) {
+            this.removeExpired(segment, node);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public InternalCacheEntry remove(Object key) {
+        Segment segment = this.segment(key);
+        Node node;
+        segment.lock();
+        try {
+            node = segment.entries.remove(key);
+            if (node != null) {
+                segment.policy.remove(node);
+            }
+        } finally {
+            segment.unlock();
+        }
+        if (node == null) {
+            return null;
+        }
+        InternalCacheEntry entry = node.entry;
+        return (entry.canExpire() && entry.isExpired(this.timeService.wallClockTime())) ? null : entry;
+    }
+
+    @Override
+    public int size() {
+        long now = this.timeService.wallClockTime();
+        int size = 0;
+        for (Segment segment: this.segments) {
+            for (Node node: segment.entries.values()) {
+                if (!node.entry.isExpired(now)) {
+                    size += 1;
+                }
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment: this.segments) {
+            segment.lock();
+            try {
+                segment.entries.clear();
+                segment.policy.clear();
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    @Override
+    public Set<Object> keySet() {
+        Set<Object> keys = new HashSet<Object>();
+        for (InternalCacheEntry entry: this) {
+            keys.add(entry.getKey());
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    @Override
+    public Collection<Object> values() {
+        List<Object> values = new ArrayList<Object>();
+        for (InternalCacheEntry entry: this) {
+            values.add(entry.getValue());
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    @Override
+    public Set<InternalCacheEntry> entrySet() {
+        Set<InternalCacheEntry> entries = new HashSet<InternalCacheEntry>();
+        for (InternalCacheEntry entry: this) {
+            entries.add(entry);
+        }
+        return Collections.unmodifiableSet(entries);
+    }
+
+    @Override
+    public void purgeExpired() {
+        long now = this.timeService.wallClockTime();
+        for (Segment segment: this.segments) {
+            for (Node node: segment.entries.values()) {
+                InternalCacheEntry entry = node.entry;
+                if (entry.canExpire() && entry.isExpired(now)) {
+                    this.removeExpired(segment, node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Iterates over the unexpired entries of this container, with the weak consistency of a concurrent map.
+     */
+    @Override
+    public Iterator<InternalCacheEntry> iterator() {
+        final Segment[] segments = this.segments;
+        final long now = this.timeService.wallClockTime();
+        return new Iterator<InternalCacheEntry>() {
+            private int segment = 0;
+            private Iterator<Node> nodes = Collections.<Node>emptyList().iterator();
+            private InternalCacheEntry next = null;
+            private InternalCacheEntry current = null;
+
+            @Override
+            public boolean hasNext() {
+                while (this.next == null) {
+                    while (!this.nodes.hasNext()) {
+                        if (this.segment == segments.length) {
+                            return false;
+                        }
+                        this.nodes = segments[this.segment++].entries.values().iterator();
+                    }
+                    InternalCacheEntry entry = this.nodes.next().entry;
+                    if (!entry.isExpired(now)) {
+                        this.next = entry;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public InternalCacheEntry next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.current = this.next;
+                this.next = null;
+                return this.current;
+            }
+
+            @Override
+            public void remove() {
+                if (this.current == null) {
+                    throw new IllegalStateException();
+                }
+                TinyLfuDataContainer.this.remove(this.current.getKey());
+                this.current = null;
+            }
+        };
+    }
+
+    private void removeExpired(Segment segment, Node node) {
+        segment.lock();
+        try {
+            // Skip if removed or replaced concurrently
+            if (segment.entries.get(node.key) == node) {
+                segment.entries.remove(node.key);
+                segment.policy.remove(node);
+            }
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    private int hash(Object key) {
+        return BinaryDataContainer.spread(this.keyEquivalence.hashCode(key));
+    }
+
+    private Segment segment(Object key) {
+        Segment[] segments = this.segments;
+        // A shift of 32 would be a no-op, so mask the result
+        return segments[(this.hash(key) >>> this.segmentShift) & (segments.length - 1)];
+    }
+
+    /**
+     * A cache entry, as tracked by the eviction policy.
+     */
+    private static class Node extends WindowTinyLfu.Node<Object> {
+        volatile InternalCacheEntry entry;
+
+        Node(Object key, int hash) {
+            super(key, hash);
+        }
+    }
+
+    /**
+     * A partition of the entries of this container, along with its eviction policy, guarded by its lock.
+     * The map of a segment is concurrent, so that it can be read without locking.
+     */
+    private static class Segment extends ReentrantLock {
+        private static final long serialVersionUID = -3413591542640385398L;
+
+        final Map<Object, Node> entries;
+        final WindowTinyLfu<Object> policy;
+
+        Segment(int capacity, Equivalence<Object> keyEquivalence) {
+            this.entries = new EquivalentConcurrentHashMapV8<Object, Node>(capacity, keyEquivalence, AnyEquivalence.<Node>getInstance());
+            this.policy = new WindowTinyLfu<Object>(capacity);
+        }
+    }
+}
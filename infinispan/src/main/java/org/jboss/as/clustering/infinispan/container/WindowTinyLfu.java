@@ -0,0 +1,222 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.container;
+
+/**
+ * W-TinyLFU eviction policy, which tracks the nodes of a bounded cache segment, and selects the node to evict upon insertion.
+ * New nodes enter a small LRU window (1% of the capacity), which absorbs bursts of recent keys.
+ * Nodes leaving the window are admitted to the main space, a segmented LRU made of probation and protected queues,
+ * only if their estimated access frequency, per a {@link FrequencySketch}, exceeds that of the least recently used node of the probation queue.
+ * Consequently, a scan of keys accessed only once cannot displace the frequently accessed keys of the main space.
+ * Nodes are promoted from probation to the protected queue (80% of the main space) when accessed, and demoted back when it overflows.
+ * This class is not thread-safe.
+ * @param <K> the key type
+ */
+class WindowTinyLfu<K> {
+
+    enum Queue {
+        WINDOW, PROBATION, PROTECTED
+    }
+
+    /**
+     * A key tracked by this policy, linked into one of its queues.
+     */
+    static class Node<K> {
+        final K key;
+        final int hash;
+        Queue queue;
+        Node<K> previous;
+        Node<K> next;
+
+        /**
+         * Creates a new node.
+         * @param key a key
+         * @param hash the spread hash of the key
+         */
+        Node(K key, int hash) {
+            this.key = key;
+            this.hash = hash;
+        }
+    }
+
+    private final Node<K> window = sentinel();
+    private final Node<K> probation = sentinel();
+    private final Node<K> protectedQueue = sentinel();
+    private final FrequencySketch sketch;
+    private final int maxWindow;
+    private final int maxMain;
+    private final int maxProtected;
+    private int windowSize = 0;
+    private int probationSize = 0;
+    private int protectedSize = 0;
+
+    /**
+     * Creates a new policy.
+     * @param capacity the maximum number of nodes
+     */
+    WindowTinyLfu(int capacity) {
+        this.maxWindow = Math.max(capacity / 100, 1);
+        this.maxMain = Math.max(capacity - this.maxWindow, 0);
+        this.maxProtected = (int) (this.maxMain * 8L / 10);
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    /**
+     * Returns the number of tracked nodes.
+     */
+    int size() {
+        return this.windowSize + this.probationSize + this.protectedSize;
+    }
+
+    /**
+     * Records an access of a tracked node.
+     * @param node a tracked node
+     */
+    void access(Node<K> node) {
+        this.sketch.increment(node.hash);
+        switch (node.queue) {
+            case WINDOW: {
+                unlink(node);
+                link(this.window, node);
+                break;
+            }
+            case PROBATION: {
+                unlink(node);
+                this.probationSize -= 1;
+                node.queue = Queue.PROTECTED;
+                link(this.protectedQueue, node);
+                this.protectedSize += 1;
+                if (this.protectedSize > this.maxProtected) {
+                    Node<K> demoted = this.protectedQueue.next;
+                    unlink(demoted);
+                    this.protectedSize -= 1;
+                    demoted.queue = Queue.PROBATION;
+                    link(this.probation, demoted);
+                    this.probationSize += 1;
+                }
+                break;
+            }
+            case PROTECTED: {
+                unlink(node);
+                link(this.protectedQueue, node);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Tracks a new node, and records its access.
+     * @param node an untracked node
+     * @return the node that should be evicted, which is no longer tracked, possibly the specified node itself, or null, if the capacity is not exceeded
+     */
+    Node<K> add(Node<K> node) {
+        this.sketch.increment(node.hash);
+        node.queue = Queue.WINDOW;
+        link(this.window, node);
+        this.windowSize += 1;
+        if (this.windowSize <= this.maxWindow) {
+            return null;
+        }
+        // Move the least recently used node of the window to the main space
+        Node<K> candidate = this.window.next;
+        unlink(candidate);
+        this.windowSize -= 1;
+        candidate.queue = Queue.PROBATION;
+        link(this.probation, candidate);
+        this.probationSize += 1;
+        if (this.probationSize + this.protectedSize <= this.maxMain) {
+            return null;
+        }
+        Node<K> victim = this.probation.next;
+        if ((victim == candidate) && (this.protectedSize > 0)) {
+            victim = this.protectedQueue.next;
+        }
+        // The candidate is admitted only if it is accessed more frequently than the victim
+        Node<K> evicted = ((victim != candidate) && (this.sketch.frequency(candidate.hash) > this.sketch.frequency(victim.hash))) ? victim : candidate;
+        this.remove(evicted);
+        return evicted;
+    }
+
+    /**
+     * Stops tracking the specified node.
+     * @param node a tracked node
+     */
+    void remove(Node<K> node) {
+        unlink(node);
+        switch (node.queue) {
+            case WINDOW: {
+                this.windowSize -= 1;
+                break;
+            }
+            case PROBATION: {
+                this.probationSize -= 1;
+                break;
+            }
+            case PROTECTED: {
+                this.protectedSize -= 1;
+                break;
+            }
+        }
+        node.queue = null;
+    }
+
+    /**
+     * Stops tracking all nodes, and forgets their frequencies.
+     */
+    void clear() {
+        reset(this.window);
+        reset(this.probation);
+        reset(this.protectedQueue);
+        this.windowSize = 0;
+        this.probationSize = 0;
+        this.protectedSize = 0;
+        this.sketch.clear();
+    }
+
+    private static <K> Node<K> sentinel() {
+        Node<K> sentinel = new Node<K>(null, 0);
+        reset(sentinel);
+        return sentinel;
+    }
+
+    private static <K> void reset(Node<K> sentinel) {
+        sentinel.next = sentinel;
+        sentinel.previous = sentinel;
+    }
+
+    /**
+     * Links the specified node at the tail, i.e. the most recently used end, of the specified queue.
+     */
+    private static <K> void link(Node<K> sentinel, Node<K> node) {
+        node.previous = sentinel.previous;
+        node.next = sentinel;
+        sentinel.previous.next = node;
+        sentinel.previous = node;
+    }
+
+    private static <K> void unlink(Node<K> node) {
+        node.previous.next = node.next;
+        node.next.previous = node.previous;
+        node.previous = null;
+        node.next = null;
+    }
+}
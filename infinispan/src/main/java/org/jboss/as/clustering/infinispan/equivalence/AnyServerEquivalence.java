@@ -24,19 +24,17 @@ import org.infinispan.commons.equivalence.Equivalence;
 
 /**
  * AnyServerEquivalence. Works for both objects and byte[]
+ * A {@link ByteArrayKey} is hashed via its cached hash code, and is thus hashed only once, rather than on every lookup.
+ * Since a raw byte[] is hashed differently, a {@link ByteArrayKey} is not equivalent to a byte[] with the same content.
  *
  * @author Tristan Tarrant
  * @since 5.3
  */
 public class AnyServerEquivalence implements Equivalence<Object> {
 
-    private static boolean isByteArray(Object obj) {
-        return byte[].class == obj.getClass();
-    }
-
     @Override
     public int hashCode(Object obj) {
-        if (isByteArray(obj)) {
+        if (obj instanceof byte[]) {
             return 41 + Arrays.hashCode((byte[]) obj);
         } else {
             return obj.hashCode();
@@ -49,14 +47,14 @@ public class AnyServerEquivalence implements Equivalence<Object> {
             return true;
         if (obj == null || otherObj == null)
             return false;
-        if (isByteArray(obj) && isByteArray(otherObj))
+        if (obj instanceof byte[] && otherObj instanceof byte[])
             return Arrays.equals((byte[]) obj, (byte[]) otherObj);
         return obj.equals(otherObj);
     }
 
     @Override
     public String toString(Object obj) {
-        if (isByteArray(obj))
+        if (obj instanceof byte[])
             return Arrays.toString((byte[]) obj);
         else
             return obj.toString();
@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.equivalence;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+import org.infinispan.commons.hash.MurmurHash3;
+
+/**
+ * A byte[] cache key, whose hash code is computed once, using MurmurHash3, rather than on every lookup.
+ * Keys are meant to be wrapped once, where they are decoded, so that subsequent lookups do not rehash them.
+ * N.B. A key is not equivalent to a raw byte[] with the same content, since they hash differently,
+ * so a given key must be used either consistently wrapped, or consistently unwrapped, within a cache.
+ */
+public final class ByteArrayKey implements Externalizable {
+    private static final long serialVersionUID = 5227961523540862213L;
+
+    // Distinct from the seed used by the consistent hash, so that the keys owned by a node remain well distributed within its data container
+    private static final int SEED = 0x9747b28c;
+
+    private byte[] bytes;
+    private transient int hashCode;
+
+    /**
+     * Computes the hash code of a {@link ByteArrayKey} with the specified content.
+     * @param bytes a byte array
+     * @return a hash code
+     */
+    public static int hashCode(byte[] bytes) {
+        return MurmurHash3.MurmurHash3_x64_32(bytes, SEED);
+    }
+
+    public ByteArrayKey(byte[] bytes) {
+        this.bytes = bytes;
+        this.hashCode = hashCode(bytes);
+    }
+
+    /**
+     * Used for externalization only.
+     */
+    public ByteArrayKey() {
+    }
+
+    /**
+     * Returns the content of this key.  The returned array must not be modified.
+     * @return the bytes of this key
+     */
+    public byte[] getBytes() {
+        return this.bytes;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput output) throws IOException {
+        output.writeInt(this.bytes.length);
+        output.write(this.bytes);
+    }
+
+    @Override
+    public void readExternal(ObjectInput input) throws IOException {
+        this.bytes = new byte[input.readInt()];
+        input.readFully(this.bytes);
+        this.hashCode = hashCode(this.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hashCode;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof ByteArrayKey)) {
+            return false;
+        }
+        ByteArrayKey key = (ByteArrayKey) object;
+        // Cheap rejection of most unequal keys
+        return (this.hashCode == key.hashCode) && Arrays.equals(this.bytes, key.bytes);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(this.bytes);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+
+/**
+ * Base cache invoker whose bulk invocations invoke each operation in turn, via {@link #invoke(Cache, Operation, Flag...)}.
+ */
+public abstract class AbstractCacheInvoker implements BulkCacheInvoker {
+
+    @Override
+    public <K, V, R> List<R> invokeAll(Cache<K, V> cache, List<? extends Operation<K, V, R>> operations, Flag... flags) {
+        return invokeEach(this, cache, operations, flags);
+    }
+
+    /**
+     * Invokes the specified operations via the specified invoker, as a whole if it is a {@link BulkCacheInvoker}, otherwise one at a time.
+     * Used by decorating invokers to pass bulk invocations through to an arbitrary decorated invoker.
+     */
+    protected static <K, V, R> List<R> invokeAll(CacheInvoker invoker, Cache<K, V> cache, List<? extends Operation<K, V, R>> operations, Flag... flags) {
+        return (invoker instanceof BulkCacheInvoker) ? ((BulkCacheInvoker) invoker).invokeAll(cache, operations, flags) : invokeEach(invoker, cache, operations, flags);
+    }
+
+    private static <K, V, R> List<R> invokeEach(CacheInvoker invoker, Cache<K, V> cache, List<? extends Operation<K, V, R>> operations, Flag... flags) {
+        List<R> results = new ArrayList<R>(operations.size());
+        for (Operation<K, V, R> operation: operations) {
+            results.add(invoker.invoke(cache, operation, flags));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvoker.Operation;
+
+/**
+ * Asynchronous counterpart of {@link CacheInvoker}.
+ * Implementations must never block the calling thread, neither for the operation itself, nor between retries.
+ * Operations implementing {@link AsyncOperation} are dispatched via the asynchronous API of the cache, so that no invoker thread waits for their completion;
+ * any other operation is a blocking call, which runs on an executor.
+ */
+public interface AsyncCacheInvoker {
+    /**
+     * Invokes the specified operation on the specified cache, without waiting for its completion.
+     *
+     * @param <R> the type of the cache operation result
+     * @param cache an infinispan cache
+     * @param operation a cache operation
+     * @param flags an optional set of invocation flags
+     * @return a future result of the cache operation
+     */
+    <K, V, R> NotifyingFuture<R> invokeAsync(Cache<K, V> cache, Operation<K, V, R> operation, Flag... flags);
+
+    /**
+     * Encapsulates a cache operation that can be dispatched via the asynchronous API of the cache, e.g. {@link Cache#putAsync(Object, Object)}.
+     * @param <K> the cache key
+     * @param <V> the cache value
+     * @param <R> the return type of the cache operation
+     */
+    interface AsyncOperation<K, V, R> extends Operation<K, V, R> {
+        /**
+         * Dispatches this operation on the specified cache, without waiting for its completion.
+         *
+         * @param cache an infinispan cache
+         * @return the future result of the cache operation
+         */
+        NotifyingFuture<R> invokeAsync(Cache<K, V> cache);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import java.util.concurrent.Executor;
+
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvoker.Operation;
+
+/**
+ * Asynchronous invoker that starts and ends a batch, if none exists.
+ * Since batches are bound to the invoking thread, the batch is started and ended by the thread that runs the operation.
+ */
+public class BatchAsyncCacheInvoker implements AsyncCacheInvoker {
+
+    private final AsyncCacheInvoker invoker;
+
+    public BatchAsyncCacheInvoker(AsyncCacheInvoker invoker) {
+        this.invoker = invoker;
+    }
+
+    public BatchAsyncCacheInvoker(Executor executor) {
+        this(new SimpleAsyncCacheInvoker(executor));
+    }
+
+    @Override
+    public <K, V, R> NotifyingFuture<R> invokeAsync(Cache<K, V> cache, Operation<K, V, R> operation, Flag... flags) {
+        return this.invoker.invokeAsync(cache, new BatchOperation<K, V, R>(operation), flags);
+    }
+
+    private static class BatchOperation<K, V, R> implements Operation<K, V, R> {
+        private final Operation<K, V, R> operation;
+
+        BatchOperation(Operation<K, V, R> operation) {
+            this.operation = operation;
+        }
+
+        @Override
+        public R invoke(Cache<K, V> cache) {
+            boolean started = cache.startBatch();
+            boolean success = false;
+            try {
+                R result = this.operation.invoke(cache);
+                success = true;
+                return result;
+            } finally {
+                if (started) {
+                    cache.endBatch(success);
+                }
+            }
+        }
+    }
+}
@@ -21,14 +21,17 @@
  */
 package org.jboss.as.clustering.infinispan.invoker;
 
+import java.util.List;
+
 import org.infinispan.Cache;
 import org.infinispan.context.Flag;
 
 /**
  * Invoker that starts and ends a batch, if none exists.
+ * All operations of a bulk invocation are invoked within the same batch.
  * @author Paul Ferraro
  */
-public class BatchCacheInvoker implements CacheInvoker {
+public class BatchCacheInvoker extends AbstractCacheInvoker {
 
     private final CacheInvoker invoker;
 
@@ -54,4 +57,19 @@ public class BatchCacheInvoker implements CacheInvoker {
             }
         }
     }
+
+    @Override
+    public <K, V, R> List<R> invokeAll(Cache<K, V> cache, List<? extends Operation<K, V, R>> operations, Flag... flags) {
+        boolean started = cache.startBatch();
+        boolean success = false;
+        try {
+            List<R> results = invokeAll(this.invoker, cache, operations, flags);
+            success = true;
+            return results;
+        } finally {
+            if (started) {
+                cache.endBatch(success);
+            }
+        }
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import java.util.List;
+
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+
+/**
+ * Cache invoker that can invoke a list of operations as a whole.
+ * Most implementations should extend {@link AbstractCacheInvoker}.
+ */
+public interface BulkCacheInvoker extends CacheInvoker {
+    /**
+     * Invokes the specified operations on the specified cache.
+     * Implementations may invoke operations concurrently, but never when a batch or transaction is associated with the calling thread.
+     *
+     * @param <R> the type of the cache operation results
+     * @param cache an infinispan cache
+     * @param operations a list of cache operations
+     * @param flags an optional set of invocation flags, applied to every operation
+     * @return the results of the cache operations, in the order of the specified operations
+     */
+    <K, V, R> List<R> invokeAll(Cache<K, V> cache, List<? extends Operation<K, V, R>> operations, Flag... flags);
+}
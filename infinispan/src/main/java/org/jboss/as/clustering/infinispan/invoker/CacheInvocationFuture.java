@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.jboss.as.clustering.infinispan.InfinispanLogger.ROOT_LOGGER;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+
+/**
+ * A future completed explicitly by an asynchronous cache invoker, rather than by running a task.
+ * The first of {@link #complete(Object)}, {@link #fail(Throwable)} or {@link #cancel(boolean)} determines the outcome; subsequent calls have no effect.
+ * Attached listeners are notified exactly once, by the thread that completes the future, or by the attaching thread, if the future is already done.
+ * @param <R> the result type
+ */
+class CacheInvocationFuture<R> implements NotifyingFuture<R> {
+
+    private enum State { PENDING, COMPLETED, FAILED, CANCELLED }
+
+    // All fields are guarded by this
+    private final List<org.infinispan.commons.util.concurrent.FutureListener<R>> listeners = new LinkedList<org.infinispan.commons.util.concurrent.FutureListener<R>>();
+    private State state = State.PENDING;
+    private R result;
+    private Throwable exception;
+
+    /**
+     * Completes this future with the specified result, unless it is already done.
+     * @param result the result of the cache operation
+     * @return true, if this call completed the future, false otherwise
+     */
+    boolean complete(R result) {
+        return this.finish(State.COMPLETED, result, null);
+    }
+
+    /**
+     * Completes this future exceptionally, unless it is already done.
+     * @param exception the cause of the failure
+     * @return true, if this call completed the future, false otherwise
+     */
+    boolean fail(Throwable exception) {
+        return this.finish(State.FAILED, null, exception);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Since the operation is not run by this future, it cannot be interrupted; invokers check {@link #isDone()} before each attempt instead.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return this.finish(State.CANCELLED, null, null);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return this.state == State.CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return this.state != State.PENDING;
+    }
+
+    @Override
+    public synchronized R get() throws InterruptedException, ExecutionException {
+        while (this.state == State.PENDING) {
+            this.wait();
+        }
+        return this.getResult();
+    }
+
+    @Override
+    public R get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            while (this.state == State.PENDING) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return this.getResult();
+        }
+    }
+
+    @Override
+    public NotifyingFuture<R> attachListener(FutureListener<R> listener) {
+        return this.attachListener((org.infinispan.commons.util.concurrent.FutureListener<R>) listener);
+    }
+
+    /**
+     * Attaches a listener to be notified once this future is done.
+     * @param listener a future listener
+     * @return this future
+     */
+    public NotifyingFuture<R> attachListener(org.infinispan.commons.util.concurrent.FutureListener<R> listener) {
+        synchronized (this) {
+            if (this.state == State.PENDING) {
+                this.listeners.add(listener);
+                return this;
+            }
+        }
+        this.notifyListener(listener);
+        return this;
+    }
+
+    // Must be called while holding the monitor of this future, once done
+    private R getResult() throws ExecutionException {
+        switch (this.state) {
+            case COMPLETED: {
+                return this.result;
+            }
+            case FAILED: {
+                throw new ExecutionException(this.exception);
+            }
+            default: {
+                throw new CancellationException();
+            }
+        }
+    }
+
+    private boolean finish(State state, R result, Throwable exception) {
+        List<org.infinispan.commons.util.concurrent.FutureListener<R>> listeners;
+        synchronized (this) {
+            if (this.state != State.PENDING) {
+                return false;
+            }
+            this.state = state;
+            this.result = result;
+            this.exception = exception;
+            this.notifyAll();
+            listeners = new ArrayList<org.infinispan.commons.util.concurrent.FutureListener<R>>(this.listeners);
+            this.listeners.clear();
+        }
+        for (org.infinispan.commons.util.concurrent.FutureListener<R> listener: listeners) {
+            this.notifyListener(listener);
+        }
+        return true;
+    }
+
+    private void notifyListener(org.infinispan.commons.util.concurrent.FutureListener<R> listener) {
+        try {
+            listener.futureDone(this);
+        } catch (RuntimeException e) {
+            ROOT_LOGGER.debugf(e, "Future listener %s failed", listener);
+        }
+    }
+}
@@ -56,4 +56,18 @@ public interface CacheInvoker {
          */
         R invoke(Cache<K, V> cache);
     }
+
+    /**
+     * Encapsulates a cache operation on a single key, which allows invokers to route the operation according to its key.
+     * @param <K> the cache key
+     * @param <V> the cache value
+     * @param <R> the return type of the cache operation
+     */
+    interface KeyOperation<K, V, R> extends Operation<K, V, R> {
+        /**
+         * Returns the key of the cache entry on which this operation operates.
+         * @return a cache key
+         */
+        K getKey();
+    }
 }
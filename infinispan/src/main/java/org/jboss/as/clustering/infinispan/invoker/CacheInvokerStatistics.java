@@ -0,0 +1,239 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.infinispan.Cache;
+import org.infinispan.factories.ComponentRegistry;
+
+/**
+ * Runtime statistics gathered by the cache invokers of a given cache.
+ * Instances are registered as a component of the cache, and thus share its lifecycle, so that they can be exposed as cache metrics.
+ */
+public class CacheInvokerStatistics {
+
+    /**
+     * Returns the statistics for the specified cache, creating them if necessary.
+     * @param cache an infinispan cache
+     * @return the invoker statistics of the specified cache
+     */
+    public static CacheInvokerStatistics getStatistics(Cache<?, ?> cache) {
+        ComponentRegistry registry = cache.getAdvancedCache().getComponentRegistry();
+        CacheInvokerStatistics statistics = registry.getComponent(CacheInvokerStatistics.class);
+        if (statistics == null) {
+            // Component registration is synchronized on the registry
+            synchronized (registry) {
+                statistics = registry.getComponent(CacheInvokerStatistics.class);
+                if (statistics == null) {
+                    statistics = new CacheInvokerStatistics();
+                    registry.registerComponent(statistics, CacheInvokerStatistics.class);
+                }
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns the statistics for the specified cache, if any invoker has used it.
+     * @param cache an infinispan cache
+     * @return the invoker statistics of the specified cache, or null, if none exist
+     */
+    public static CacheInvokerStatistics findStatistics(Cache<?, ?> cache) {
+        return cache.getAdvancedCache().getComponentRegistry().getComponent(CacheInvokerStatistics.class);
+    }
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong coalescedBatches = new AtomicLong();
+    private final AtomicLong coalescedWrites = new AtomicLong();
+    private final AtomicLong coalescedEntries = new AtomicLong();
+    private final AtomicLong coalescingDelay = new AtomicLong();
+    private final AtomicLong collapsedReads = new AtomicLong();
+    private final ConcurrentMap<CircuitBreaker.Parameters, CircuitBreaker> breakers = new ConcurrentHashMap<CircuitBreaker.Parameters, CircuitBreaker>();
+
+    /**
+     * Returns the circuit breaker of this cache with the specified parameters, creating it if necessary.
+     * @param parameters the parameters of the circuit breaker
+     * @return a circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker(CircuitBreaker.Parameters parameters) {
+        CircuitBreaker breaker = this.breakers.get(parameters);
+        if (breaker == null) {
+            breaker = new CircuitBreaker(parameters);
+            CircuitBreaker existing = this.breakers.putIfAbsent(parameters, breaker);
+            if (existing != null) {
+                breaker = existing;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * Returns the circuit breakers of this cache, one per distinct set of parameters used by its invokers.
+     * @return a collection of circuit breakers
+     */
+    public Collection<CircuitBreaker> getCircuitBreakers() {
+        return this.breakers.values();
+    }
+
+    /**
+     * Returns the state of the most restrictive circuit breaker of this cache, i.e. open, if any breaker is open, otherwise half-open, if any breaker is half-open.
+     * @return a circuit breaker state, or null, if no invoker uses a circuit breaker for this cache
+     */
+    public CircuitBreaker.State getCircuitBreakerState() {
+        CircuitBreaker.State result = null;
+        for (CircuitBreaker breaker : this.breakers.values()) {
+            CircuitBreaker.State state = breaker.getState();
+            if ((result == null) || (state == CircuitBreaker.State.OPEN) || ((state == CircuitBreaker.State.HALF_OPEN) && (result == CircuitBreaker.State.CLOSED))) {
+                result = state;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of times any circuit breaker of this cache has opened.
+     * @return a number of trips
+     */
+    public long getCircuitBreakerTrips() {
+        long trips = 0;
+        for (CircuitBreaker breaker : this.breakers.values()) {
+            trips += breaker.getTrips();
+        }
+        return trips;
+    }
+
+    void retried() {
+        this.retries.incrementAndGet();
+    }
+
+    void failed() {
+        this.failures.incrementAndGet();
+    }
+
+    void rejected() {
+        this.rejections.incrementAndGet();
+    }
+
+    void collapsed() {
+        this.collapsedReads.incrementAndGet();
+    }
+
+    void coalesced(int writes, int entries, long delay) {
+        this.coalescedBatches.incrementAndGet();
+        this.coalescedWrites.addAndGet(writes);
+        this.coalescedEntries.addAndGet(entries);
+        this.coalescingDelay.addAndGet(delay);
+    }
+
+    /**
+     * Returns the number of retries of cache operations following a timeout or suspect.
+     * @return a number of retries
+     */
+    public long getRetries() {
+        return this.retries.get();
+    }
+
+    /**
+     * Returns the number of cache operations aborted after exhausting all retries.
+     * @return a number of failed operations
+     */
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    /**
+     * Returns the number of cache operations rejected by an open circuit breaker.
+     * @return a number of rejected operations
+     */
+    public long getRejections() {
+        return this.rejections.get();
+    }
+
+    /**
+     * Returns the number of putAll operations issued by coalescing invokers.
+     * @return a number of batches
+     */
+    public long getCoalescedBatches() {
+        return this.coalescedBatches.get();
+    }
+
+    /**
+     * Returns the average number of single-key writes coalesced into a putAll operation.
+     * @return an average batch size
+     */
+    public double getAverageCoalescedBatchSize() {
+        long batches = this.coalescedBatches.get();
+        return (batches > 0) ? (double) this.coalescedWrites.get() / batches : 0;
+    }
+
+    /**
+     * Returns the ratio of single-key writes to distinct keys written by coalescing invokers.
+     * @return a ratio greater than or equal to 1
+     */
+    public double getCoalescingRatio() {
+        long entries = this.coalescedEntries.get();
+        return (entries > 0) ? (double) this.coalescedWrites.get() / entries : 0;
+    }
+
+    /**
+     * Returns the average time a single-key write waited for its window to be flushed.
+     * @return an average delay, in microseconds
+     */
+    public long getAverageCoalescingDelay() {
+        long writes = this.coalescedWrites.get();
+        return (writes > 0) ? TimeUnit.NANOSECONDS.toMicros(this.coalescingDelay.get() / writes) : 0;
+    }
+
+    /**
+     * Returns the number of reads that shared the result of a concurrent read of the same key.
+     * @return a number of collapsed reads
+     */
+    public long getCollapsedReads() {
+        return this.collapsedReads.get();
+    }
+
+    public void reset() {
+        this.retries.set(0);
+        this.failures.set(0);
+        this.rejections.set(0);
+        this.coalescedBatches.set(0);
+        this.coalescedWrites.set(0);
+        this.coalescedEntries.set(0);
+        this.coalescingDelay.set(0);
+        this.collapsedReads.set(0);
+    }
+
+    /**
+     * Discards all statistics and circuit breakers, e.g. when the cache stops.
+     */
+    public void clear() {
+        this.reset();
+        this.breakers.clear();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breaker that fails invocations fast after a number of consecutive timeouts.
+ * Once open, the breaker allows a single trial invocation after the reset timeout elapses.
+ * The breaker closes if the trial succeeds, and reopens otherwise, including when the trial is cancelled.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN;
+    }
+
+    private final AtomicReference<State> state = new AtomicReference<State>(State.CLOSED);
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicLong trips = new AtomicLong();
+    private final int threshold;
+    private final long resetTimeout;
+    private volatile long openTime;
+
+    /**
+     * Creates a new CircuitBreaker.
+     *
+     * @param threshold the number of consecutive timeouts after which the breaker opens
+     * @param resetTimeout the number of milliseconds the breaker remains open before allowing a trial invocation
+     */
+    public CircuitBreaker(int threshold, long resetTimeout) {
+        this.threshold = threshold;
+        this.resetTimeout = resetTimeout;
+    }
+
+    /**
+     * Creates a new CircuitBreaker.
+     *
+     * @param parameters the threshold and reset timeout of the breaker
+     */
+    public CircuitBreaker(Parameters parameters) {
+        this(parameters.threshold, parameters.resetTimeout);
+    }
+
+    /**
+     * Indicates whether an invocation may proceed.
+     * @return false, if the invocation should fail fast
+     */
+    public boolean allowInvocation() {
+        switch (this.state.get()) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                // Only one caller gets to perform the trial invocation
+                return (System.currentTimeMillis() - this.openTime >= this.resetTimeout) && this.state.compareAndSet(State.OPEN, State.HALF_OPEN);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Records an invocation that did not time out.
+     */
+    public void success() {
+        // Avoid contended writes in the common case
+        if (this.failures.get() != 0) {
+            this.failures.set(0);
+        }
+        if (this.state.get() != State.CLOSED) {
+            this.state.set(State.CLOSED);
+        }
+    }
+
+    /**
+     * Records an invocation that timed out.
+     */
+    public void failure() {
+        if ((this.failures.incrementAndGet() >= this.threshold) || (this.state.get() == State.HALF_OPEN)) {
+            this.open();
+        }
+    }
+
+    /**
+     * Records an invocation that ended without an outcome, e.g. because it was cancelled.
+     * If this was the trial invocation, the breaker reopens without counting a trip, so that another trial is allowed once the reset timeout elapses.
+     */
+    public void release() {
+        if (this.state.get() == State.HALF_OPEN) {
+            this.openTime = System.currentTimeMillis();
+            this.state.compareAndSet(State.HALF_OPEN, State.OPEN);
+        }
+    }
+
+    private void open() {
+        this.openTime = System.currentTimeMillis();
+        if (this.state.getAndSet(State.OPEN) != State.OPEN) {
+            this.trips.incrementAndGet();
+        }
+    }
+
+    public State getState() {
+        return this.state.get();
+    }
+
+    /**
+     * Returns the number of times this breaker has opened.
+     * @return a number of trips
+     */
+    public long getTrips() {
+        return this.trips.get();
+    }
+
+    /**
+     * The parameters of a circuit breaker.
+     * Invokers configured with equal parameters share the circuit breaker of a given cache.
+     */
+    public static final class Parameters {
+        final int threshold;
+        final long resetTimeout;
+
+        /**
+         * Creates new circuit breaker parameters.
+         *
+         * @param threshold the number of consecutive timeouts after which the breaker opens
+         * @param resetTimeout the number of milliseconds the breaker remains open before allowing a trial invocation
+         */
+        public Parameters(int threshold, long resetTimeout) {
+            this.threshold = threshold;
+            this.resetTimeout = resetTimeout;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.threshold + (int) (this.resetTimeout ^ (this.resetTimeout >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Parameters)) {
+                return false;
+            }
+            Parameters parameters = (Parameters) object;
+            return (this.threshold == parameters.threshold) && (this.resetTimeout == parameters.resetTimeout);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("threshold=%d, reset-timeout=%d", this.threshold, this.resetTimeout);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvoker.Operation;
+
+/**
+ * Invoker that coalesces concurrent {@link PutOperation}s on the same cache, using the same flags,
+ * into a single putAll operation per window.
+ * A window is flushed once it contains the maximum number of entries, or once the maximum delay has elapsed
+ * since its first entry, whichever comes first.
+ * Within a window, the last write to a given key wins.
+ * Since putAll does not return previous values, only writes using {@link Flag#IGNORE_RETURN_VALUES} are coalesced.
+ * All other operations are passed through to the decorated invoker.
+ * When used as a synchronous {@link CacheInvoker}, e.g. within a {@link RetryingCacheInvoker}, the calling thread waits for the flush of its window.
+ * Since batches and transactions are bound to the invoking thread, synchronous invocations within a batch or transaction are never coalesced.
+ */
+public class CoalescingCacheInvoker extends AbstractCacheInvoker implements AsyncCacheInvoker {
+
+    private final ConcurrentMap<WindowKey, Window<?, ?>> windows = new ConcurrentHashMap<WindowKey, Window<?, ?>>();
+    private final AsyncCacheInvoker invoker;
+    private final CacheInvoker syncInvoker;
+    private final ScheduledExecutorService executor;
+    private final int maxBatchSize;
+    private final long maxDelay;
+
+    /**
+     * Creates a new CoalescingCacheInvoker.
+     *
+     * @param invoker the invoker of the coalesced putAll operations
+     * @param executor schedules the flushing of windows
+     * @param maxBatchSize the maximum number of entries per putAll operation
+     * @param maxDelay the maximum number of milliseconds a write may wait before its window is flushed
+     */
+    public CoalescingCacheInvoker(AsyncCacheInvoker invoker, ScheduledExecutorService executor, int maxBatchSize, long maxDelay) {
+        this(invoker, new SimpleCacheInvoker(), executor, maxBatchSize, maxDelay);
+    }
+
+    /**
+     * Creates a new CoalescingCacheInvoker.
+     *
+     * @param invoker the invoker of the coalesced putAll operations
+     * @param syncInvoker the invoker of synchronous invocations that are not coalesced
+     * @param executor schedules the flushing of windows
+     * @param maxBatchSize the maximum number of entries per putAll operation
+     * @param maxDelay the maximum number of milliseconds a write may wait before its window is flushed
+     */
+    public CoalescingCacheInvoker(AsyncCacheInvoker invoker, CacheInvoker syncInvoker, ScheduledExecutorService executor, int maxBatchSize, long maxDelay) {
+        this.invoker = invoker;
+        this.syncInvoker = syncInvoker;
+        this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+    }
+
+    public CoalescingCacheInvoker(ScheduledExecutorService executor, int maxBatchSize, long maxDelay) {
+        this(new SimpleAsyncCacheInvoker(executor), executor, maxBatchSize, maxDelay);
+    }
+
+    @Override
+    public <K, V, R> R invoke(Cache<K, V> cache, Operation<K, V, R> operation, Flag... flags) {
+        if (!isCoalescable(operation, flags) || ParallelCacheInvoker.isTransactionActive(cache)) {
+            return this.syncInvoker.invoke(cache, operation, flags);
+        }
+        return ParallelCacheInvoker.get(this.invokeAsync(cache, operation, flags));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The operations are coalesced only if they are all coalescable, in which case the calling thread waits for the flush of their windows.
+     */
+    @Override
+    public <K, V, R> List<R> invokeAll(Cache<K, V> cache, List<? extends Operation<K, V, R>> operations, Flag... flags) {
+        boolean coalescable = !ParallelCacheInvoker.isTransactionActive(cache);
+        for (Operation<K, V, R> operation: operations) {
+            coalescable &= isCoalescable(operation, flags);
+        }
+        if (!coalescable) {
+            return invokeAll(this.syncInvoker, cache, operations, flags);
+        }
+        List<NotifyingFuture<R>> futures = new ArrayList<NotifyingFuture<R>>(operations.size());
+        for (Operation<K, V, R> operation: operations) {
+            futures.add(this.invokeAsync(cache, operation, flags));
+        }
+        List<R> results = new ArrayList<R>(futures.size());
+        for (NotifyingFuture<R> future: futures) {
+            results.add(ParallelCacheInvoker.get(future));
+        }
+        return results;
+    }
+
+    private static boolean isCoalescable(Operation<?, ?, ?> operation, Flag[] flags) {
+        if (!(operation instanceof PutOperation) || (flags == null)) {
+            return false;
+        }
+        for (Flag flag: flags) {
+            if (flag == Flag.IGNORE_RETURN_VALUES) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public <K, V, R> NotifyingFuture<R> invokeAsync(Cache<K, V> cache, Operation<K, V, R> operation, Flag... flags) {
+        if (!isCoalescable(operation, flags)) {
+            return this.invoker.invokeAsync(cache, operation, flags);
+        }
+        @SuppressWarnings("unchecked")
+        PutOperation<K, V> put = (PutOperation<K, V>) operation;
+        WindowKey key = new WindowKey(cache, flags);
+        CacheInvocationFuture<R> future = new CacheInvocationFuture<R>();
+        while (true) {
+            Window<K, V> window = this.getWindow(key, cache, flags);
+            int size = window.add(put, future);
+            if (size > 0) {
+                if ((size >= this.maxBatchSize) || window.unscheduled) {
+                    this.close(window);
+                }
+                return future;
+            }
+            // Window was closed concurrently, try again
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, V> Window<K, V> getWindow(WindowKey key, Cache<K, V> cache, Flag[] flags) {
+        Window<K, V> window = (Window<K, V>) this.windows.get(key);
+        if (window == null) {
+            window = new Window<K, V>(key, cache, flags);
+            Window<K, V> existing = (Window<K, V>) this.windows.putIfAbsent(key, window);
+            if (existing != null) {
+                return existing;
+            }
+            final Window<K, V> scheduled = window;
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    CoalescingCacheInvoker.this.close(scheduled);
+                }
+            };
+            try {
+                this.executor.schedule(task, this.maxDelay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Executor was shutdown, so the writer flushes the window itself
+                window.unscheduled = true;
+                this.windows.remove(key, window);
+            }
+        }
+        return window;
+    }
+
+    <K, V> void close(Window<K, V> window) {
+        this.windows.remove(window.key, window);
+        List<Pending> pending = window.close();
+        if (pending == null) {
+            // Already flushed
+            return;
+        }
+        long now = System.nanoTime();
+        long delay = 0;
+        for (Pending entry: pending) {
+            delay += now - entry.enqueued;
+        }
+        CacheInvokerStatistics.getStatistics(window.cache).coalesced(pending.size(), window.entries.size(), delay);
+
+        Listener listener = new Listener(pending);
+        try {
+            this.invoker.invokeAsync(window.cache, new PutAllOperation<K, V>(window.entries), window.flags).attachListener(listener);
+        } catch (RuntimeException e) {
+            listener.fail(e);
+        }
+    }
+
+    /**
+     * Notifies the callers of all coalesced writes of the outcome of their putAll operation.
+     */
+    private static class Listener implements FutureListener<Void> {
+        private final List<Pending> pending;
+
+        Listener(List<Pending> pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public void futureDone(Future<Void> result) {
+            try {
+                result.get();
+                for (Pending entry: this.pending) {
+                    entry.future.complete(null);
+                }
+            } catch (ExecutionException e) {
+                this.fail(e.getCause());
+            } catch (CancellationException e) {
+                this.fail(e);
+            } catch (InterruptedException e) {
+                // Cannot happen, the result is already done
+                Thread.currentThread().interrupt();
+                this.fail(e);
+            }
+        }
+
+        void fail(Throwable exception) {
+            for (Pending entry: this.pending) {
+                entry.future.fail(exception);
+            }
+        }
+    }
+
+    private static class Pending {
+        final CacheInvocationFuture<Object> future;
+        final long enqueued = System.nanoTime();
+
+        @SuppressWarnings("unchecked")
+        Pending(CacheInvocationFuture<?> future) {
+            this.future = (CacheInvocationFuture<Object>) future;
+        }
+    }
+
+    /**
+     * The writes to a given cache, using a given set of flags, collected during a given window.
+     */
+    private static class Window<K, V> {
+        final WindowKey key;
+        final Cache<K, V> cache;
+        final Flag[] flags;
+        final Map<K, V> entries = new LinkedHashMap<K, V>();
+        // Indicates that no flush is scheduled for this window
+        volatile boolean unscheduled = false;
+        private List<Pending> pending = new ArrayList<Pending>();
+
+        Window(WindowKey key, Cache<K, V> cache, Flag[] flags) {
+            this.key = key;
+            this.cache = cache;
+            this.flags = flags;
+        }
+
+        /**
+         * Adds a write to this window.
+         * @return the number of entries in this window, or 0, if this window was already closed.
+         */
+        synchronized int add(PutOperation<K, V> operation, CacheInvocationFuture<?> future) {
+            if (this.pending == null) {
+                return 0;
+            }
+            this.entries.put(operation.getKey(), operation.getValue());
+            this.pending.add(new Pending(future));
+            return this.entries.size();
+        }
+
+        /**
+         * Closes this window to further writes.
+         * @return the pending writes, or null, if this window was already closed.
+         */
+        synchronized List<Pending> close() {
+            List<Pending> result = this.pending;
+            this.pending = null;
+            return result;
+        }
+    }
+
+    private static class WindowKey {
+        private final Cache<?, ?> cache;
+        private final Set<Flag> flags = EnumSet.noneOf(Flag.class);
+
+        WindowKey(Cache<?, ?> cache, Flag[] flags) {
+            this.cache = cache;
+            if (flags != null) {
+                this.flags.addAll(Arrays.asList(flags));
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.cache) ^ this.flags.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if ((object == null) || !(object instanceof WindowKey)) return false;
+            WindowKey key = (WindowKey) object;
+            return (this.cache == key.cache) && this.flags.equals(key.flags);
+        }
+    }
+
+    private static class PutAllOperation<K, V> implements Operation<K, V, Void> {
+        private final Map<K, V> entries;
+
+        PutAllOperation(Map<K, V> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public Void invoke(Cache<K, V> cache) {
+            cache.putAll(this.entries);
+            return null;
+        }
+    }
+}
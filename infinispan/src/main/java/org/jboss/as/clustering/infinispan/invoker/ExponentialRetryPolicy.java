@@ -0,0 +1,73 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import java.util.Random;
+
+/**
+ * Retry policy using exponential back off with full jitter, i.e. the delay before retry <em>n</em> is chosen uniformly
+ * from [0, min(maxDelay, baseDelay * 2^n)].
+ * Randomizing the whole interval prevents nodes that failed simultaneously (e.g. following a view change)
+ * from retrying in lockstep.
+ * Retries stop once either the maximum number of retries is reached, or the next retry would exceed the deadline.
+ */
+public class ExponentialRetryPolicy implements RetryPolicy {
+
+    // Avoids contention on the seed of a shared Random, since every retrying thread draws a delay
+    private static final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    private final long baseDelay;
+    private final long maxDelay;
+    private final int maxRetries;
+    private final long deadline;
+
+    /**
+     * Creates a new ExponentialRetryPolicy.
+     *
+     * @param baseDelay the upper bound (in ms) of the delay before the first retry
+     * @param maxDelay the maximum delay (in ms) before any retry
+     * @param maxRetries the maximum number of retries
+     * @param deadline the total time budget (in ms) of an invocation, including all retries
+     */
+    public ExponentialRetryPolicy(long baseDelay, long maxDelay, int maxRetries, long deadline) {
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.maxRetries = maxRetries;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public long getDelay(int retry, long elapsed) {
+        if (retry >= this.maxRetries) {
+            return -1;
+        }
+        // Cap the shift, to avoid overflow
+        long ceiling = Math.min(this.maxDelay, this.baseDelay << Math.min(retry, 30));
+        long delay = (ceiling > 0) ? (long) (random.get().nextDouble() * (ceiling + 1)) : 0;
+        return (elapsed + delay < this.deadline) ? delay : -1;
+    }
+}
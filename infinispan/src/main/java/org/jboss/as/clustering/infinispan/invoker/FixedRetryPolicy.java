@@ -1,6 +1,6 @@
 /*
  * JBoss, Home of Professional Open Source.
- * Copyright 2012, Red Hat, Inc., and individual contributors
+ * Copyright 2013, Red Hat, Inc., and individual contributors
  * as indicated by the @author tags. See the copyright.txt file in the
  * distribution for a full listing of individual contributors.
  *
@@ -19,18 +19,26 @@
  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
  */
-package org.jboss.as.clustering.infinispan.io;
-
-import org.jboss.as.clustering.SimpleMarshalledValue;
+package org.jboss.as.clustering.infinispan.invoker;
 
 /**
- * @author Paul Ferraro
+ * Retry policy using a fixed set of back off intervals.
  */
-@SuppressWarnings({ "rawtypes" })
-public class SimpleMarshalledValueExternalizer extends ExternalizableExternalizer<SimpleMarshalledValue> {
-    private static final long serialVersionUID = -6027536540791428501L;
+public class FixedRetryPolicy implements RetryPolicy {
+
+    private final int[] backOffIntervals;
+
+    /**
+     * Creates a new FixedRetryPolicy.
+     *
+     * @param backOffIntervals specifies the intervals between retries, and implicitly, the number of retries
+     */
+    public FixedRetryPolicy(int... backOffIntervals) {
+        this.backOffIntervals = backOffIntervals;
+    }
 
-    public SimpleMarshalledValueExternalizer() {
-        super(SimpleMarshalledValue.class);
+    @Override
+    public long getDelay(int retry, long elapsed) {
+        return (retry < this.backOffIntervals.length) ? this.backOffIntervals[retry] : -1;
     }
 }
@@ -0,0 +1,232 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.infinispan.factories.ComponentRegistry;
+
+/**
+ * Caches the flagged views of a cache, and the flag arrays derived by invokers, per distinct set of flags,
+ * so that the steady-state invocation path allocates neither.
+ * The views of a cache are registered as a component of the cache, like {@link CacheInvokerStatistics}, and are thus discarded along with it.
+ * Flag sets are identified by a bit mask of flag ordinals, and looked up via a linear scan of a small copy-on-write array,
+ * which avoids allocating a lookup key.
+ * The number of cached flag sets, and of decorations of the same cache (e.g. wrappers of the cache manager) is bounded,
+ * beyond which views and arrays are created per invocation.
+ */
+public class FlaggedCacheViews {
+
+    // Guards against callers that create a new decorated cache per invocation
+    private static final int MAX_CACHES = 16;
+    private static final int MAX_FLAG_SETS = 64;
+
+    private static volatile Entry<Flag[]>[] flagArrays = newEntries(0);
+
+    /**
+     * Returns a view of the specified cache to which the specified flags apply.
+     * @param cache an infinispan cache
+     * @param flags an optional set of invocation flags
+     * @return a flagged cache view
+     */
+    public static <K, V> AdvancedCache<K, V> getCache(Cache<K, V> cache, Flag... flags) {
+        AdvancedCache<K, V> advancedCache = cache.getAdvancedCache();
+        long mask = mask(flags);
+        if (mask == 0) {
+            return advancedCache;
+        }
+        @SuppressWarnings("unchecked")
+        AdvancedCache<K, V> result = (AdvancedCache<K, V>) getViews(advancedCache).getView(advancedCache, mask, flags);
+        return result;
+    }
+
+    private static FlaggedCacheViews getViews(AdvancedCache<?, ?> cache) {
+        ComponentRegistry registry = cache.getComponentRegistry();
+        FlaggedCacheViews views = registry.getComponent(FlaggedCacheViews.class);
+        if (views == null) {
+            // Component registration is synchronized on the registry
+            synchronized (registry) {
+                views = registry.getComponent(FlaggedCacheViews.class);
+                if (views == null) {
+                    views = new FlaggedCacheViews();
+                    registry.registerComponent(views, FlaggedCacheViews.class);
+                }
+            }
+        }
+        return views;
+    }
+
+    /**
+     * Discards the cached views of the specified cache, e.g. when the cache stops.
+     * @param cache an infinispan cache
+     */
+    public static void removeViews(Cache<?, ?> cache) {
+        FlaggedCacheViews views = cache.getAdvancedCache().getComponentRegistry().getComponent(FlaggedCacheViews.class);
+        if (views != null) {
+            views.clear();
+        }
+    }
+
+    /**
+     * Returns the specified flags, less the specified flag.
+     * @param flags an optional set of flags
+     * @param flag a flag to remove
+     * @return the specified flags, if they did not contain the specified flag, otherwise a shared array that must not be modified
+     */
+    static Flag[] remove(Flag[] flags, Flag flag) {
+        long mask = mask(flags);
+        long bit = 1L << flag.ordinal();
+        if ((mask & bit) == 0) {
+            return flags;
+        }
+        mask &= ~bit;
+        Flag[] result = find(flagArrays, mask);
+        if (result != null) {
+            return result;
+        }
+        synchronized (FlaggedCacheViews.class) {
+            result = find(flagArrays, mask);
+            if (result == null) {
+                result = toArray(mask);
+                if (flagArrays.length < MAX_FLAG_SETS) {
+                    flagArrays = append(flagArrays, new Entry<Flag[]>(mask, result));
+                }
+            }
+        }
+        return result;
+    }
+
+    // Infinispan defines fewer than 64 flags
+    private static long mask(Flag[] flags) {
+        long mask = 0;
+        if (flags != null) {
+            for (Flag flag: flags) {
+                mask |= 1L << flag.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    private static Flag[] toArray(long mask) {
+        Flag[] result = new Flag[Long.bitCount(mask)];
+        int index = 0;
+        for (Flag flag: Flag.values()) {
+            if ((mask & (1L << flag.ordinal())) != 0) {
+                result[index++] = flag;
+            }
+        }
+        return result;
+    }
+
+    private static <T> T find(Entry<T>[] entries, long mask) {
+        for (Entry<T> entry: entries) {
+            if (entry.mask == mask) {
+                return entry.value;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Entry<T>[] newEntries(int length) {
+        return (Entry<T>[]) new Entry<?>[length];
+    }
+
+    private static <T> Entry<T>[] append(Entry<T>[] entries, Entry<T> entry) {
+        Entry<T>[] result = newEntries(entries.length + 1);
+        System.arraycopy(entries, 0, result, 0, entries.length);
+        result[entries.length] = entry;
+        return result;
+    }
+
+    // The views of each decoration of the cache, identified by reference
+    private volatile CacheViews[] caches = new CacheViews[0];
+
+    private AdvancedCache<?, ?> getView(AdvancedCache<?, ?> cache, long mask, Flag[] flags) {
+        CacheViews views = this.findViews(cache);
+        if (views == null) {
+            synchronized (this) {
+                views = this.findViews(cache);
+                if (views == null) {
+                    views = new CacheViews(cache);
+                    if (this.caches.length < MAX_CACHES) {
+                        CacheViews[] caches = new CacheViews[this.caches.length + 1];
+                        System.arraycopy(this.caches, 0, caches, 0, this.caches.length);
+                        caches[this.caches.length] = views;
+                        this.caches = caches;
+                    }
+                }
+            }
+        }
+        return views.getView(mask, flags);
+    }
+
+    private CacheViews findViews(AdvancedCache<?, ?> cache) {
+        for (CacheViews views: this.caches) {
+            if (views.cache == cache) {
+                return views;
+            }
+        }
+        return null;
+    }
+
+    synchronized void clear() {
+        this.caches = new CacheViews[0];
+    }
+
+    private static class CacheViews {
+        final AdvancedCache<?, ?> cache;
+        private volatile Entry<AdvancedCache<?, ?>>[] entries = newEntries(0);
+
+        CacheViews(AdvancedCache<?, ?> cache) {
+            this.cache = cache;
+        }
+
+        AdvancedCache<?, ?> getView(long mask, Flag[] flags) {
+            AdvancedCache<?, ?> view = find(this.entries, mask);
+            if (view != null) {
+                return view;
+            }
+            synchronized (this) {
+                view = find(this.entries, mask);
+                if (view == null) {
+                    view = this.cache.withFlags(flags);
+                    if (this.entries.length < MAX_FLAG_SETS) {
+                        this.entries = append(this.entries, new Entry<AdvancedCache<?, ?>>(mask, view));
+                    }
+                }
+            }
+            return view;
+        }
+    }
+
+    private static class Entry<T> {
+        final long mask;
+        final T value;
+
+        Entry(long mask, T value) {
+            this.mask = mask;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
+
+import org.infinispan.Cache;
+import org.infinispan.batch.BatchContainer;
+import org.infinispan.context.Flag;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.remoting.transport.Address;
+
+/**
+ * Invoker that pipelines bulk invocations on distributed caches.
+ * The operations of a bulk invocation are grouped by the primary owner of their key, and the groups are invoked concurrently
+ * via the decorated invoker, while the operations within a group are invoked in turn.
+ * Thus a bulk invocation takes roughly as long as its largest group, rather than as long as all of its operations.
+ * Operations that do not expose a key are grouped together.
+ * Since batches and transactions are bound to the invoking thread, bulk invocations within a batch or transaction,
+ * or on a non-distributed cache, are passed through to the decorated invoker, on the calling thread.
+ * Consequently, this invoker never pipelines when decorated by a {@link BatchCacheInvoker}; to invoke each group in a batch of its own,
+ * decorate a {@link BatchCacheInvoker} instead, e.g. <code>new ParallelCacheInvoker(new BatchCacheInvoker(), executor)</code>.
+ */
+public class ParallelCacheInvoker extends AbstractCacheInvoker {
+
+    private final CacheInvoker invoker;
+    private final Executor executor;
+
+    public ParallelCacheInvoker(CacheInvoker invoker, Executor executor) {
+        this.invoker = invoker;
+        this.executor = executor;
+    }
+
+    public ParallelCacheInvoker(Executor executor) {
+        this(new SimpleCacheInvoker(), executor);
+    }
+
+    @Override
+    public <K, V, R> R invoke(Cache<K, V> cache, Operation<K, V, R> operation, Flag... flags) {
+        return this.invoker.invoke(cache, operation, flags);
+    }
+
+    @Override
+    public <K, V, R> List<R> invokeAll(final Cache<K, V> cache, List<? extends Operation<K, V, R>> operations, final Flag... flags) {
+        DistributionManager dist = cache.getAdvancedCache().getDistributionManager();
+        if ((dist == null) || (operations.size() < 2) || isTransactionActive(cache)) {
+            return invokeAll(this.invoker, cache, operations, flags);
+        }
+
+        // Group operation indexes by primary owner, preserving the order of operations within each group
+        Map<Address, List<Integer>> groups = new LinkedHashMap<Address, List<Integer>>();
+        for (int i = 0; i < operations.size(); ++i) {
+            Operation<K, V, R> operation = operations.get(i);
+            Address owner = (operation instanceof KeyOperation) ? dist.getConsistentHash().locatePrimaryOwner(((KeyOperation<K, V, R>) operation).getKey()) : null;
+            List<Integer> group = groups.get(owner);
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                groups.put(owner, group);
+            }
+            group.add(Integer.valueOf(i));
+        }
+        if (groups.size() == 1) {
+            return invokeAll(this.invoker, cache, operations, flags);
+        }
+
+        List<List<Integer>> indexes = new ArrayList<List<Integer>>(groups.values());
+        List<FutureTask<List<R>>> tasks = new ArrayList<FutureTask<List<R>>>(indexes.size());
+        Iterator<List<Integer>> groupIndexes = indexes.iterator();
+        while (groupIndexes.hasNext()) {
+            final List<Operation<K, V, R>> group = new ArrayList<Operation<K, V, R>>();
+            for (Integer index: groupIndexes.next()) {
+                group.add(operations.get(index.intValue()));
+            }
+            FutureTask<List<R>> task = new FutureTask<List<R>>(new Callable<List<R>>() {
+                @Override
+                public List<R> call() {
+                    return invokeAll(ParallelCacheInvoker.this.invoker, cache, group, flags);
+                }
+            });
+            tasks.add(task);
+            // The last group is invoked by the calling thread
+            if (groupIndexes.hasNext()) {
+                try {
+                    this.executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    task.run();
+                }
+            } else {
+                task.run();
+            }
+        }
+
+        List<R> results = new ArrayList<R>(Collections.<R>nCopies(operations.size(), null));
+        for (int i = 0; i < tasks.size(); ++i) {
+            List<R> groupResults = get(tasks.get(i));
+            List<Integer> groupIndexList = indexes.get(i);
+            for (int j = 0; j < groupIndexList.size(); ++j) {
+                results.set(groupIndexList.get(j).intValue(), groupResults.get(j));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Indicates whether a batch or transaction is associated with the calling thread.
+     * A batch transaction is suspended between invocations, so it is not visible via the transaction manager.
+     */
+    static boolean isTransactionActive(Cache<?, ?> cache) {
+        BatchContainer batches = cache.getAdvancedCache().getBatchContainer();
+        if ((batches != null) && (batches.getBatchTransaction() != null)) {
+            return true;
+        }
+        TransactionManager tm = cache.getAdvancedCache().getTransactionManager();
+        if (tm == null) {
+            return false;
+        }
+        try {
+            return tm.getTransaction() != null;
+        } catch (SystemException e) {
+            // Err on the side of caution
+            return true;
+        }
+    }
+
+    /**
+     * Returns the result of the specified future, rethrowing the cause of a failure.
+     */
+    static <R> R get(Future<R> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
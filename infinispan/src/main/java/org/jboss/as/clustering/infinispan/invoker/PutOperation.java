@@ -0,0 +1,62 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import org.infinispan.Cache;
+import org.infinispan.util.concurrent.NotifyingFuture;
+
+/**
+ * A single-key write operation.
+ * Unlike an arbitrary {@link CacheInvoker.Operation}, its key and value are visible to invokers,
+ * which allows invokers such as {@link CoalescingCacheInvoker} to combine several writes into one.
+ * @param <K> the cache key
+ * @param <V> the cache value
+ */
+public class PutOperation<K, V> implements CacheInvoker.KeyOperation<K, V, V>, AsyncCacheInvoker.AsyncOperation<K, V, V> {
+
+    private final K key;
+    private final V value;
+
+    public PutOperation(K key, V value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    @Override
+    public K getKey() {
+        return this.key;
+    }
+
+    public V getValue() {
+        return this.value;
+    }
+
+    @Override
+    public V invoke(Cache<K, V> cache) {
+        return cache.put(this.key, this.value);
+    }
+
+    @Override
+    public NotifyingFuture<V> invokeAsync(Cache<K, V> cache) {
+        return cache.putAsync(this.key, this.value);
+    }
+}
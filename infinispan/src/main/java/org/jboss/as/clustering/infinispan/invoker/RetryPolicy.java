@@ -1,6 +1,6 @@
 /*
  * JBoss, Home of Professional Open Source.
- * Copyright 2012, Red Hat, Inc., and individual contributors
+ * Copyright 2013, Red Hat, Inc., and individual contributors
  * as indicated by the @author tags. See the copyright.txt file in the
  * distribution for a full listing of individual contributors.
  *
@@ -19,18 +19,18 @@
  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
  */
-package org.jboss.as.clustering.infinispan.io;
-
-import org.jboss.as.clustering.HashableMarshalledValue;
+package org.jboss.as.clustering.infinispan.invoker;
 
 /**
- * @author Paul Ferraro
+ * Determines whether, and when, a failed cache operation should be retried.
  */
-@SuppressWarnings({ "rawtypes" })
-public class HashableMarshalledValueExternalizer extends ExternalizableExternalizer<HashableMarshalledValue> {
-    private static final long serialVersionUID = 7844272029437130369L;
-
-    public HashableMarshalledValueExternalizer() {
-        super(HashableMarshalledValue.class);
-    }
+public interface RetryPolicy {
+    /**
+     * Returns the delay to wait before the specified retry.
+     *
+     * @param retry the 0-based index of the next retry
+     * @param elapsed the number of milliseconds elapsed since the first attempt
+     * @return the delay in milliseconds, or a negative value if the operation should not be retried
+     */
+    long getDelay(int retry, long elapsed);
 }
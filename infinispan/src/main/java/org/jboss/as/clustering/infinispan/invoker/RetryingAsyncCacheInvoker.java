@@ -0,0 +1,233 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.jboss.as.clustering.infinispan.InfinispanLogger.ROOT_LOGGER;
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.infinispan.remoting.transport.jgroups.SuspectException;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvoker.Operation;
+
+/**
+ * Asynchronous counterpart of {@link RetryingCacheInvoker}.
+ * Retries are scheduled using the specified executor, so no thread is held between attempts.
+ * If the invocation includes Flag.FAIL_SILENTLY, this will only be applied to the last attempt.
+ */
+public class RetryingAsyncCacheInvoker implements AsyncCacheInvoker {
+
+    private final AsyncCacheInvoker invoker;
+    private final ScheduledExecutorService executor;
+    private final RetryPolicy policy;
+    // null, if the circuit breaker is disabled
+    private final CircuitBreaker.Parameters breakerParameters;
+
+    /**
+     * Creates a new RetryingAsyncCacheInvoker.
+     *
+     * @param executor runs each attempt and schedules retries
+     * @param backOffIntervals specifies the delay intervals between retries, and implicitly, the number of retries
+     */
+    public RetryingAsyncCacheInvoker(ScheduledExecutorService executor, int... backOffIntervals) {
+        this(new SimpleAsyncCacheInvoker(executor), executor, backOffIntervals);
+    }
+
+    public RetryingAsyncCacheInvoker(AsyncCacheInvoker invoker, ScheduledExecutorService executor, int... backOffIntervals) {
+        this(invoker, executor, new FixedRetryPolicy(backOffIntervals));
+    }
+
+    public RetryingAsyncCacheInvoker(AsyncCacheInvoker invoker, ScheduledExecutorService executor, RetryPolicy policy) {
+        this(invoker, executor, policy, 0, 0);
+    }
+
+    /**
+     * Creates a new RetryingAsyncCacheInvoker.
+     *
+     * @param invoker the invoker of each attempt
+     * @param executor schedules retries
+     * @param policy determines the delay between retries, and implicitly, the number of retries
+     * @param breakerThreshold the number of consecutive timeouts on a given cache after which subsequent invocations will fail fast, or 0, to disable the circuit breaker
+     * @param breakerResetTimeout the number of milliseconds to fail fast before allowing a trial invocation
+     */
+    public RetryingAsyncCacheInvoker(AsyncCacheInvoker invoker, ScheduledExecutorService executor, RetryPolicy policy, int breakerThreshold, long breakerResetTimeout) {
+        this.invoker = invoker;
+        this.executor = executor;
+        this.policy = policy;
+        this.breakerParameters = (breakerThreshold > 0) ? new CircuitBreaker.Parameters(breakerThreshold, breakerResetTimeout) : null;
+    }
+
+    @Override
+    public <K, V, R> NotifyingFuture<R> invokeAsync(Cache<K, V> cache, Operation<K, V, R> operation, Flag... allFlags) {
+        // attemptFlags = allFlags - Flag.FAIL_SILENTLY
+        Flag[] attemptFlags = FlaggedCacheViews.remove(allFlags, Flag.FAIL_SILENTLY);
+
+        CacheInvocationFuture<R> future = new CacheInvocationFuture<R>();
+        CacheInvokerStatistics statistics = CacheInvokerStatistics.getStatistics(cache);
+        CircuitBreaker breaker = (this.breakerParameters != null) ? statistics.getCircuitBreaker(this.breakerParameters) : null;
+
+        if ((breaker != null) && !breaker.allowInvocation()) {
+            statistics.rejected();
+            future.fail(MESSAGES.circuitBreakerOpen(cache.getName()));
+            return future;
+        }
+
+        Invocation<K, V, R> invocation = new Invocation<K, V, R>(cache, operation, attemptFlags, allFlags, future, statistics, breaker);
+        new Attempt<K, V, R>(invocation, 0, this.policy.getDelay(0, 0)).run();
+        return future;
+    }
+
+    /**
+     * The state shared by all attempts of a given invocation.
+     */
+    private static class Invocation<K, V, R> {
+        final Cache<K, V> cache;
+        final Operation<K, V, R> operation;
+        final Flag[] attemptFlags;
+        final Flag[] allFlags;
+        final CacheInvocationFuture<R> future;
+        final CacheInvokerStatistics statistics;
+        final CircuitBreaker breaker;
+        final long start = System.currentTimeMillis();
+
+        Invocation(Cache<K, V> cache, Operation<K, V, R> operation, Flag[] attemptFlags, Flag[] allFlags, CacheInvocationFuture<R> future, CacheInvokerStatistics statistics, CircuitBreaker breaker) {
+            this.cache = cache;
+            this.operation = operation;
+            this.attemptFlags = attemptFlags;
+            this.allFlags = allFlags;
+            this.future = future;
+            this.statistics = statistics;
+            this.breaker = breaker;
+        }
+    }
+
+    /**
+     * A single attempt of a cache operation, which schedules the next attempt upon timeout or suspect.
+     */
+    private class Attempt<K, V, R> implements Runnable, FutureListener<R> {
+        private final Invocation<K, V, R> invocation;
+        private final int attempt;
+        // The delay before the next attempt, if negative, this is the last attempt
+        private final long delay;
+
+        Attempt(Invocation<K, V, R> invocation, int attempt, long delay) {
+            this.invocation = invocation;
+            this.attempt = attempt;
+            this.delay = delay;
+        }
+
+        @Override
+        public void run() {
+            // Abandon retries if the caller has cancelled the invocation
+            if (this.invocation.future.isDone()) {
+                this.released();
+                return;
+            }
+            // Make sure Flag.FAIL_SILENTLY, if specified, is applied to the last try only
+            Flag[] flags = (this.delay >= 0) ? this.invocation.attemptFlags : this.invocation.allFlags;
+            try {
+                RetryingAsyncCacheInvoker.this.invoker.invokeAsync(this.invocation.cache, this.invocation.operation, flags).attachListener(this);
+            } catch (RuntimeException e) {
+                this.failed(e);
+            } catch (Error e) {
+                this.released();
+                this.invocation.future.fail(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public void futureDone(Future<R> result) {
+            try {
+                R value = result.get();
+                if (this.invocation.breaker != null) {
+                    this.invocation.breaker.success();
+                }
+                this.invocation.future.complete(value);
+            } catch (ExecutionException e) {
+                this.failed(e.getCause());
+            } catch (CancellationException e) {
+                this.released();
+                this.invocation.future.cancel(false);
+            } catch (InterruptedException e) {
+                // Cannot happen, the result is already done
+                Thread.currentThread().interrupt();
+                this.released();
+                this.invocation.future.fail(e);
+            }
+        }
+
+        // Releases the trial invocation of a half open breaker, if this attempt ended without an outcome
+        private void released() {
+            if (this.invocation.breaker != null) {
+                this.invocation.breaker.release();
+            }
+        }
+
+        private void failed(Throwable exception) {
+            CircuitBreaker breaker = this.invocation.breaker;
+            if (!(exception instanceof TimeoutException) && !(exception instanceof SuspectException)) {
+                if (breaker != null) {
+                    breaker.success();
+                }
+                this.invocation.future.fail(exception);
+                return;
+            }
+
+            if (breaker != null) {
+                breaker.failure();
+            }
+
+            // Stop retrying if the breaker opened in the meantime
+            if ((this.delay >= 0) && ((breaker == null) || breaker.allowInvocation())) {
+                if (ROOT_LOGGER.isTraceEnabled()) {
+                    ROOT_LOGGER.tracef(exception, "Cache operation failed.  Retrying in %d ms", Long.valueOf(this.delay));
+                }
+
+                // Determine the delay following the next attempt, relative to its scheduled start
+                int retry = this.attempt + 1;
+                long elapsed = System.currentTimeMillis() + this.delay - this.invocation.start;
+                Attempt<K, V, R> next = new Attempt<K, V, R>(this.invocation, retry, RetryingAsyncCacheInvoker.this.policy.getDelay(retry, elapsed));
+                try {
+                    RetryingAsyncCacheInvoker.this.executor.schedule(next, this.delay, TimeUnit.MILLISECONDS);
+                    this.invocation.statistics.retried();
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // Executor was shutdown, abort
+                }
+            }
+
+            this.invocation.statistics.failed();
+            this.invocation.future.fail(MESSAGES.abortingCacheOperation(exception, Integer.valueOf(this.attempt + 1)));
+        }
+    }
+}
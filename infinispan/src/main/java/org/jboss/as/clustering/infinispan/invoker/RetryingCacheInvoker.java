@@ -24,9 +24,7 @@ package org.jboss.as.clustering.infinispan.invoker;
 import static org.jboss.as.clustering.infinispan.InfinispanLogger.ROOT_LOGGER;
 import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
 
-import java.util.Arrays;
-import java.util.EnumSet;
-import java.util.Set;
+import java.util.List;
 
 import org.infinispan.Cache;
 import org.infinispan.context.Flag;
@@ -34,14 +32,18 @@ import org.infinispan.remoting.transport.jgroups.SuspectException;
 import org.infinispan.util.concurrent.TimeoutException;
 
 /**
- * A cache invoker implementation that retries after a specified set of intervals upon timeout or suspect.
+ * A cache invoker implementation that retries according to a {@link RetryPolicy} upon timeout or suspect.
  * If the invocation includes Flag.FAIL_SILENTLY, this will only be applied to the last attempt.
+ * Optionally, a per-cache {@link CircuitBreaker}, shared by all invokers with the same breaker parameters, fails invocations fast after a number of consecutive timeouts.
+ * A bulk invocation is retried as a whole.
  * @author Paul Ferraro
  */
-public class RetryingCacheInvoker implements CacheInvoker {
+public class RetryingCacheInvoker extends AbstractCacheInvoker {
 
     private final CacheInvoker invoker;
-    private final int[] backOffIntervals;
+    private final RetryPolicy policy;
+    // null, if the circuit breaker is disabled
+    private final CircuitBreaker.Parameters breakerParameters;
 
     /**
      * Creates a new RetryingCacheInvoker.
@@ -53,8 +55,25 @@ public class RetryingCacheInvoker implements CacheInvoker {
     }
 
     public RetryingCacheInvoker(CacheInvoker invoker, int... backOffIntervals) {
+        this(invoker, new FixedRetryPolicy(backOffIntervals));
+    }
+
+    public RetryingCacheInvoker(CacheInvoker invoker, RetryPolicy policy) {
+        this(invoker, policy, 0, 0);
+    }
+
+    /**
+     * Creates a new RetryingCacheInvoker.
+     *
+     * @param invoker the invoker of each attempt
+     * @param policy determines the delay between retries, and implicitly, the number of retries
+     * @param breakerThreshold the number of consecutive timeouts on a given cache after which subsequent invocations will fail fast, or 0, to disable the circuit breaker
+     * @param breakerResetTimeout the number of milliseconds to fail fast before allowing a trial invocation
+     */
+    public RetryingCacheInvoker(CacheInvoker invoker, RetryPolicy policy, int breakerThreshold, long breakerResetTimeout) {
         this.invoker = invoker;
-        this.backOffIntervals = backOffIntervals;
+        this.policy = policy;
+        this.breakerParameters = (breakerThreshold > 0) ? new CircuitBreaker.Parameters(breakerThreshold, breakerResetTimeout) : null;
     }
 
     /**
@@ -64,42 +83,124 @@ public class RetryingCacheInvoker implements CacheInvoker {
      */
     @Override
     public <K, V, R> R invoke(Cache<K, V> cache, Operation<K, V, R> operation, Flag... allFlags) {
-        Flag[] attemptFlags = null;
+        return this.retry(cache, new SingleInvocation<K, V, R>(this.invoker, operation), allFlags);
+    }
+
+    @Override
+    public <K, V, R> List<R> invokeAll(Cache<K, V> cache, List<? extends Operation<K, V, R>> operations, Flag... allFlags) {
+        return this.retry(cache, new BulkInvocation<K, V, R>(this.invoker, operations), allFlags);
+    }
+
+    /**
+     * Performs the specified invocation, retrying upon timeout or suspect.
+     */
+    private <K, V, T> T retry(Cache<K, V> cache, Invocation<K, V, T> invocation, Flag... allFlags) {
         // attemptFlags = allFlags - Flag.FAIL_SILENTLY
-        if ((allFlags != null) && (allFlags.length > 0)) {
-            Set<Flag> flags = EnumSet.noneOf(Flag.class);
-            flags.addAll(Arrays.asList(allFlags));
-            flags.remove(Flag.FAIL_SILENTLY);
-            attemptFlags = flags.toArray(new Flag[flags.size()]);
+        Flag[] attemptFlags = FlaggedCacheViews.remove(allFlags, Flag.FAIL_SILENTLY);
+
+        CacheInvokerStatistics statistics = CacheInvokerStatistics.getStatistics(cache);
+        CircuitBreaker breaker = (this.breakerParameters != null) ? statistics.getCircuitBreaker(this.breakerParameters) : null;
+
+        if ((breaker != null) && !breaker.allowInvocation()) {
+            statistics.rejected();
+            throw MESSAGES.circuitBreakerOpen(cache.getName());
         }
 
         Exception exception = null;
+        long start = System.currentTimeMillis();
+        long delay = this.policy.getDelay(0, 0);
+        int attempts = 0;
 
-        for (int i = 0; i <= this.backOffIntervals.length; ++i) {
+        while (true) {
+            attempts += 1;
             // Make sure Flag.FAIL_SILENTLY, if specified, is applied to the last try only
             try {
-                return this.invoker.invoke(cache, operation, (i < this.backOffIntervals.length) ? attemptFlags : allFlags);
+                Flag[] flags = (delay >= 0) ? attemptFlags : allFlags;
+                T result = invocation.invoke(cache, flags);
+                if (breaker != null) {
+                    breaker.success();
+                }
+                return result;
             } catch (TimeoutException e) {
                 exception = e;
             } catch (SuspectException e) {
                 exception = e;
+            } catch (RuntimeException e) {
+                if (breaker != null) {
+                    breaker.success();
+                }
+                throw e;
+            } catch (Error e) {
+                if (breaker != null) {
+                    breaker.release();
+                }
+                throw e;
             }
 
-            if (i < this.backOffIntervals.length) {
-                int delay = this.backOffIntervals[i];
+            if (breaker != null) {
+                breaker.failure();
+                // Stop retrying if the breaker opened in the meantime
+                if (!breaker.allowInvocation()) {
+                    break;
+                }
+            }
 
-                try {
-                    if (ROOT_LOGGER.isTraceEnabled()) {
-                        ROOT_LOGGER.tracef(exception, "Cache operation failed.  Retrying in %d ms", Integer.valueOf(delay));
-                    }
+            if (delay < 0) {
+                break;
+            }
 
-                    Thread.sleep(delay);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+            try {
+                if (ROOT_LOGGER.isTraceEnabled()) {
+                    ROOT_LOGGER.tracef(exception, "Cache operation failed.  Retrying in %d ms", Long.valueOf(delay));
                 }
+
+                statistics.retried();
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+
+            delay = this.policy.getDelay(attempts, System.currentTimeMillis() - start);
         }
 
-        throw MESSAGES.abortingCacheOperation(exception, Integer.valueOf(this.backOffIntervals.length + 1));
+        statistics.failed();
+        throw MESSAGES.abortingCacheOperation(exception, Integer.valueOf(attempts));
+    }
+
+    /**
+     * A single attempt of a retried invocation.
+     */
+    private interface Invocation<K, V, T> {
+        T invoke(Cache<K, V> cache, Flag... flags);
+    }
+
+    private static class SingleInvocation<K, V, R> implements Invocation<K, V, R> {
+        private final CacheInvoker invoker;
+        private final Operation<K, V, R> operation;
+
+        SingleInvocation(CacheInvoker invoker, Operation<K, V, R> operation) {
+            this.invoker = invoker;
+            this.operation = operation;
+        }
+
+        @Override
+        public R invoke(Cache<K, V> cache, Flag... flags) {
+            return this.invoker.invoke(cache, this.operation, flags);
+        }
+    }
+
+    private static class BulkInvocation<K, V, R> implements Invocation<K, V, List<R>> {
+        private final CacheInvoker invoker;
+        private final List<? extends Operation<K, V, R>> operations;
+
+        BulkInvocation(CacheInvoker invoker, List<? extends Operation<K, V, R>> operations) {
+            this.invoker = invoker;
+            this.operations = operations;
+        }
+
+        @Override
+        public List<R> invoke(Cache<K, V> cache, Flag... flags) {
+            return invokeAll(this.invoker, cache, this.operations, flags);
+        }
     }
 }
@@ -0,0 +1,77 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.jboss.as.clustering.infinispan.invoker.AsyncCacheInvoker.AsyncOperation;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvoker.Operation;
+
+/**
+ * Trivial asynchronous cache invoker.
+ * Operations implementing {@link AsyncCacheInvoker.AsyncOperation} are dispatched via the asynchronous API of the cache, without using the executor;
+ * any other operation runs using the specified executor.
+ */
+public class SimpleAsyncCacheInvoker implements AsyncCacheInvoker {
+
+    private final Executor executor;
+
+    public SimpleAsyncCacheInvoker(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public <K, V, R> NotifyingFuture<R> invokeAsync(final Cache<K, V> cache, final Operation<K, V, R> operation, final Flag... flags) {
+        final CacheInvocationFuture<R> future = new CacheInvocationFuture<R>();
+        if (operation instanceof AsyncOperation) {
+            try {
+                return ((AsyncOperation<K, V, R>) operation).invokeAsync(FlaggedCacheViews.getCache(cache, flags));
+            } catch (RuntimeException e) {
+                future.fail(e);
+                return future;
+            }
+        }
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(operation.invoke(FlaggedCacheViews.getCache(cache, flags)));
+                } catch (Throwable e) {
+                    future.fail(e);
+                }
+            }
+        };
+        try {
+            this.executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            future.fail(e);
+        }
+        return future;
+    }
+}
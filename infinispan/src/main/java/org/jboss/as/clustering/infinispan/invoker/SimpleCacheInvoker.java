@@ -21,16 +21,30 @@
  */
 package org.jboss.as.clustering.infinispan.invoker;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.infinispan.Cache;
 import org.infinispan.context.Flag;
 
 /**
  * Trivial cache invoker.
+ * Flagged views of the cache are shared via {@link FlaggedCacheViews}, so that invocations do not allocate them.
  * @author Paul Ferraro
  */
-public class SimpleCacheInvoker implements CacheInvoker {
+public class SimpleCacheInvoker extends AbstractCacheInvoker {
     @Override
     public <K, V, R> R invoke(Cache<K, V> cache, Operation<K, V, R> operation, Flag... flags) {
-        return operation.invoke(cache.getAdvancedCache().withFlags(flags));
+        return operation.invoke(FlaggedCacheViews.getCache(cache, flags));
+    }
+
+    @Override
+    public <K, V, R> List<R> invokeAll(Cache<K, V> cache, List<? extends Operation<K, V, R>> operations, Flag... flags) {
+        Cache<K, V> flaggedCache = FlaggedCacheViews.getCache(cache, flags);
+        List<R> results = new ArrayList<R>(operations.size());
+        for (Operation<K, V, R> operation: operations) {
+            results.add(operation.invoke(flaggedCache));
+        }
+        return results;
     }
 }
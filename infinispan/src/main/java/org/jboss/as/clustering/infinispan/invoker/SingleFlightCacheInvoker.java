@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+
+/**
+ * Invoker that collapses concurrent {@link GetOperation}s for the same key into a single invocation,
+ * whose result is shared with all concurrent callers.
+ * This prevents a miss on a hot key from multiplying the load on a cache loader or remote owner by the number of concurrent readers.
+ * Since the result is computed by another thread, this invoker should not be used for reads that must participate in a batch or transaction.
+ * All other operations, and bulk invocations, are passed through to the decorated invoker.
+ */
+public class SingleFlightCacheInvoker extends AbstractCacheInvoker {
+
+    private final ConcurrentMap<FlightKey, CacheInvocationFuture<Object>> flights = new ConcurrentHashMap<FlightKey, CacheInvocationFuture<Object>>();
+    private final CacheInvoker invoker;
+
+    public SingleFlightCacheInvoker(CacheInvoker invoker) {
+        this.invoker = invoker;
+    }
+
+    public SingleFlightCacheInvoker() {
+        this(new SimpleCacheInvoker());
+    }
+
+    @Override
+    public <K, V, R> R invoke(Cache<K, V> cache, Operation<K, V, R> operation, Flag... flags) {
+        if (!(operation instanceof GetOperation)) {
+            return this.invoker.invoke(cache, operation, flags);
+        }
+        FlightKey key = new FlightKey(cache, ((GetOperation<?, ?>) operation).getKey(), flags);
+        CacheInvocationFuture<Object> flight = new CacheInvocationFuture<Object>();
+        CacheInvocationFuture<Object> existing = this.flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            CacheInvokerStatistics.getStatistics(cache).collapsed();
+            return this.<R>await(existing);
+        }
+        try {
+            R result = this.invoker.invoke(cache, operation, flags);
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            flight.fail(e);
+            throw e;
+        } catch (Error e) {
+            flight.fail(e);
+            throw e;
+        } finally {
+            this.flights.remove(key, flight);
+        }
+    }
+
+    @Override
+    public <K, V, R> List<R> invokeAll(Cache<K, V> cache, List<? extends Operation<K, V, R>> operations, Flag... flags) {
+        return invokeAll(this.invoker, cache, operations, flags);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> R await(CacheInvocationFuture<Object> flight) {
+        try {
+            return (R) flight.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class FlightKey {
+        private final Cache<?, ?> cache;
+        private final Object key;
+        private final Set<Flag> flags = EnumSet.noneOf(Flag.class);
+
+        FlightKey(Cache<?, ?> cache, Object key, Flag[] flags) {
+            this.cache = cache;
+            this.key = key;
+            if (flags != null) {
+                this.flags.addAll(Arrays.asList(flags));
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return this.key.hashCode() ^ System.identityHashCode(this.cache);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof FlightKey)) {
+                return false;
+            }
+            FlightKey key = (FlightKey) object;
+            return (this.cache == key.cache) && this.key.equals(key.key) && this.flags.equals(key.flags);
+        }
+    }
+}
@@ -49,8 +49,18 @@ public class ExternalizableExternalizer<T extends Externalizable> extends Abstra
 
     @Override
     public T readObject(ObjectInput input) throws IOException, ClassNotFoundException {
-        T object = creator.create(this.getTargetClass());
+        T object = this.newInstance();
         object.readExternal(input);
         return object;
     }
+
+    /**
+     * Creates the instance into which an object will be read.
+     * By default, this uses reflection.  Externalizers generated via {@link Externalizers} invoke the public no-arg constructor directly.
+     * @return a new instance of the target class
+     * @throws IOException if the instance could not be created
+     */
+    protected T newInstance() throws IOException {
+        return creator.create(this.getTargetClass());
+    }
 }
@@ -0,0 +1,60 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.io;
+
+import java.io.Externalizable;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lists the {@link Externalizable} classes for which an externalizer should be generated at compile time, by the infinispan-server-processor annotation processor.
+ * For each class, a {@link SimpleExternalizer} named after the class, with an "Externalizer" suffix, is generated in the package of the annotated element.
+ * Generated externalizers create instances via the public no-arg constructor of the class, rather than via reflection,
+ * and are registered as services, so that they are auto-discovered by the cache manager.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target({ ElementType.PACKAGE, ElementType.TYPE })
+public @interface Externalizers {
+    Externalizer[] value();
+
+    /**
+     * Declares the externalizer to generate for a given class.
+     */
+    @Documented
+    @Retention(RetentionPolicy.SOURCE)
+    @Target({})
+    @interface Externalizer {
+        /**
+         * The class to externalize.
+         */
+        Class<? extends Externalizable> value();
+
+        /**
+         * The serialVersionUID of the generated externalizer, which must remain stable across releases.
+         */
+        long serialVersionUID();
+    }
+}
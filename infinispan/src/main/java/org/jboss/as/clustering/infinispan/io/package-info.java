@@ -0,0 +1,38 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+/**
+ * Externalizers for use by the cache managers of this subsystem.
+ * The externalizers of the marshalled values of the clustering API, of compressed cache values, and of byte[] keys, are generated, see {@link Externalizers}.
+ */
+@Externalizers({
+    @Externalizer(value = SimpleMarshalledValue.class, serialVersionUID = -6027536540791428501L),
+    @Externalizer(value = HashableMarshalledValue.class, serialVersionUID = 7844272029437130369L),
+    @Externalizer(value = CompressedValue.class, serialVersionUID = 3416872853263487640L),
+    @Externalizer(value = ByteArrayKey.class, serialVersionUID = -5296103416546436921L)
+})
+package org.jboss.as.clustering.infinispan.io;
+
+import org.jboss.as.clustering.HashableMarshalledValue;
+import org.jboss.as.clustering.SimpleMarshalledValue;
+import org.jboss.as.clustering.infinispan.compression.CompressedValue;
+import org.jboss.as.clustering.infinispan.equivalence.ByteArrayKey;
+import org.jboss.as.clustering.infinispan.io.Externalizers.Externalizer;
@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.latency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies, using HDR-style log-linear buckets.
+ * Values are counted into 32 linear sub-buckets per power of 2, which bounds the relative error of any reported percentile to ~3%,
+ * while recording a value costs a single atomic increment and allocates nothing.
+ * Values larger than the highest trackable value are counted in the last bucket, though the exact maximum is always retained.
+ */
+public class LatencyHistogram {
+
+    // Number of sub-buckets per power of 2 is 2^SUB_BUCKET_BITS
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = (SUB_BUCKET_COUNT << 1) - 1;
+    // Tracks values up to 2^40 ns, i.e. ~18 minutes
+    private static final int HIGHEST_BIT = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index((1L << HIGHEST_BIT) - 1) + 1);
+    private final AtomicLong max = new AtomicLong();
+
+    private static int index(long value) {
+        // Values below 2 * SUB_BUCKET_COUNT map linearly onto the first 2 * SUB_BUCKET_COUNT indexes
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    // Returns the highest value that maps to the specified index
+    private static long value(int index) {
+        int shift = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+        long lowest = (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Records the specified latency.
+     * @param value a latency, in nanoseconds
+     */
+    public void record(long value) {
+        if (value < 0) {
+            return;
+        }
+        this.counts.incrementAndGet(index(Math.min(value, (1L << HIGHEST_BIT) - 1)));
+        long max = this.max.get();
+        while ((value > max) && !this.max.compareAndSet(max, value)) {
+            max = this.max.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     * @return a number of latencies
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < this.counts.length(); ++i) {
+            count += this.counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the latency below which the specified percentage of recorded latencies fall.
+     * @param percentile a percentile, e.g. 99.9
+     * @return a latency, in nanoseconds, or 0, if no latencies were recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[this.counts.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = this.counts.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100d) / 100d));
+        long count = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            count += counts[i];
+            if (count >= target) {
+                return Math.min(value(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Returns the highest recorded latency.
+     * @return a latency, in nanoseconds
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < this.counts.length(); ++i) {
+            this.counts.set(i, 0);
+        }
+        this.max.set(0);
+    }
+}
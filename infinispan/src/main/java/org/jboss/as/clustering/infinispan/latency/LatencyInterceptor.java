@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.latency;
+
+import org.infinispan.commands.VisitableCommand;
+import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.commands.write.RemoveCommand;
+import org.infinispan.commands.write.ReplaceCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.interceptors.base.BaseCustomInterceptor;
+
+/**
+ * Custom interceptor that records the latency of each read and write of the cache into a {@link LatencyHistogram}.
+ * Reads are key lookups, writes are puts, removes and replaces, whether issued by an application, a cache invoker or a protocol server.
+ * Failed invocations are recorded as well, since their latency is experienced by the caller just the same.
+ * Latencies are only recorded if statistics are enabled for the cache.
+ */
+public class LatencyInterceptor extends BaseCustomInterceptor {
+
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private volatile boolean enabled;
+
+    @Override
+    protected void start() {
+        this.enabled = this.cache.getCacheConfiguration().jmxStatistics().enabled();
+    }
+
+    @Override
+    public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable {
+        return this.record(ctx, command, this.readLatency);
+    }
+
+    @Override
+    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
+        return this.record(ctx, command, this.writeLatency);
+    }
+
+    @Override
+    public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
+        return this.record(ctx, command, this.writeLatency);
+    }
+
+    @Override
+    public Object visitRemoveCommand(InvocationContext ctx, RemoveCommand command) throws Throwable {
+        return this.record(ctx, command, this.writeLatency);
+    }
+
+    @Override
+    public Object visitReplaceCommand(InvocationContext ctx, ReplaceCommand command) throws Throwable {
+        return this.record(ctx, command, this.writeLatency);
+    }
+
+    private Object record(InvocationContext ctx, VisitableCommand command, LatencyHistogram histogram) throws Throwable {
+        // Only time invocations originating from this node
+        if (!this.enabled || !ctx.isOriginLocal()) {
+            return this.invokeNextInterceptor(ctx, command);
+        }
+        long start = System.nanoTime();
+        try {
+            return this.invokeNextInterceptor(ctx, command);
+        } finally {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    public LatencyHistogram getReadLatency() {
+        return this.readLatency;
+    }
+
+    public LatencyHistogram getWriteLatency() {
+        return this.writeLatency;
+    }
+
+    public void resetStatistics() {
+        this.readLatency.reset();
+        this.writeLatency.reset();
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import static org.jboss.as.clustering.infinispan.InfinispanLogger.ROOT_LOGGER;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.infinispan.Cache;
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.context.Flag;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryInvalidated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryLoaded;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryVisited;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
+import org.infinispan.persistence.spi.AdvancedCacheLoader;
+import org.jboss.as.clustering.infinispan.invoker.FlaggedCacheViews;
+
+/**
+ * Preloads the preload store of a cache in the background, while the cache already serves requests.
+ * Reads of entries not yet preloaded fall through to the store, as they would without preload.
+ * The keys that were hottest when the cache last stopped are loaded first, followed by a scan of the remaining entries.
+ * The hot key list holds the keys resident in memory when the cache stops, i.e. those retained by its eviction policy, most recently used first.
+ * <p>
+ * A preloaded entry never replaces an entry written or removed since the cache started, since the store is only authoritative for the remaining entries.
+ * This requires the store to hold every entry, i.e. passivation must be disabled.
+ */
+@Listener
+public class BackgroundPreloader extends ParallelPreloader {
+
+    private static final Flag[] DISCARD_FLAGS = { Flag.CACHE_MODE_LOCAL, Flag.SKIP_OWNERSHIP_CHECK, Flag.SKIP_CACHE_STORE, Flag.SKIP_CACHE_LOAD, Flag.IGNORE_RETURN_VALUES };
+    private static final int MAX_HOT_KEYS = 1 << 16;
+    // Bounds the keys tracked while preloading, beyond which preload is cancelled, since the working set is then warmed by cache operations anyway
+    private static final int MAX_MODIFIED_KEYS = 1 << 16;
+    private static final long STOP_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private static final Comparator<InternalCacheEntry> LAST_USED_COMPARATOR = new Comparator<InternalCacheEntry>() {
+        @Override
+        public int compare(InternalCacheEntry entry1, InternalCacheEntry entry2) {
+            long lastUsed1 = entry1.getLastUsed();
+            long lastUsed2 = entry2.getLastUsed();
+            return (lastUsed1 < lastUsed2) ? -1 : ((lastUsed1 == lastUsed2) ? 0 : 1);
+        }
+    };
+
+    private final File hotKeys;
+    // Keys written or removed by cache operations since the cache started
+    private final Set<Object> modifiedKeys = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+    private final AtomicInteger modifications = new AtomicInteger();
+    private final CountDownLatch done = new CountDownLatch(1);
+    // Distinguishes the modifications of this preloader from those of cache operations, since listeners are notified by the modifying thread
+    private final ThreadLocal<Boolean> inserting = new ThreadLocal<Boolean>();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong missThroughs = new AtomicLong();
+    private volatile boolean cancelled = false;
+    // Set once too many keys were modified to track them, after which no further entries are inserted
+    private volatile boolean overflowed = false;
+
+    /**
+     * Creates a new background preloader.
+     * @param store the index of the store to preload within the persistence configuration of the cache
+     * @param parallelism the maximum number of threads of the specified executor used to load entries
+     * @param executor the executor used to preload, which runs the preload itself in addition to the threads loading entries
+     * @param hotKeys the file holding the hot key list of the cache
+     */
+    public BackgroundPreloader(int store, int parallelism, Executor executor, File hotKeys) {
+        super(store, parallelism, executor);
+        this.hotKeys = hotKeys;
+    }
+
+    /**
+     * Starts preloading the preload store of the specified cache in the background.
+     * @param cache a started cache
+     */
+    public <K, V> void start(final Cache<K, V> cache) {
+        cache.addListener(this);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    BackgroundPreloader.this.preload(cache);
+                } catch (RuntimeException e) {
+                    ROOT_LOGGER.backgroundPreloadFailed(e, cache.getName());
+                } finally {
+                    BackgroundPreloader.this.finish(cache);
+                }
+            }
+        };
+        try {
+            this.getExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            ROOT_LOGGER.backgroundPreloadFailed(e, cache.getName());
+            this.finish(cache);
+        }
+    }
+
+    private <K, V> void finish(Cache<K, V> cache) {
+        cache.removeListener(this);
+        this.modifiedKeys.clear();
+        this.done.countDown();
+    }
+
+    /**
+     * Cancels preload, if still running, and writes the hot key list of the specified cache.
+     * Must be called before the cache stops.
+     * @param cache a started cache
+     */
+    public <K, V> void stop(Cache<K, V> cache) {
+        this.cancelled = true;
+        try {
+            this.done.await(STOP_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.writeHotKeys(cache);
+    }
+
+    /**
+     * Returns the fraction of reads, since the cache started and until preload completed, whose entry had to be loaded from the store.
+     */
+    public double getMissThroughRatio() {
+        long reads = this.reads.get();
+        return (reads > 0) ? Math.min((double) this.missThroughs.get() / reads, 1) : 0;
+    }
+
+    @Override
+    boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    @Override
+    <K, V> void load(final Cache<K, V> cache, final AdvancedCacheLoader<Object, Object> loader, Executor executor, long limit) {
+        List<Object> keys = this.readHotKeys(cache);
+        if (!keys.isEmpty()) {
+            final CountDownLatch latch = new CountDownLatch(keys.size());
+            for (final Object key : keys) {
+                Runnable task = new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (!BackgroundPreloader.this.cancelled) {
+                                BackgroundPreloader.this.loadHotKey(cache, loader, key);
+                            }
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                };
+                executor.execute(task);
+            }
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            ROOT_LOGGER.debugf("Preloaded %d hot keys of %s cache", this.getEntries(), cache.getName());
+        }
+        super.load(cache, loader, executor, limit);
+    }
+
+    private <K, V> void loadHotKey(Cache<K, V> cache, AdvancedCacheLoader<Object, Object> loader, Object key) {
+        try {
+            MarshalledEntry<Object, Object> entry = loader.load(key);
+            if (entry != null) {
+                this.insert(cache, entry);
+            }
+        } catch (RuntimeException e) {
+            // The subsequent scan will load the entry, if possible
+            ROOT_LOGGER.debugf(e, "Failed to preload hot key %s of %s cache", key, cache.getName());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    <K, V> void insert(Cache<K, V> cache, MarshalledEntry<Object, Object> entry) {
+        Object key = entry.getKey();
+        if (this.isModified(key)) {
+            return;
+        }
+        this.inserting.set(Boolean.TRUE);
+        try {
+            if (FlaggedCacheViews.getCache(cache, FLAGS).putIfAbsent((K) key, (V) entry.getValue(), metadata(entry)) != null) {
+                return;
+            }
+            // A cache operation may have modified the entry in the store between our check and the insertion,
+            // in which case discard the inserted entry from memory, since the store is authoritative
+            if (this.isModified(key)) {
+                FlaggedCacheViews.getCache(cache, DISCARD_FLAGS).remove(key);
+                return;
+            }
+        } finally {
+            this.inserting.remove();
+        }
+        this.inserted(entry);
+    }
+
+    @CacheEntryCreated
+    public void created(CacheEntryEvent<?, ?> event) {
+        this.modified(event);
+    }
+
+    /**
+     * Indicates whether the entry of the specified key may have been modified by a cache operation since the cache started.
+     */
+    private boolean isModified(Object key) {
+        // Once overflowed, modified keys are no longer tracked
+        return this.overflowed || this.modifiedKeys.contains(key);
+    }
+
+    @CacheEntryModified
+    public void modified(CacheEntryEvent<?, ?> event) {
+        if ((this.inserting.get() == null) && !this.overflowed) {
+            if (this.modifiedKeys.add(event.getKey()) && (this.modifications.incrementAndGet() > MAX_MODIFIED_KEYS)) {
+                // Set before clearing, so that concurrent inserts never miss a modification
+                this.overflowed = true;
+                this.cancelled = true;
+                this.modifiedKeys.clear();
+                ROOT_LOGGER.debugf("Cancelled background preload of %s cache, after %d keys were modified", event.getCache().getName(), MAX_MODIFIED_KEYS);
+            }
+        }
+    }
+
+    @CacheEntryRemoved
+    public void removed(CacheEntryEvent<?, ?> event) {
+        this.modified(event);
+    }
+
+    @CacheEntryInvalidated
+    public void invalidated(CacheEntryEvent<?, ?> event) {
+        this.modified(event);
+    }
+
+    @CacheEntryVisited
+    public void visited(CacheEntryEvent<?, ?> event) {
+        if (!event.isPre()) {
+            this.reads.incrementAndGet();
+        }
+    }
+
+    @CacheEntryLoaded
+    public void loaded(CacheEntryEvent<?, ?> event) {
+        if (!event.isPre()) {
+            this.missThroughs.incrementAndGet();
+        }
+    }
+
+    private <K, V> List<Object> readHotKeys(Cache<K, V> cache) {
+        if (!this.hotKeys.isFile()) {
+            return Collections.emptyList();
+        }
+        StreamingMarshaller marshaller = getMarshaller(cache);
+        try {
+            InputStream input = new BufferedInputStream(new FileInputStream(this.hotKeys));
+            try {
+                ObjectInput objectInput = marshaller.startObjectInput(input, false);
+                try {
+                    int size = objectInput.readInt();
+                    List<Object> keys = new ArrayList<Object>(size);
+                    for (int i = 0; i < size; ++i) {
+                        keys.add(objectInput.readObject());
+                    }
+                    return keys;
+                } finally {
+                    marshaller.finishObjectInput(objectInput);
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            ROOT_LOGGER.hotKeysAccessFailed(e, cache.getName(), this.hotKeys);
+        } catch (ClassNotFoundException e) {
+            ROOT_LOGGER.hotKeysAccessFailed(e, cache.getName(), this.hotKeys);
+        }
+        return Collections.emptyList();
+    }
+
+    private <K, V> void writeHotKeys(Cache<K, V> cache) {
+        PriorityQueue<InternalCacheEntry> hottest = new PriorityQueue<InternalCacheEntry>(MAX_HOT_KEYS + 1, LAST_USED_COMPARATOR);
+        for (InternalCacheEntry entry : cache.getAdvancedCache().getDataContainer()) {
+            hottest.add(entry);
+            if (hottest.size() > MAX_HOT_KEYS) {
+                hottest.poll();
+            }
+        }
+        // Most recently used first
+        List<Object> keys = new ArrayList<Object>(hottest.size());
+        while (!hottest.isEmpty()) {
+            keys.add(hottest.poll().getKey());
+        }
+        Collections.reverse(keys);
+
+        StreamingMarshaller marshaller = getMarshaller(cache);
+        File directory = this.hotKeys.getParentFile();
+        if ((directory != null) && !directory.isDirectory()) {
+            directory.mkdirs();
+        }
+        // Write to a temporary file first, so that a failure does not leave a truncated list
+        File file = new File(directory, this.hotKeys.getName() + ".tmp");
+        try {
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                ObjectOutput objectOutput = marshaller.startObjectOutput(output, false, 512);
+                try {
+                    objectOutput.writeInt(keys.size());
+                    for (Object key : keys) {
+                        objectOutput.writeObject(key);
+                    }
+                } finally {
+                    marshaller.finishObjectOutput(objectOutput);
+                }
+            } finally {
+                output.close();
+            }
+            if ((this.hotKeys.exists() && !this.hotKeys.delete()) || !file.renameTo(this.hotKeys)) {
+                throw new IOException(file.getPath());
+            }
+        } catch (IOException e) {
+            ROOT_LOGGER.hotKeysAccessFailed(e, cache.getName(), this.hotKeys);
+        }
+    }
+
+    private static StreamingMarshaller getMarshaller(Cache<?, ?> cache) {
+        return cache.getAdvancedCache().getComponentRegistry().getComponent(StreamingMarshaller.class, KnownComponentNames.CACHE_MARSHALLER);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.persistence.spi.CacheWriter;
+
+/**
+ * A cache writer that can write or delete many entries at once, e.g. using a single database round trip.
+ * Used by {@link CoalescingWriteBehindInterceptor} to flush its batches; other writers are flushed one entry at a time.
+ */
+public interface BatchCacheWriter<K, V> extends CacheWriter<K, V> {
+
+    /**
+     * Writes the specified entries, replacing any existing entries with the same keys.
+     * @param entries entries with distinct keys
+     * @throws org.infinispan.persistence.spi.PersistenceException if the entries could not be written
+     */
+    void writeBatch(Iterable<MarshalledEntry<K, V>> entries);
+
+    /**
+     * Deletes the entries with the specified keys, if they exist.
+     * @param keys distinct keys
+     * @throws org.infinispan.persistence.spi.PersistenceException if the entries could not be deleted
+     */
+    void deleteBatch(Iterable<Object> keys);
+}
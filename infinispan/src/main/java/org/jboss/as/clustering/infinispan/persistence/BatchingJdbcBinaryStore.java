@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.infinispan.commons.equivalence.Equivalence;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.metadata.InternalMetadata;
+import org.infinispan.persistence.jdbc.binary.JdbcBinaryStore;
+import org.infinispan.persistence.spi.InitializationContext;
+import org.infinispan.persistence.support.Bucket;
+
+/**
+ * Binary-keyed JDBC store that writes a batch of entries one bucket at a time, so that each bucket is loaded and stored once per batch,
+ * rather than once per entry.  Buckets are locked one at a time, in the order their first entry appears in the batch.
+ */
+@SuppressWarnings("rawtypes")
+public class BatchingJdbcBinaryStore extends JdbcBinaryStore implements BatchCacheWriter {
+
+    private volatile InitializationContext context;
+    private volatile Equivalence<Object> keyEquivalence;
+
+    @Override
+    public void init(InitializationContext context) {
+        super.init(context);
+        this.context = context;
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        this.keyEquivalence = this.context.getCache().getCacheConfiguration().dataContainer().keyEquivalence();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void writeBatch(Iterable entries) {
+        Map<Integer, Map<Object, MarshalledEntry<Object, Object>>> buckets = new LinkedHashMap<Integer, Map<Object, MarshalledEntry<Object, Object>>>();
+        long now = this.context.getTimeService().wallClockTime();
+        for (MarshalledEntry<Object, Object> entry : (Iterable<MarshalledEntry<Object, Object>>) entries) {
+            InternalMetadata metadata = entry.getMetadata();
+            // As Infinispan's own store does, an expired entry is removed, rather than written
+            getBucketEntries(buckets, this.getBuckedId(entry.getKey())).put(entry.getKey(), ((metadata != null) && metadata.isExpired(now)) ? null : entry);
+        }
+        this.apply(buckets);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void deleteBatch(Iterable keys) {
+        Map<Integer, Map<Object, MarshalledEntry<Object, Object>>> buckets = new LinkedHashMap<Integer, Map<Object, MarshalledEntry<Object, Object>>>();
+        for (Object key : keys) {
+            getBucketEntries(buckets, this.getBuckedId(key)).put(key, null);
+        }
+        this.apply(buckets);
+    }
+
+    /**
+     * Applies the specified entries to their buckets, where a null entry removes its key.
+     */
+    private void apply(Map<Integer, Map<Object, MarshalledEntry<Object, Object>>> buckets) {
+        for (Map.Entry<Integer, Map<Object, MarshalledEntry<Object, Object>>> entries : buckets.entrySet()) {
+            Integer bucketId = entries.getKey();
+            this.lockBucketForWriting(bucketId);
+            try {
+                Bucket bucket = this.loadBucket(bucketId);
+                boolean exists = (bucket != null);
+                if (!exists) {
+                    bucket = new Bucket(this.keyEquivalence);
+                    bucket.setBucketId(bucketId);
+                }
+                boolean modified = false;
+                for (Map.Entry<Object, MarshalledEntry<Object, Object>> entry : entries.getValue().entrySet()) {
+                    if (entry.getValue() != null) {
+                        bucket.addEntry(entry.getKey(), entry.getValue());
+                        modified = true;
+                    } else if (bucket.removeEntry(entry.getKey())) {
+                        modified = true;
+                    }
+                }
+                if (exists) {
+                    if (modified) {
+                        this.updateBucket(bucket);
+                    }
+                } else if (!bucket.isEmpty()) {
+                    this.insertBucket(bucket);
+                }
+            } finally {
+                this.unlock(bucketId);
+            }
+        }
+    }
+
+    private static Map<Object, MarshalledEntry<Object, Object>> getBucketEntries(Map<Integer, Map<Object, MarshalledEntry<Object, Object>>> buckets, Integer bucketId) {
+        Map<Object, MarshalledEntry<Object, Object>> entries = buckets.get(bucketId);
+        if (entries == null) {
+            entries = new LinkedHashMap<Object, MarshalledEntry<Object, Object>>();
+            buckets.put(bucketId, entries);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import org.infinispan.commons.configuration.BuiltBy;
+import org.infinispan.commons.configuration.ConfigurationFor;
+import org.infinispan.persistence.jdbc.configuration.JdbcBinaryStoreConfiguration;
+
+/**
+ * Configuration of a {@link BatchingJdbcBinaryStore}, identical to that of Infinispan's binary-keyed JDBC store.
+ */
+@BuiltBy(BatchingJdbcBinaryStoreConfigurationBuilder.class)
+@ConfigurationFor(BatchingJdbcBinaryStore.class)
+public class BatchingJdbcBinaryStoreConfiguration extends JdbcBinaryStoreConfiguration {
+
+    public BatchingJdbcBinaryStoreConfiguration(JdbcBinaryStoreConfiguration configuration) {
+        super(configuration.purgeOnStartup(), configuration.fetchPersistentState(), configuration.ignoreModifications(), configuration.async(), configuration.singletonStore(),
+                configuration.preload(), configuration.shared(), configuration.properties(), configuration.connectionFactory(), configuration.manageConnectionFactory(),
+                configuration.table(), configuration.lockConcurrencyLevel(), configuration.lockAcquisitionTimeout());
+    }
+}
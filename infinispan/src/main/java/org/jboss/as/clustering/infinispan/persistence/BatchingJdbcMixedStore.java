@@ -0,0 +1,204 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import static org.jboss.as.clustering.infinispan.InfinispanLogger.ROOT_LOGGER;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.persistence.jdbc.configuration.JdbcBinaryStoreConfiguration;
+import org.infinispan.persistence.jdbc.configuration.JdbcBinaryStoreConfigurationBuilder;
+import org.infinispan.persistence.jdbc.configuration.JdbcMixedStoreConfiguration;
+import org.infinispan.persistence.jdbc.configuration.JdbcStringBasedStoreConfiguration;
+import org.infinispan.persistence.jdbc.configuration.JdbcStringBasedStoreConfigurationBuilder;
+import org.infinispan.persistence.jdbc.connectionfactory.ConnectionFactory;
+import org.infinispan.persistence.jdbc.mixed.InitialisationContextDelegate;
+import org.infinispan.persistence.spi.AdvancedLoadWriteStore;
+import org.infinispan.persistence.spi.InitializationContext;
+import org.infinispan.persistence.spi.PersistenceException;
+
+/**
+ * Mixed-keyed JDBC store, equivalent to {@link org.infinispan.persistence.jdbc.mixed.JdbcMixedStore}, whose keys are stored by a
+ * {@link BatchingJdbcStringBasedStore}, if supported by its key mapper, or otherwise by a {@link BatchingJdbcBinaryStore}.
+ * Batches are split between the two stores.
+ */
+public class BatchingJdbcMixedStore implements AdvancedLoadWriteStore<Object, Object>, BatchCacheWriter<Object, Object> {
+
+    private final BatchingJdbcBinaryStore binaryStore = new BatchingJdbcBinaryStore();
+    private final BatchingJdbcStringBasedStore stringStore = new BatchingJdbcStringBasedStore();
+    private volatile JdbcMixedStoreConfiguration configuration;
+    private volatile ConnectionFactory connectionFactory;
+
+    @Override
+    public void init(InitializationContext context) {
+        this.configuration = context.getConfiguration();
+        this.binaryStore.init(new InitialisationContextDelegate(context, this.buildBinaryStoreConfiguration()));
+        this.stringStore.init(new InitialisationContextDelegate(context, this.buildStringStoreConfiguration()));
+    }
+
+    private JdbcBinaryStoreConfiguration buildBinaryStoreConfiguration() {
+        JdbcBinaryStoreConfigurationBuilder builder = new ConfigurationBuilder().persistence().addStore(BatchingJdbcBinaryStoreConfigurationBuilder.class);
+        builder.manageConnectionFactory(false).concurrencyLevel(this.configuration.lockConcurrencyLevel()).lockAcquisitionTimeout(this.configuration.lockAcquisitionTimeout());
+        builder.table().read(this.configuration.binaryTable());
+        return builder.create();
+    }
+
+    private JdbcStringBasedStoreConfiguration buildStringStoreConfiguration() {
+        JdbcStringBasedStoreConfigurationBuilder builder = new ConfigurationBuilder().persistence().addStore(BatchingJdbcStringBasedStoreConfigurationBuilder.class);
+        builder.manageConnectionFactory(false).key2StringMapper(this.configuration.key2StringMapper());
+        builder.table().read(this.configuration.stringTable());
+        return builder.create();
+    }
+
+    @Override
+    public void start() {
+        ClassLoader loader = this.configuration.getClass().getClassLoader();
+        ConnectionFactory factory = ConnectionFactory.getConnectionFactory(this.configuration.connectionFactory().connectionFactoryClass().getName(), loader);
+        factory.start(this.configuration.connectionFactory(), loader);
+        this.connectionFactory = factory;
+        this.binaryStore.doConnectionFactoryInitialization(factory);
+        this.binaryStore.start();
+        this.stringStore.initializeConnectionFactory(factory);
+        this.stringStore.start();
+    }
+
+    @Override
+    public void stop() {
+        Throwable cause = null;
+        try {
+            this.binaryStore.stop();
+        } catch (Throwable e) {
+            ROOT_LOGGER.debugf(e, "Failed to stop binary-keyed store");
+            cause = e;
+        }
+        try {
+            this.stringStore.stop();
+        } catch (Throwable e) {
+            ROOT_LOGGER.debugf(e, "Failed to stop string-keyed store");
+            cause = e;
+        }
+        try {
+            this.connectionFactory.stop();
+        } catch (Throwable e) {
+            ROOT_LOGGER.debugf(e, "Failed to stop connection factory");
+            cause = e;
+        }
+        if (cause != null) {
+            throw new PersistenceException("Exceptions occurred while stopping store", cause);
+        }
+    }
+
+    @Override
+    public MarshalledEntry<Object, Object> load(Object key) {
+        return this.getStore(key).load(key);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return this.getStore(key).contains(key);
+    }
+
+    @Override
+    public void process(KeyFilter<Object> filter, CacheLoaderTask<Object, Object> task, Executor executor, boolean fetchValue, boolean fetchMetadata) {
+        this.binaryStore.process(filter, task, executor, fetchValue, fetchMetadata);
+        this.stringStore.process(filter, task, executor, fetchValue, fetchMetadata);
+    }
+
+    @Override
+    public int size() {
+        return this.stringStore.size() + this.binaryStore.size();
+    }
+
+    @Override
+    public void write(MarshalledEntry<Object, Object> entry) {
+        this.getStore(entry.getKey()).write(entry);
+    }
+
+    @Override
+    public boolean delete(Object key) {
+        return this.getStore(key).delete(key);
+    }
+
+    @Override
+    public void writeBatch(Iterable<MarshalledEntry<Object, Object>> entries) {
+        List<MarshalledEntry<Object, Object>> stringEntries = new ArrayList<MarshalledEntry<Object, Object>>();
+        List<MarshalledEntry<Object, Object>> binaryEntries = new ArrayList<MarshalledEntry<Object, Object>>();
+        for (MarshalledEntry<Object, Object> entry : entries) {
+            (this.isStringKey(entry.getKey()) ? stringEntries : binaryEntries).add(entry);
+        }
+        if (!binaryEntries.isEmpty()) {
+            this.binaryStore.writeBatch(binaryEntries);
+        }
+        if (!stringEntries.isEmpty()) {
+            this.stringStore.writeBatch(stringEntries);
+        }
+    }
+
+    @Override
+    public void deleteBatch(Iterable<Object> keys) {
+        List<Object> stringKeys = new ArrayList<Object>();
+        List<Object> binaryKeys = new ArrayList<Object>();
+        for (Object key : keys) {
+            (this.isStringKey(key) ? stringKeys : binaryKeys).add(key);
+        }
+        if (!binaryKeys.isEmpty()) {
+            this.binaryStore.deleteBatch(binaryKeys);
+        }
+        if (!stringKeys.isEmpty()) {
+            this.stringStore.deleteBatch(stringKeys);
+        }
+    }
+
+    @Override
+    public void clear() {
+        this.binaryStore.clear();
+        this.stringStore.clear();
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public void purge(Executor executor, PurgeListener listener) {
+        this.binaryStore.purge(executor, listener);
+        this.stringStore.purge(executor, listener);
+    }
+
+    public BatchingJdbcBinaryStore getBinaryStore() {
+        return this.binaryStore;
+    }
+
+    public BatchingJdbcStringBasedStore getStringStore() {
+        return this.stringStore;
+    }
+
+    private boolean isStringKey(Object key) {
+        return this.stringStore.supportsKey(key.getClass());
+    }
+
+    @SuppressWarnings("unchecked")
+    private AdvancedLoadWriteStore<Object, Object> getStore(Object key) {
+        return this.isStringKey(key) ? this.stringStore : this.binaryStore;
+    }
+}
@@ -0,0 +1,738 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import static org.jboss.as.clustering.infinispan.InfinispanLogger.ROOT_LOGGER;
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.infinispan.commands.read.GetKeyValueCommand;
+import org.infinispan.commands.write.ClearCommand;
+import org.infinispan.commands.write.DataWriteCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.commands.write.RemoveCommand;
+import org.infinispan.commands.write.ReplaceCommand;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.context.Flag;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.factories.ComponentRegistry;
+import org.infinispan.interceptors.base.BaseCustomInterceptor;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.marshall.core.MarshalledEntryFactory;
+import org.infinispan.metadata.InternalMetadataImpl;
+import org.infinispan.persistence.spi.AdvancedCacheWriter;
+import org.infinispan.persistence.spi.CacheWriter;
+import org.infinispan.persistence.spi.PersistenceException;
+import org.infinispan.util.TimeService;
+import org.infinispan.util.concurrent.TimeoutException;
+
+/**
+ * Custom interceptor implementing a write-behind cache store that coalesces modifications per key.
+ * The store is configured to ignore modifications, so that Infinispan never writes to it; instead this interceptor records the latest state of each modified key,
+ * which a flush thread writes to the store in batches, once a batch is full, or once its oldest modification has waited for the flush interval.
+ * Thus a key modified many times between flushes is written once.  Batches are written using {@link BatchCacheWriter}, if supported by the store.
+ * Reads and writes of a modified key that is no longer in memory, e.g. following eviction, first flush that key, so that the store never returns a stale entry.
+ * Once the number of modified keys reaches the queue size, modifications of further keys are written through to the store.
+ * All writes to the store, including clears and purges of expired entries, are serialized, so that a key is never overwritten by an older state.
+ * Operations that must write to the store themselves wait at most for the flush lock timeout for a flush in progress, before failing, without modifying the cache.
+ * Modifications that fail to be written are retried after the flush interval, including while the cache stops, until the shutdown timeout.
+ * Only supports non-transactional caches without passivation.
+ */
+public class CoalescingWriteBehindInterceptor extends BaseCustomInterceptor {
+
+    private static final Executor CALLER_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+    @SuppressWarnings("rawtypes")
+    private static final AdvancedCacheWriter.PurgeListener PURGE_LISTENER = new AdvancedCacheWriter.PurgeListener() {
+        @Override
+        public void entryPurged(Object key) {
+            // Do nothing
+        }
+    };
+
+    private final int store;
+    private final int batchSize;
+    private final long flushInterval;
+    private final long flushLockTimeout;
+    private final int queueSize;
+    private final int threads;
+    private final long shutdownTimeout;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition ready = this.lock.newCondition();
+    // The latest state of each modified key not yet flushed, in order of first modification, guarded by lock
+    private final Map<Object, Modification> pending = new LinkedHashMap<Object, Modification>();
+    // The modifications currently being flushed, guarded by lock
+    private Map<Object, Modification> flushing = Collections.emptyMap();
+    // Guarded by lock
+    private boolean stopping = false;
+    private long retryTime = 0;
+    private long purgeTime = 0;
+    // Serializes writes to the store
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private volatile MarshalledEntryFactory<Object, Object> entryFactory;
+    private volatile TimeService timeService;
+    private volatile DistributionManager distributionManager;
+    private volatile boolean shared;
+    private volatile long purgeInterval;
+    private volatile Thread flusher;
+    private volatile ExecutorService executor;
+    private volatile CacheWriter<Object, Object> writer;
+
+    private final AtomicLong modifications = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushTime = new AtomicLong();
+
+    /**
+     * Creates a new coalescing write-behind interceptor.
+     * @param store the index of the store written by this interceptor within the persistence configuration of the cache
+     * @param batchSize the maximum number of modifications written to the store at once
+     * @param flushInterval the maximum number of milliseconds a modification waits before it is flushed, unless the store is failing
+     * @param flushLockTimeout the maximum number of milliseconds an operation that must write to the store waits for a flush in progress
+     * @param queueSize the maximum number of modified keys awaiting a flush
+     * @param threads the number of threads among which the modifications of a batch are divided
+     * @param shutdownTimeout the number of milliseconds to wait for pending modifications to be flushed, when the cache stops
+     */
+    public CoalescingWriteBehindInterceptor(int store, int batchSize, long flushInterval, long flushLockTimeout, int queueSize, int threads, long shutdownTimeout) {
+        this.store = store;
+        this.batchSize = Math.max(batchSize, 1);
+        this.flushInterval = flushInterval;
+        this.flushLockTimeout = flushLockTimeout;
+        this.queueSize = queueSize;
+        this.threads = Math.max(threads, 1);
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    @Override
+    protected void start() {
+        ComponentRegistry registry = this.cache.getAdvancedCache().getComponentRegistry();
+        // The component registry only exposes the raw factory, which marshals arbitrary keys and values
+        @SuppressWarnings("unchecked")
+        MarshalledEntryFactory<Object, Object> entryFactory = registry.getComponent(MarshalledEntryFactory.class);
+        this.entryFactory = entryFactory;
+        this.timeService = registry.getComponent(TimeService.class);
+        this.distributionManager = this.cache.getCacheConfiguration().clustering().cacheMode().isDistributed() ? registry.getComponent(DistributionManager.class) : null;
+        this.shared = this.cache.getCacheConfiguration().persistence().stores().get(this.store).shared();
+        // Since the store ignores modifications, Infinispan no longer purges its expired entries
+        this.purgeInterval = this.cache.getCacheConfiguration().expiration().reaperEnabled() ? this.cache.getCacheConfiguration().expiration().wakeUpInterval() : 0;
+
+        this.lock.lock();
+        try {
+            this.stopping = false;
+            this.purgeTime = (this.purgeInterval > 0) ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.purgeInterval) : 0;
+        } finally {
+            this.lock.unlock();
+        }
+        ThreadFactory factory = new WriteBehindThreadFactory(this.cache.getName());
+        this.executor = (this.threads > 1) ? Executors.newFixedThreadPool(this.threads, factory) : null;
+        Thread flusher = factory.newThread(new Flusher());
+        flusher.start();
+        this.flusher = flusher;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Custom interceptors stop before the stores of the cache, so pending modifications are flushed while the store is still available.
+     */
+    @Override
+    protected void stop() {
+        this.lock.lock();
+        try {
+            this.stopping = true;
+            this.ready.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        Thread flusher = this.flusher;
+        if (flusher != null) {
+            try {
+                flusher.join(this.shutdownTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flusher.interrupt();
+            this.flusher = null;
+        }
+        ExecutorService executor = this.executor;
+        if (executor != null) {
+            executor.shutdownNow();
+            this.executor = null;
+        }
+        this.writer = null;
+        this.lock.lock();
+        try {
+            // Whatever the flusher did not manage to write within the shutdown timeout is lost
+            if (!this.pending.isEmpty()) {
+                ROOT_LOGGER.writeBehindModificationsLost(this.pending.size(), this.cache.getName(), this.shutdownTimeout);
+                this.pending.clear();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
+        return this.visitDataWriteCommand(ctx, command);
+    }
+
+    @Override
+    public Object visitReplaceCommand(InvocationContext ctx, ReplaceCommand command) throws Throwable {
+        return this.visitDataWriteCommand(ctx, command);
+    }
+
+    @Override
+    public Object visitRemoveCommand(InvocationContext ctx, RemoveCommand command) throws Throwable {
+        return this.visitDataWriteCommand(ctx, command);
+    }
+
+    @Override
+    public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
+        if (command.hasFlag(Flag.SKIP_CACHE_STORE)) {
+            return this.invokeNextInterceptor(ctx, command);
+        }
+        Set<Object> keys = command.getMap().keySet();
+        boolean writeThrough = this.acquireFlushLockIfFull(keys);
+        try {
+            for (Object key : keys) {
+                this.flushIfAbsent(ctx, key);
+            }
+            Object result = this.invokeNextInterceptor(ctx, command);
+            for (Object key : keys) {
+                this.record(ctx, key, writeThrough);
+            }
+            return result;
+        } finally {
+            if (writeThrough) {
+                this.flushLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand command) throws Throwable {
+        if (!command.hasFlag(Flag.SKIP_CACHE_LOAD)) {
+            this.flushIfAbsent(ctx, command.getKey());
+        }
+        return this.invokeNextInterceptor(ctx, command);
+    }
+
+    @Override
+    public Object visitClearCommand(InvocationContext ctx, ClearCommand command) throws Throwable {
+        Object result = this.invokeNextInterceptor(ctx, command);
+        if (!command.hasFlag(Flag.SKIP_CACHE_STORE) && (!this.shared || ctx.isOriginLocal())) {
+            this.acquireFlushLock();
+            try {
+                this.lock.lock();
+                try {
+                    this.pending.clear();
+                } finally {
+                    this.lock.unlock();
+                }
+                CacheWriter<?, ?> writer = this.getWriter();
+                if (writer instanceof AdvancedCacheWriter) {
+                    ((AdvancedCacheWriter<?, ?>) writer).clear();
+                }
+            } finally {
+                this.flushLock.unlock();
+            }
+        }
+        return result;
+    }
+
+    private Object visitDataWriteCommand(InvocationContext ctx, DataWriteCommand command) throws Throwable {
+        if (command.hasFlag(Flag.SKIP_CACHE_STORE)) {
+            return this.invokeNextInterceptor(ctx, command);
+        }
+        Object key = command.getKey();
+        boolean writeThrough = this.acquireFlushLockIfFull(Collections.singleton(key));
+        try {
+            this.flushIfAbsent(ctx, key);
+            Object result = this.invokeNextInterceptor(ctx, command);
+            if (command.isSuccessful()) {
+                this.record(ctx, key, writeThrough);
+            }
+            return result;
+        } finally {
+            if (writeThrough) {
+                this.flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Acquires the flush lock, if the modifications of the specified keys cannot all be queued, and must thus be written through to the store.
+     * The lock is acquired before the cache is modified, so that an operation that times out waiting for a flush in progress leaves the cache unchanged.
+     * @return true, if the flush lock was acquired, false otherwise
+     * @throws TimeoutException if the flush lock could not be acquired within the flush lock timeout
+     */
+    private boolean acquireFlushLockIfFull(Collection<Object> keys) throws InterruptedException {
+        this.lock.lock();
+        try {
+            int added = 0;
+            for (Object key : keys) {
+                if (!this.pending.containsKey(key)) {
+                    added += 1;
+                }
+            }
+            if (this.pending.size() + added <= this.queueSize) {
+                return false;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        this.acquireFlushLock();
+        return true;
+    }
+
+    /**
+     * Flushes the pending modification of the specified key, if it is not in memory, and would thus be loaded from the store.
+     */
+    private void flushIfAbsent(InvocationContext ctx, Object key) throws InterruptedException {
+        CacheEntry entry = ctx.lookupEntry(key);
+        if ((entry != null) && (entry.isRemoved() || (entry.getValue() != null))) {
+            return;
+        }
+
+        this.lock.lock();
+        try {
+            if (!this.pending.containsKey(key) && !this.flushing.containsKey(key)) {
+                return;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        // Once we hold the flush lock, the key is either still pending, or was already written
+        this.acquireFlushLock();
+        try {
+            Modification modification;
+            this.lock.lock();
+            try {
+                modification = this.pending.remove(key);
+            } finally {
+                this.lock.unlock();
+            }
+            if (modification != null) {
+                List<Modification> modifications = Collections.singletonList(modification);
+                try {
+                    this.write(modifications);
+                } catch (RuntimeException e) {
+                    // Keep the modification, lest it be lost, and fail the operation, lest it load a stale entry
+                    this.failed(modifications, e);
+                    throw e;
+                }
+            }
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Records the state of the specified key following a successful write, which is flushed later, or written through, if the queue is full.
+     * Called while the key is locked, so modifications of a key are recorded in order.
+     * @param writeThrough indicates whether the caller holds the flush lock, since the queue was full
+     */
+    private void record(InvocationContext ctx, Object key, boolean writeThrough) throws InterruptedException {
+        if (!this.isProperWriter(ctx, key)) {
+            return;
+        }
+        CacheEntry entry = ctx.lookupEntry(key);
+        if (entry == null) {
+            return;
+        }
+
+        MarshalledEntry<Object, Object> marshalledEntry = null;
+        if (!entry.isRemoved() && (entry.getValue() != null)) {
+            long now = this.timeService.wallClockTime();
+            marshalledEntry = this.entryFactory.newMarshalledEntry(key, entry.getValue(), new InternalMetadataImpl(entry.getMetadata(), now, now));
+        }
+        this.modifications.incrementAndGet();
+
+        this.lock.lock();
+        try {
+            Modification previous = this.pending.get(key);
+            // The queue may have filled up since the caller checked, in which case it briefly exceeds its size
+            if ((previous != null) || !writeThrough) {
+                // Keep the time of the first modification, so that it is not delayed indefinitely
+                this.pending.put(key, new Modification(key, marshalledEntry, (previous != null) ? previous.time : System.nanoTime()));
+                // The flusher waits for the flush interval of the first modification, or until a batch is full
+                if ((this.pending.size() == 1) || (this.pending.size() == this.batchSize)) {
+                    this.ready.signal();
+                }
+                return;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        List<Modification> modifications = Collections.singletonList(new Modification(key, marshalledEntry, System.nanoTime()));
+        try {
+            this.write(modifications);
+        } catch (RuntimeException e) {
+            // The cache was already modified, so keep the modification for the flusher to retry
+            this.failed(modifications, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Indicates whether this node writes the specified key to the store, following the same rules as Infinispan's cache writer interceptors.
+     */
+    private boolean isProperWriter(InvocationContext ctx, Object key) {
+        DistributionManager dm = this.distributionManager;
+        if (dm != null) {
+            return this.shared ? this.embeddedCacheManager.getAddress().equals(dm.getPrimaryLocation(key)) : dm.getLocality(key).isLocal();
+        }
+        return !this.shared || ctx.isOriginLocal();
+    }
+
+    private void acquireFlushLock() throws InterruptedException {
+        if (!this.flushLock.tryLock(this.flushLockTimeout, TimeUnit.MILLISECONDS)) {
+            throw MESSAGES.writeBehindFlushTimeout(this.cache.getName());
+        }
+    }
+
+    /**
+     * Returns the writer of the store of this interceptor.
+     * Resolved upon the first write, once the stores are started.
+     */
+    private CacheWriter<Object, Object> getWriter() {
+        CacheWriter<Object, Object> writer = this.writer;
+        if (writer == null) {
+            // Flush threads may resolve it concurrently
+            synchronized (this) {
+                writer = this.writer;
+                if (writer == null) {
+                    writer = StoreLocator.findStoreWriter(this.cache, this.store);
+                    if (writer == null) {
+                        throw MESSAGES.writeBehindStoreNotWritable(this.cache.getName());
+                    }
+                    this.writer = writer;
+                }
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Writes the specified modifications of distinct keys to the store, dividing them among the write-behind threads.
+     * Must be called while holding the flush lock.
+     */
+    private void write(List<Modification> modifications) throws InterruptedException {
+        ExecutorService executor = this.executor;
+        if ((executor == null) || (modifications.size() < this.threads * 2)) {
+            this.apply(modifications);
+            return;
+        }
+        int size = (modifications.size() + this.threads - 1) / this.threads;
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(this.threads);
+        for (int i = 0; i < modifications.size(); i += size) {
+            final List<Modification> partition = modifications.subList(i, Math.min(i + size, modifications.size()));
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    CoalescingWriteBehindInterceptor.this.apply(partition);
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw (cause instanceof RuntimeException) ? (RuntimeException) cause : new PersistenceException(cause);
+            }
+        }
+    }
+
+    private void apply(Collection<Modification> modifications) {
+        List<MarshalledEntry<Object, Object>> entries = new ArrayList<MarshalledEntry<Object, Object>>(modifications.size());
+        List<Object> keys = new ArrayList<Object>();
+        for (Modification modification : modifications) {
+            if (modification.entry != null) {
+                entries.add(modification.entry);
+            } else {
+                keys.add(modification.key);
+            }
+        }
+        CacheWriter<Object, Object> writer = this.getWriter();
+        if (writer instanceof BatchCacheWriter) {
+            BatchCacheWriter<Object, Object> batchWriter = (BatchCacheWriter<Object, Object>) writer;
+            if (!entries.isEmpty()) {
+                batchWriter.writeBatch(entries);
+            }
+            if (!keys.isEmpty()) {
+                batchWriter.deleteBatch(keys);
+            }
+        } else {
+            for (MarshalledEntry<Object, Object> entry : entries) {
+                writer.write(entry);
+            }
+            for (Object key : keys) {
+                writer.delete(key);
+            }
+        }
+        this.writes.addAndGet(modifications.size());
+    }
+
+    /**
+     * Waits until a batch is ready to be flushed, or the store is due to be purged.
+     * @return false, if the cache is stopping and nothing remains to be flushed, true otherwise
+     */
+    private boolean awaitBatch() throws InterruptedException {
+        this.lock.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                long delay;
+                if (this.stopping) {
+                    // Everything pending is flushed at once, though failed modifications are still only retried after the flush interval
+                    if (this.pending.isEmpty()) {
+                        return false;
+                    }
+                    delay = this.isRetryDue(now) ? 0 : this.retryTime - now;
+                } else {
+                    delay = (this.purgeTime != 0) ? this.purgeTime - now : Long.MAX_VALUE;
+                    if (!this.pending.isEmpty() && this.isRetryDue(now)) {
+                        long flushDelay = (this.pending.size() >= this.batchSize) ? 0 : this.pending.values().iterator().next().time + TimeUnit.MILLISECONDS.toNanos(this.flushInterval) - now;
+                        delay = Math.min(delay, flushDelay);
+                    } else if (!this.pending.isEmpty()) {
+                        delay = Math.min(delay, this.retryTime - now);
+                    }
+                }
+                if (delay <= 0) {
+                    return true;
+                }
+                if (delay == Long.MAX_VALUE) {
+                    this.ready.await();
+                } else {
+                    this.ready.awaitNanos(delay);
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private boolean isRetryDue(long now) {
+        return (this.retryTime == 0) || (this.retryTime - now <= 0);
+    }
+
+    /**
+     * Flushes the next batch of pending modifications, and purges the store of expired entries, if due.
+     */
+    private void flush() throws InterruptedException {
+        this.flushLock.lock();
+        try {
+            boolean purge;
+            List<Modification> batch = new ArrayList<Modification>(this.batchSize);
+            Map<Object, Modification> flushing = new LinkedHashMap<Object, Modification>();
+            this.lock.lock();
+            try {
+                long now = System.nanoTime();
+                // Pending modifications are only retried once the retry time has elapsed
+                if (this.isRetryDue(now)) {
+                    Iterator<Modification> modifications = this.pending.values().iterator();
+                    while (modifications.hasNext() && (batch.size() < this.batchSize)) {
+                        Modification modification = modifications.next();
+                        modifications.remove();
+                        batch.add(modification);
+                        flushing.put(modification.key, modification);
+                    }
+                }
+                this.flushing = flushing;
+                purge = !this.stopping && (this.purgeTime != 0) && (this.purgeTime - now <= 0);
+                if (purge) {
+                    this.purgeTime = now + TimeUnit.MILLISECONDS.toNanos(this.purgeInterval);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            if (!batch.isEmpty()) {
+                long start = System.nanoTime();
+                try {
+                    this.write(batch);
+                    this.flushTime.addAndGet(System.nanoTime() - start);
+                    this.flushes.incrementAndGet();
+                } catch (RuntimeException e) {
+                    this.failed(batch, e);
+                }
+            }
+            if (purge) {
+                this.purge();
+            }
+        } finally {
+            this.lock.lock();
+            try {
+                this.flushing = Collections.emptyMap();
+            } finally {
+                this.lock.unlock();
+            }
+            this.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Requeues the modifications of a batch that failed to be written, unless superseded, and defers further flushes for the flush interval.
+     */
+    private void failed(List<Modification> batch, RuntimeException exception) {
+        ROOT_LOGGER.writeBehindFlushFailed(exception, batch.size(), this.cache.getName());
+        this.lock.lock();
+        try {
+            // Modifications recorded since the batch was taken are newer, so the requeued modifications must not replace them
+            Map<Object, Modification> pending = new LinkedHashMap<Object, Modification>(this.pending);
+            this.pending.clear();
+            for (Modification modification : batch) {
+                this.pending.put(modification.key, modification);
+            }
+            this.pending.putAll(pending);
+            this.retryTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.flushInterval);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void purge() {
+        try {
+            CacheWriter writer = this.getWriter();
+            if (writer instanceof AdvancedCacheWriter) {
+                ((AdvancedCacheWriter) writer).purge(CALLER_EXECUTOR, PURGE_LISTENER);
+            }
+        } catch (RuntimeException e) {
+            ROOT_LOGGER.debugf(e, "Failed to purge expired entries of the store of %s cache", this.cache.getName());
+        }
+    }
+
+    /**
+     * Returns the number of modified keys awaiting a flush, including those being flushed.
+     * @return a number of keys
+     */
+    public int getQueueDepth() {
+        this.lock.lock();
+        try {
+            return this.pending.size() + this.flushing.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the ratio of recorded modifications to entries written to the store.
+     * @return a ratio greater than or equal to 1, or 0, if nothing was written yet
+     */
+    public double getCoalescingRatio() {
+        long writes = this.writes.get();
+        return (writes > 0) ? (double) this.modifications.get() / writes : 0;
+    }
+
+    /**
+     * Returns the average time taken to write a batch to the store.
+     * @return a time in nanoseconds
+     */
+    public long getAverageFlushTime() {
+        long flushes = this.flushes.get();
+        return (flushes > 0) ? this.flushTime.get() / flushes : 0;
+    }
+
+    public void resetStatistics() {
+        this.modifications.set(0);
+        this.writes.set(0);
+        this.flushes.set(0);
+        this.flushTime.set(0);
+    }
+
+    /**
+     * The latest state of a modified key.
+     */
+    static class Modification {
+        final Object key;
+        // null, if the key was removed
+        final MarshalledEntry<Object, Object> entry;
+        // The time at which the key was first modified since its last flush
+        final long time;
+
+        Modification(Object key, MarshalledEntry<Object, Object> entry, long time) {
+            this.key = key;
+            this.entry = entry;
+            this.time = time;
+        }
+    }
+
+    private class Flusher implements Runnable {
+        @Override
+        public void run() {
+            try {
+                while (CoalescingWriteBehindInterceptor.this.awaitBatch()) {
+                    CoalescingWriteBehindInterceptor.this.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class WriteBehindThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        WriteBehindThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, this.name + "-write-behind-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import static org.jboss.as.clustering.infinispan.InfinispanLogger.ROOT_LOGGER;
+
+import java.io.ByteArrayInputStream;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infinispan.commons.io.ByteBuffer;
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.metadata.InternalMetadata;
+import org.infinispan.persistence.jdbc.JdbcUtil;
+import org.infinispan.persistence.jdbc.TableName;
+import org.infinispan.persistence.jdbc.configuration.TableManipulationConfiguration;
+import org.infinispan.persistence.jdbc.connectionfactory.ConnectionFactory;
+import org.infinispan.persistence.keymappers.Key2StringMapper;
+import org.infinispan.persistence.keymappers.TwoWayKey2StringMapper;
+import org.infinispan.persistence.spi.AdvancedCacheWriter;
+import org.infinispan.persistence.spi.PersistenceException;
+import org.infinispan.util.KeyValuePair;
+import org.infinispan.util.TimeService;
+
+/**
+ * Writes the rows of a string-keyed table, in the same format as {@link org.infinispan.persistence.jdbc.stringbased.JdbcStringBasedStore}.
+ * Rows are upserted using JDBC batches of a single statement, where the dialect of the database supports one, see {@link JdbcDialect},
+ * otherwise by updating a batch of rows, then inserting those that did not exist; either way, no row is queried beforehand.
+ * Expired rows are purged in chunks of the batch size of the table, in order of expiration, each chunk in its own transaction,
+ * so that purging a large table neither locks it at once, nor holds a long transaction.
+ */
+class JdbcBatchWriter {
+
+    private interface Work<R> {
+        R execute(Connection connection) throws SQLException;
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final Key2StringMapper mapper;
+    private final StreamingMarshaller marshaller;
+    private final TimeService timeService;
+    private final TableName tableName;
+    private final String quote;
+    private final String table;
+    private final String idColumn;
+    private final String dataColumn;
+    private final String timestampColumn;
+    private final int batchSize;
+    private final int fetchSize;
+    private volatile JdbcDialect dialect;
+
+    /**
+     * Creates a batch writer for the specified table.
+     * @param tableName the name of the table
+     * @param quote the identifier quote string of the table name
+     * @param configuration the configuration of the table
+     * @param dialect the dialect of the database, or null, if it is to be determined from the database
+     */
+    JdbcBatchWriter(ConnectionFactory connectionFactory, Key2StringMapper mapper, StreamingMarshaller marshaller, TimeService timeService, TableName tableName, String quote, TableManipulationConfiguration configuration, JdbcDialect dialect) {
+        this.connectionFactory = connectionFactory;
+        this.mapper = mapper;
+        this.marshaller = marshaller;
+        this.timeService = timeService;
+        this.tableName = tableName;
+        this.quote = quote.trim();
+        this.table = tableName.toString();
+        this.idColumn = configuration.idColumnName();
+        this.dataColumn = configuration.dataColumnName();
+        this.timestampColumn = configuration.timestampColumnName();
+        this.batchSize = Math.max(configuration.batchSize(), 1);
+        this.fetchSize = configuration.fetchSize();
+        this.dialect = dialect;
+    }
+
+    /**
+     * Inserts or updates the rows of the specified entries, whose keys must be supported by the key mapper.
+     */
+    void write(List<MarshalledEntry<Object, Object>> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        final List<Row> rows = new ArrayList<Row>(entries.size());
+        for (MarshalledEntry<Object, Object> entry : entries) {
+            rows.add(new Row(this.mapper.getStringMapping(entry.getKey()), this.marshall(entry), getExpiryTime(entry.getMetadata())));
+        }
+        this.execute(new Work<Void>() {
+            @Override
+            public Void execute(Connection connection) throws SQLException {
+                JdbcBatchWriter.this.upsert(connection, rows);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Deletes the rows of the specified keys, which must be supported by the key mapper.
+     */
+    void delete(List<Object> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        final List<String> ids = new ArrayList<String>(keys.size());
+        for (Object key : keys) {
+            ids.add(this.mapper.getStringMapping(key));
+        }
+        final String sql = String.format("DELETE FROM %s WHERE %s = ?", this.table, this.idColumn);
+        this.execute(new Work<Void>() {
+            @Override
+            public Void execute(Connection connection) throws SQLException {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                try {
+                    int count = 0;
+                    for (String id : ids) {
+                        statement.setString(1, id);
+                        statement.addBatch();
+                        if (++count % JdbcBatchWriter.this.batchSize == 0) {
+                            statement.executeBatch();
+                        }
+                    }
+                    if (count % JdbcBatchWriter.this.batchSize != 0) {
+                        statement.executeBatch();
+                    }
+                } finally {
+                    JdbcUtil.safeClose(statement);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Purges the expired rows of the table, one chunk at a time.
+     * @param listener notified of each purged key, if the key mapper can map ids back to keys
+     */
+    void purge(AdvancedCacheWriter.PurgeListener<Object> listener) {
+        long now = this.timeService.wallClockTime();
+        int purged = this.batchSize;
+        while (purged == this.batchSize) {
+            purged = this.purgeChunk(now, listener);
+        }
+    }
+
+    /**
+     * Deletes the next chunk of rows that expired before the specified time.
+     * @return the number of expired rows found, or 0, if none of them could be deleted
+     */
+    private int purgeChunk(final long now, AdvancedCacheWriter.PurgeListener<Object> listener) {
+        final String selectSql = String.format("SELECT %s, %s FROM %s WHERE %2$s > 0 AND %2$s < ? ORDER BY %2$s", this.idColumn, this.timestampColumn, this.table);
+        // Skip rows updated since they were selected
+        final String deleteSql = String.format("DELETE FROM %s WHERE %s = ? AND %s = ?", this.table, this.idColumn, this.timestampColumn);
+        final List<String> purged = new ArrayList<String>(this.batchSize);
+        int found = this.execute(new Work<Integer>() {
+            @Override
+            public Integer execute(Connection connection) throws SQLException {
+                List<String> ids = new ArrayList<String>(JdbcBatchWriter.this.batchSize);
+                List<Long> timestamps = new ArrayList<Long>(JdbcBatchWriter.this.batchSize);
+                PreparedStatement select = connection.prepareStatement(selectSql);
+                try {
+                    select.setMaxRows(JdbcBatchWriter.this.batchSize);
+                    select.setFetchSize(Math.min(JdbcBatchWriter.this.fetchSize, JdbcBatchWriter.this.batchSize));
+                    select.setLong(1, now);
+                    ResultSet results = select.executeQuery();
+                    try {
+                        while (results.next()) {
+                            ids.add(results.getString(1));
+                            timestamps.add(Long.valueOf(results.getLong(2)));
+                        }
+                    } finally {
+                        JdbcUtil.safeClose(results);
+                    }
+                } finally {
+                    JdbcUtil.safeClose(select);
+                }
+                if (ids.isEmpty()) {
+                    return Integer.valueOf(0);
+                }
+
+                PreparedStatement delete = connection.prepareStatement(deleteSql);
+                try {
+                    for (int i = 0; i < ids.size(); ++i) {
+                        delete.setString(1, ids.get(i));
+                        delete.setLong(2, timestamps.get(i).longValue());
+                        delete.addBatch();
+                    }
+                    int[] counts = delete.executeBatch();
+                    for (int i = 0; i < counts.length; ++i) {
+                        if (counts[i] != 0) {
+                            purged.add(ids.get(i));
+                        }
+                    }
+                } finally {
+                    JdbcUtil.safeClose(delete);
+                }
+                return Integer.valueOf(ids.size());
+            }
+        }).intValue();
+
+        if ((listener != null) && (this.mapper instanceof TwoWayKey2StringMapper)) {
+            TwoWayKey2StringMapper mapper = (TwoWayKey2StringMapper) this.mapper;
+            for (String id : purged) {
+                listener.entryPurged(mapper.getKeyMapping(id));
+            }
+        }
+        return purged.isEmpty() ? 0 : found;
+    }
+
+    /**
+     * Inserts the specified rows, or updates them, if they exist.
+     */
+    private void upsert(Connection connection, List<Row> rows) throws SQLException {
+        String sql = this.getDialect(connection).getUpsertSql(this.table, this.idColumn, this.dataColumn, this.timestampColumn);
+        if (sql != null) {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            try {
+                this.executeBatch(statement, rows, 1, 2, 3);
+            } finally {
+                JdbcUtil.safeClose(statement);
+            }
+            return;
+        }
+
+        List<Row> inserts = new ArrayList<Row>();
+        PreparedStatement update = connection.prepareStatement(String.format("UPDATE %s SET %s = ?, %s = ? WHERE %s = ?", this.table, this.dataColumn, this.timestampColumn, this.idColumn));
+        try {
+            int[] counts = this.executeBatch(update, rows, 3, 1, 2);
+            for (int i = 0; i < counts.length; ++i) {
+                Row row = rows.get(i);
+                int count = counts[i];
+                if (count == Statement.SUCCESS_NO_INFO) {
+                    // Driver does not report whether the row exists, so update it individually
+                    row.bind(update, 3, 1, 2);
+                    count = update.executeUpdate();
+                }
+                if (count == 0) {
+                    inserts.add(row);
+                }
+            }
+        } finally {
+            JdbcUtil.safeClose(update);
+        }
+        if (inserts.isEmpty()) {
+            return;
+        }
+
+        PreparedStatement insert = connection.prepareStatement(String.format("INSERT INTO %s (%s, %s, %s) VALUES (?, ?, ?)", this.table, this.idColumn, this.dataColumn, this.timestampColumn));
+        try {
+            this.executeBatch(insert, inserts, 1, 2, 3);
+        } finally {
+            JdbcUtil.safeClose(insert);
+        }
+    }
+
+    /**
+     * Executes the specified statement for each of the specified rows, in JDBC batches of the batch size of the table.
+     * @return the update count of each row
+     */
+    private int[] executeBatch(PreparedStatement statement, List<Row> rows, int idIndex, int dataIndex, int timestampIndex) throws SQLException {
+        int[] counts = new int[rows.size()];
+        int start = 0;
+        for (int i = 0; i < rows.size(); ++i) {
+            rows.get(i).bind(statement, idIndex, dataIndex, timestampIndex);
+            statement.addBatch();
+            if ((i + 1 - start == this.batchSize) || (i + 1 == rows.size())) {
+                int[] batch = statement.executeBatch();
+                System.arraycopy(batch, 0, counts, start, batch.length);
+                start = i + 1;
+            }
+        }
+        return counts;
+    }
+
+    private JdbcDialect getDialect(Connection connection) throws SQLException {
+        JdbcDialect dialect = this.dialect;
+        if (dialect == null) {
+            dialect = JdbcDialect.forDatabase(connection.getMetaData());
+            this.dialect = dialect;
+        }
+        return dialect;
+    }
+
+    /**
+     * Runs the specified work within a single transaction.
+     */
+    private <R> R execute(Work<R> work) {
+        Connection connection = this.connectionFactory.getConnection();
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            boolean success = false;
+            try {
+                R result = work.execute(connection);
+                connection.commit();
+                success = true;
+                return result;
+            } finally {
+                if (!success) {
+                    rollback(connection);
+                }
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException(e);
+        } finally {
+            this.connectionFactory.releaseConnection(connection);
+        }
+    }
+
+    /**
+     * Creates an index on the timestamp column of the table, which drives the purge of expired rows, unless the table already has one.
+     */
+    void createTimestampIndex() {
+        Connection connection = this.connectionFactory.getConnection();
+        try {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String schema = this.tableName.getSchema();
+            String name = this.tableName.getName();
+            ResultSet indexes = metaData.getIndexInfo(null, (schema != null) ? this.getStoredIdentifier(metaData, schema) : null, this.getStoredIdentifier(metaData, name), false, true);
+            try {
+                while (indexes.next()) {
+                    if ((indexes.getShort("ORDINAL_POSITION") == 1) && this.timestampColumn.equalsIgnoreCase(indexes.getString("COLUMN_NAME"))) {
+                        return;
+                    }
+                }
+            } finally {
+                JdbcUtil.safeClose(indexes);
+            }
+            // The index name is quoted like the table name, and is unqualified, since some databases create an index in the schema of its table
+            String index = this.quote + name + "_" + this.timestampColumn + "_idx" + this.quote;
+            Statement statement = connection.createStatement();
+            try {
+                statement.executeUpdate(String.format("CREATE INDEX %s ON %s (%s)", index, this.table, this.timestampColumn));
+            } finally {
+                JdbcUtil.safeClose(statement);
+            }
+        } catch (SQLException e) {
+            ROOT_LOGGER.debugf(e, "Failed to create an index on column %s of table %s", this.timestampColumn, this.table);
+        } finally {
+            this.connectionFactory.releaseConnection(connection);
+        }
+    }
+
+    /**
+     * Returns the specified identifier, as stored in the database meta data.
+     * Quoted identifiers are stored as written, whereas unquoted identifiers may be stored in upper or lower case.
+     */
+    private String getStoredIdentifier(DatabaseMetaData metaData, String identifier) throws SQLException {
+        if (!this.quote.isEmpty()) {
+            return identifier;
+        }
+        if (metaData.storesUpperCaseIdentifiers()) {
+            return identifier.toUpperCase();
+        }
+        return metaData.storesLowerCaseIdentifiers() ? identifier.toLowerCase() : identifier;
+    }
+
+    private ByteBuffer marshall(MarshalledEntry<Object, Object> entry) {
+        try {
+            return JdbcUtil.marshall(this.marshaller, new KeyValuePair<ByteBuffer, ByteBuffer>(entry.getValueBytes(), entry.getMetadataBytes()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException(e);
+        }
+    }
+
+    private static long getExpiryTime(InternalMetadata metadata) {
+        return (metadata != null) ? metadata.expiryTime() : -1;
+    }
+
+    private static void rollback(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            ROOT_LOGGER.debugf(e, "Failed to roll back transaction");
+        }
+    }
+
+    /**
+     * A row of the string-keyed table, in the same format as written by the store itself.
+     */
+    private static class Row {
+        private final String id;
+        private final ByteBuffer data;
+        private final long timestamp;
+
+        Row(String id, ByteBuffer data, long timestamp) {
+            this.id = id;
+            this.data = data;
+            this.timestamp = timestamp;
+        }
+
+        void bind(PreparedStatement statement, int idIndex, int dataIndex, int timestampIndex) throws SQLException {
+            statement.setString(idIndex, this.id);
+            statement.setBinaryStream(dataIndex, new ByteArrayInputStream(this.data.getBuf(), this.data.getOffset(), this.data.getLength()), this.data.getLength());
+            statement.setLong(timestampIndex, this.timestamp);
+        }
+    }
+}
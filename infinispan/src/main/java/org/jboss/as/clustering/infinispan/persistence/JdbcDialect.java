@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+/**
+ * The SQL dialects for which {@link JdbcBatchWriter} inserts or updates a row using a single statement.
+ * Each upsert statement takes the id, data, and timestamp of a row as parameters, in that order.
+ * Databases of an unknown dialect are upserted by updating a batch of rows, then inserting those not updated.
+ */
+enum JdbcDialect {
+    H2 {
+        @Override
+        String getUpsertSql(String table, String id, String data, String timestamp) {
+            return String.format("MERGE INTO %s (%s, %s, %s) KEY (%2$s) VALUES (?, ?, ?)", table, id, data, timestamp);
+        }
+    },
+    MYSQL {
+        @Override
+        String getUpsertSql(String table, String id, String data, String timestamp) {
+            return String.format("INSERT INTO %s (%s, %s, %s) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE %3$s = VALUES(%3$s), %4$s = VALUES(%4$s)", table, id, data, timestamp);
+        }
+    },
+    ORACLE {
+        @Override
+        String getUpsertSql(String table, String id, String data, String timestamp) {
+            return String.format("MERGE INTO %s t USING (SELECT ? %s, ? %s, ? %s FROM dual) s ON (t.%2$s = s.%2$s) WHEN MATCHED THEN UPDATE SET t.%3$s = s.%3$s, t.%4$s = s.%4$s WHEN NOT MATCHED THEN INSERT (%2$s, %3$s, %4$s) VALUES (s.%2$s, s.%3$s, s.%4$s)", table, id, data, timestamp);
+        }
+    },
+    POSTGRES {
+        @Override
+        String getUpsertSql(String table, String id, String data, String timestamp) {
+            return String.format("INSERT INTO %s (%s, %s, %s) VALUES (?, ?, ?) ON CONFLICT (%2$s) DO UPDATE SET %3$s = EXCLUDED.%3$s, %4$s = EXCLUDED.%4$s", table, id, data, timestamp);
+        }
+    },
+    SQL_SERVER {
+        @Override
+        String getUpsertSql(String table, String id, String data, String timestamp) {
+            return String.format("MERGE INTO %s WITH (HOLDLOCK) AS t USING (VALUES (?, ?, ?)) AS s (%s, %s, %s) ON t.%2$s = s.%2$s WHEN MATCHED THEN UPDATE SET t.%3$s = s.%3$s, t.%4$s = s.%4$s WHEN NOT MATCHED THEN INSERT (%2$s, %3$s, %4$s) VALUES (s.%2$s, s.%3$s, s.%4$s);", table, id, data, timestamp);
+        }
+    },
+    GENERIC {
+        @Override
+        String getUpsertSql(String table, String id, String data, String timestamp) {
+            return null;
+        }
+    };
+
+    /**
+     * Returns the statement that inserts a row, or updates it if a row with the same id exists.
+     * @return an SQL statement, or null, if this dialect has no such statement
+     */
+    abstract String getUpsertSql(String table, String id, String data, String timestamp);
+
+    /**
+     * Determines the dialect of the specified database.
+     * @param metaData the meta data of a connection to the database
+     * @return a dialect, never null
+     * @throws SQLException if the meta data could not be read
+     */
+    static JdbcDialect forDatabase(DatabaseMetaData metaData) throws SQLException {
+        String product = metaData.getDatabaseProductName();
+        if (product.startsWith("H2")) {
+            return H2;
+        }
+        if (product.startsWith("MySQL") || product.startsWith("MariaDB")) {
+            return MYSQL;
+        }
+        if (product.startsWith("Oracle")) {
+            return ORACLE;
+        }
+        if (product.startsWith("PostgreSQL")) {
+            // ON CONFLICT requires PostgreSQL 9.5
+            int major = metaData.getDatabaseMajorVersion();
+            return ((major > 9) || ((major == 9) && (metaData.getDatabaseMinorVersion() >= 5))) ? POSTGRES : GENERIC;
+        }
+        if (product.startsWith("Microsoft SQL Server")) {
+            return SQL_SERVER;
+        }
+        return GENERIC;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import static org.jboss.as.clustering.infinispan.InfinispanLogger.ROOT_LOGGER;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.EvictionConfiguration;
+import org.infinispan.context.Flag;
+import org.infinispan.commons.io.ByteBuffer;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.Metadata;
+import org.infinispan.persistence.spi.AdvancedCacheLoader;
+import org.infinispan.persistence.spi.CacheLoader;
+import org.jboss.as.clustering.infinispan.invoker.FlaggedCacheViews;
+
+/**
+ * Preloads the entries of the preload store of a started cache using a bounded number of threads of a shared executor.
+ * Infinispan preloads using the thread that starts the cache, whereas this preloader hands the executor to the store,
+ * which then loads, unmarshals and inserts entries, or batches of entries, concurrently.
+ * Progress is recorded as entries are inserted, so that it can be read while the cache is still starting.
+ */
+public class ParallelPreloader {
+
+    // Unlike Infinispan's own preload, which precedes joining the cluster, inserts must lock,
+    // since entries may already have been written, e.g. by state transfer, which preloaded entries must not replace
+    static final Flag[] FLAGS = { Flag.CACHE_MODE_LOCAL, Flag.SKIP_OWNERSHIP_CHECK, Flag.SKIP_CACHE_STORE, Flag.SKIP_CACHE_LOAD };
+    private final int store;
+    private final int parallelism;
+    private final Executor executor;
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile long total = 0;
+    private volatile long start = 0;
+    private volatile long end = 0;
+    private volatile boolean failed = false;
+
+    /**
+     * Creates a new parallel preloader.
+     * @param store the index of the store to preload within the persistence configuration of the cache
+     * @param parallelism the maximum number of threads of the specified executor used to load entries
+     * @param executor the executor used to load entries
+     */
+    public ParallelPreloader(int store, int parallelism, Executor executor) {
+        this.store = store;
+        this.parallelism = Math.max(parallelism, 1);
+        this.executor = executor;
+    }
+
+    /**
+     * Loads the entries of the preload store of the specified cache into the cache, blocking until done.
+     * As with Infinispan's own preload, no more entries than the eviction limit of the cache are loaded,
+     * and entries already present in the cache are not replaced.
+     * @param cache a started cache
+     * @throws org.infinispan.persistence.spi.PersistenceException if a store fails to load its entries
+     */
+    public <K, V> void preload(Cache<K, V> cache) {
+        this.start = System.nanoTime();
+        try {
+            CacheLoader<Object, Object> loader = StoreLocator.findLoader(cache, this.store);
+            if (!(loader instanceof AdvancedCacheLoader)) {
+                return;
+            }
+            AdvancedCacheLoader<Object, Object> advancedLoader = (AdvancedCacheLoader<Object, Object>) loader;
+
+            EvictionConfiguration eviction = cache.getCacheConfiguration().eviction();
+            long limit = eviction.strategy().isEnabled() ? eviction.maxEntries() : Long.MAX_VALUE;
+            this.total = Math.min(advancedLoader.size(), limit);
+
+            this.load(cache, advancedLoader, new BoundedExecutor(this.executor, this.parallelism), limit);
+        } catch (RuntimeException e) {
+            this.failed = true;
+            throw e;
+        } finally {
+            this.end = System.nanoTime();
+        }
+        ROOT_LOGGER.debugf("Preloaded %d entries of %s cache in %d ms using %d threads", this.entries.get(), cache.getName(), TimeUnit.NANOSECONDS.toMillis(this.end - this.start), this.parallelism);
+    }
+
+    /**
+     * Scans the specified store, inserting its entries into the specified cache, until the specified limit is reached.
+     */
+    <K, V> void load(final Cache<K, V> cache, AdvancedCacheLoader<Object, Object> loader, Executor executor, final long limit) {
+        final AtomicLong admitted = new AtomicLong();
+        AdvancedCacheLoader.CacheLoaderTask<Object, Object> task = new AdvancedCacheLoader.CacheLoaderTask<Object, Object>() {
+            @Override
+            public void processEntry(MarshalledEntry<Object, Object> entry, AdvancedCacheLoader.TaskContext context) {
+                if (ParallelPreloader.this.isCancelled() || (admitted.incrementAndGet() > limit)) {
+                    context.stop();
+                    return;
+                }
+                ParallelPreloader.this.insert(cache, entry);
+            }
+        };
+        if (!this.isCancelled()) {
+            loader.process(null, task, executor, true, true);
+        }
+    }
+
+    /**
+     * Inserts the specified entry, loaded from a store, into the specified cache, unless the cache already contains an entry for its key.
+     */
+    @SuppressWarnings("unchecked")
+    <K, V> void insert(Cache<K, V> cache, MarshalledEntry<Object, Object> entry) {
+        if (FlaggedCacheViews.getCache(cache, FLAGS).putIfAbsent((K) entry.getKey(), (V) entry.getValue(), metadata(entry)) == null) {
+            this.inserted(entry);
+        }
+    }
+
+    /**
+     * Records the insertion of the specified entry.
+     */
+    void inserted(MarshalledEntry<?, ?> entry) {
+        this.entries.incrementAndGet();
+        this.bytes.addAndGet(length(entry.getValueBytes()) + length(entry.getMetadataBytes()));
+    }
+
+    /**
+     * Indicates whether preload was cancelled, in which case no further entries are loaded.
+     */
+    boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * Returns the number of threads used to load entries.
+     */
+    int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Returns the shared executor used to load entries.
+     */
+    Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Returns the number of entries preloaded so far.
+     */
+    public long getEntries() {
+        return this.entries.get();
+    }
+
+    /**
+     * Returns the number of marshalled bytes, i.e. of values and metadata, preloaded so far.
+     */
+    public long getBytes() {
+        return this.bytes.get();
+    }
+
+    /**
+     * Returns the fraction of the entries of the store preloaded so far.
+     * @return a value between 0 and 1, the latter once preload completed successfully
+     */
+    public double getProgress() {
+        if ((this.end != 0) && !this.failed) {
+            return 1;
+        }
+        long total = this.total;
+        return (total > 0) ? Math.min((double) this.entries.get() / total, 1) : 0;
+    }
+
+    /**
+     * Returns the estimated number of milliseconds until preload completes, extrapolated from the rate of preloading so far.
+     * @return an estimated number of milliseconds, 0 if preload has completed, or -1 if no estimate is available yet
+     */
+    public long getRemainingTime() {
+        if (this.end != 0) {
+            return 0;
+        }
+        long start = this.start;
+        long entries = this.entries.get();
+        if ((start == 0) || (entries == 0)) {
+            return -1;
+        }
+        long remaining = Math.max(this.total - entries, 0);
+        // 0 means complete, so an incomplete preload rounds up
+        return Math.max(TimeUnit.NANOSECONDS.toMillis((long) ((double) (System.nanoTime() - start) * remaining / entries)), 1);
+    }
+
+    static Metadata metadata(MarshalledEntry<?, ?> entry) {
+        Metadata metadata = entry.getMetadata();
+        return (metadata != null) ? metadata : new EmbeddedMetadata.Builder().build();
+    }
+
+    private static int length(ByteBuffer buffer) {
+        return (buffer != null) ? buffer.getLength() : 0;
+    }
+
+    /**
+     * Executes tasks via a shared executor, with at most a given number of tasks outstanding at a time,
+     * beyond which, or if the shared executor rejects a task, the submitting thread runs the task itself.
+     */
+    static class BoundedExecutor implements Executor {
+        private final Executor executor;
+        private final Semaphore permits;
+
+        BoundedExecutor(Executor executor, int permits) {
+            this.executor = executor;
+            this.permits = new Semaphore(permits);
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            if (!this.permits.tryAcquire()) {
+                task.run();
+                return;
+            }
+            Runnable boundedTask = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        BoundedExecutor.this.permits.release();
+                    }
+                }
+            };
+            try {
+                this.executor.execute(boundedTask);
+            } catch (RejectedExecutionException e) {
+                boundedTask.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import java.util.List;
+
+import org.infinispan.Cache;
+import org.infinispan.commons.configuration.ConfigurationFor;
+import org.infinispan.configuration.cache.StoreConfiguration;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.infinispan.persistence.manager.PersistenceManagerImpl;
+import org.infinispan.persistence.spi.CacheLoader;
+import org.infinispan.persistence.spi.CacheWriter;
+import org.infinispan.persistence.support.DelegatingCacheLoader;
+import org.infinispan.persistence.support.DelegatingCacheWriter;
+
+/**
+ * Locates the loader or writer that the persistence manager of a cache created for a given store configuration.
+ * The persistence manager only exposes its loaders and writers, in the order of the store configurations that created them,
+ * so a store configuration is identified by its index within the persistence configuration of the cache.
+ */
+public class StoreLocator {
+
+    /**
+     * Returns the loader created for the specified store configuration of the specified cache.
+     * The returned loader may wrap the store, e.g. to see modifications not yet written asynchronously.
+     * @param cache a started cache
+     * @param index the index of a store configuration within the persistence configuration of the cache
+     * @return a loader, or null if the store configuration does not create a loader
+     */
+    public static CacheLoader<Object, Object> findLoader(Cache<?, ?> cache, int index) {
+        PersistenceManagerImpl manager = getPersistenceManager(cache);
+        List<StoreConfiguration> stores = cache.getCacheConfiguration().persistence().stores();
+        if ((manager == null) || (index < 0) || (index >= stores.size()) || !isLoader(stores.get(index))) {
+            return null;
+        }
+        int position = 0;
+        for (int i = 0; i < index; ++i) {
+            if (isLoader(stores.get(i))) {
+                position += 1;
+            }
+        }
+        List<?> loaders = manager.getAllLoaders();
+        return (position < loaders.size()) ? typed((CacheLoader<?, ?>) loaders.get(position)) : null;
+    }
+
+    /**
+     * Returns the writer created for the specified store configuration of the specified cache.
+     * The returned writer is the store itself, i.e. it does not write asynchronously, nor only on the coordinator.
+     * @param cache a started cache
+     * @param index the index of a store configuration within the persistence configuration of the cache
+     * @return a writer, or null if the store configuration does not create a writer
+     */
+    public static CacheWriter<Object, Object> findWriter(Cache<?, ?> cache, int index) {
+        PersistenceManagerImpl manager = getPersistenceManager(cache);
+        List<StoreConfiguration> stores = cache.getCacheConfiguration().persistence().stores();
+        if ((manager == null) || (index < 0) || (index >= stores.size()) || !isWriter(stores.get(index))) {
+            return null;
+        }
+        int position = 0;
+        for (int i = 0; i < index; ++i) {
+            if (isWriter(stores.get(i))) {
+                position += 1;
+            }
+        }
+        List<?> writers = manager.getAllWriters();
+        if (position >= writers.size()) {
+            return null;
+        }
+        CacheWriter<Object, Object> writer = typed((CacheWriter<?, ?>) writers.get(position));
+        while (writer instanceof DelegatingCacheWriter) {
+            writer = typed(((DelegatingCacheWriter) writer).undelegate());
+        }
+        return writer;
+    }
+
+    /**
+     * Returns the writer of the store created for the specified store configuration of the specified cache,
+     * even if the store ignores modifications, e.g. because a write-behind interceptor writes to it instead.
+     * @param cache a started cache
+     * @param index the index of a store configuration within the persistence configuration of the cache
+     * @return a writer, or null if the store is not a writer
+     */
+    public static CacheWriter<Object, Object> findStoreWriter(Cache<?, ?> cache, int index) {
+        CacheWriter<Object, Object> writer = findWriter(cache, index);
+        if (writer != null) {
+            return writer;
+        }
+        // A store that ignores modifications is only known to the persistence manager as a loader
+        CacheLoader<Object, Object> loader = findLoader(cache, index);
+        while (loader instanceof DelegatingCacheLoader) {
+            loader = typed(((DelegatingCacheLoader) loader).undelegate());
+        }
+        return (loader instanceof CacheWriter) ? (CacheWriter<Object, Object>) loader : null;
+    }
+
+    // The persistence manager only exposes raw loaders and writers, whose keys and values are arbitrary objects
+    @SuppressWarnings("unchecked")
+    private static CacheLoader<Object, Object> typed(CacheLoader<?, ?> loader) {
+        return (CacheLoader<Object, Object>) loader;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CacheWriter<Object, Object> typed(CacheWriter<?, ?> writer) {
+        return (CacheWriter<Object, Object>) writer;
+    }
+
+    private static PersistenceManagerImpl getPersistenceManager(Cache<?, ?> cache) {
+        PersistenceManager manager = cache.getAdvancedCache().getComponentRegistry().getComponent(PersistenceManager.class);
+        return (manager instanceof PersistenceManagerImpl) ? (PersistenceManagerImpl) manager : null;
+    }
+
+    // Mirrors the rules by which the persistence manager creates its loaders and writers
+    private static boolean isLoader(StoreConfiguration store) {
+        return CacheLoader.class.isAssignableFrom(getStoreClass(store));
+    }
+
+    private static boolean isWriter(StoreConfiguration store) {
+        return CacheWriter.class.isAssignableFrom(getStoreClass(store)) && !store.ignoreModifications();
+    }
+
+    private static Class<?> getStoreClass(StoreConfiguration store) {
+        ConfigurationFor annotation = store.getClass().getAnnotation(ConfigurationFor.class);
+        return (annotation != null) ? annotation.value() : Object.class;
+    }
+}
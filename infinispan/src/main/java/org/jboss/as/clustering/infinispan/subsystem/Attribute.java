@@ -38,6 +38,9 @@ public enum Attribute {
     // must be first
     UNKNOWN((String) null),
     ACQUIRE_TIMEOUT(ModelKeys.ACQUIRE_TIMEOUT),
+    AFFINITY_BUFFER_SIZE(ModelKeys.AFFINITY_BUFFER_SIZE),
+    AFFINITY_EXECUTOR(ModelKeys.AFFINITY_EXECUTOR),
+    AFFINITY_REFILL_THRESHOLD(ModelKeys.AFFINITY_REFILL_THRESHOLD),
     ALIASES(ModelKeys.ALIASES),
     APPEND_CACHE_NAME_TO_PATH(ModelKeys.APPEND_CACHE_NAME_TO_PATH),
     ASYNC_MARSHALLING(ModelKeys.ASYNC_MARSHALLING),
@@ -54,6 +57,8 @@ public enum Attribute {
     CLASS(ModelKeys.CLASS),
     CLEAR_THRESHOLD(ModelKeys.CLEAR_THRESHOLD),
     CLUSTER(ModelKeys.CLUSTER),
+    COALESCE(ModelKeys.COALESCE),
+    COMPRESSION_THRESHOLD(ModelKeys.COMPRESSION_THRESHOLD),
     CONCURRENCY_LEVEL(ModelKeys.CONCURRENCY_LEVEL),
     CONNECTION_TIMEOUT(ModelKeys.CONNECTION_TIMEOUT),
     DATASOURCE(ModelKeys.DATASOURCE),
@@ -65,6 +70,8 @@ public enum Attribute {
     EXECUTOR(ModelKeys.EXECUTOR),
     FETCH_SIZE(ModelKeys.FETCH_SIZE),
     FETCH_STATE(ModelKeys.FETCH_STATE),
+    FLUSH_BATCH_SIZE(ModelKeys.FLUSH_BATCH_SIZE),
+    FLUSH_INTERVAL(ModelKeys.FLUSH_INTERVAL),
     FLUSH_LOCK_TIMEOUT(ModelKeys.FLUSH_LOCK_TIMEOUT),
     @Deprecated FLUSH_TIMEOUT("flush-timeout"),
     HOTROD_WRAPPING(ModelKeys.HOTROD_WRAPPING),
@@ -82,6 +89,7 @@ public enum Attribute {
     MARSHALLER(ModelKeys.MARSHALLER),
     MAX_CONNECTIONS_PER_HOST(ModelKeys.MAX_CONNECTIONS_PER_HOST),
     MAX_ENTRIES(ModelKeys.MAX_ENTRIES),
+    MAX_MEMORY(ModelKeys.MAX_MEMORY),
     MAX_IDLE(ModelKeys.MAX_IDLE),
     MAX_TOTAL_CONNECTIONS(ModelKeys.MAX_TOTAL_CONNECTIONS),
     MODE(ModelKeys.MODE),
@@ -95,6 +103,9 @@ public enum Attribute {
     PATH(ModelKeys.PATH),
     PREFIX(ModelKeys.PREFIX),
     PRELOAD(ModelKeys.PRELOAD),
+    PRELOAD_EXECUTOR(ModelKeys.PRELOAD_EXECUTOR),
+    PRELOAD_MODE(ModelKeys.PRELOAD_MODE),
+    PRELOAD_PARALLELISM(ModelKeys.PRELOAD_PARALLELISM),
     PURGE(ModelKeys.PURGE),
     QUEUE_FLUSH_INTERVAL(ModelKeys.QUEUE_FLUSH_INTERVAL),
     QUEUE_SIZE(ModelKeys.QUEUE_SIZE),
@@ -112,6 +123,8 @@ public enum Attribute {
     SOCKET_TIMEOUT(ModelKeys.SOCKET_TIMEOUT),
     STACK(ModelKeys.STACK),
     START(ModelKeys.START),
+    START_EXECUTOR(ModelKeys.START_EXECUTOR),
+    STORAGE(ModelKeys.STORAGE),
     STRICT_PEER_TO_PEER(ModelKeys.STRICT_PEER_TO_PEER),
     STOP_TIMEOUT(ModelKeys.STOP_TIMEOUT),
     STRATEGY(ModelKeys.STRATEGY),
@@ -25,6 +25,7 @@ import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ADD
 
 import org.jboss.as.controller.*;
 import org.jboss.as.controller.descriptions.ResourceDescriptionResolver;
+import org.jboss.as.controller.operations.validation.EnumValidator;
 import org.jboss.as.controller.registry.AttributeAccess;
 import org.jboss.as.controller.registry.ManagementResourceRegistration;
 import org.jboss.as.controller.registry.OperationEntry;
@@ -53,6 +54,21 @@ public class BaseStoreResource extends BaseLoaderResource {
                     .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
                     .setDefaultValue(new ModelNode().set(true))
                     .build();
+    static final SimpleAttributeDefinition PRELOAD_MODE =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.PRELOAD_MODE, ModelType.STRING, true)
+                    .setXmlName(Attribute.PRELOAD_MODE.getLocalName())
+                    .setAllowExpression(true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new EnumValidator<PreloadMode>(PreloadMode.class, true, false))
+                    .setDefaultValue(new ModelNode().set(PreloadMode.BLOCKING.name()))
+                    .build();
+    static final SimpleAttributeDefinition PRELOAD_PARALLELISM =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.PRELOAD_PARALLELISM, ModelType.INT, true)
+                    .setXmlName(Attribute.PRELOAD_PARALLELISM.getLocalName())
+                    .setAllowExpression(true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setDefaultValue(new ModelNode().set(1))
+                    .build();
     static final SimpleAttributeDefinition PURGE =
             new SimpleAttributeDefinitionBuilder(ModelKeys.PURGE, ModelType.BOOLEAN, true)
                     .setXmlName(Attribute.PURGE.getLocalName())
@@ -75,9 +91,9 @@ public class BaseStoreResource extends BaseLoaderResource {
                     .setDefaultValue(new ModelNode().set(false))
                     .build();
 
-    static final AttributeDefinition[] COMMON_STORE_ATTRIBUTES = {PASSIVATION, FETCH_STATE, PURGE, READ_ONLY, SINGLETON};
+    static final AttributeDefinition[] COMMON_STORE_ATTRIBUTES = {PASSIVATION, FETCH_STATE, PURGE, READ_ONLY, SINGLETON, PRELOAD_MODE, PRELOAD_PARALLELISM};
     /* Note this has loader attributes as well */
-    static final AttributeDefinition[] COMMON_STORE_PARAMETERS = {SHARED, PRELOAD, PASSIVATION, FETCH_STATE, PURGE, READ_ONLY, SINGLETON, PROPERTIES};
+    static final AttributeDefinition[] COMMON_STORE_PARAMETERS = {SHARED, PRELOAD, PASSIVATION, FETCH_STATE, PURGE, READ_ONLY, SINGLETON, PRELOAD_MODE, PRELOAD_PARALLELISM, PROPERTIES};
 
     // operations
     private static final OperationDefinition CACHE_STORE_ADD_DEFINITION = new SimpleOperationDefinitionBuilder(ADD, InfinispanExtension.getResourceDescriptionResolver(ModelKeys.STORE))
@@ -38,7 +38,8 @@ import org.infinispan.configuration.cache.SitesConfigurationBuilder;
 import org.infinispan.configuration.cache.StoreConfigurationBuilder;
 import org.infinispan.configuration.parsing.ConfigurationBuilderHolder;
 import org.infinispan.configuration.parsing.ParserRegistry;
-import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.interceptors.EntryWrappingInterceptor;
+import org.infinispan.interceptors.InvocationContextInterceptor;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.persistence.jdbc.configuration.AbstractJdbcStoreConfigurationBuilder;
 import org.infinispan.persistence.jdbc.configuration.JdbcBinaryStoreConfigurationBuilder;
@@ -56,6 +57,15 @@ import org.infinispan.transaction.LockingMode;
 import org.infinispan.transaction.tm.BatchModeTransactionManager;
 import org.infinispan.util.concurrent.IsolationLevel;
 import org.jboss.as.clustering.infinispan.InfinispanMessages;
+import org.jboss.as.clustering.infinispan.compression.CompressedValueEquivalence;
+import org.jboss.as.clustering.infinispan.compression.CompressionInterceptor;
+import org.jboss.as.clustering.infinispan.latency.LatencyInterceptor;
+import org.jboss.as.clustering.infinispan.container.BinaryDataContainer;
+import org.jboss.as.clustering.infinispan.container.TinyLfuDataContainer;
+import org.jboss.as.clustering.infinispan.persistence.BatchingJdbcBinaryStoreConfigurationBuilder;
+import org.jboss.as.clustering.infinispan.persistence.BatchingJdbcMixedStoreConfigurationBuilder;
+import org.jboss.as.clustering.infinispan.persistence.BatchingJdbcStringBasedStoreConfigurationBuilder;
+import org.jboss.as.clustering.infinispan.persistence.CoalescingWriteBehindInterceptor;
 import org.jboss.as.controller.AbstractAddStepHandler;
 import org.jboss.as.controller.AttributeDefinition;
 import org.jboss.as.controller.OperationContext;
@@ -72,6 +82,7 @@ import org.jboss.as.naming.service.BinderService;
 import org.jboss.as.network.OutboundSocketBinding;
 import org.jboss.as.server.ServerEnvironment;
 import org.jboss.as.server.Services;
+import org.jboss.as.threads.ThreadsServices;
 import org.jboss.as.txn.service.TxnServices;
 import org.jboss.dmr.ModelNode;
 import org.jboss.dmr.Property;
@@ -102,6 +113,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executor;
 
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP_ADDR;
 
@@ -218,6 +230,8 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
         List<Dependency<?>> dependencies = new LinkedList<Dependency<?>>();
         // Infinispan Configuration to hold the operation data
         ConfigurationBuilder builder = new ConfigurationBuilder().read(getDefaultConfiguration(this.mode));
+        // the stores of the cache follow those of the defaults, if any
+        final int storeOffset = builder.persistence().stores().size();
 
         // process cache configuration ModelNode describing overrides to defaults
         processModelNode(context, containerName, cacheModel, builder, dependencies);
@@ -225,6 +239,16 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
         // get container Model to pick up the value of the default cache of the container
         // AS7-3488 make default-cache no required attribute
         String defaultCache = CacheContainerResource.DEFAULT_CACHE.resolveModelAttribute(context, containerModel).asString();
+        final String startExecutor = ((resolvedValue = CacheContainerResource.START_EXECUTOR.resolveModelAttribute(context, containerModel)).isDefined()) ? resolvedValue.asString() : null;
+        final ModelNode preloadStore = this.getPreloadStore(context, cacheModel);
+        final int preloadParallelism = (preloadStore != null) ? Math.max(BaseStoreResource.PRELOAD_PARALLELISM.resolveModelAttribute(context, preloadStore).asInt(), 1) : 1;
+        final PreloadMode preloadMode = (preloadStore != null) ? PreloadMode.valueOf(BaseStoreResource.PRELOAD_MODE.resolveModelAttribute(context, preloadStore).asString()) : PreloadMode.BLOCKING;
+        final int preloadStoreIndex = (preloadStore != null) ? storeOffset + this.getPreloadStoreIndex(context, cacheModel) : -1;
+        final String preloadExecutor = ((resolvedValue = CacheContainerResource.PRELOAD_EXECUTOR.resolveModelAttribute(context, containerModel)).isDefined()) ? resolvedValue.asString() : null;
+        // stores preloaded by the cache service share the preload executor of the container
+        if (((preloadMode == PreloadMode.BACKGROUND) || (preloadParallelism > 1)) && (preloadExecutor == null)) {
+            throw InfinispanMessages.MESSAGES.preloadExecutorRequired(cacheName);
+        }
 
         ServiceTarget target = context.getServiceTarget();
         Configuration config = builder.build();
@@ -236,8 +260,16 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
                         builder, config, dependencies, verificationHandler));
         log.debugf("Cache configuration service for %s installed for container %s", cacheName, containerName);
 
+        // caches started eagerly during boot count towards the start duration of their container
+        if (context.isBooting() && (initialMode == ServiceController.Mode.ACTIVE)) {
+            ServiceController<?> containerController = context.getServiceRegistry(false).getService(EmbeddedCacheManagerService.getServiceName(containerName));
+            if (containerController != null) {
+                ((EmbeddedCacheManagerService) containerController.getService()).addBootCache(cacheName);
+            }
+        }
+
         // now install the corresponding cache service (starts a configured cache)
-        controllers.add(this.installCacheService(target, containerName, cacheName, defaultCache, initialMode, config, verificationHandler));
+        controllers.add(this.installCacheService(target, containerName, cacheName, defaultCache, initialMode, config, startExecutor, preloadExecutor, preloadStoreIndex, preloadParallelism, preloadMode, verificationHandler));
 
         // install a name service entry for the cache
         controllers.add(this.installJndiService(target, containerName, cacheName, InfinispanJndiName.createCacheJndiName(jndiName, containerName, cacheName), verificationHandler));
@@ -311,11 +343,11 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
     }
 
     ServiceController<?> installCacheService(ServiceTarget target, String containerName, String cacheName, String defaultCache, ServiceController.Mode initialMode,
-            Configuration config, ServiceVerificationHandler verificationHandler) {
+            Configuration config, String startExecutor, String preloadExecutor, int preloadStoreIndex, int preloadParallelism, PreloadMode preloadMode, ServiceVerificationHandler verificationHandler) {
 
         final InjectedValue<EmbeddedCacheManager> container = new InjectedValue<EmbeddedCacheManager>();
         final CacheDependencies cacheDependencies = new CacheDependencies(container);
-        final Service<Cache<Object, Object>> service = new CacheService<Object, Object>(cacheName, cacheDependencies);
+        final Service<Cache<Object, Object>> service = new CacheService<Object, Object>(cacheName, cacheDependencies, preloadStoreIndex, preloadParallelism, preloadMode);
         final ServiceBuilder<?> builder = target.addService(CacheService.getServiceName(containerName, cacheName), service)
                 .addDependency(CacheConfigurationService.getServiceName(containerName, cacheName))
                 .addDependency(EmbeddedCacheManagerService.getServiceName(containerName), EmbeddedCacheManager.class, container)
@@ -324,6 +356,15 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
         if (config.transaction().recovery().enabled()) {
             builder.addDependency(TxnServices.JBOSS_TXN_ARJUNA_RECOVERY_MANAGER, XAResourceRecoveryRegistry.class, cacheDependencies.getRecoveryRegistryInjector());
         }
+        if (startExecutor != null) {
+            builder.addDependency(ThreadsServices.executorName(startExecutor), Executor.class, cacheDependencies.getStartExecutorInjector());
+        }
+        if (preloadExecutor != null) {
+            builder.addDependency(ThreadsServices.executorName(preloadExecutor), Executor.class, cacheDependencies.getPreloadExecutorInjector());
+        }
+        if (preloadMode == PreloadMode.BACKGROUND) {
+            builder.addDependency(PathManagerService.SERVICE_NAME, PathManager.class, cacheDependencies.getPathManagerInjector());
+        }
 
         // add an alias for the default cache
         if (cacheName.equals(defaultCache)) {
@@ -376,6 +417,8 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
         CacheResource.JNDI_NAME.validateAndSet(fromModel, toModel);
         CacheResource.CACHE_MODULE.validateAndSet(fromModel, toModel);
         CacheResource.INDEXING_PROPERTIES.validateAndSet(fromModel, toModel);
+        CacheResource.COMPRESSION_THRESHOLD.validateAndSet(fromModel, toModel);
+        CacheResource.STORAGE.validateAndSet(fromModel, toModel);
     }
 
     /**
@@ -408,6 +451,22 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
                 .withProperties(indexingProperties)
         ;
 
+        final ModelNode compressionThreshold = CacheResource.COMPRESSION_THRESHOLD.resolveModelAttribute(context, cache);
+        if (compressionThreshold.isDefined()) {
+            CompressionInterceptor interceptor = new CompressionInterceptor(compressionThreshold.asInt());
+            builder.customInterceptors().addInterceptor()
+                    .interceptor(interceptor)
+                    .after(InvocationContextInterceptor.class)
+            ;
+            // Conditional operations must compare values in their decompressed form
+            builder.dataContainer().valueEquivalence(new CompressedValueEquivalence(interceptor));
+        }
+        // Added last, so that it precedes the other custom interceptors, and times them too
+        builder.customInterceptors().addInterceptor()
+                .interceptor(new LatencyInterceptor())
+                .after(InvocationContextInterceptor.class)
+        ;
+
         // locking is a child resource
         if (cache.hasDefined(ModelKeys.LOCKING) && cache.get(ModelKeys.LOCKING, ModelKeys.LOCKING_NAME).isDefined()) {
             ModelNode locking = cache.get(ModelKeys.LOCKING, ModelKeys.LOCKING_NAME);
@@ -454,17 +513,37 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
         }
 
         // eviction is a child resource
+        EvictionStrategy strategy = EvictionStrategy.NONE;
+        long maxMemory = 0;
         if (cache.hasDefined(ModelKeys.EVICTION) && cache.get(ModelKeys.EVICTION, ModelKeys.EVICTION_NAME).isDefined()) {
             ModelNode eviction = cache.get(ModelKeys.EVICTION, ModelKeys.EVICTION_NAME);
 
-            final EvictionStrategy strategy = EvictionStrategy.valueOf(EvictionResource.EVICTION_STRATEGY.resolveModelAttribute(context, eviction).asString());
-            builder.eviction().strategy(strategy);
+            strategy = EvictionStrategy.valueOf(EvictionResource.EVICTION_STRATEGY.resolveModelAttribute(context, eviction).asString());
+            builder.eviction().strategy(strategy.getStrategy());
 
             if (strategy.isEnabled()) {
                 final int maxEntries = EvictionResource.MAX_ENTRIES.resolveModelAttribute(context, eviction).asInt();
+                final ModelNode maxMemoryModel = EvictionResource.MAX_MEMORY.resolveModelAttribute(context, eviction);
+                if (maxMemoryModel.isDefined()) {
+                    maxMemory = maxMemoryModel.asLong();
+                    // Infinispan's entry count based eviction requires a positive max-entries, whereas the data container enforces both limits
+                    if (maxEntries <= 0) {
+                        builder.eviction().strategy(org.infinispan.eviction.EvictionStrategy.NONE);
+                    }
+                }
                 builder.eviction().maxEntries(maxEntries);
             }
         }
+        // Entries are stored in binary form if off-heap, or if their memory footprint is limited
+        final StorageMode storage = StorageMode.valueOf(CacheResource.STORAGE.resolveModelAttribute(context, cache).asString());
+        if ((storage == StorageMode.OFF_HEAP) || (maxMemory > 0)) {
+            if (strategy == EvictionStrategy.W_TINY_LFU) {
+                throw InfinispanMessages.MESSAGES.evictionStrategyNotSupported(strategy.name());
+            }
+            builder.dataContainer().dataContainer(new BinaryDataContainer(storage == StorageMode.OFF_HEAP, maxMemory));
+        } else if (strategy == EvictionStrategy.W_TINY_LFU) {
+            builder.dataContainer().dataContainer(new TinyLfuDataContainer());
+        }
         // expiration is a child resource
         if (cache.hasDefined(ModelKeys.EXPIRATION) && cache.get(ModelKeys.EXPIRATION, ModelKeys.EXPIRATION_NAME).isDefined()) {
 
@@ -576,8 +655,97 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
                 PersistenceConfigurationBuilder loadersBuilder = builder.persistence().passivation(passivation);
                 StoreConfigurationBuilder<?, ?> scb = buildCacheStore(context, loadersBuilder, containerName, store, storeKey, dependencies);
                 parseCommonAttributes(context, loadersBuilder, store, scb);
+                // a store preloaded in parallel or in the background is preloaded by the cache service, once the cache has started
+                if (BaseStoreResource.PRELOAD.resolveModelAttribute(context, store).asBoolean()) {
+                    PreloadMode preloadMode = PreloadMode.valueOf(BaseStoreResource.PRELOAD_MODE.resolveModelAttribute(context, store).asString());
+                    if (preloadMode == PreloadMode.BACKGROUND) {
+                        // preloaded entries must never replace newer entries, which requires the store to hold every entry
+                        if (passivation) {
+                            throw InfinispanMessages.MESSAGES.backgroundPreloadWithPassivation();
+                        }
+                        scb.preload(false);
+                    } else if (BaseStoreResource.PRELOAD_PARALLELISM.resolveModelAttribute(context, store).asInt() > 1) {
+                        scb.preload(false);
+                    }
+                }
+                if (store.hasDefined(ModelKeys.WRITE_BEHIND) && store.get(ModelKeys.WRITE_BEHIND, ModelKeys.WRITE_BEHIND_NAME).isDefined()) {
+                    ModelNode writeBehind = store.get(ModelKeys.WRITE_BEHIND, ModelKeys.WRITE_BEHIND_NAME);
+                    if (StoreWriteBehindResource.COALESCE.resolveModelAttribute(context, writeBehind).asBoolean()) {
+                        // with passivation, the store is only written on eviction; transactional modifications are only written on commit
+                        if (passivation) {
+                            throw InfinispanMessages.MESSAGES.coalescingWriteBehindWithPassivation();
+                        }
+                        if (this.isTransactional(context, cache)) {
+                            throw InfinispanMessages.MESSAGES.coalescingWriteBehindWithTransactions();
+                        }
+                        builder.customInterceptors().addInterceptor()
+                                .interceptor(new CoalescingWriteBehindInterceptor(
+                                        // the index of this store, within the persistence configuration of the cache
+                                        builder.persistence().stores().size() - 1,
+                                        StoreWriteBehindResource.FLUSH_BATCH_SIZE.resolveModelAttribute(context, writeBehind).asInt(),
+                                        StoreWriteBehindResource.FLUSH_INTERVAL.resolveModelAttribute(context, writeBehind).asLong(),
+                                        StoreWriteBehindResource.FLUSH_LOCK_TIMEOUT.resolveModelAttribute(context, writeBehind).asLong(),
+                                        StoreWriteBehindResource.MODIFICATION_QUEUE_SIZE.resolveModelAttribute(context, writeBehind).asInt(),
+                                        StoreWriteBehindResource.THREAD_POOL_SIZE.resolveModelAttribute(context, writeBehind).asInt(),
+                                        StoreWriteBehindResource.SHUTDOWN_TIMEOUT.resolveModelAttribute(context, writeBehind).asLong()))
+                                .after(EntryWrappingInterceptor.class)
+                        ;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isTransactional(OperationContext context, ModelNode cache) throws OperationFailedException {
+        if (CacheResource.BATCHING.resolveModelAttribute(context, cache).asBoolean()) {
+            return true;
+        }
+        if (cache.hasDefined(ModelKeys.TRANSACTION) && cache.get(ModelKeys.TRANSACTION, ModelKeys.TRANSACTION_NAME).isDefined()) {
+            ModelNode transaction = cache.get(ModelKeys.TRANSACTION, ModelKeys.TRANSACTION_NAME);
+            return TransactionMode.valueOf(TransactionResource.MODE.resolveModelAttribute(context, transaction).asString()) != TransactionMode.NONE;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the store of the specified cache whose entries are preloaded, if any.
+     */
+    private ModelNode getPreloadStore(OperationContext context, ModelNode cache) throws OperationFailedException {
+        for (String storeKey : storeKeys) {
+            if (cache.hasDefined(storeKey)) {
+                for (Property storeEntry : cache.get(storeKey).asPropertyList()) {
+                    ModelNode store = storeEntry.getValue();
+                    if (BaseStoreResource.PRELOAD.resolveModelAttribute(context, store).asBoolean()) {
+                        return store;
+                    }
+                }
             }
         }
+        return null;
+    }
+
+    /**
+     * Returns the index of the store of the specified cache whose entries are preloaded within the persistence configuration of the cache,
+     * which lists loaders first, followed by stores, in the order in which they are built.
+     */
+    private int getPreloadStoreIndex(OperationContext context, ModelNode cache) throws OperationFailedException {
+        int index = 0;
+        for (String loaderKey : loaderKeys) {
+            if (cache.hasDefined(loaderKey)) {
+                index += cache.get(loaderKey).asPropertyList().size();
+            }
+        }
+        for (String storeKey : storeKeys) {
+            if (cache.hasDefined(storeKey)) {
+                for (Property storeEntry : cache.get(storeKey).asPropertyList()) {
+                    if (BaseStoreResource.PRELOAD.resolveModelAttribute(context, storeEntry.getValue()).asBoolean()) {
+                        return index;
+                    }
+                    index += 1;
+                }
+            }
+        }
+        return -1;
     }
 
     private StoreConfigurationBuilder<?, ?> buildCacheLoader(PersistenceConfigurationBuilder persistenceBuilder, ModelNode loader, String loaderKey) throws OperationFailedException {
@@ -823,7 +991,7 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
       }
       ModelNode preload = store.get(ModelKeys.PRELOAD);
       if (preload != null && preload.isDefined()) {
-         storeConfigurationBuilder.shared(preload.asBoolean());
+         storeConfigurationBuilder.preload(preload.asBoolean());
       }
       ModelNode fetchState = store.get(ModelKeys.FETCH_STATE);
       if (fetchState != null && fetchState.isDefined()) {
@@ -849,12 +1017,17 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
       final boolean async = store.hasDefined(ModelKeys.WRITE_BEHIND) && store.get(ModelKeys.WRITE_BEHIND, ModelKeys.WRITE_BEHIND_NAME).isDefined();
       if (async) {
          ModelNode writeBehind = store.get(ModelKeys.WRITE_BEHIND, ModelKeys.WRITE_BEHIND_NAME);
-         storeConfigurationBuilder.async().enable()
-               .flushLockTimeout(StoreWriteBehindResource.FLUSH_LOCK_TIMEOUT.resolveModelAttribute(context, writeBehind).asLong())
-               .modificationQueueSize(StoreWriteBehindResource.MODIFICATION_QUEUE_SIZE.resolveModelAttribute(context, writeBehind).asInt())
-               .shutdownTimeout(StoreWriteBehindResource.SHUTDOWN_TIMEOUT.resolveModelAttribute(context, writeBehind).asLong())
-               .threadPoolSize(StoreWriteBehindResource.THREAD_POOL_SIZE.resolveModelAttribute(context, writeBehind).asInt())
-         ;
+         if (StoreWriteBehindResource.COALESCE.resolveModelAttribute(context, writeBehind).asBoolean()) {
+            // modifications are written to the store by the coalescing write-behind interceptor instead
+            storeConfigurationBuilder.ignoreModifications(true);
+         } else {
+            storeConfigurationBuilder.async().enable()
+                  .flushLockTimeout(StoreWriteBehindResource.FLUSH_LOCK_TIMEOUT.resolveModelAttribute(context, writeBehind).asLong())
+                  .modificationQueueSize(StoreWriteBehindResource.MODIFICATION_QUEUE_SIZE.resolveModelAttribute(context, writeBehind).asInt())
+                  .shutdownTimeout(StoreWriteBehindResource.SHUTDOWN_TIMEOUT.resolveModelAttribute(context, writeBehind).asLong())
+                  .threadPoolSize(StoreWriteBehindResource.THREAD_POOL_SIZE.resolveModelAttribute(context, writeBehind).asInt())
+            ;
+         }
       }
 
       final Properties properties = new TypedProperties();
@@ -884,16 +1057,16 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
         boolean useStringKeyedTable = store.hasDefined(ModelKeys.STRING_KEYED_TABLE);
         boolean useBinaryKeyedTable = store.hasDefined(ModelKeys.BINARY_KEYED_TABLE);
         if (useStringKeyedTable && !useBinaryKeyedTable) {
-            JdbcStringBasedStoreConfigurationBuilder builder = loadersBuilder.addStore(JdbcStringBasedStoreConfigurationBuilder.class);
+            JdbcStringBasedStoreConfigurationBuilder builder = loadersBuilder.addStore(BatchingJdbcStringBasedStoreConfigurationBuilder.class);
             this.buildStringKeyedTable(builder.table(), context, store.get(ModelKeys.STRING_KEYED_TABLE));
             return builder;
         } else if (useBinaryKeyedTable && !useStringKeyedTable) {
-            JdbcBinaryStoreConfigurationBuilder builder = loadersBuilder.addStore(JdbcBinaryStoreConfigurationBuilder.class);
+            JdbcBinaryStoreConfigurationBuilder builder = loadersBuilder.addStore(BatchingJdbcBinaryStoreConfigurationBuilder.class);
             this.buildBinaryKeyedTable(builder.table(), context, store.get(ModelKeys.BINARY_KEYED_TABLE));
             return builder;
         }
         // Else, use mixed mode
-        JdbcMixedStoreConfigurationBuilder builder = loadersBuilder.addStore(JdbcMixedStoreConfigurationBuilder.class);
+        JdbcMixedStoreConfigurationBuilder builder = loadersBuilder.addStore(BatchingJdbcMixedStoreConfigurationBuilder.class);
         this.buildStringKeyedTable(builder.stringTable(), context, store.get(ModelKeys.STRING_KEYED_TABLE));
         this.buildBinaryKeyedTable(builder.binaryTable(), context, store.get(ModelKeys.BINARY_KEYED_TABLE));
         return builder;
@@ -970,6 +1143,9 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
 
         private final Value<EmbeddedCacheManager> container;
         private final InjectedValue<XAResourceRecoveryRegistry> recoveryRegistry = new InjectedValue<XAResourceRecoveryRegistry>();
+        private final InjectedValue<Executor> startExecutor = new InjectedValue<Executor>();
+        private final InjectedValue<Executor> preloadExecutor = new InjectedValue<Executor>();
+        private final InjectedValue<PathManager> pathManager = new InjectedValue<PathManager>();
 
         CacheDependencies(Value<EmbeddedCacheManager> container) {
             this.container = container;
@@ -979,6 +1155,18 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
             return this.recoveryRegistry;
         }
 
+        Injector<Executor> getStartExecutorInjector() {
+            return this.startExecutor;
+        }
+
+        Injector<Executor> getPreloadExecutorInjector() {
+            return this.preloadExecutor;
+        }
+
+        Injector<PathManager> getPathManagerInjector() {
+            return this.pathManager;
+        }
+
         @Override
         public EmbeddedCacheManager getCacheContainer() {
             return this.container.getValue();
@@ -988,6 +1176,21 @@ public abstract class CacheAdd extends AbstractAddStepHandler {
         public XAResourceRecoveryRegistry getRecoveryRegistry() {
             return this.recoveryRegistry.getOptionalValue();
         }
+
+        @Override
+        public Executor getStartExecutor() {
+            return this.startExecutor.getOptionalValue();
+        }
+
+        @Override
+        public Executor getPreloadExecutor() {
+            return this.preloadExecutor.getOptionalValue();
+        }
+
+        @Override
+        public PathManager getPathManager() {
+            return this.pathManager.getOptionalValue();
+        }
     }
 
     private static class CacheConfigurationDependencies implements CacheConfigurationService.Dependencies {
@@ -10,6 +10,10 @@ import org.infinispan.interceptors.TxInterceptor;
 import org.infinispan.remoting.rpc.RpcManagerImpl;
 import org.infinispan.transaction.xa.recovery.RecoveryAdminOperations;
 import org.infinispan.xsite.XSiteAdminOperations;
+import org.jboss.as.clustering.infinispan.compression.CompressionInterceptor;
+import org.jboss.as.clustering.infinispan.latency.LatencyInterceptor;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvokerStatistics;
+import org.jboss.as.clustering.infinispan.persistence.CoalescingWriteBehindInterceptor;
 import org.jboss.as.controller.OperationContext;
 import org.jboss.as.controller.OperationFailedException;
 import org.jboss.as.controller.OperationStepHandler;
@@ -77,6 +81,38 @@ public abstract class CacheCommands implements OperationStepHandler {
             if (interceptor != null) {
                 interceptor.resetStatistics();
             }
+            CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(cache);
+            if (statistics != null) {
+                statistics.reset();
+            }
+            CompressionInterceptor compression = getFirstInterceptorWhichExtends(cache.getAdvancedCache()
+                    .getInterceptorChain(), CompressionInterceptor.class);
+            if (compression != null) {
+                compression.resetStatistics();
+            }
+            CoalescingWriteBehindInterceptor writeBehind = getFirstInterceptorWhichExtends(cache.getAdvancedCache()
+                    .getInterceptorChain(), CoalescingWriteBehindInterceptor.class);
+            if (writeBehind != null) {
+                writeBehind.resetStatistics();
+            }
+            return null;
+        }
+    }
+
+    public static class ResetLatencyStatisticsCommand extends CacheCommands {
+        public static final ResetLatencyStatisticsCommand INSTANCE = new ResetLatencyStatisticsCommand();
+
+        public ResetLatencyStatisticsCommand() {
+            super(0);
+        }
+
+        @Override
+        protected ModelNode invokeCommand(Cache<?, ?> cache, ModelNode operation) throws Exception {
+            LatencyInterceptor interceptor = getFirstInterceptorWhichExtends(cache.getAdvancedCache()
+                    .getInterceptorChain(), LatencyInterceptor.class);
+            if (interceptor != null) {
+                interceptor.resetStatistics();
+            }
             return null;
         }
     }
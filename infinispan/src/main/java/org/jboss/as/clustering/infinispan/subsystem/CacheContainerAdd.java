@@ -22,12 +22,16 @@
 
 package org.jboss.as.clustering.infinispan.subsystem;
 
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ADD;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP_ADDR;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
@@ -36,6 +40,8 @@ import javax.management.MBeanServer;
 
 import org.infinispan.manager.CacheContainer;
 import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.marshall.core.Ids;
+import org.jboss.as.clustering.infinispan.affinity.KeyAffinityServiceFactory;
 import org.jboss.as.clustering.infinispan.affinity.KeyAffinityServiceFactoryService;
 import org.jboss.as.clustering.jgroups.ChannelFactory;
 import org.jboss.as.clustering.jgroups.subsystem.ChannelFactoryService;
@@ -55,6 +61,7 @@ import org.jboss.as.naming.service.BinderService;
 import org.jboss.as.server.Services;
 import org.jboss.as.threads.ThreadsServices;
 import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.Property;
 import org.jboss.logging.Logger;
 import org.jboss.modules.ModuleIdentifier;
 import org.jboss.modules.ModuleLoader;
@@ -98,6 +105,54 @@ public class CacheContainerAdd extends AbstractAddStepHandler {
         CacheContainerResource.EVICTION_EXECUTOR.validateAndSet(source, target);
         CacheContainerResource.REPLICATION_QUEUE_EXECUTOR.validateAndSet(source, target);
         CacheContainerResource.CACHE_CONTAINER_MODULE.validateAndSet(source, target);
+        CacheContainerResource.AFFINITY_EXECUTOR.validateAndSet(source, target);
+        CacheContainerResource.START_EXECUTOR.validateAndSet(source, target);
+        CacheContainerResource.PRELOAD_EXECUTOR.validateAndSet(source, target);
+        CacheContainerResource.AFFINITY_BUFFER_SIZE.validateAndSet(source, target);
+        CacheContainerResource.AFFINITY_REFILL_THRESHOLD.validateAndSet(source, target);
+        CacheContainerResource.EXTERNALIZERS.validateAndSet(source, target);
+        // Fail early on invalid or conflicting externalizer ids
+        getExternalizerIds(target.get(ModelKeys.EXTERNALIZERS));
+    }
+
+    /**
+     * Validates that a buffer of keys is refilled before it is full.
+     */
+    static void validateAffinity(int bufferSize, int refillThreshold) throws OperationFailedException {
+        if (refillThreshold >= bufferSize) {
+            throw MESSAGES.invalidAffinityRefillThreshold(refillThreshold, bufferSize);
+        }
+    }
+
+    /**
+     * Returns the externalizer ids, keyed by target class name, of the specified externalizers attribute.
+     */
+    static Map<String, Integer> getExternalizerIds(ModelNode externalizers) throws OperationFailedException {
+        if (!externalizers.isDefined()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        Map<Integer, String> classNames = new HashMap<Integer, String>();
+        for (Property property: externalizers.asPropertyList()) {
+            String className = property.getName();
+            String value = property.getValue().asString();
+            Integer id;
+            try {
+                id = Integer.valueOf(value.trim());
+            } catch (NumberFormatException e) {
+                throw MESSAGES.invalidExternalizerId(value, className, Ids.MAX_ID);
+            }
+            // Lower ids are reserved for the externalizers of Infinispan itself
+            if (id.intValue() < Ids.MAX_ID) {
+                throw MESSAGES.invalidExternalizerId(value, className, Ids.MAX_ID);
+            }
+            String existing = classNames.put(id, className);
+            if (existing != null) {
+                throw MESSAGES.duplicateExternalizerId(id.intValue(), existing, className);
+            }
+            ids.put(className, id);
+        }
+        return ids;
     }
 
     @Override
@@ -126,6 +181,11 @@ public class CacheContainerAdd extends AbstractAddStepHandler {
         final String listenerExecutor = (resolvedValue = CacheContainerResource.LISTENER_EXECUTOR.resolveModelAttribute(context, containerModel)).isDefined() ? resolvedValue.asString() : null ;
         final String evictionExecutor = (resolvedValue = CacheContainerResource.EVICTION_EXECUTOR.resolveModelAttribute(context, containerModel)).isDefined() ? resolvedValue.asString() : null ;
         final String replicationQueueExecutor = (resolvedValue = CacheContainerResource.REPLICATION_QUEUE_EXECUTOR.resolveModelAttribute(context, containerModel)).isDefined() ? resolvedValue.asString() : null ;
+        final String affinityExecutor = (resolvedValue = CacheContainerResource.AFFINITY_EXECUTOR.resolveModelAttribute(context, containerModel)).isDefined() ? resolvedValue.asString() : null ;
+        final int affinityBufferSize = CacheContainerResource.AFFINITY_BUFFER_SIZE.resolveModelAttribute(context, containerModel).asInt();
+        final int affinityRefillThreshold = CacheContainerResource.AFFINITY_REFILL_THRESHOLD.resolveModelAttribute(context, containerModel).asInt();
+        validateAffinity(affinityBufferSize, affinityRefillThreshold);
+        final Map<String, Integer> externalizerIds = getExternalizerIds(CacheContainerResource.EXTERNALIZERS.resolveModelAttribute(context, containerModel));
         final ServiceController.Mode initialMode = StartMode.valueOf(CacheContainerResource.START.resolveModelAttribute(context, containerModel).asString()).getMode();
 
         ServiceName[] aliases = null;
@@ -169,7 +229,7 @@ public class CacheContainerAdd extends AbstractAddStepHandler {
         }
 
         // install the cache container configuration service
-        controllers.add(this.installContainerConfigurationService(target, name, defaultCache, moduleId, stack, transportConfig,
+        controllers.add(this.installContainerConfigurationService(target, name, defaultCache, moduleId, externalizerIds, stack, transportConfig,
                         transportExecutor, listenerExecutor, evictionExecutor, replicationQueueExecutor, verificationHandler));
 
         // install a cache container service
@@ -178,7 +238,7 @@ public class CacheContainerAdd extends AbstractAddStepHandler {
         // install a name service entry for the cache container
         controllers.add(this.installJndiService(target, name, InfinispanJndiName.createCacheContainerJndiName(jndiName, name), verificationHandler));
 
-        controllers.add(this.installKeyAffinityServiceFactoryService(target, name, verificationHandler));
+        controllers.add(this.installKeyAffinityServiceFactoryService(target, name, affinityExecutor, affinityBufferSize, affinityRefillThreshold, verificationHandler));
 
         log.debugf("%s cache container installed", name);
         return controllers;
@@ -213,11 +273,13 @@ public class CacheContainerAdd extends AbstractAddStepHandler {
         }
     }
 
-    ServiceController<?> installKeyAffinityServiceFactoryService(ServiceTarget target, String containerName, ServiceVerificationHandler verificationHandler) {
-        return target.addService(KeyAffinityServiceFactoryService.getServiceName(containerName), new KeyAffinityServiceFactoryService(10))
-                .setInitialMode(ServiceController.Mode.ON_DEMAND)
-                .install()
-        ;
+    ServiceController<?> installKeyAffinityServiceFactoryService(ServiceTarget target, String containerName, String executor, int bufferSize, int refillThreshold, ServiceVerificationHandler verificationHandler) {
+        final KeyAffinityServiceFactoryService service = new KeyAffinityServiceFactoryService(bufferSize, refillThreshold);
+        final ServiceBuilder<KeyAffinityServiceFactory> builder = target.addService(KeyAffinityServiceFactoryService.getServiceName(containerName), service);
+        if (executor != null) {
+            builder.addDependency(ThreadsServices.executorName(executor), Executor.class, service.getExecutorInjector());
+        }
+        return builder.setInitialMode(ServiceController.Mode.ON_DEMAND).install();
     }
 
     ServiceController<?> installChannelService(ServiceTarget target, String containerName, String cluster, String stack, ServiceVerificationHandler verificationHandler) {
@@ -235,13 +297,13 @@ public class CacheContainerAdd extends AbstractAddStepHandler {
     }
 
     ServiceController<?> installContainerConfigurationService(ServiceTarget target,
-            String containerName, String defaultCache, ModuleIdentifier moduleId, String stack, Transport transportConfig,
+            String containerName, String defaultCache, ModuleIdentifier moduleId, Map<String, Integer> externalizerIds, String stack, Transport transportConfig,
             String transportExecutor, String listenerExecutor, String evictionExecutor, String replicationQueueExecutor,
             ServiceVerificationHandler verificationHandler) {
 
         final ServiceName configServiceName = EmbeddedCacheManagerConfigurationService.getServiceName(containerName);
         final EmbeddedCacheManagerDependencies dependencies = new EmbeddedCacheManagerDependencies(transportConfig);
-        final Service<EmbeddedCacheManagerConfiguration> service = new EmbeddedCacheManagerConfigurationService(containerName, defaultCache, moduleId, dependencies);
+        final Service<EmbeddedCacheManagerConfiguration> service = new EmbeddedCacheManagerConfigurationService(containerName, defaultCache, moduleId, externalizerIds, dependencies);
         final ServiceBuilder<EmbeddedCacheManagerConfiguration> configBuilder = target.addService(configServiceName, service)
                 .addDependency(Services.JBOSS_SERVICE_MODULE_LOADER, ModuleLoader.class, dependencies.getModuleLoaderInjector())
                 .addDependency(MBeanServerService.SERVICE_NAME, MBeanServer.class, dependencies.getMBeanServerInjector())
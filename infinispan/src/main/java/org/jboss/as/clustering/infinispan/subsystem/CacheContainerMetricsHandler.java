@@ -6,6 +6,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.jboss.as.clustering.infinispan.DefaultEmbeddedCacheManager;
+import org.jboss.as.clustering.infinispan.affinity.KeyAffinityServiceFactoryService;
+import org.jboss.as.clustering.infinispan.affinity.KeyAffinityStatistics;
 import org.jboss.as.controller.AbstractRuntimeOnlyHandler;
 import org.jboss.as.controller.AttributeDefinition;
 import org.jboss.as.controller.OperationContext;
@@ -26,7 +28,12 @@ public class CacheContainerMetricsHandler extends AbstractRuntimeOnlyHandler {
         CLUSTER_NAME(MetricKeys.CLUSTER_NAME, ModelType.STRING, true, true),
         IS_COORDINATOR(MetricKeys.IS_COORDINATOR, ModelType.BOOLEAN, true, true),
         COORDINATOR_ADDRESS(MetricKeys.COORDINATOR_ADDRESS, ModelType.STRING, true, true),
-        LOCAL_ADDRESS(MetricKeys.LOCAL_ADDRESS, ModelType.STRING, true, true);
+        LOCAL_ADDRESS(MetricKeys.LOCAL_ADDRESS, ModelType.STRING, true, true),
+        // KeyAffinityStatistics
+        AFFINITY_KEY_REFILLS(MetricKeys.AFFINITY_KEY_REFILLS, ModelType.LONG, true),
+        AFFINITY_KEY_STARVATIONS(MetricKeys.AFFINITY_KEY_STARVATIONS, ModelType.LONG, true),
+        AFFINITY_KEY_DISCARDS(MetricKeys.AFFINITY_KEY_DISCARDS, ModelType.LONG, true),
+        START_DURATION(MetricKeys.START_DURATION, ModelType.LONG, true);
 
         private static final Map<String, CacheManagerMetrics> MAP = new HashMap<String, CacheManagerMetrics>();
 
@@ -102,12 +109,37 @@ public class CacheContainerMetricsHandler extends AbstractRuntimeOnlyHandler {
                     break;
                 case CLUSTER_NAME:
                     result.set(cacheManager.getClusterName() != null ? cacheManager.getClusterName() : "N/A");
+                    break;
+                case AFFINITY_KEY_REFILLS: {
+                    KeyAffinityStatistics statistics = getKeyAffinityStatistics(context, cacheContainerName);
+                    result.set(statistics != null ? statistics.getRefills() : 0);
+                    break;
+                }
+                case AFFINITY_KEY_STARVATIONS: {
+                    KeyAffinityStatistics statistics = getKeyAffinityStatistics(context, cacheContainerName);
+                    result.set(statistics != null ? statistics.getStarvations() : 0);
+                    break;
+                }
+                case AFFINITY_KEY_DISCARDS: {
+                    KeyAffinityStatistics statistics = getKeyAffinityStatistics(context, cacheContainerName);
+                    result.set(statistics != null ? statistics.getDiscards() : 0);
+                    break;
+                }
+                case START_DURATION:
+                    result.set(((EmbeddedCacheManagerService) controller.getService()).getStartDuration());
+                    break;
             }
             context.getResult().set(result);
         }
         context.completeStep();
     }
 
+    private static KeyAffinityStatistics getKeyAffinityStatistics(OperationContext context, String containerName) {
+        // The key affinity service factory is only started on demand
+        ServiceController<?> controller = context.getServiceRegistry(false).getService(KeyAffinityServiceFactoryService.getServiceName(containerName));
+        return ((controller != null) && (controller.getState() == ServiceController.State.UP)) ? ((KeyAffinityServiceFactoryService) controller.getService()).getStatistics() : null;
+    }
+
     public void registerMetrics(ManagementResourceRegistration container) {
         for (CacheManagerMetrics metric : CacheManagerMetrics.values()) {
             container.registerMetric(metric.definition, this);
@@ -21,21 +21,28 @@
  */
 package org.jboss.as.clustering.infinispan.subsystem;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.jboss.as.controller.AttributeDefinition;
+import org.jboss.as.controller.AttributeMarshaller;
 import org.jboss.as.controller.OperationDefinition;
 import org.jboss.as.controller.OperationStepHandler;
 import org.jboss.as.controller.PathElement;
 import org.jboss.as.controller.SimpleAttributeDefinition;
 import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
 import org.jboss.as.controller.SimpleListAttributeDefinition;
+import org.jboss.as.controller.SimpleMapAttributeDefinition;
 import org.jboss.as.controller.SimpleOperationDefinitionBuilder;
 import org.jboss.as.controller.SimpleResourceDefinition;
 import org.jboss.as.controller.operations.validation.EnumValidator;
+import org.jboss.as.controller.operations.validation.IntRangeValidator;
 import org.jboss.as.controller.registry.AttributeAccess;
 import org.jboss.as.controller.registry.ManagementResourceRegistration;
 import org.jboss.as.controller.services.path.ResolvePathHandler;
 import org.jboss.dmr.ModelNode;
 import org.jboss.dmr.ModelType;
+import org.jboss.dmr.Property;
 
 /**
  * Resource description for the addressable resource /subsystem=infinispan/cache-container=X
@@ -58,6 +65,68 @@ public class CacheContainerResource extends SimpleResourceDefinition {
             setAllowNull(true).
             build();
 
+    static final SimpleAttributeDefinition AFFINITY_BUFFER_SIZE =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.AFFINITY_BUFFER_SIZE, ModelType.INT, true)
+                    .setXmlName(Attribute.AFFINITY_BUFFER_SIZE.getLocalName())
+                    .setAllowExpression(true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setDefaultValue(new ModelNode().set(10))
+                    .build();
+
+    static final SimpleAttributeDefinition AFFINITY_EXECUTOR =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.AFFINITY_EXECUTOR, ModelType.STRING, true)
+                    .setXmlName(Attribute.AFFINITY_EXECUTOR.getLocalName())
+                    .setAllowExpression(false)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .build();
+
+    static final SimpleAttributeDefinition START_EXECUTOR =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.START_EXECUTOR, ModelType.STRING, true)
+                    .setXmlName(Attribute.START_EXECUTOR.getLocalName())
+                    .setAllowExpression(false)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .build();
+
+    static final SimpleAttributeDefinition PRELOAD_EXECUTOR =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.PRELOAD_EXECUTOR, ModelType.STRING, true)
+                    .setXmlName(Attribute.PRELOAD_EXECUTOR.getLocalName())
+                    .setAllowExpression(false)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .build();
+
+    static final SimpleAttributeDefinition AFFINITY_REFILL_THRESHOLD =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.AFFINITY_REFILL_THRESHOLD, ModelType.INT, true)
+                    .setXmlName(Attribute.AFFINITY_REFILL_THRESHOLD.getLocalName())
+                    .setAllowExpression(true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(0, true, true))
+                    .setDefaultValue(new ModelNode().set(5))
+                    .build();
+
+    // Maps the target class name of an externalizer to its id
+    static final SimpleMapAttributeDefinition EXTERNALIZERS = new SimpleMapAttributeDefinition.Builder(ModelKeys.EXTERNALIZERS, true)
+            .setAllowExpression(false)
+            .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+            .setAttributeMarshaller(new AttributeMarshaller() {
+                @Override
+                public void marshallAsElement(AttributeDefinition attribute, ModelNode resourceModel, boolean marshallDefault, XMLStreamWriter writer) throws XMLStreamException {
+                    resourceModel = resourceModel.get(attribute.getName());
+                    if (!resourceModel.isDefined()) {
+                        return;
+                    }
+                    writer.writeStartElement(attribute.getXmlName());
+                    for (Property property : resourceModel.asPropertyList()) {
+                        writer.writeStartElement(org.jboss.as.controller.parsing.Element.PROPERTY.getLocalName());
+                        writer.writeAttribute(org.jboss.as.controller.parsing.Element.NAME.getLocalName(), property.getName());
+                        writer.writeCharacters(property.getValue().asString());
+                        writer.writeEndElement();
+                    }
+                    writer.writeEndElement();
+                }
+            })
+            .build();
+
     static final SimpleAttributeDefinition CACHE_CONTAINER_MODULE =
             new SimpleAttributeDefinitionBuilder(ModelKeys.MODULE, ModelType.STRING, true)
                     .setXmlName(Attribute.MODULE.getLocalName())
@@ -119,7 +188,7 @@ public class CacheContainerResource extends SimpleResourceDefinition {
                     .setDefaultValue(new ModelNode().set(StartMode.LAZY.name()))
                     .build();
 
-    static final AttributeDefinition[] CACHE_CONTAINER_ATTRIBUTES = {DEFAULT_CACHE, ALIASES, JNDI_NAME, START, LISTENER_EXECUTOR, EVICTION_EXECUTOR, REPLICATION_QUEUE_EXECUTOR, CACHE_CONTAINER_MODULE};
+    static final AttributeDefinition[] CACHE_CONTAINER_ATTRIBUTES = {DEFAULT_CACHE, ALIASES, JNDI_NAME, START, LISTENER_EXECUTOR, EVICTION_EXECUTOR, REPLICATION_QUEUE_EXECUTOR, CACHE_CONTAINER_MODULE, AFFINITY_EXECUTOR, AFFINITY_BUFFER_SIZE, AFFINITY_REFILL_THRESHOLD, EXTERNALIZERS, START_EXECUTOR, PRELOAD_EXECUTOR};
 
     // operations
     static final OperationDefinition ALIAS_ADD = new SimpleOperationDefinitionBuilder("add-alias", InfinispanExtension.getResourceDescriptionResolver("cache-container.alias"))
@@ -1,6 +1,7 @@
 package org.jboss.as.clustering.infinispan.subsystem;
 
 import org.infinispan.Cache;
+import org.infinispan.container.DataContainer;
 import org.infinispan.eviction.ActivationManager;
 import org.infinispan.interceptors.ActivationInterceptor;
 import org.infinispan.interceptors.CacheMgmtInterceptor;
@@ -11,6 +12,15 @@ import org.infinispan.interceptors.TxInterceptor;
 import org.infinispan.interceptors.base.CommandInterceptor;
 import org.infinispan.remoting.rpc.RpcManagerImpl;
 import org.infinispan.util.concurrent.locks.LockManagerImpl;
+import org.jboss.as.clustering.infinispan.compression.CompressionInterceptor;
+import org.jboss.as.clustering.infinispan.latency.LatencyHistogram;
+import org.jboss.as.clustering.infinispan.latency.LatencyInterceptor;
+import org.jboss.as.clustering.infinispan.container.BinaryDataContainer;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvokerStatistics;
+import org.jboss.as.clustering.infinispan.invoker.CircuitBreaker;
+import org.jboss.as.clustering.infinispan.persistence.BackgroundPreloader;
+import org.jboss.as.clustering.infinispan.persistence.CoalescingWriteBehindInterceptor;
+import org.jboss.as.clustering.infinispan.persistence.ParallelPreloader;
 import org.jboss.as.controller.AbstractRuntimeOnlyHandler;
 import org.jboss.as.controller.AttributeDefinition;
 import org.jboss.as.controller.OperationContext;
@@ -26,6 +36,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.NAME;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP_ADDR;
@@ -41,6 +52,14 @@ public class CacheMetricsHandler extends AbstractRuntimeOnlyHandler {
 
     public enum CacheMetrics {
         CACHE_STATUS(MetricKeys.CACHE_STATUS, ModelType.STRING, true),
+        START_DURATION(MetricKeys.START_DURATION, ModelType.LONG, true),
+        // ParallelPreloader
+        PRELOAD_ENTRIES(MetricKeys.PRELOAD_ENTRIES, ModelType.LONG, true),
+        PRELOAD_BYTES(MetricKeys.PRELOAD_BYTES, ModelType.LONG, true),
+        PRELOAD_REMAINING_TIME(MetricKeys.PRELOAD_REMAINING_TIME, ModelType.LONG, true),
+        PRELOAD_PROGRESS(MetricKeys.PRELOAD_PROGRESS, ModelType.DOUBLE, true),
+        // BackgroundPreloader
+        PRELOAD_MISS_THROUGH_RATIO(MetricKeys.PRELOAD_MISS_THROUGH_RATIO, ModelType.DOUBLE, true),
         // LockManager
         NUMBER_OF_LOCKS_AVAILABLE(MetricKeys.NUMBER_OF_LOCKS_AVAILABLE, ModelType.INT, true),
         NUMBER_OF_LOCKS_HELD(MetricKeys.NUMBER_OF_LOCKS_HELD, ModelType.INT, true),
@@ -59,6 +78,8 @@ public class CacheMetricsHandler extends AbstractRuntimeOnlyHandler {
         REMOVE_MISSES(MetricKeys.REMOVE_MISSES, ModelType.LONG, true),
         STORES(MetricKeys.STORES, ModelType.LONG, true),
         TIME_SINCE_RESET(MetricKeys.TIME_SINCE_RESET, ModelType.LONG, true),
+        // BinaryDataContainer
+        MEMORY_USED(MetricKeys.MEMORY_USED, ModelType.LONG, true),
         // TxInterceptor
         COMMITS(MetricKeys.COMMITS, ModelType.LONG, true),
         PREPARES(MetricKeys.PREPARES, ModelType.LONG, true),
@@ -73,6 +94,38 @@ public class CacheMetricsHandler extends AbstractRuntimeOnlyHandler {
         CACHE_LOADER_MISSES(MetricKeys.CACHE_LOADER_MISSES, ModelType.LONG, true),
         // CacheStoreInterceptor
         CACHE_LOADER_STORES(MetricKeys.CACHE_LOADER_STORES, ModelType.LONG, true),
+        // CacheInvokerStatistics
+        CIRCUIT_BREAKER_STATE(MetricKeys.CIRCUIT_BREAKER_STATE, ModelType.STRING, true),
+        CIRCUIT_BREAKER_TRIPS(MetricKeys.CIRCUIT_BREAKER_TRIPS, ModelType.LONG, true),
+        INVOCATION_RETRIES(MetricKeys.INVOCATION_RETRIES, ModelType.LONG, true),
+        INVOCATION_FAILURES(MetricKeys.INVOCATION_FAILURES, ModelType.LONG, true),
+        INVOCATION_REJECTIONS(MetricKeys.INVOCATION_REJECTIONS, ModelType.LONG, true),
+        COALESCED_BATCHES(MetricKeys.COALESCED_BATCHES, ModelType.LONG, true),
+        AVERAGE_COALESCED_BATCH_SIZE(MetricKeys.AVERAGE_COALESCED_BATCH_SIZE, ModelType.DOUBLE, true),
+        COALESCING_RATIO(MetricKeys.COALESCING_RATIO, ModelType.DOUBLE, true),
+        AVERAGE_COALESCING_DELAY(MetricKeys.AVERAGE_COALESCING_DELAY, ModelType.LONG, true),
+        COLLAPSED_READS(MetricKeys.COLLAPSED_READS, ModelType.LONG, true),
+        // LatencyInterceptor
+        READ_LATENCY_P50(MetricKeys.READ_LATENCY_P50, ModelType.LONG, true),
+        READ_LATENCY_P90(MetricKeys.READ_LATENCY_P90, ModelType.LONG, true),
+        READ_LATENCY_P99(MetricKeys.READ_LATENCY_P99, ModelType.LONG, true),
+        READ_LATENCY_P999(MetricKeys.READ_LATENCY_P999, ModelType.LONG, true),
+        READ_LATENCY_MAX(MetricKeys.READ_LATENCY_MAX, ModelType.LONG, true),
+        WRITE_LATENCY_P50(MetricKeys.WRITE_LATENCY_P50, ModelType.LONG, true),
+        WRITE_LATENCY_P90(MetricKeys.WRITE_LATENCY_P90, ModelType.LONG, true),
+        WRITE_LATENCY_P99(MetricKeys.WRITE_LATENCY_P99, ModelType.LONG, true),
+        WRITE_LATENCY_P999(MetricKeys.WRITE_LATENCY_P999, ModelType.LONG, true),
+        WRITE_LATENCY_MAX(MetricKeys.WRITE_LATENCY_MAX, ModelType.LONG, true),
+        // CompressionInterceptor
+        COMPRESSED_VALUES(MetricKeys.COMPRESSED_VALUES, ModelType.LONG, true),
+        COMPRESSION_RATIO(MetricKeys.COMPRESSION_RATIO, ModelType.DOUBLE, true),
+        AVERAGE_COMPRESSION_TIME(MetricKeys.AVERAGE_COMPRESSION_TIME, ModelType.LONG, true),
+        DECOMPRESSED_VALUES(MetricKeys.DECOMPRESSED_VALUES, ModelType.LONG, true),
+        AVERAGE_DECOMPRESSION_TIME(MetricKeys.AVERAGE_DECOMPRESSION_TIME, ModelType.LONG, true),
+        // CoalescingWriteBehindInterceptor
+        WRITE_BEHIND_QUEUE_DEPTH(MetricKeys.WRITE_BEHIND_QUEUE_DEPTH, ModelType.INT, true),
+        WRITE_BEHIND_COALESCING_RATIO(MetricKeys.WRITE_BEHIND_COALESCING_RATIO, ModelType.DOUBLE, true),
+        AVERAGE_WRITE_BEHIND_FLUSH_TIME(MetricKeys.AVERAGE_WRITE_BEHIND_FLUSH_TIME, ModelType.LONG, true),
         // RpcManager
         AVERAGE_REPLICATION_TIME(MetricKeys.AVERAGE_REPLICATION_TIME, ModelType.LONG, true, true),
         REPLICATION_COUNT(MetricKeys.REPLICATION_COUNT, ModelType.LONG, true, true),
@@ -143,6 +196,34 @@ public class CacheMetricsHandler extends AbstractRuntimeOnlyHandler {
                 case CACHE_STATUS:
                     result.set(cache.getAdvancedCache().getStatus().toString());
                     break;
+                case START_DURATION:
+                    result.set(((CacheService<?, ?>) controller.getService()).getStartDuration());
+                    break;
+                case PRELOAD_ENTRIES: {
+                    ParallelPreloader preloader = ((CacheService<?, ?>) controller.getService()).getPreloader();
+                    result.set(preloader != null ? preloader.getEntries() : 0);
+                    break;
+                }
+                case PRELOAD_BYTES: {
+                    ParallelPreloader preloader = ((CacheService<?, ?>) controller.getService()).getPreloader();
+                    result.set(preloader != null ? preloader.getBytes() : 0);
+                    break;
+                }
+                case PRELOAD_REMAINING_TIME: {
+                    ParallelPreloader preloader = ((CacheService<?, ?>) controller.getService()).getPreloader();
+                    result.set(preloader != null ? preloader.getRemainingTime() : 0);
+                    break;
+                }
+                case PRELOAD_PROGRESS: {
+                    ParallelPreloader preloader = ((CacheService<?, ?>) controller.getService()).getPreloader();
+                    result.set(preloader != null ? preloader.getProgress() : 0);
+                    break;
+                }
+                case PRELOAD_MISS_THROUGH_RATIO: {
+                    ParallelPreloader preloader = ((CacheService<?, ?>) controller.getService()).getPreloader();
+                    result.set((preloader instanceof BackgroundPreloader) ? ((BackgroundPreloader) preloader).getMissThroughRatio() : 0);
+                    break;
+                }
                 case CONCURRENCY_LEVEL:
                     result.set(((LockManagerImpl) cache.getAdvancedCache().getLockManager()).getConcurrencyLevel());
                     break;
@@ -283,12 +364,146 @@ public class CacheMetricsHandler extends AbstractRuntimeOnlyHandler {
                     result.set(interceptor != null ? interceptor.getWritesToTheStores() : 0);
                     break;
                 }
+                case CIRCUIT_BREAKER_STATE: {
+                    CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(cache);
+                    CircuitBreaker.State state = (statistics != null) ? statistics.getCircuitBreakerState() : null;
+                    result.set(state != null ? state.name() : "");
+                    break;
+                }
+                case CIRCUIT_BREAKER_TRIPS: {
+                    CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(cache);
+                    result.set(statistics != null ? statistics.getCircuitBreakerTrips() : 0);
+                    break;
+                }
+                case INVOCATION_RETRIES: {
+                    CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(cache);
+                    result.set(statistics != null ? statistics.getRetries() : 0);
+                    break;
+                }
+                case INVOCATION_FAILURES: {
+                    CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(cache);
+                    result.set(statistics != null ? statistics.getFailures() : 0);
+                    break;
+                }
+                case INVOCATION_REJECTIONS: {
+                    CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(cache);
+                    result.set(statistics != null ? statistics.getRejections() : 0);
+                    break;
+                }
+                case COALESCED_BATCHES: {
+                    CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(cache);
+                    result.set(statistics != null ? statistics.getCoalescedBatches() : 0);
+                    break;
+                }
+                case AVERAGE_COALESCED_BATCH_SIZE: {
+                    CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(cache);
+                    result.set(statistics != null ? statistics.getAverageCoalescedBatchSize() : 0);
+                    break;
+                }
+                case COALESCING_RATIO: {
+                    CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(cache);
+                    result.set(statistics != null ? statistics.getCoalescingRatio() : 0);
+                    break;
+                }
+                case AVERAGE_COALESCING_DELAY: {
+                    CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(cache);
+                    result.set(statistics != null ? statistics.getAverageCoalescingDelay() : 0);
+                    break;
+                }
+                case COLLAPSED_READS: {
+                    CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(cache);
+                    result.set(statistics != null ? statistics.getCollapsedReads() : 0);
+                    break;
+                }
+                case READ_LATENCY_P50:
+                case READ_LATENCY_P90:
+                case READ_LATENCY_P99:
+                case READ_LATENCY_P999:
+                case READ_LATENCY_MAX: {
+                    LatencyInterceptor interceptor = getFirstInterceptorWhichExtends(cache.getAdvancedCache().getInterceptorChain(), LatencyInterceptor.class);
+                    result.set(interceptor != null ? getLatency(interceptor.getReadLatency(), metric) : 0);
+                    break;
+                }
+                case WRITE_LATENCY_P50:
+                case WRITE_LATENCY_P90:
+                case WRITE_LATENCY_P99:
+                case WRITE_LATENCY_P999:
+                case WRITE_LATENCY_MAX: {
+                    LatencyInterceptor interceptor = getFirstInterceptorWhichExtends(cache.getAdvancedCache().getInterceptorChain(), LatencyInterceptor.class);
+                    result.set(interceptor != null ? getLatency(interceptor.getWriteLatency(), metric) : 0);
+                    break;
+                }
+                case MEMORY_USED: {
+                    DataContainer container = cache.getAdvancedCache().getDataContainer();
+                    result.set((container instanceof BinaryDataContainer) ? ((BinaryDataContainer) container).getMemoryUsed() : 0);
+                    break;
+                }
+                case COMPRESSED_VALUES: {
+                    CompressionInterceptor interceptor = getFirstInterceptorWhichExtends(cache.getAdvancedCache().getInterceptorChain(), CompressionInterceptor.class);
+                    result.set(interceptor != null ? interceptor.getCompressions() : 0);
+                    break;
+                }
+                case COMPRESSION_RATIO: {
+                    CompressionInterceptor interceptor = getFirstInterceptorWhichExtends(cache.getAdvancedCache().getInterceptorChain(), CompressionInterceptor.class);
+                    result.set(interceptor != null ? interceptor.getCompressionRatio() : 0);
+                    break;
+                }
+                case AVERAGE_COMPRESSION_TIME: {
+                    CompressionInterceptor interceptor = getFirstInterceptorWhichExtends(cache.getAdvancedCache().getInterceptorChain(), CompressionInterceptor.class);
+                    result.set(interceptor != null ? TimeUnit.NANOSECONDS.toMicros(interceptor.getAverageCompressionTime()) : 0);
+                    break;
+                }
+                case DECOMPRESSED_VALUES: {
+                    CompressionInterceptor interceptor = getFirstInterceptorWhichExtends(cache.getAdvancedCache().getInterceptorChain(), CompressionInterceptor.class);
+                    result.set(interceptor != null ? interceptor.getDecompressions() : 0);
+                    break;
+                }
+                case AVERAGE_DECOMPRESSION_TIME: {
+                    CompressionInterceptor interceptor = getFirstInterceptorWhichExtends(cache.getAdvancedCache().getInterceptorChain(), CompressionInterceptor.class);
+                    result.set(interceptor != null ? TimeUnit.NANOSECONDS.toMicros(interceptor.getAverageDecompressionTime()) : 0);
+                    break;
+                }
+                case WRITE_BEHIND_QUEUE_DEPTH: {
+                    CoalescingWriteBehindInterceptor interceptor = getFirstInterceptorWhichExtends(cache.getAdvancedCache().getInterceptorChain(), CoalescingWriteBehindInterceptor.class);
+                    result.set(interceptor != null ? interceptor.getQueueDepth() : 0);
+                    break;
+                }
+                case WRITE_BEHIND_COALESCING_RATIO: {
+                    CoalescingWriteBehindInterceptor interceptor = getFirstInterceptorWhichExtends(cache.getAdvancedCache().getInterceptorChain(), CoalescingWriteBehindInterceptor.class);
+                    result.set(interceptor != null ? interceptor.getCoalescingRatio() : 0);
+                    break;
+                }
+                case AVERAGE_WRITE_BEHIND_FLUSH_TIME: {
+                    CoalescingWriteBehindInterceptor interceptor = getFirstInterceptorWhichExtends(cache.getAdvancedCache().getInterceptorChain(), CoalescingWriteBehindInterceptor.class);
+                    result.set(interceptor != null ? TimeUnit.NANOSECONDS.toMicros(interceptor.getAverageFlushTime()) : 0);
+                    break;
+                }
             }
             context.getResult().set(result);
         }
         context.completeStep();
     }
 
+    // Returns the latency, in microseconds, reported by the specified latency metric
+    private static long getLatency(LatencyHistogram histogram, CacheMetrics metric) {
+        switch (metric) {
+            case READ_LATENCY_P50:
+            case WRITE_LATENCY_P50:
+                return TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(50));
+            case READ_LATENCY_P90:
+            case WRITE_LATENCY_P90:
+                return TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(90));
+            case READ_LATENCY_P99:
+            case WRITE_LATENCY_P99:
+                return TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(99));
+            case READ_LATENCY_P999:
+            case WRITE_LATENCY_P999:
+                return TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(99.9));
+            default:
+                return TimeUnit.NANOSECONDS.toMicros(histogram.getMax());
+        }
+    }
+
     public void registerCommonMetrics(ManagementResourceRegistration container) {
         for (CacheMetrics metric : CacheMetrics.values()) {
             if (!metric.clustered) {
@@ -38,6 +38,7 @@ import org.jboss.as.controller.SimpleOperationDefinitionBuilder;
 import org.jboss.as.controller.SimpleResourceDefinition;
 import org.jboss.as.controller.descriptions.ResourceDescriptionResolver;
 import org.jboss.as.controller.operations.validation.EnumValidator;
+import org.jboss.as.controller.operations.validation.IntRangeValidator;
 import org.jboss.as.controller.registry.AttributeAccess;
 import org.jboss.as.controller.registry.ManagementResourceRegistration;
 import org.jboss.as.controller.services.path.ResolvePathHandler;
@@ -69,6 +70,14 @@ public class CacheResource extends SimpleResourceDefinition {
                     .setValidator(new ModuleIdentifierValidator(true))
                     .build();
 
+    static final SimpleAttributeDefinition COMPRESSION_THRESHOLD =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.COMPRESSION_THRESHOLD, ModelType.INT, true)
+                    .setXmlName(Attribute.COMPRESSION_THRESHOLD.getLocalName())
+                    .setAllowExpression(true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .build();
+
     static final SimpleAttributeDefinition INDEXING =
             new SimpleAttributeDefinitionBuilder(ModelKeys.INDEXING, ModelType.STRING, true)
                     .setXmlName(Attribute.INDEX.getLocalName())
@@ -113,7 +122,16 @@ public class CacheResource extends SimpleResourceDefinition {
                     .setDefaultValue(new ModelNode().set(StartMode.LAZY.name()))
                     .build();
 
-    static final AttributeDefinition[] CACHE_ATTRIBUTES = {BATCHING, CACHE_MODULE, INDEXING, INDEXING_PROPERTIES, JNDI_NAME, START};
+    static final SimpleAttributeDefinition STORAGE =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.STORAGE, ModelType.STRING, true)
+                    .setXmlName(Attribute.STORAGE.getLocalName())
+                    .setAllowExpression(true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new EnumValidator<StorageMode>(StorageMode.class, true, false))
+                    .setDefaultValue(new ModelNode().set(StorageMode.HEAP.name()))
+                    .build();
+
+    static final AttributeDefinition[] CACHE_ATTRIBUTES = {BATCHING, CACHE_MODULE, COMPRESSION_THRESHOLD, INDEXING, INDEXING_PROPERTIES, JNDI_NAME, START, STORAGE};
 
     // here for legacy purposes only
     static final SimpleAttributeDefinition NAME =
@@ -147,6 +165,11 @@ public class CacheResource extends SimpleResourceDefinition {
                     "reset-passivation-statistics",
                     InfinispanExtension.getResourceDescriptionResolver("cache")
             ).build();
+    static final OperationDefinition RESET_LATENCY_STATISTICS =
+            new SimpleOperationDefinitionBuilder(
+                    "reset-latency-statistics",
+                    InfinispanExtension.getResourceDescriptionResolver("cache")
+            ).build();
 
 
     protected final ResolvePathHandler resolvePathHandler;
@@ -177,6 +200,7 @@ public class CacheResource extends SimpleResourceDefinition {
             resourceRegistration.registerOperationHandler(CacheResource.RESET_ACTIVATION_STATISTICS, CacheCommands.ResetActivationStatisticsCommand.INSTANCE);
             resourceRegistration.registerOperationHandler(CacheResource.RESET_INVALIDATION_STATISTICS, CacheCommands.ResetPassivationStatisticsCommand.INSTANCE);
             resourceRegistration.registerOperationHandler(CacheResource.RESET_PASSIVATION_STATISTICS, CacheCommands.ResetPassivationStatisticsCommand.INSTANCE);
+            resourceRegistration.registerOperationHandler(CacheResource.RESET_LATENCY_STATISTICS, CacheCommands.ResetLatencyStatisticsCommand.INSTANCE);
         }
     }
 
@@ -22,15 +22,27 @@
 
 package org.jboss.as.clustering.infinispan.subsystem;
 
+import java.io.File;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import javax.transaction.xa.XAResource;
 
 import org.infinispan.Cache;
 import org.infinispan.manager.CacheContainer;
 import org.infinispan.manager.EmbeddedCacheManager;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvokerStatistics;
+import org.jboss.as.clustering.infinispan.invoker.FlaggedCacheViews;
+import org.jboss.as.clustering.infinispan.persistence.BackgroundPreloader;
+import org.jboss.as.clustering.infinispan.persistence.ParallelPreloader;
+import org.jboss.as.controller.services.path.PathManager;
+import org.jboss.as.server.ServerEnvironment;
 import org.jboss.logging.Logger;
 import org.jboss.msc.service.Service;
 import org.jboss.msc.service.ServiceName;
 import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StartException;
 import org.jboss.msc.service.StopContext;
 import org.jboss.tm.XAResourceRecovery;
 import org.jboss.tm.XAResourceRecoveryRegistry;
@@ -43,9 +55,14 @@ public class CacheService<K, V> implements Service<Cache<K, V>> {
 
     private final Dependencies dependencies;
     private final String name;
+    private final int preloadStoreIndex;
+    private final int preloadParallelism;
+    private final PreloadMode preloadMode;
 
     private volatile Cache<K, V> cache;
     private volatile XAResourceRecovery recovery;
+    private volatile ParallelPreloader preloader;
+    private volatile long startDuration;
 
     private static final Logger log = Logger.getLogger(CacheService.class.getPackage().getName());
     public static ServiceName getServiceName(String container, String cache) {
@@ -55,11 +72,29 @@ public class CacheService<K, V> implements Service<Cache<K, V>> {
     public interface Dependencies {
         EmbeddedCacheManager getCacheContainer();
         XAResourceRecoveryRegistry getRecoveryRegistry();
+        Executor getStartExecutor();
+        Executor getPreloadExecutor();
+        PathManager getPathManager();
     }
 
     public CacheService(String name, Dependencies dependencies) {
+        this(name, dependencies, -1, 1, PreloadMode.BLOCKING);
+    }
+
+    /**
+     * Creates a new cache service.
+     * @param name the cache name
+     * @param dependencies the service dependencies
+     * @param preloadStoreIndex the index, within the persistence configuration of the cache, of the store to preload, or -1, if none
+     * @param preloadParallelism the number of threads with which to preload the store, once the cache started, using the preload executor, or 1, if the cache preloads its stores itself
+     * @param preloadMode whether the stores of the cache are preloaded before the cache is available, or in the background
+     */
+    public CacheService(String name, Dependencies dependencies, int preloadStoreIndex, int preloadParallelism, PreloadMode preloadMode) {
         this.name = name;
         this.dependencies = dependencies;
+        this.preloadStoreIndex = preloadStoreIndex;
+        this.preloadParallelism = preloadParallelism;
+        this.preloadMode = preloadMode;
     }
 
     /**
@@ -71,19 +106,86 @@ public class CacheService<K, V> implements Service<Cache<K, V>> {
         return this.cache;
     }
 
+    /**
+     * Returns the number of milliseconds taken to start the cache, including any preload and initial state transfer.
+     */
+    public long getStartDuration() {
+        return this.startDuration;
+    }
+
+    /**
+     * Returns the parallel preloader of the cache, from which preload progress can be read while the cache is still starting.
+     * @return a preloader, or null, if the stores of the cache are neither preloaded in parallel nor in the background
+     */
+    public ParallelPreloader getPreloader() {
+        return this.preloader;
+    }
+
+    /**
+     * {@inheritDoc}
+     * If the container defines a start executor, the cache is started asynchronously,
+     * so that the caches of a container start concurrently, bounded by the executor, rather than each holding a service container thread.
+     */
     @Override
-    public void start(StartContext context) {
+    public void start(final StartContext context) {
+        Executor executor = this.dependencies.getStartExecutor();
+        if (executor == null) {
+            this.startCache();
+            return;
+        }
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    CacheService.this.startCache();
+                    context.complete();
+                } catch (Throwable e) {
+                    // Fail the service on any error, lest it remain starting forever
+                    context.failed(new StartException(e));
+                }
+            }
+        };
+        context.asynchronous();
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private void startCache() {
         EmbeddedCacheManager container = this.dependencies.getCacheContainer();
 
+        long start = System.nanoTime();
         this.cache = container.getCache(this.name);
         this.cache.start();
+        if (this.preloadMode == PreloadMode.BACKGROUND) {
+            BackgroundPreloader preloader = new BackgroundPreloader(this.preloadStoreIndex, this.preloadParallelism, this.dependencies.getPreloadExecutor(), this.getHotKeysFile(container));
+            preloader.start(this.cache);
+            this.preloader = preloader;
+        } else if (this.preloadParallelism > 1) {
+            this.preloader = new ParallelPreloader(this.preloadStoreIndex, this.preloadParallelism, this.dependencies.getPreloadExecutor());
+            try {
+                this.preloader.preload(this.cache);
+            } catch (RuntimeException e) {
+                this.cache.stop();
+                throw e;
+            }
+        }
+        this.startDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
 
         XAResourceRecoveryRegistry recoveryRegistry = this.dependencies.getRecoveryRegistry();
         if (recoveryRegistry != null) {
             this.recovery = new InfinispanXAResourceRecovery(this.name, container);
             recoveryRegistry.addXAResourceRecovery(this.recovery);
         }
-        log.debugf("%s cache started", this.name);
+        log.debugf("%s cache started in %d ms", this.name, this.startDuration);
+    }
+
+    private File getHotKeysFile(EmbeddedCacheManager container) {
+        String containerName = container.getCacheManagerConfiguration().globalJmxStatistics().cacheManagerName();
+        String directory = this.dependencies.getPathManager().resolveRelativePathEntry(InfinispanExtension.SUBSYSTEM_NAME + File.separatorChar + containerName, ServerEnvironment.SERVER_DATA_DIR);
+        return new File(directory, this.name + ".keys");
     }
 
     @Override
@@ -92,8 +194,16 @@ public class CacheService<K, V> implements Service<Cache<K, V>> {
             if (this.recovery != null) {
                 this.dependencies.getRecoveryRegistry().removeXAResourceRecovery(this.recovery);
             }
+            if (this.preloader instanceof BackgroundPreloader) {
+                ((BackgroundPreloader) this.preloader).stop(this.cache);
+            }
 
             this.cache.stop();
+            CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(this.cache);
+            if (statistics != null) {
+                statistics.clear();
+            }
+            FlaggedCacheViews.removeViews(this.cache);
             log.debugf("%s cache stopped", this.name);
         }
     }
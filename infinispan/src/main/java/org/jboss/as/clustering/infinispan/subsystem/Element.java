@@ -53,6 +53,7 @@ public enum Element {
     @Deprecated ENTRY_TABLE(ModelKeys.ENTRY_TABLE),
     EVICTION(ModelKeys.EVICTION),
     EXPIRATION(ModelKeys.EXPIRATION),
+    EXTERNALIZERS(ModelKeys.EXTERNALIZERS),
     FILE_STORE(ModelKeys.FILE_STORE),
     ID_COLUMN(ModelKeys.ID_COLUMN),
     INVALIDATION_CACHE(ModelKeys.INVALIDATION_CACHE),
@@ -21,7 +21,15 @@
  */
 package org.jboss.as.clustering.infinispan.subsystem;
 
+import static org.jboss.as.clustering.infinispan.InfinispanLogger.ROOT_LOGGER;
+import static org.jboss.as.clustering.infinispan.InfinispanMessages.MESSAGES;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -78,12 +86,23 @@ public class EmbeddedCacheManagerConfigurationService implements Service<Embedde
     private final String defaultCache;
     private final Dependencies dependencies;
     private final ModuleIdentifier moduleId;
+    private final Map<String, Integer> externalizerIds;
     private volatile GlobalConfiguration config;
 
     public EmbeddedCacheManagerConfigurationService(String name, String defaultCache, ModuleIdentifier moduleIdentifier, Dependencies dependencies) {
+        this(name, defaultCache, moduleIdentifier, Collections.<String, Integer>emptyMap(), dependencies);
+    }
+
+    /**
+     * Creates a new cache manager configuration service.
+     *
+     * @param externalizerIds the configured ids of externalizers, keyed by the name of their target class
+     */
+    public EmbeddedCacheManagerConfigurationService(String name, String defaultCache, ModuleIdentifier moduleIdentifier, Map<String, Integer> externalizerIds, Dependencies dependencies) {
         this.name = name;
         this.defaultCache = defaultCache;
         this.moduleId = moduleIdentifier;
+        this.externalizerIds = externalizerIds;
         this.dependencies = dependencies;
     }
 
@@ -121,10 +140,7 @@ public class EmbeddedCacheManagerConfigurationService implements Service<Embedde
         try {
             ClassLoader loader = (this.moduleId != null) ? moduleLoader.loadModule(this.moduleId).getClassLoader() : EmbeddedCacheManagerConfiguration.class.getClassLoader();
             builder.classLoader(loader);
-            int id = Ids.MAX_ID;
-            for (SimpleExternalizer<?> externalizer: ServiceLoader.load(SimpleExternalizer.class, loader)) {
-                builder.serialization().addAdvancedExternalizer(id++, externalizer);
-            }
+            this.addExternalizers(builder, loader);
         } catch (ModuleLoadException e) {
             throw new StartException(e);
         }
@@ -193,6 +209,42 @@ public class EmbeddedCacheManagerConfigurationService implements Service<Embedde
         this.config = builder.build();
     }
 
+    /**
+     * Registers the externalizers found by the specified class loader.
+     * Since an externalizer id is written to the stream in place of its class, every member of the cluster must agree on these ids.
+     * Thus, ids are never derived from class path order: configured ids are used as is,
+     * and the remaining externalizers are numbered from {@link Ids#MAX_ID} in the order of their target class names.
+     * Consequently, at most one externalizer may be found per target class.
+     */
+    void addExternalizers(GlobalConfigurationBuilder builder, ClassLoader loader) throws StartException {
+        SortedMap<String, SimpleExternalizer<?>> externalizers = new TreeMap<String, SimpleExternalizer<?>>();
+        for (SimpleExternalizer<?> externalizer: ServiceLoader.load(SimpleExternalizer.class, loader)) {
+            String className = externalizer.getTargetClass().getName();
+            SimpleExternalizer<?> existing = externalizers.put(className, externalizer);
+            if (existing != null) {
+                throw MESSAGES.duplicateExternalizer(className, existing.getClass().getName(), externalizer.getClass().getName());
+            }
+        }
+        Map<Integer, String> assigned = new HashMap<Integer, String>();
+        for (Map.Entry<String, Integer> entry: this.externalizerIds.entrySet()) {
+            assigned.put(entry.getValue(), entry.getKey());
+        }
+        int next = Ids.MAX_ID;
+        for (Map.Entry<String, SimpleExternalizer<?>> entry: externalizers.entrySet()) {
+            String className = entry.getKey();
+            Integer id = this.externalizerIds.get(className);
+            if (id == null) {
+                while (assigned.containsKey(Integer.valueOf(next))) {
+                    next += 1;
+                }
+                id = Integer.valueOf(next);
+                assigned.put(id, className);
+            }
+            ROOT_LOGGER.debugf("Registering externalizer for %s with id %d in cache container %s", className, id, this.name);
+            builder.serialization().addAdvancedExternalizer(id.intValue(), entry.getValue());
+        }
+    }
+
     @Override
     public void stop(StopContext context) {
         // Nothing to stop
@@ -21,6 +21,11 @@
  */
 package org.jboss.as.clustering.infinispan.subsystem;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.notifications.Listener;
 import org.infinispan.notifications.cachemanagerlistener.annotation.CacheStarted;
@@ -50,7 +55,10 @@ public class EmbeddedCacheManagerService implements Service<EmbeddedCacheManager
     }
 
     private final Value<EmbeddedCacheManagerConfiguration> config;
+    private final Set<String> bootCaches = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private volatile EmbeddedCacheManager container;
+    private volatile long startTime;
+    private volatile long startDuration;
 
     public EmbeddedCacheManagerService(Value<EmbeddedCacheManagerConfiguration> config) {
         this.config = config;
@@ -61,13 +69,34 @@ public class EmbeddedCacheManagerService implements Service<EmbeddedCacheManager
         return this.container;
     }
 
+    /**
+     * Returns the number of milliseconds from the start of this cache container until the most recent of its boot caches finished starting,
+     * i.e. the boot time of the container.
+     */
+    public long getStartDuration() {
+        return this.startDuration;
+    }
+
+    /**
+     * Registers a cache that starts along with this container during server boot, i.e. an eagerly started cache,
+     * whose start is included in the start duration of this container.
+     * Caches started later, e.g. lazily or once added via management, do not extend the start duration.
+     * @param cacheName a cache name
+     */
+    public void addBootCache(String cacheName) {
+        this.bootCaches.add(cacheName);
+    }
+
     @Override
     public void start(StartContext context) {
         EmbeddedCacheManagerConfiguration config = this.config.getValue();
+        this.startTime = System.nanoTime();
+        this.startDuration = 0;
         this.container = new DefaultEmbeddedCacheManager(config.getGlobalConfiguration(), config.getDefaultCache());
         this.container.addListener(this);
         this.container.start();
-        log.debugf("%s cache container started", config.getName());
+        this.startDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startTime);
+        log.debugf("%s cache container started in %d ms", config.getName(), this.startDuration);
     }
 
     @Override
@@ -81,6 +110,13 @@ public class EmbeddedCacheManagerService implements Service<EmbeddedCacheManager
 
     @CacheStarted
     public void cacheStarted(CacheStartedEvent event) {
+        if (this.bootCaches.contains(event.getCacheName())) {
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startTime);
+            // Caches may start concurrently
+            synchronized (this) {
+                this.startDuration = Math.max(this.startDuration, duration);
+            }
+        }
         InfinispanLogger.ROOT_LOGGER.cacheStarted(event.getCacheName(), this.config.getValue().getName());
     }
 
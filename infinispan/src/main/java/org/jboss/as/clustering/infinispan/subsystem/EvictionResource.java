@@ -22,7 +22,6 @@
 
 package org.jboss.as.clustering.infinispan.subsystem;
 
-import org.infinispan.eviction.EvictionStrategy;
 import org.jboss.as.controller.AttributeDefinition;
 import org.jboss.as.controller.OperationStepHandler;
 import org.jboss.as.controller.PathElement;
@@ -32,6 +31,7 @@ import org.jboss.as.controller.SimpleAttributeDefinition;
 import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
 import org.jboss.as.controller.SimpleResourceDefinition;
 import org.jboss.as.controller.operations.validation.EnumValidator;
+import org.jboss.as.controller.operations.validation.LongRangeValidator;
 import org.jboss.as.controller.registry.AttributeAccess;
 import org.jboss.as.controller.registry.ManagementResourceRegistration;
 import org.jboss.dmr.ModelNode;
@@ -64,7 +64,15 @@ public class EvictionResource extends SimpleResourceDefinition {
                     .setDefaultValue(new ModelNode().set(-1))
                     .build();
 
-    static final AttributeDefinition[] EVICTION_ATTRIBUTES = {EVICTION_STRATEGY, MAX_ENTRIES};
+    static final SimpleAttributeDefinition MAX_MEMORY =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.MAX_MEMORY, ModelType.LONG, true)
+                    .setXmlName(Attribute.MAX_MEMORY.getLocalName())
+                    .setAllowExpression(true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new LongRangeValidator(1, Long.MAX_VALUE, true, true))
+                    .build();
+
+    static final AttributeDefinition[] EVICTION_ATTRIBUTES = {EVICTION_STRATEGY, MAX_ENTRIES, MAX_MEMORY};
 
     public EvictionResource() {
         super(EVICTION_PATH,
@@ -0,0 +1,52 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.subsystem;
+
+/**
+ * The eviction strategies of a cache, i.e. those of Infinispan, plus W-TinyLFU.
+ */
+public enum EvictionStrategy {
+    NONE(org.infinispan.eviction.EvictionStrategy.NONE),
+    UNORDERED(org.infinispan.eviction.EvictionStrategy.UNORDERED),
+    FIFO(org.infinispan.eviction.EvictionStrategy.FIFO),
+    LRU(org.infinispan.eviction.EvictionStrategy.LRU),
+    LIRS(org.infinispan.eviction.EvictionStrategy.LIRS),
+    /**
+     * Evicts entries according to a frequency based admission policy, implemented by a {@link org.jboss.as.clustering.infinispan.container.TinyLfuDataContainer}.
+     * Infinispan itself is configured for LRU, which determines its handling of max-entries, but not the data container.
+     */
+    W_TINY_LFU(org.infinispan.eviction.EvictionStrategy.LRU),
+    ;
+    private final org.infinispan.eviction.EvictionStrategy strategy;
+
+    private EvictionStrategy(org.infinispan.eviction.EvictionStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public org.infinispan.eviction.EvictionStrategy getStrategy() {
+        return this.strategy;
+    }
+
+    public boolean isEnabled() {
+        return this.strategy.isEnabled();
+    }
+}
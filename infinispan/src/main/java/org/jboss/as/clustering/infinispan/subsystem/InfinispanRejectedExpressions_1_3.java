@@ -39,12 +39,16 @@ public class InfinispanRejectedExpressions_1_3 {
 
     // attributes which never accept expressions
     public static final AttributeDefinition[] NEVER_CONTAINER_ATTRIBUTES = {
+            CacheContainerResource.AFFINITY_EXECUTOR,
             CacheContainerResource.ALIAS,
             CacheContainerResource.ALIASES,
             CacheContainerResource.EVICTION_EXECUTOR,
+            CacheContainerResource.EXTERNALIZERS,
             CacheContainerResource.LISTENER_EXECUTOR,
             CacheContainerResource.NAME,
-            CacheContainerResource.REPLICATION_QUEUE_EXECUTOR
+            CacheContainerResource.REPLICATION_QUEUE_EXECUTOR,
+            CacheContainerResource.START_EXECUTOR,
+            CacheContainerResource.PRELOAD_EXECUTOR
     };
 
     public static final AttributeDefinition[] NEVER_TRANSPORT_ATTRIBUTES = {
@@ -95,11 +95,13 @@ public class InfinispanResourceDescriptionResolver extends StandardResourceDescr
         // shared cache attributes
         sharedAttributeResolver.put(CacheResource.BATCHING.getName(), "cache");
         sharedAttributeResolver.put(CacheResource.CACHE_MODULE.getName(), "cache");
+        sharedAttributeResolver.put(CacheResource.COMPRESSION_THRESHOLD.getName(), "cache");
         sharedAttributeResolver.put(CacheResource.INDEXING.getName(), "cache");
         sharedAttributeResolver.put(CacheResource.INDEXING_PROPERTIES.getName(), "cache");
         sharedAttributeResolver.put(CacheResource.JNDI_NAME.getName(), "cache");
         sharedAttributeResolver.put(CacheResource.NAME.getName(), "cache");
         sharedAttributeResolver.put(CacheResource.START.getName(), "cache");
+        sharedAttributeResolver.put(CacheResource.STORAGE.getName(), "cache");
 
         sharedAttributeResolver.put(ClusteredCacheResource.ASYNC_MARSHALLING.getName(), "clustered-cache");
         sharedAttributeResolver.put(ClusteredCacheResource.MODE.getName(), "clustered-cache");
@@ -112,6 +114,8 @@ public class InfinispanResourceDescriptionResolver extends StandardResourceDescr
         sharedAttributeResolver.put(BaseStoreResource.FETCH_STATE.getName(), "store");
         sharedAttributeResolver.put(BaseStoreResource.PASSIVATION.getName(), "store");
         sharedAttributeResolver.put(BaseStoreResource.PRELOAD.getName(), "store");
+        sharedAttributeResolver.put(BaseStoreResource.PRELOAD_MODE.getName(), "store");
+        sharedAttributeResolver.put(BaseStoreResource.PRELOAD_PARALLELISM.getName(), "store");
         sharedAttributeResolver.put(BaseStoreResource.PURGE.getName(), "store");
         sharedAttributeResolver.put(BaseStoreResource.READ_ONLY.getName(), "store");
         sharedAttributeResolver.put(BaseStoreResource.SHARED.getName(), "store");
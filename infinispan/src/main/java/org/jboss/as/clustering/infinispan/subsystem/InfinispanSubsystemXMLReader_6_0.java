@@ -104,6 +104,26 @@ public final class InfinispanSubsystemXMLReader_6_0 implements XMLElementReader<
                     CacheContainerResource.CACHE_CONTAINER_MODULE.parseAndSetParameter(value, container, reader);
                     break;
                 }
+                case AFFINITY_EXECUTOR: {
+                    CacheContainerResource.AFFINITY_EXECUTOR.parseAndSetParameter(value, container, reader);
+                    break;
+                }
+                case AFFINITY_BUFFER_SIZE: {
+                    CacheContainerResource.AFFINITY_BUFFER_SIZE.parseAndSetParameter(value, container, reader);
+                    break;
+                }
+                case AFFINITY_REFILL_THRESHOLD: {
+                    CacheContainerResource.AFFINITY_REFILL_THRESHOLD.parseAndSetParameter(value, container, reader);
+                    break;
+                }
+                case START_EXECUTOR: {
+                    CacheContainerResource.START_EXECUTOR.parseAndSetParameter(value, container, reader);
+                    break;
+                }
+                case PRELOAD_EXECUTOR: {
+                    CacheContainerResource.PRELOAD_EXECUTOR.parseAndSetParameter(value, container, reader);
+                    break;
+                }
                 default: {
                     throw ParseUtils.unexpectedAttribute(reader, i);
                 }
@@ -127,6 +147,10 @@ public final class InfinispanSubsystemXMLReader_6_0 implements XMLElementReader<
                     parseTransport(reader, containerAddress, operations);
                     break;
                 }
+                case EXTERNALIZERS: {
+                    parseExternalizers(reader, container);
+                    break;
+                }
                 case LOCAL_CACHE: {
                     parseLocalCache(reader, containerAddress, operations);
                     break;
@@ -211,6 +235,14 @@ public final class InfinispanSubsystemXMLReader_6_0 implements XMLElementReader<
                 CacheResource.CACHE_MODULE.parseAndSetParameter(value, cache, reader);
                 break;
             }
+            case COMPRESSION_THRESHOLD: {
+                CacheResource.COMPRESSION_THRESHOLD.parseAndSetParameter(value, cache, reader);
+                break;
+            }
+            case STORAGE: {
+                CacheResource.STORAGE.parseAndSetParameter(value, cache, reader);
+                break;
+            }
             default: {
                 throw ParseUtils.unexpectedAttribute(reader, index);
             }
@@ -626,6 +658,10 @@ public final class InfinispanSubsystemXMLReader_6_0 implements XMLElementReader<
                     EvictionResource.MAX_ENTRIES.parseAndSetParameter(value, eviction, reader);
                     break;
                 }
+                case MAX_MEMORY: {
+                    EvictionResource.MAX_MEMORY.parseAndSetParameter(value, eviction, reader);
+                    break;
+                }
                 default: {
                     throw ParseUtils.unexpectedAttribute(reader, i);
                 }
@@ -1375,6 +1411,14 @@ public final class InfinispanSubsystemXMLReader_6_0 implements XMLElementReader<
                 BaseStoreResource.PRELOAD.parseAndSetParameter(value, store, reader);
                 break;
             }
+            case PRELOAD_MODE: {
+                BaseStoreResource.PRELOAD_MODE.parseAndSetParameter(value, store, reader);
+                break;
+            }
+            case PRELOAD_PARALLELISM: {
+                BaseStoreResource.PRELOAD_PARALLELISM.parseAndSetParameter(value, store, reader);
+                break;
+            }
             case PASSIVATION: {
                 BaseStoreResource.PASSIVATION.parseAndSetParameter(value, store, reader);
                 break;
@@ -1429,6 +1473,18 @@ public final class InfinispanSubsystemXMLReader_6_0 implements XMLElementReader<
             String value = reader.getAttributeValue(i);
             Attribute attribute = Attribute.forName(reader.getAttributeLocalName(i));
             switch (attribute) {
+                case COALESCE: {
+                    StoreWriteBehindResource.COALESCE.parseAndSetParameter(value, writeBehind, reader);
+                    break;
+                }
+                case FLUSH_BATCH_SIZE: {
+                    StoreWriteBehindResource.FLUSH_BATCH_SIZE.parseAndSetParameter(value, writeBehind, reader);
+                    break;
+                }
+                case FLUSH_INTERVAL: {
+                    StoreWriteBehindResource.FLUSH_INTERVAL.parseAndSetParameter(value, writeBehind, reader);
+                    break;
+                }
                 case FLUSH_LOCK_TIMEOUT: {
                     StoreWriteBehindResource.FLUSH_LOCK_TIMEOUT.parseAndSetParameter(value, writeBehind, reader);
                     break;
@@ -1529,6 +1585,42 @@ public final class InfinispanSubsystemXMLReader_6_0 implements XMLElementReader<
        // ParseUtils.requireNoContent(reader);
     }
 
+    private void parseExternalizers(XMLExtendedStreamReader reader, ModelNode container) throws XMLStreamException {
+        ParseUtils.requireNoAttributes(reader);
+
+        while (reader.hasNext() && (reader.nextTag() != XMLStreamConstants.END_ELEMENT)) {
+            Element element = Element.forName(reader.getLocalName());
+            switch (element) {
+                case PROPERTY: {
+                    int attributes = reader.getAttributeCount();
+                    String property = null;
+                    for (int i = 0; i < attributes; i++) {
+                        String value = reader.getAttributeValue(i);
+                        Attribute attribute = Attribute.forName(reader.getAttributeLocalName(i));
+                        switch (attribute) {
+                            case NAME: {
+                                property = value;
+                                break;
+                            }
+                            default: {
+                                throw ParseUtils.unexpectedAttribute(reader, i);
+                            }
+                        }
+                    }
+                    if (property == null) {
+                        throw ParseUtils.missingRequired(reader, Collections.singleton(Attribute.NAME));
+                    }
+                    String value = reader.getElementText();
+                    CacheContainerResource.EXTERNALIZERS.parseAndAddParameterElement(property, value, container, reader);
+                    break;
+                }
+                default: {
+                    throw ParseUtils.unexpectedElement(reader);
+                }
+            }
+        }
+    }
+
     private void parseBackups(XMLExtendedStreamReader reader, ModelNode cache, List<ModelNode> operations) throws XMLStreamException {
 
         while (reader.hasNext() && (reader.nextTag() != XMLStreamConstants.END_ELEMENT)) {
@@ -68,6 +68,11 @@ public class InfinispanSubsystemXMLWriter implements XMLElementWriter<SubsystemM
                 this.writeOptional(writer, Attribute.REPLICATION_QUEUE_EXECUTOR, container, ModelKeys.REPLICATION_QUEUE_EXECUTOR);
                 this.writeOptional(writer, Attribute.START, container, ModelKeys.START);
                 this.writeOptional(writer, Attribute.MODULE, container, ModelKeys.MODULE);
+                this.writeOptional(writer, Attribute.AFFINITY_EXECUTOR, container, ModelKeys.AFFINITY_EXECUTOR);
+                this.writeOptional(writer, Attribute.AFFINITY_BUFFER_SIZE, container, ModelKeys.AFFINITY_BUFFER_SIZE);
+                this.writeOptional(writer, Attribute.AFFINITY_REFILL_THRESHOLD, container, ModelKeys.AFFINITY_REFILL_THRESHOLD);
+                this.writeOptional(writer, Attribute.START_EXECUTOR, container, ModelKeys.START_EXECUTOR);
+                this.writeOptional(writer, Attribute.PRELOAD_EXECUTOR, container, ModelKeys.PRELOAD_EXECUTOR);
 
                 if (container.hasDefined(ModelKeys.TRANSPORT)) {
                     writer.writeStartElement(Element.TRANSPORT.getLocalName());
@@ -80,6 +85,8 @@ public class InfinispanSubsystemXMLWriter implements XMLElementWriter<SubsystemM
                     writer.writeEndElement();
                 }
 
+                CacheContainerResource.EXTERNALIZERS.marshallAsElement(container, writer);
+
                 // write any existent cache types
                 if (container.get(ModelKeys.LOCAL_CACHE).isDefined()) {
                     for (Property localCacheEntry : container.get(ModelKeys.LOCAL_CACHE).asPropertyList()) {
@@ -171,6 +178,8 @@ public class InfinispanSubsystemXMLWriter implements XMLElementWriter<SubsystemM
         this.writeOptional(writer, Attribute.BATCHING, cache, ModelKeys.BATCHING);
         this.writeOptional(writer, Attribute.JNDI_NAME, cache, ModelKeys.JNDI_NAME);
         this.writeOptional(writer, Attribute.MODULE, cache, ModelKeys.MODULE);
+        this.writeOptional(writer, Attribute.COMPRESSION_THRESHOLD, cache, ModelKeys.COMPRESSION_THRESHOLD);
+        this.writeOptional(writer, Attribute.STORAGE, cache, ModelKeys.STORAGE);
 
         if (cache.get(ModelKeys.LOCKING, ModelKeys.LOCKING_NAME).isDefined()) {
             writer.writeStartElement(Element.LOCKING.getLocalName());
@@ -196,6 +205,7 @@ public class InfinispanSubsystemXMLWriter implements XMLElementWriter<SubsystemM
             ModelNode eviction = cache.get(ModelKeys.EVICTION, ModelKeys.EVICTION_NAME);
             this.writeOptional(writer, Attribute.STRATEGY, eviction, ModelKeys.STRATEGY);
             this.writeOptional(writer, Attribute.MAX_ENTRIES, eviction, ModelKeys.MAX_ENTRIES);
+            this.writeOptional(writer, Attribute.MAX_MEMORY, eviction, ModelKeys.MAX_MEMORY);
             writer.writeEndElement();
         }
 
@@ -501,6 +511,8 @@ public class InfinispanSubsystemXMLWriter implements XMLElementWriter<SubsystemM
     private void writeStoreAttributes(XMLExtendedStreamWriter writer, ModelNode store) throws XMLStreamException {
         this.writeOptional(writer, Attribute.SHARED, store, ModelKeys.SHARED);
         this.writeOptional(writer, Attribute.PRELOAD, store, ModelKeys.PRELOAD);
+        this.writeOptional(writer, Attribute.PRELOAD_MODE, store, ModelKeys.PRELOAD_MODE);
+        this.writeOptional(writer, Attribute.PRELOAD_PARALLELISM, store, ModelKeys.PRELOAD_PARALLELISM);
         this.writeOptional(writer, Attribute.PASSIVATION, store, ModelKeys.PASSIVATION);
         this.writeOptional(writer, Attribute.FETCH_STATE, store, ModelKeys.FETCH_STATE);
         this.writeOptional(writer, Attribute.PURGE, store, ModelKeys.PURGE);
@@ -516,6 +528,9 @@ public class InfinispanSubsystemXMLWriter implements XMLElementWriter<SubsystemM
             this.writeOptional(writer, Attribute.MODIFICATION_QUEUE_SIZE, writeBehind, ModelKeys.MODIFICATION_QUEUE_SIZE);
             this.writeOptional(writer, Attribute.SHUTDOWN_TIMEOUT, writeBehind, ModelKeys.SHUTDOWN_TIMEOUT);
             this.writeOptional(writer, Attribute.THREAD_POOL_SIZE, writeBehind, ModelKeys.THREAD_POOL_SIZE);
+            this.writeOptional(writer, Attribute.COALESCE, writeBehind, ModelKeys.COALESCE);
+            this.writeOptional(writer, Attribute.FLUSH_BATCH_SIZE, writeBehind, ModelKeys.FLUSH_BATCH_SIZE);
+            this.writeOptional(writer, Attribute.FLUSH_INTERVAL, writeBehind, ModelKeys.FLUSH_INTERVAL);
             writer.writeEndElement();
         }
     }
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.jboss.as.controller.AttributeDefinition;
+import org.jboss.as.controller.ControllerMessages;
 import org.jboss.as.controller.ModelVersion;
 import org.jboss.as.controller.PathAddress;
 import org.jboss.as.controller.SubsystemRegistration;
@@ -46,6 +47,16 @@ public class InfinispanTransformers {
      * Register the transformers for transforming from 1.4.0 to 1.3.0 management api versions, in which:
      * - attributes INDEXING_PROPERTIES, SEGMENTS were added in 1.4
      * - attribute VIRTUAL_NODES was deprecated in 1.4
+     * - attributes AFFINITY_EXECUTOR, AFFINITY_BUFFER_SIZE, AFFINITY_REFILL_THRESHOLD were added to cache containers
+     * - attribute EXTERNALIZERS was added to cache containers
+     * - attribute START_EXECUTOR was added to cache containers
+     * - attribute PRELOAD_EXECUTOR was added to cache containers
+     * - attribute COMPRESSION_THRESHOLD was added to caches
+     * - attribute STORAGE was added to caches
+     * - attribute MAX_MEMORY was added to eviction
+     * - eviction strategy W_TINY_LFU was added
+     * - attributes PRELOAD_PARALLELISM, PRELOAD_MODE were added to stores
+     * - attributes COALESCE, FLUSH_BATCH_SIZE, FLUSH_INTERVAL were added to store write-behind
      * - expression support was added to most attributes in 1.4, except for CLUSTER, DEFAULT_CACHE and MODE
      * for which it was already enabled in 1.3
      *
@@ -61,6 +72,18 @@ public class InfinispanTransformers {
         final ResourceTransformationDescriptionBuilder cacheContainerBuilder = subsystemBuilder.addChildResource(CacheContainerResource.CONTAINER_PATH)
                 .getAttributeBuilder()
                 .addRejectCheck(RejectAttributeChecker.SIMPLE_EXPRESSIONS, InfinispanRejectedExpressions_1_3.REJECT_CONTAINER_ATTRIBUTES)
+                //discard key affinity attributes if undefined, and reject them if set
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, CacheContainerResource.AFFINITY_EXECUTOR, CacheContainerResource.AFFINITY_BUFFER_SIZE, CacheContainerResource.AFFINITY_REFILL_THRESHOLD)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, CacheContainerResource.AFFINITY_EXECUTOR, CacheContainerResource.AFFINITY_BUFFER_SIZE, CacheContainerResource.AFFINITY_REFILL_THRESHOLD)
+                //discard externalizer ids if undefined, and reject them if set
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, CacheContainerResource.EXTERNALIZERS)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, CacheContainerResource.EXTERNALIZERS)
+                //discard start executor if undefined, and reject it if set
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, CacheContainerResource.START_EXECUTOR)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, CacheContainerResource.START_EXECUTOR)
+                //discard preload executor if undefined, and reject it if set
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, CacheContainerResource.PRELOAD_EXECUTOR)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, CacheContainerResource.PRELOAD_EXECUTOR)
                 .end();
 
         cacheContainerBuilder.addChildResource(TransportResource.TRANSPORT_PATH)
@@ -76,9 +99,10 @@ public class InfinispanTransformers {
                         ClusteredCacheResource.CACHE_MODULE, ClusteredCacheResource.QUEUE_FLUSH_INTERVAL,  ClusteredCacheResource.QUEUE_SIZE,
                         ClusteredCacheResource.REMOTE_TIMEOUT, ClusteredCacheResource.START,
                         DistributedCacheResource.L1_LIFESPAN, DistributedCacheResource.OWNERS, DistributedCacheResource.VIRTUAL_NODES, DistributedCacheResource.SEGMENTS)
-                //discard indexing-properties if undefined, and reject it if not set
-                .setDiscard(DiscardAttributeChecker.UNDEFINED, CacheResource.INDEXING_PROPERTIES)
-                .addRejectCheck(RejectAttributeChecker.DEFINED, CacheResource.INDEXING_PROPERTIES)
+                //discard indexing-properties and compression-threshold if undefined, and storage if undefined or HEAP, and reject them otherwise
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, CacheResource.INDEXING_PROPERTIES, CacheResource.COMPRESSION_THRESHOLD)
+                .setDiscard(new DiscardAttributeChecker.DiscardAttributeValueChecker(new ModelNode(StorageMode.HEAP.name())), CacheResource.STORAGE)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, CacheResource.INDEXING_PROPERTIES, CacheResource.COMPRESSION_THRESHOLD, CacheResource.STORAGE)
                 //Convert segments to virtual-nodes if it is set
                 .setDiscard(DiscardAttributeChecker.UNDEFINED, DistributedCacheResource.SEGMENTS)
                 .setValueConverter(new AttributeConverter.DefaultAttributeConverter() {
@@ -101,9 +125,10 @@ public class InfinispanTransformers {
                         ClusteredCacheResource.ASYNC_MARSHALLING, ClusteredCacheResource.BATCHING, ClusteredCacheResource.INDEXING, ClusteredCacheResource.JNDI_NAME, ClusteredCacheResource.MODE,
                         ClusteredCacheResource.CACHE_MODULE, ClusteredCacheResource.QUEUE_FLUSH_INTERVAL, ClusteredCacheResource.QUEUE_SIZE, ClusteredCacheResource.REMOTE_TIMEOUT,
                         ClusteredCacheResource.START)
-                //discard indexing-properties if undefined, and reject it if not set
-                .setDiscard(DiscardAttributeChecker.UNDEFINED, CacheResource.INDEXING_PROPERTIES)
-                .addRejectCheck(RejectAttributeChecker.DEFINED, CacheResource.INDEXING_PROPERTIES)
+                //discard indexing-properties and compression-threshold if undefined, and storage if undefined or HEAP, and reject them otherwise
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, CacheResource.INDEXING_PROPERTIES, CacheResource.COMPRESSION_THRESHOLD)
+                .setDiscard(new DiscardAttributeChecker.DiscardAttributeValueChecker(new ModelNode(StorageMode.HEAP.name())), CacheResource.STORAGE)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, CacheResource.INDEXING_PROPERTIES, CacheResource.COMPRESSION_THRESHOLD, CacheResource.STORAGE)
                 .end();
         registerCacheResourceChildren(invalidationCacheBuilder, false);
 
@@ -113,9 +138,10 @@ public class InfinispanTransformers {
                         RejectAttributeChecker.SIMPLE_EXPRESSIONS,
                         ClusteredCacheResource.BATCHING, ClusteredCacheResource.INDEXING, ClusteredCacheResource.JNDI_NAME,
                         ClusteredCacheResource.CACHE_MODULE, ClusteredCacheResource.START)
-                //discard indexing-properties if undefined, and reject it if not set
-                .setDiscard(DiscardAttributeChecker.UNDEFINED, CacheResource.INDEXING_PROPERTIES)
-                .addRejectCheck(RejectAttributeChecker.DEFINED, CacheResource.INDEXING_PROPERTIES)
+                //discard indexing-properties and compression-threshold if undefined, and storage if undefined or HEAP, and reject them otherwise
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, CacheResource.INDEXING_PROPERTIES, CacheResource.COMPRESSION_THRESHOLD)
+                .setDiscard(new DiscardAttributeChecker.DiscardAttributeValueChecker(new ModelNode(StorageMode.HEAP.name())), CacheResource.STORAGE)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, CacheResource.INDEXING_PROPERTIES, CacheResource.COMPRESSION_THRESHOLD, CacheResource.STORAGE)
                 .end();
         registerCacheResourceChildren(localCacheBuilder, false);
 
@@ -126,9 +152,10 @@ public class InfinispanTransformers {
                         ClusteredCacheResource.ASYNC_MARSHALLING, ClusteredCacheResource.BATCHING, ClusteredCacheResource.INDEXING, ClusteredCacheResource.JNDI_NAME, ClusteredCacheResource.MODE,
                         ClusteredCacheResource.CACHE_MODULE, ClusteredCacheResource.QUEUE_FLUSH_INTERVAL, ClusteredCacheResource.QUEUE_SIZE, ClusteredCacheResource.REMOTE_TIMEOUT,
                         ClusteredCacheResource.START)
-                //discard indexing-properties if undefined, and reject it if not set
-                .setDiscard(DiscardAttributeChecker.UNDEFINED, CacheResource.INDEXING_PROPERTIES)
-                .addRejectCheck(RejectAttributeChecker.DEFINED, CacheResource.INDEXING_PROPERTIES)
+                //discard indexing-properties and compression-threshold if undefined, and storage if undefined or HEAP, and reject them otherwise
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, CacheResource.INDEXING_PROPERTIES, CacheResource.COMPRESSION_THRESHOLD)
+                .setDiscard(new DiscardAttributeChecker.DiscardAttributeValueChecker(new ModelNode(StorageMode.HEAP.name())), CacheResource.STORAGE)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, CacheResource.INDEXING_PROPERTIES, CacheResource.COMPRESSION_THRESHOLD, CacheResource.STORAGE)
                 .end();
         registerCacheResourceChildren(replicatedCacheBuilder, true);
 
@@ -148,6 +175,11 @@ public class InfinispanTransformers {
             .addRejectCheck(
                     RejectAttributeChecker.SIMPLE_EXPRESSIONS,
                     EvictionResource.MAX_ENTRIES, EvictionResource.EVICTION_STRATEGY)
+            //discard max-memory if undefined, and reject it if set
+            .setDiscard(DiscardAttributeChecker.UNDEFINED, EvictionResource.MAX_MEMORY)
+            .addRejectCheck(RejectAttributeChecker.DEFINED, EvictionResource.MAX_MEMORY)
+            //reject the W_TINY_LFU strategy
+            .addRejectCheck(new ValueRejectAttributeChecker(new ModelNode(EvictionStrategy.W_TINY_LFU.name())), EvictionResource.EVICTION_STRATEGY)
             .end();
         parent.addChildResource(ExpirationResource.EXPIRATION_PATH)
             .getAttributeBuilder()
@@ -171,6 +203,10 @@ public class InfinispanTransformers {
                         RejectAttributeChecker.SIMPLE_EXPRESSIONS,
                         FileStoreResource.PATH, StoreResource.FETCH_STATE, StoreResource.PASSIVATION,
                         StoreResource.PRELOAD, StoreResource.PURGE, StoreResource.SHARED, StoreResource.SINGLETON)
+                //discard preload-parallelism if undefined, and preload-mode if undefined or BLOCKING, and reject them otherwise
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, BaseStoreResource.PRELOAD_PARALLELISM)
+                .setDiscard(new DiscardAttributeChecker.DiscardAttributeValueChecker(new ModelNode(PreloadMode.BLOCKING.name())), BaseStoreResource.PRELOAD_MODE)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, BaseStoreResource.PRELOAD_PARALLELISM, BaseStoreResource.PRELOAD_MODE)
                 .end();
         registerStoreTransformerChildren(fileStoreBuilder);
         //store=STORE
@@ -179,6 +215,10 @@ public class InfinispanTransformers {
                 .addRejectCheck(RejectAttributeChecker.SIMPLE_EXPRESSIONS,
                         StoreResource.CLASS, StoreResource.FETCH_STATE, StoreResource.PASSIVATION, StoreResource.PRELOAD,
                         StoreResource.PURGE, StoreResource.SHARED, StoreResource.SINGLETON)
+                //discard preload-parallelism if undefined, and preload-mode if undefined or BLOCKING, and reject them otherwise
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, BaseStoreResource.PRELOAD_PARALLELISM)
+                .setDiscard(new DiscardAttributeChecker.DiscardAttributeValueChecker(new ModelNode(PreloadMode.BLOCKING.name())), BaseStoreResource.PRELOAD_MODE)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, BaseStoreResource.PRELOAD_PARALLELISM, BaseStoreResource.PRELOAD_MODE)
                 .end();
         registerStoreTransformerChildren(storeBuilder);
         //remote-store=REMOTE_STORE
@@ -189,6 +229,10 @@ public class InfinispanTransformers {
                         RemoteStoreResource.CACHE, StoreResource.FETCH_STATE, StoreResource.PASSIVATION, StoreResource.PRELOAD,
                         StoreResource.PURGE, StoreResource.SHARED, StoreResource.SINGLETON, RemoteStoreResource.SOCKET_TIMEOUT,
                         RemoteStoreResource.TCP_NO_DELAY)
+                //discard preload-parallelism if undefined, and preload-mode if undefined or BLOCKING, and reject them otherwise
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, BaseStoreResource.PRELOAD_PARALLELISM)
+                .setDiscard(new DiscardAttributeChecker.DiscardAttributeValueChecker(new ModelNode(PreloadMode.BLOCKING.name())), BaseStoreResource.PRELOAD_MODE)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, BaseStoreResource.PRELOAD_PARALLELISM, BaseStoreResource.PRELOAD_MODE)
                 .end();
         registerStoreTransformerChildren(remoteStoreBuilder);
 
@@ -222,6 +266,10 @@ public class InfinispanTransformers {
                 .getAttributeBuilder()
                 .addRejectCheck(jdbcKeyedTableChecker, BaseJDBCStoreResource.BINARY_KEYED_TABLE)
                 .addRejectCheck(RejectAttributeChecker.SIMPLE_EXPRESSIONS, jdbcStoreSimpleAttributes)
+                //discard preload-parallelism if undefined, and preload-mode if undefined or BLOCKING, and reject them otherwise
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, BaseStoreResource.PRELOAD_PARALLELISM)
+                .setDiscard(new DiscardAttributeChecker.DiscardAttributeValueChecker(new ModelNode(PreloadMode.BLOCKING.name())), BaseStoreResource.PRELOAD_MODE)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, BaseStoreResource.PRELOAD_PARALLELISM, BaseStoreResource.PRELOAD_MODE)
                 .end();
         registerStoreTransformerChildren(binaryKeyedJdbcStoreBuilder);
 
@@ -230,6 +278,10 @@ public class InfinispanTransformers {
                 .getAttributeBuilder()
                 .addRejectCheck(jdbcKeyedTableChecker, BaseJDBCStoreResource.STRING_KEYED_TABLE)
                 .addRejectCheck(RejectAttributeChecker.SIMPLE_EXPRESSIONS, jdbcStoreSimpleAttributes)
+                //discard preload-parallelism if undefined, and preload-mode if undefined or BLOCKING, and reject them otherwise
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, BaseStoreResource.PRELOAD_PARALLELISM)
+                .setDiscard(new DiscardAttributeChecker.DiscardAttributeValueChecker(new ModelNode(PreloadMode.BLOCKING.name())), BaseStoreResource.PRELOAD_MODE)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, BaseStoreResource.PRELOAD_PARALLELISM, BaseStoreResource.PRELOAD_MODE)
                 .end();
         registerStoreTransformerChildren(stringKeyedJdbcStoreBuilder);
 
@@ -238,6 +290,10 @@ public class InfinispanTransformers {
                 .getAttributeBuilder()
                 .addRejectCheck(jdbcKeyedTableChecker, BaseJDBCStoreResource.STRING_KEYED_TABLE, BaseJDBCStoreResource.BINARY_KEYED_TABLE)
                 .addRejectCheck(RejectAttributeChecker.SIMPLE_EXPRESSIONS, jdbcStoreSimpleAttributes)
+                //discard preload-parallelism if undefined, and preload-mode if undefined or BLOCKING, and reject them otherwise
+                .setDiscard(DiscardAttributeChecker.UNDEFINED, BaseStoreResource.PRELOAD_PARALLELISM)
+                .setDiscard(new DiscardAttributeChecker.DiscardAttributeValueChecker(new ModelNode(PreloadMode.BLOCKING.name())), BaseStoreResource.PRELOAD_MODE)
+                .addRejectCheck(RejectAttributeChecker.DEFINED, BaseStoreResource.PRELOAD_PARALLELISM, BaseStoreResource.PRELOAD_MODE)
                 .end();
         registerStoreTransformerChildren(mixedKeyedJdbcStoreBuilder);
 
@@ -254,6 +310,10 @@ public class InfinispanTransformers {
             .addRejectCheck(
                     RejectAttributeChecker.SIMPLE_EXPRESSIONS,
                     StoreWriteBehindResource.FLUSH_LOCK_TIMEOUT, StoreWriteBehindResource.MODIFICATION_QUEUE_SIZE, StoreWriteBehindResource.SHUTDOWN_TIMEOUT, StoreWriteBehindResource.THREAD_POOL_SIZE)
+            //discard coalescing attributes if undefined or disabled, and reject them if set
+            .setDiscard(new DiscardAttributeChecker.DiscardAttributeValueChecker(new ModelNode(false)), StoreWriteBehindResource.COALESCE)
+            .setDiscard(DiscardAttributeChecker.UNDEFINED, StoreWriteBehindResource.FLUSH_BATCH_SIZE, StoreWriteBehindResource.FLUSH_INTERVAL)
+            .addRejectCheck(RejectAttributeChecker.DEFINED, StoreWriteBehindResource.COALESCE, StoreWriteBehindResource.FLUSH_BATCH_SIZE, StoreWriteBehindResource.FLUSH_INTERVAL)
             .end();
     }
 
@@ -261,4 +321,26 @@ public class InfinispanTransformers {
         for (AttributeDefinition def : defs) {
             map.put(def.getName(), checker);
         }
-    }}
+    }
+
+    /**
+     * Rejects an attribute set to a specific value, e.g. an enum constant unknown to the legacy slave.
+     */
+    private static class ValueRejectAttributeChecker extends RejectAttributeChecker.DefaultRejectAttributeChecker {
+        private final ModelNode value;
+
+        ValueRejectAttributeChecker(ModelNode value) {
+            this.value = value;
+        }
+
+        @Override
+        protected boolean rejectAttribute(PathAddress address, String attributeName, ModelNode attributeValue, TransformationContext context) {
+            return this.value.equals(attributeValue);
+        }
+
+        @Override
+        public String getRejectionLogMessage(Map<String, ModelNode> attributes) {
+            return ControllerMessages.MESSAGES.attributesAreNotUnderstoodAndMustBeIgnored(attributes.keySet());
+        }
+    }
+}
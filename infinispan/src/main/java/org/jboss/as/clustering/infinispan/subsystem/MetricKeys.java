@@ -33,6 +33,10 @@ public class MetricKeys {
     public static final String COORDINATOR_ADDRESS = "coordinator-address";
     public static final String LOCAL_ADDRESS = "local-address";
     public static final String CLUSTER_NAME = "cluster-name";
+    public static final String AFFINITY_KEY_REFILLS = "affinity-key-refills";
+    public static final String AFFINITY_KEY_STARVATIONS = "affinity-key-starvations";
+    public static final String AFFINITY_KEY_DISCARDS = "affinity-key-discards";
+    public static final String START_DURATION = "start-duration";
     // cache
     public static final String BYTES_READ = "bytes-read";
     public static final String BYTES_WRITTEN = "bytes-written";
@@ -50,6 +54,12 @@ public class MetricKeys {
     public static final String HITS = "hits";
     public static final String MISSES = "misses";
     public static final String NUMBER_OF_ENTRIES = "number-of-entries";
+    public static final String MEMORY_USED = "memory-used";
+    public static final String PRELOAD_BYTES = "preload-bytes";
+    public static final String PRELOAD_ENTRIES = "preload-entries";
+    public static final String PRELOAD_MISS_THROUGH_RATIO = "preload-miss-through-ratio";
+    public static final String PRELOAD_PROGRESS = "preload-progress";
+    public static final String PRELOAD_REMAINING_TIME = "preload-remaining-time";
     public static final String READ_WRITE_RATIO = "read-write-ratio";
     public static final String REMOVE_HITS = "remove-hits";
     public static final String REMOVE_MISSES = "remove-misses";
@@ -68,6 +78,35 @@ public class MetricKeys {
     public static final String CACHE_LOADER_LOADS = "cache-loader-loads";
     public static final String CACHE_LOADER_MISSES = "cache-loader-misses";
     public static final String CACHE_LOADER_STORES = "cache-loader-stores";
+    // cache invokers
+    public static final String CIRCUIT_BREAKER_STATE = "circuit-breaker-state";
+    public static final String CIRCUIT_BREAKER_TRIPS = "circuit-breaker-trips";
+    public static final String INVOCATION_RETRIES = "invocation-retries";
+    public static final String INVOCATION_FAILURES = "invocation-failures";
+    public static final String INVOCATION_REJECTIONS = "invocation-rejections";
+    public static final String COALESCED_BATCHES = "coalesced-batches";
+    public static final String AVERAGE_COALESCED_BATCH_SIZE = "average-coalesced-batch-size";
+    public static final String COALESCING_RATIO = "coalescing-ratio";
+    public static final String AVERAGE_COALESCING_DELAY = "average-coalescing-delay";
+    public static final String COLLAPSED_READS = "collapsed-reads";
+    public static final String READ_LATENCY_P50 = "read-latency-p50";
+    public static final String READ_LATENCY_P90 = "read-latency-p90";
+    public static final String READ_LATENCY_P99 = "read-latency-p99";
+    public static final String READ_LATENCY_P999 = "read-latency-p999";
+    public static final String READ_LATENCY_MAX = "read-latency-max";
+    public static final String WRITE_LATENCY_P50 = "write-latency-p50";
+    public static final String WRITE_LATENCY_P90 = "write-latency-p90";
+    public static final String WRITE_LATENCY_P99 = "write-latency-p99";
+    public static final String WRITE_LATENCY_P999 = "write-latency-p999";
+    public static final String WRITE_LATENCY_MAX = "write-latency-max";
+    public static final String COMPRESSED_VALUES = "compressed-values";
+    public static final String COMPRESSION_RATIO = "compression-ratio";
+    public static final String AVERAGE_COMPRESSION_TIME = "average-compression-time";
+    public static final String DECOMPRESSED_VALUES = "decompressed-values";
+    public static final String AVERAGE_DECOMPRESSION_TIME = "average-decompression-time";
+    public static final String WRITE_BEHIND_QUEUE_DEPTH = "write-behind-queue-depth";
+    public static final String WRITE_BEHIND_COALESCING_RATIO = "write-behind-coalescing-ratio";
+    public static final String AVERAGE_WRITE_BEHIND_FLUSH_TIME = "average-write-behind-flush-time";
 
     public static final String JOIN_COMPLETE = "join-complete";
     public static final String STATE_TRANSFER_IN_PROGRESS = "state-transfer-in-progress";
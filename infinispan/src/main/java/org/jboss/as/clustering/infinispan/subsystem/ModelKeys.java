@@ -28,6 +28,9 @@ package org.jboss.as.clustering.infinispan.subsystem;
  */
 public class ModelKeys {
     static final String ACQUIRE_TIMEOUT = "acquire-timeout";
+    static final String AFFINITY_BUFFER_SIZE = "affinity-buffer-size";
+    static final String AFFINITY_EXECUTOR = "affinity-executor";
+    static final String AFFINITY_REFILL_THRESHOLD = "affinity-refill-threshold";
     static final String ALIAS = "alias";
     static final String ALIASES = "aliases";
     static final String APPEND_CACHE_NAME_TO_PATH = "append-cache-name-to-path";
@@ -54,10 +57,12 @@ public class ModelKeys {
     static final String CLUSTER = "cluster";
     static final String CLUSTER_LOADER = "cluster-loader";
     static final String CLUSTER_LOADER_NAME = "CLUSTER_LOADER";
+    static final String COALESCE = "coalesce";
     static final String COMPATIBILITY = "compatibility";
     static final String COMPATIBILITY_NAME = "COMPATIBILITY";
     static final String COMPRESSION = "compression";
     static final String COMPRESSION_NAME = "COMPRESSION";
+    static final String COMPRESSION_THRESHOLD = "compression-threshold";
     static final String CONCURRENCY_LEVEL = "concurrency-level";
     static final String CONNECTION_POOL = "connection-pool";
     static final String CONNECTION_TIMEOUT = "connection-timeout";
@@ -71,12 +76,15 @@ public class ModelKeys {
     static final String EVICTION_NAME = "EVICTION";
     static final String EVICTION_EXECUTOR = "eviction-executor";
     static final String EXECUTOR = "executor";
+    static final String EXTERNALIZERS = "externalizers";
     static final String EXPIRATION = "expiration";
     static final String EXPIRATION_NAME = "EXPIRATION";
     static final String FETCH_SIZE = "fetch-size";
     static final String FETCH_STATE = "fetch-state";
     static final String FILE_STORE = "file-store";
     static final String FILE_STORE_NAME = "FILE_STORE";
+    static final String FLUSH_BATCH_SIZE = "flush-batch-size";
+    static final String FLUSH_INTERVAL = "flush-interval";
     static final String FLUSH_LOCK_TIMEOUT = "flush-lock-timeout";
     static final String HOTROD_WRAPPING = "hotrod-wrapping";
     static final String ID_COLUMN = "id-column";
@@ -114,6 +122,7 @@ public class ModelKeys {
     static final String MARSHALLER = "marshaller";
     static final String MAX_CONNECTIONS_PER_HOST = "max-connections-per-host";
     static final String MAX_ENTRIES = "max-entries";
+    static final String MAX_MEMORY = "max-memory";
     static final String MAX_IDLE = "max-idle";
     static final String MAX_TOTAL_CONNECTIONS = "max-total-connections";
     static final String MODE = "mode";
@@ -126,6 +135,9 @@ public class ModelKeys {
     static final String PATH = "path";
     static final String PREFIX = "prefix";
     static final String PRELOAD = "preload";
+    static final String PRELOAD_EXECUTOR = "preload-executor";
+    static final String PRELOAD_MODE = "preload-mode";
+    static final String PRELOAD_PARALLELISM = "preload-parallelism";
     static final String PROPERTY = "property";
     static final String PROPERTIES = "properties";
     static final String PURGE = "purge";
@@ -154,9 +166,11 @@ public class ModelKeys {
     static final String SOCKET_TIMEOUT = "socket-timeout";
     static final String STACK = "stack";
     static final String START = "start";
+    static final String START_EXECUTOR = "start-executor";
     static final String STATE_TRANSFER = "state-transfer";
     static final String STATE_TRANSFER_NAME = "STATE_TRANSFER";
     static final String STOP_TIMEOUT = "stop-timeout";
+    static final String STORAGE = "storage";
     static final String STORE = "store";
     static final String STORE_NAME = "STORE";
     static final String STRICT_PEER_TO_PEER = "strict-peer-to-peer";
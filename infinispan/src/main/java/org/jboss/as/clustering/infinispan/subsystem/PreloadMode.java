@@ -0,0 +1,39 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.subsystem;
+
+/**
+ * How a cache preloads the entries of its store.
+ */
+public enum PreloadMode {
+    /**
+     * The store is preloaded before the cache is available, sequentially by Infinispan,
+     * or by a {@link org.jboss.as.clustering.infinispan.persistence.ParallelPreloader}, if its preload parallelism is greater than 1.
+     */
+    BLOCKING,
+    /**
+     * The store is preloaded by a {@link org.jboss.as.clustering.infinispan.persistence.BackgroundPreloader} while the cache serves requests,
+     * starting with the keys that were hottest when the cache last stopped.
+     */
+    BACKGROUND,
+    ;
+}
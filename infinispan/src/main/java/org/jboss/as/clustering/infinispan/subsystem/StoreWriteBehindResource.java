@@ -48,6 +48,30 @@ public class StoreWriteBehindResource extends SimpleResourceDefinition {
     public static final PathElement STORE_WRITE_BEHIND_PATH = PathElement.pathElement(ModelKeys.WRITE_BEHIND, ModelKeys.WRITE_BEHIND_NAME);
 
     // attributes
+    static final SimpleAttributeDefinition COALESCE =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.COALESCE, ModelType.BOOLEAN, true)
+                    .setXmlName(Attribute.COALESCE.getLocalName())
+                    .setAllowExpression(true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setDefaultValue(new ModelNode().set(false))
+                    .build();
+
+    static final SimpleAttributeDefinition FLUSH_BATCH_SIZE =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.FLUSH_BATCH_SIZE, ModelType.INT, true)
+                    .setXmlName(Attribute.FLUSH_BATCH_SIZE.getLocalName())
+                    .setAllowExpression(true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setDefaultValue(new ModelNode().set(100))
+                    .build();
+
+    static final SimpleAttributeDefinition FLUSH_INTERVAL =
+            new SimpleAttributeDefinitionBuilder(ModelKeys.FLUSH_INTERVAL, ModelType.LONG, true)
+                    .setXmlName(Attribute.FLUSH_INTERVAL.getLocalName())
+                    .setAllowExpression(true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setDefaultValue(new ModelNode().set(1000L))
+                    .build();
+
     static final SimpleAttributeDefinition FLUSH_LOCK_TIMEOUT =
             new SimpleAttributeDefinitionBuilder(ModelKeys.FLUSH_LOCK_TIMEOUT, ModelType.LONG, true)
                     .setXmlName(Attribute.FLUSH_LOCK_TIMEOUT.getLocalName())
@@ -80,7 +104,7 @@ public class StoreWriteBehindResource extends SimpleResourceDefinition {
                     .setDefaultValue(new ModelNode().set(1))
                     .build();
 
-    static final AttributeDefinition[] WRITE_BEHIND_ATTRIBUTES = {FLUSH_LOCK_TIMEOUT, MODIFICATION_QUEUE_SIZE, THREAD_POOL_SIZE, SHUTDOWN_TIMEOUT};
+    static final AttributeDefinition[] WRITE_BEHIND_ATTRIBUTES = {FLUSH_LOCK_TIMEOUT, MODIFICATION_QUEUE_SIZE, THREAD_POOL_SIZE, SHUTDOWN_TIMEOUT, COALESCE, FLUSH_BATCH_SIZE, FLUSH_INTERVAL};
 
     static final ObjectTypeAttributeDefinition WRITE_BEHIND_OBJECT = ObjectTypeAttributeDefinition.
             Builder.of(ModelKeys.WRITE_BEHIND, WRITE_BEHIND_ATTRIBUTES).
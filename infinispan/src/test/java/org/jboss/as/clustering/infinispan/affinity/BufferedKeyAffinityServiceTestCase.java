@@ -0,0 +1,196 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.affinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.affinity.KeyGenerator;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class BufferedKeyAffinityServiceTestCase {
+
+    static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    static final Executor REJECTING_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            throw new RejectedExecutionException();
+        }
+    };
+
+    private final Address local = mock(Address.class);
+    private final Address remote = mock(Address.class);
+    private final AdvancedCache<Integer, Object> cache = mock(AdvancedCache.class);
+    private final DistributionManager dist = mock(DistributionManager.class);
+    private final KeyAffinityStatistics statistics = new KeyAffinityStatistics();
+    private final CountingKeyGenerator generator = new CountingKeyGenerator();
+
+    @Before
+    public void init() {
+        when(this.cache.getAdvancedCache()).thenReturn(this.cache);
+        when(this.cache.getName()).thenReturn("cache");
+        when(this.cache.getDistributionManager()).thenReturn(this.dist);
+        // Even keys are owned locally
+        ConsistentHash hash = hash(this.local, this.remote);
+        when(this.dist.getConsistentHash()).thenReturn(hash);
+    }
+
+    private ConsistentHash hash(final Address even, final Address odd) {
+        ConsistentHash hash = mock(ConsistentHash.class);
+        when(hash.getMembers()).thenReturn(Arrays.asList(even, odd));
+        when(hash.locatePrimaryOwner(any())).thenAnswer(new Answer<Address>() {
+            @Override
+            public Address answer(InvocationOnMock invocation) {
+                return (((Integer) invocation.getArguments()[0]).intValue() % 2 == 0) ? even : odd;
+            }
+        });
+        return hash;
+    }
+
+    private BufferedKeyAffinityService<Integer> createService(Executor executor, int bufferSize, int refillThreshold) {
+        return new BufferedKeyAffinityService<Integer>(this.cache, this.generator, Collections.singleton(this.local), executor, bufferSize, refillThreshold, this.statistics);
+    }
+
+    @Test
+    public void startFillsBuffer() {
+        BufferedKeyAffinityService<Integer> service = this.createService(DIRECT_EXECUTOR, 4, 1);
+        service.start();
+
+        assertEquals(1, this.statistics.getRefills());
+        // Keys 0, 2, 4, 6 are buffered
+        assertEquals(7, this.generator.count.get());
+
+        assertEquals(Integer.valueOf(0), service.getKeyForAddress(this.local));
+        assertEquals(Integer.valueOf(2), service.getKeyForAddress(this.local));
+        assertEquals(0, this.statistics.getStarvations());
+    }
+
+    @Test
+    public void refillsAtThreshold() {
+        BufferedKeyAffinityService<Integer> service = this.createService(DIRECT_EXECUTOR, 4, 1);
+        service.start();
+
+        service.getKeyForAddress(this.local);
+        service.getKeyForAddress(this.local);
+        assertEquals(1, this.statistics.getRefills());
+        // Leaves a single buffered key
+        service.getKeyForAddress(this.local);
+        assertEquals(2, this.statistics.getRefills());
+
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(0, service.getKeyForAddress(this.local).intValue() % 2);
+        }
+        assertEquals(0, this.statistics.getStarvations());
+    }
+
+    @Test
+    public void starvedCallerGeneratesKey() {
+        BufferedKeyAffinityService<Integer> service = this.createService(REJECTING_EXECUTOR, 4, 1);
+        service.start();
+
+        assertEquals(0, service.getKeyForAddress(this.local).intValue() % 2);
+        assertEquals(1, this.statistics.getStarvations());
+        assertEquals(0, this.statistics.getRefills());
+    }
+
+    @Test
+    public void discardsStaleKeys() {
+        BufferedKeyAffinityService<Integer> service = this.createService(DIRECT_EXECUTOR, 4, 1);
+        service.start();
+
+        // Topology change: odd keys are now owned locally
+        ConsistentHash hash = hash(this.remote, this.local);
+        when(this.dist.getConsistentHash()).thenReturn(hash);
+
+        assertEquals(1, service.getKeyForAddress(this.local).intValue() % 2);
+        assertEquals(4, this.statistics.getDiscards());
+        assertEquals(1, this.statistics.getStarvations());
+    }
+
+    @Test
+    public void unbufferedAddress() {
+        BufferedKeyAffinityService<Integer> service = this.createService(DIRECT_EXECUTOR, 4, 1);
+        service.start();
+
+        assertEquals(1, service.getKeyForAddress(this.remote).intValue() % 2);
+        assertEquals(1, service.getCollocatedKey(Integer.valueOf(3)).intValue() % 2);
+        assertEquals(0, service.getCollocatedKey(Integer.valueOf(4)).intValue() % 2);
+    }
+
+    @Test
+    public void addressNotInTopology() {
+        BufferedKeyAffinityService<Integer> service = this.createService(DIRECT_EXECUTOR, 4, 1);
+        service.start();
+
+        try {
+            service.getKeyForAddress(mock(Address.class));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void stopClearsBuffers() {
+        BufferedKeyAffinityService<Integer> service = this.createService(DIRECT_EXECUTOR, 4, 1);
+        service.start();
+        service.stop();
+
+        // No refill is scheduled once stopped, so the key is generated by the caller
+        assertFalse(service.isStarted());
+        assertEquals(Integer.valueOf(8), service.getKeyForAddress(this.local));
+        assertEquals(1, this.statistics.getStarvations());
+        assertEquals(1, this.statistics.getRefills());
+    }
+
+    static class CountingKeyGenerator implements KeyGenerator<Integer> {
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Integer getKey() {
+            return Integer.valueOf(this.count.getAndIncrement());
+        }
+    }
+}
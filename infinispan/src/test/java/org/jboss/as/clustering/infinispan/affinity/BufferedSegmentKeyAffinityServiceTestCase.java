@@ -0,0 +1,241 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.affinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.jboss.as.clustering.infinispan.affinity.BufferedKeyAffinityServiceTestCase.CountingKeyGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class BufferedSegmentKeyAffinityServiceTestCase {
+
+    private static final int SEGMENTS = 4;
+
+    private final Address local = mock(Address.class);
+    private final Address remote = mock(Address.class);
+    private final AdvancedCache<Integer, Object> cache = mock(AdvancedCache.class);
+    private final DistributionManager dist = mock(DistributionManager.class);
+    private final KeyAffinityStatistics statistics = new KeyAffinityStatistics();
+    private final CountingKeyGenerator generator = new CountingKeyGenerator();
+    private final QueueingExecutor executor = new QueueingExecutor();
+
+    @Before
+    public void init() {
+        when(this.cache.getAdvancedCache()).thenReturn(this.cache);
+        when(this.cache.getName()).thenReturn("cache");
+        when(this.cache.getDistributionManager()).thenReturn(this.dist);
+        // Even segments are owned locally
+        ConsistentHash hash = hash(this.local, this.remote);
+        when(this.dist.getConsistentHash()).thenReturn(hash);
+    }
+
+    /**
+     * Creates a hash whose segment is the key modulo the number of segments, with a single owner per segment.
+     */
+    private static ConsistentHash hash(Address even, Address odd) {
+        ConsistentHash hash = mock(ConsistentHash.class);
+        when(hash.getNumSegments()).thenReturn(SEGMENTS);
+        when(hash.getMembers()).thenReturn(Arrays.asList(even, odd));
+        when(hash.getSegment(any())).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                return Integer.valueOf(((Integer) invocation.getArguments()[0]).intValue() % SEGMENTS);
+            }
+        });
+        for (int i = 0; i < SEGMENTS; ++i) {
+            Address owner = (i % 2 == 0) ? even : odd;
+            List<Address> owners = Collections.singletonList(owner);
+            when(hash.locatePrimaryOwnerForSegment(i)).thenReturn(owner);
+            when(hash.locateOwnersForSegment(i)).thenReturn(owners);
+        }
+        return hash;
+    }
+
+    private BufferedSegmentKeyAffinityService<Integer> createService() {
+        BufferedSegmentKeyAffinityService<Integer> service = new BufferedSegmentKeyAffinityService<Integer>(this.cache, this.generator, this.executor, 4, 1, this.statistics);
+        service.start();
+        return service;
+    }
+
+    @Test
+    public void refillFillsRequestedSegmentOnly() {
+        BufferedSegmentKeyAffinityService<Integer> service = this.createService();
+
+        // The buffer is created on demand, so the first request is starved
+        assertEquals(Integer.valueOf(1), service.getKeysForSegment(1, 1).get(0));
+        assertEquals(1, this.statistics.getStarvations());
+        assertEquals(1, this.executor.run());
+
+        // Keys 5, 9, 13, 17 are buffered: the refill stops as soon as the buffer is full
+        assertEquals(18, this.generator.count.get());
+        assertEquals(1, this.statistics.getRefills());
+
+        assertEquals(Arrays.asList(5, 9, 13, 17), service.getKeysForSegment(1, 4));
+        assertEquals(1, this.statistics.getStarvations());
+    }
+
+    @Test
+    public void refillFillsAllCreatedBuffers() {
+        BufferedSegmentKeyAffinityService<Integer> service = this.createService();
+
+        assertEquals(Integer.valueOf(0), service.getKeyForAddress(this.local));
+        assertEquals(1, this.executor.run());
+
+        // Keys 2, 4, 6, 8, 10, 12, 14, 16 are buffered
+        assertEquals(17, this.generator.count.get());
+
+        List<Integer> keys = service.getKeysForOwners(Collections.singleton(this.local), 8);
+        assertEquals(new HashSet<Integer>(Arrays.asList(2, 4, 6, 8, 10, 12, 14, 16)), new HashSet<Integer>(keys));
+        assertEquals(1, this.statistics.getStarvations());
+    }
+
+    @Test
+    public void refillReplacesDrainedKeysOnly() {
+        BufferedSegmentKeyAffinityService<Integer> service = this.createService();
+        service.getKeysForSegment(1, 1);
+        this.executor.run();
+        assertEquals(18, this.generator.count.get());
+
+        // Leaves a single buffered key, which schedules a refill
+        assertEquals(Arrays.asList(5, 9, 13), service.getKeysForSegment(1, 3));
+        assertEquals(1, this.executor.run());
+
+        // Keys 21, 25, 29 replace the drained keys
+        assertEquals(30, this.generator.count.get());
+        assertEquals(Arrays.asList(17, 21, 25, 29), service.getKeysForSegment(1, 4));
+        assertEquals(1, this.statistics.getStarvations());
+    }
+
+    @Test
+    public void starvedCallerGeneratesKey() {
+        BufferedSegmentKeyAffinityService<Integer> service = new BufferedSegmentKeyAffinityService<Integer>(this.cache, this.generator, BufferedKeyAffinityServiceTestCase.REJECTING_EXECUTOR, 4, 1, this.statistics);
+        service.start();
+
+        assertEquals(Integer.valueOf(3), service.getKeysForSegment(3, 1).get(0));
+        assertEquals(Integer.valueOf(7), service.getKeysForSegment(3, 1).get(0));
+        assertEquals(2, this.statistics.getStarvations());
+        assertEquals(0, this.statistics.getRefills());
+    }
+
+    @Test
+    public void stopDiscardsBufferedKeys() {
+        BufferedSegmentKeyAffinityService<Integer> service = this.createService();
+        service.getKeysForSegment(1, 1);
+        this.executor.run();
+
+        service.stop();
+        service.start();
+
+        assertEquals(Integer.valueOf(21), service.getKeysForSegment(1, 1).get(0));
+        assertEquals(2, this.statistics.getStarvations());
+
+        // The discarded keys are replaced by the next refill
+        assertEquals(1, this.executor.run());
+        assertEquals(38, this.generator.count.get());
+        assertEquals(Arrays.asList(25, 29, 33, 37), service.getKeysForSegment(1, 4));
+    }
+
+    @Test
+    public void collocatedKey() {
+        BufferedSegmentKeyAffinityService<Integer> service = this.createService();
+
+        assertEquals(2, service.getCollocatedKey(Integer.valueOf(6)).intValue() % SEGMENTS);
+        assertEquals(3, service.getCollocatedKey(Integer.valueOf(7)).intValue() % SEGMENTS);
+    }
+
+    @Test
+    public void addressNotInTopology() {
+        BufferedSegmentKeyAffinityService<Integer> service = this.createService();
+
+        try {
+            service.getKeyForAddress(mock(Address.class));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void indexFollowsTopology() {
+        BufferedSegmentKeyAffinityService<Integer> service = this.createService();
+
+        assertEquals(segments(0, 2), service.getSegmentsForPrimaryOwner(this.local));
+        assertEquals(segments(1, 3), service.getSegmentsForOwners(Collections.singleton(this.remote)));
+
+        // Topology change: odd segments are now owned locally
+        ConsistentHash hash = hash(this.remote, this.local);
+        when(this.dist.getConsistentHash()).thenReturn(hash);
+
+        assertEquals(segments(1, 3), service.getSegmentsForPrimaryOwner(this.local));
+        assertEquals(segments(0, 2), service.getSegmentsForOwners(Collections.singleton(this.remote)));
+        assertTrue(service.getSegmentsForOwners(Arrays.asList(this.local, this.remote)).isEmpty());
+        assertEquals(1, service.getKeyForAddress(this.local).intValue() % 2);
+    }
+
+    private static Set<Integer> segments(Integer... segments) {
+        return new HashSet<Integer>(Arrays.asList(segments));
+    }
+
+    /**
+     * Executor that defers tasks until explicitly run by the test.
+     */
+    static class QueueingExecutor implements Executor {
+        private final Queue<Runnable> tasks = new LinkedList<Runnable>();
+
+        @Override
+        public void execute(Runnable task) {
+            this.tasks.add(task);
+        }
+
+        int run() {
+            int count = 0;
+            Runnable task = this.tasks.poll();
+            while (task != null) {
+                task.run();
+                count += 1;
+                task = this.tasks.poll();
+            }
+            return count;
+        }
+    }
+}
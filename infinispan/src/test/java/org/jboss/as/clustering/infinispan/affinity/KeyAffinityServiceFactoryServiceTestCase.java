@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.affinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.infinispan.affinity.KeyAffinityService;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.jboss.as.clustering.infinispan.affinity.BufferedKeyAffinityServiceTestCase.CountingKeyGenerator;
+import org.junit.Test;
+
+public class KeyAffinityServiceFactoryServiceTestCase {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refillThresholdMustBeLessThanBufferSize() {
+        new KeyAffinityServiceFactoryService(10, 10);
+    }
+
+    @Test
+    public void defaultExecutorIsBounded() throws Exception {
+        KeyAffinityServiceFactoryService service = new KeyAffinityServiceFactoryService(10, 5);
+        service.start(null);
+        try {
+            ThreadPoolExecutor executor = (ThreadPoolExecutor) service.getExecutor();
+            assertEquals(Runtime.getRuntime().availableProcessors(), executor.getMaximumPoolSize());
+            assertEquals(KeyAffinityServiceFactoryService.DEFAULT_QUEUE_SIZE, executor.getQueue().remainingCapacity());
+        } finally {
+            service.stop(null);
+        }
+        assertNull(service.getExecutor());
+    }
+
+    @Test
+    public void injectedExecutor() throws Exception {
+        Executor executor = BufferedKeyAffinityServiceTestCase.DIRECT_EXECUTOR;
+        KeyAffinityServiceFactoryService service = new KeyAffinityServiceFactoryService(10, 5);
+        service.getExecutorInjector().inject(executor);
+        service.start(null);
+
+        assertSame(executor, service.getExecutor());
+        service.stop(null);
+    }
+
+    @Test
+    public void localCache() throws Exception {
+        EmbeddedCacheManager manager = new DefaultCacheManager();
+        KeyAffinityServiceFactoryService service = new KeyAffinityServiceFactoryService(10);
+        service.start(null);
+        try {
+            CountingKeyGenerator generator = new CountingKeyGenerator();
+            KeyAffinityService<Integer> affinity = service.createService(manager.<Integer, Object>getCache(), generator);
+            affinity.start();
+
+            // Keys of a non-distributed cache are generated on demand
+            assertEquals(Integer.valueOf(0), affinity.getKeyForAddress(null));
+            assertEquals(1, generator.count.get());
+            affinity.stop();
+            assertFalse(affinity.isStarted());
+        } finally {
+            service.stop(null);
+            manager.stop();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.affinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.TopologyAwareAddress;
+import org.jboss.as.clustering.infinispan.affinity.BufferedKeyAffinityServiceTestCase.CountingKeyGenerator;
+import org.jboss.as.clustering.infinispan.affinity.BufferedSegmentKeyAffinityServiceTestCase.QueueingExecutor;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class LocalityKeyAffinityServiceTestCase {
+
+    private final TopologyAwareAddress a1 = address("site", "a");
+    private final TopologyAwareAddress a2 = address("site", "a");
+    private final TopologyAwareAddress b1 = address("site", "b");
+    private final TopologyAwareAddress b2 = address("site", "b");
+    // Primary owner of each segment, with its backup in the other rack, as placed by a topology aware consistent hash
+    private final List<Address> primaryOwners = Arrays.<Address>asList(this.a1, this.b1, this.a2, this.b2);
+    private final List<Address> backupOwners = Arrays.<Address>asList(this.b1, this.a1, this.b2, this.a2);
+    private final AdvancedCache<Integer, Object> cache = mock(AdvancedCache.class);
+    private final DistributionManager dist = mock(DistributionManager.class);
+    private final ConsistentHash hash = mock(ConsistentHash.class);
+    private final KeyAffinityStatistics statistics = new KeyAffinityStatistics();
+
+    private static TopologyAwareAddress address(String siteId, String rackId) {
+        TopologyAwareAddress address = mock(TopologyAwareAddress.class);
+        when(address.getSiteId()).thenReturn(siteId);
+        when(address.getRackId()).thenReturn(rackId);
+        return address;
+    }
+
+    @Before
+    public void init() {
+        when(this.cache.getAdvancedCache()).thenReturn(this.cache);
+        when(this.cache.getName()).thenReturn("cache");
+        when(this.cache.getDistributionManager()).thenReturn(this.dist);
+        when(this.dist.getConsistentHash()).thenReturn(this.hash);
+        when(this.hash.getNumSegments()).thenReturn(this.primaryOwners.size());
+        when(this.hash.getMembers()).thenReturn(Arrays.<Address>asList(this.a1, this.a2, this.b1, this.b2));
+        when(this.hash.getSegment(any())).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                return Integer.valueOf(segment(invocation.getArguments()[0]));
+            }
+        });
+        when(this.dist.getPrimaryLocation(any())).thenAnswer(new Answer<Address>() {
+            @Override
+            public Address answer(InvocationOnMock invocation) {
+                return LocalityKeyAffinityServiceTestCase.this.primaryOwners.get(segment(invocation.getArguments()[0]));
+            }
+        });
+        for (int i = 0; i < this.primaryOwners.size(); ++i) {
+            List<Address> owners = Arrays.asList(this.primaryOwners.get(i), this.backupOwners.get(i));
+            when(this.hash.locatePrimaryOwnerForSegment(i)).thenReturn(this.primaryOwners.get(i));
+            when(this.hash.locateOwnersForSegment(i)).thenReturn(owners);
+        }
+    }
+
+    int segment(Object key) {
+        return ((Integer) key).intValue() % this.primaryOwners.size();
+    }
+
+    private BufferedSegmentKeyAffinityService<Integer> createSegmentService() {
+        BufferedSegmentKeyAffinityService<Integer> service = new BufferedSegmentKeyAffinityService<Integer>(this.cache, new CountingKeyGenerator(), new QueueingExecutor(), 4, 1, this.statistics);
+        service.start();
+        return service;
+    }
+
+    @Test
+    public void segmentsForLocality() {
+        BufferedSegmentKeyAffinityService<Integer> service = this.createSegmentService();
+
+        // Backup owners always belong to the other rack, so only the primary owner can be confined to a rack
+        assertEquals(new HashSet<Integer>(Arrays.asList(0, 2)), service.getSegmentsForLocality(Locality.rack("site", "a")));
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 3)), service.getSegmentsForLocality(Locality.rack("site", "b")));
+        assertEquals(4, service.getSegmentsForLocality(Locality.site("site")).size());
+        assertTrue(service.getSegmentsForLocality(Locality.site("other")).isEmpty());
+
+        for (Integer key: service.getKeysForLocality(Locality.rack("site", "b"), 10)) {
+            assertEquals(1, key.intValue() % 2);
+        }
+    }
+
+    @Test
+    public void noSegmentsForLocality() {
+        BufferedSegmentKeyAffinityService<Integer> service = this.createSegmentService();
+
+        try {
+            service.getKeysForLocality(Locality.rack("site", "c"), 1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void keyForAddress() {
+        LocalityKeyAffinityService<Integer> service = new LocalityKeyAffinityService<Integer>(this.cache, this.createSegmentService(), Locality.rack("site", "a"));
+
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(0, service.getKeyForAddress(this.a1).intValue() % 4);
+            assertEquals(2, service.getKeyForAddress(this.a2).intValue() % 4);
+        }
+        try {
+            service.getKeyForAddress(this.b1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void collocatedKey() {
+        LocalityKeyAffinityService<Integer> service = new LocalityKeyAffinityService<Integer>(this.cache, this.createSegmentService(), Locality.rack("site", "a"));
+
+        assertEquals(0, service.getCollocatedKey(Integer.valueOf(4)).intValue() % 4);
+        assertEquals(2, service.getCollocatedKey(Integer.valueOf(6)).intValue() % 4);
+        // Keys primarily owned outside of the locality cannot be collocated within it
+        try {
+            service.getCollocatedKey(Integer.valueOf(5));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void lifecycle() {
+        LocalityKeyAffinityService<Integer> service = new LocalityKeyAffinityService<Integer>(this.cache, this.createSegmentService(), Locality.site("site"));
+
+        assertTrue(service.isStarted());
+        service.stop();
+        assertFalse(service.isStarted());
+    }
+}
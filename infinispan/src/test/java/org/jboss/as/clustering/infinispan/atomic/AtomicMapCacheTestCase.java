@@ -0,0 +1,195 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.atomic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.context.Flag;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AtomicMapCacheTestCase {
+
+    private EmbeddedCacheManager manager;
+    private ExecutorService executor;
+
+    @Before
+    public void init() {
+        this.manager = new DefaultCacheManager(new ConfigurationBuilder().invocationBatching().enable().build());
+        this.manager.defineConfiguration("non-transactional", new ConfigurationBuilder().build());
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void destroy() {
+        this.executor.shutdownNow();
+        this.manager.stop();
+    }
+
+    private AdvancedCache<String, Map<String, String>> getCache(String name) {
+        Cache<String, Map<String, String>> cache = this.manager.getCache(name);
+        return cache.getAdvancedCache();
+    }
+
+    private static Map<String, String> map(String... entries) {
+        Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < entries.length; i += 2) {
+            map.put(entries[i], entries[i + 1]);
+        }
+        return map;
+    }
+
+    @Test
+    public void put() {
+        for (AtomicMapCache.Mode mode: AtomicMapCache.Mode.values()) {
+            AtomicMapCache<String, String, String> cache = new AtomicMapCache<String, String, String>(this.getCache(mode.name()), mode);
+
+            assertNull(mode.name(), cache.put("key", map("a", "1", "b", "2")));
+            assertEquals(mode.name(), map("a", "1", "b", "2"), cache.get("key"));
+
+            assertEquals(mode.name(), map("a", "1", "b", "2"), cache.put("key", map("a", "1", "c", "3")));
+            assertEquals(mode.name(), map("a", "1", "c", "3"), cache.get("key"));
+
+            assertNull(mode.name(), cache.replace("missing", map("a", "1")));
+            assertNull(mode.name(), cache.get("missing"));
+            assertFalse(mode.name(), cache.replace("key", map("a", "1"), map("d", "4")));
+            assertTrue(mode.name(), cache.replace("key", map("a", "1", "c", "3"), map("d", "4")));
+            assertEquals(mode.name(), map("d", "4"), cache.get("key"));
+        }
+    }
+
+    @Test
+    public void ignoreReturnValues() {
+        for (AtomicMapCache.Mode mode: AtomicMapCache.Mode.values()) {
+            AtomicMapCache<String, String, String> cache = new AtomicMapCache<String, String, String>(this.getCache(mode.name()), mode);
+            cache.put("key", map("a", "1"));
+
+            assertNull(mode.name(), cache.withFlags(Flag.IGNORE_RETURN_VALUES).put("key", map("a", "2")));
+            assertNull(mode.name(), cache.withFlags(Flag.IGNORE_RETURN_VALUES).replace("key", map("a", "3")));
+            assertEquals(mode.name(), map("a", "3"), cache.get("key"));
+        }
+    }
+
+    @Test
+    public void putForExternalRead() {
+        for (AtomicMapCache.Mode mode: AtomicMapCache.Mode.values()) {
+            AtomicMapCache<String, String, String> cache = new AtomicMapCache<String, String, String>(this.getCache(mode.name()), mode);
+
+            cache.putForExternalRead("key", map("a", "1"));
+            assertEquals(mode.name(), map("a", "1"), cache.get("key"));
+
+            // Existing atomic maps are left untouched
+            cache.putForExternalRead("key", map("a", "2"));
+            assertEquals(mode.name(), map("a", "1"), cache.get("key"));
+        }
+    }
+
+    @Test
+    public void expiration() throws InterruptedException {
+        for (AtomicMapCache.Mode mode: AtomicMapCache.Mode.values()) {
+            AdvancedCache<String, Map<String, String>> backingCache = this.getCache(mode.name());
+            AtomicMapCache<String, String, String> cache = new AtomicMapCache<String, String, String>(backingCache, mode);
+            cache.put("key", map("a", "1"));
+
+            cache.put("key", map("a", "1", "b", "2"), 10, TimeUnit.MINUTES);
+            assertEquals(mode.name(), map("a", "1", "b", "2"), cache.get("key"));
+            CacheEntry entry = backingCache.getCacheEntry("key");
+            assertEquals(mode.name(), TimeUnit.MINUTES.toMillis(10), entry.getLifespan());
+
+            cache.put("expiring", map("a", "1"), 1, TimeUnit.MILLISECONDS);
+            cache.putIfAbsent("created", null, 1, TimeUnit.MILLISECONDS);
+            Thread.sleep(10);
+            assertNull(mode.name(), cache.get("expiring"));
+            assertNull(mode.name(), cache.get("created"));
+            assertEquals(mode.name(), map("a", "1", "b", "2"), cache.get("key"));
+        }
+    }
+
+    @Test
+    public void compactKeyTypes() {
+        AtomicMapCache<String, Object, String> cache = new AtomicMapCache<String, Object, String>(this.manager.<String, Map<Object, String>>getCache("compact").getAdvancedCache(), AtomicMapCache.Mode.COMPACT);
+        cache.put("key", Collections.<Object, String>singletonMap(Integer.valueOf(1), "a"));
+
+        assertEquals("a", cache.get("key").get(Integer.valueOf(1)));
+        try {
+            cache.get("key").put(new Date(), "b");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void fineGrainedRequiresTransactions() {
+        try {
+            new AtomicMapCache<String, String, String>(this.getCache("non-transactional"), AtomicMapCache.Mode.FINE_GRAINED);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void async() throws Exception {
+        for (AtomicMapCache.Mode mode: AtomicMapCache.Mode.values()) {
+            AtomicMapCache<String, String, String> cache = new AtomicMapCache<String, String, String>(this.getCache(mode.name()), mode, this.executor);
+
+            assertNull(mode.name(), cache.putAsync("key", map("a", "1")).get());
+            assertEquals(mode.name(), map("a", "1"), cache.replaceAsync("key", map("a", "2"), 10, TimeUnit.MINUTES).get());
+            assertTrue(mode.name(), cache.replaceAsync("key", map("a", "2"), map("b", "3")).get());
+            cache.putAllAsync(Collections.singletonMap("other", map("c", "4"))).get();
+            assertEquals(mode.name(), map("b", "3"), cache.get("key"));
+            assertEquals(mode.name(), map("c", "4"), cache.get("other"));
+        }
+    }
+
+    @Test
+    public void asyncWithoutExecutor() throws Exception {
+        AtomicMapCache<String, String, String> cache = new AtomicMapCache<String, String, String>(this.getCache("cache"));
+
+        NotifyingFuture<Map<String, String>> future = cache.putAsync("key", map("a", "1"));
+        // Completes on the calling thread
+        assertTrue(future.isDone());
+        assertNull(future.get());
+        assertEquals(map("a", "1"), cache.get("key"));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.atomic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.infinispan.commons.marshall.JavaSerializationMarshaller;
+import org.junit.Test;
+
+public class CompactCodecTestCase {
+
+    private final CompactCodec codec = new CompactCodec(new JavaSerializationMarshaller());
+
+    @Test
+    public void nativeTypes() {
+        for (Object value: Arrays.<Object>asList("", "value", "été", Integer.valueOf(0), Integer.valueOf(-1), Integer.valueOf(Integer.MIN_VALUE), Long.valueOf(Long.MAX_VALUE), Long.valueOf(-2), Boolean.TRUE, Boolean.FALSE)) {
+            assertEquals(value, this.codec.decode(this.codec.encode(value)));
+            assertArrayEquals(this.codec.encode(value), CompactCodec.encodeKey(value));
+        }
+        assertNull(this.codec.decode(CompactCodec.encodeKey(null)));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) this.codec.decode(CompactCodec.encodeKey(new byte[] { 1, 2, 3 })));
+    }
+
+    @Test
+    public void typesAreDistinguished() {
+        assertEquals(Integer.valueOf(1), this.codec.decode(this.codec.encode(Integer.valueOf(1))));
+        assertEquals(Long.valueOf(1), this.codec.decode(this.codec.encode(Long.valueOf(1))));
+        assertEquals("1", this.codec.decode(this.codec.encode("1")));
+    }
+
+    @Test
+    public void marshalledValues() {
+        Date date = new Date(1234567890L);
+        List<String> list = Arrays.asList("a", "b");
+
+        assertEquals(date, this.codec.decode(this.codec.encode(date)));
+        assertEquals(list, this.codec.decode(this.codec.encode(list)));
+    }
+
+    @Test
+    public void unsupportedKeys() {
+        try {
+            CompactCodec.encodeKey(new Date());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+}
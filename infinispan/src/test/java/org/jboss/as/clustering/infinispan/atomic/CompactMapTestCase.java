@@ -0,0 +1,158 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.atomic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class CompactMapTestCase {
+
+    private static byte[] key(int i) {
+        return CompactCodec.encodeKey("key-" + i);
+    }
+
+    private static byte[] value(int i) {
+        return CompactCodec.encodeKey(Integer.valueOf(i));
+    }
+
+    @Test
+    public void putGetRemove() {
+        CompactMap map = new CompactMap();
+
+        assertNull(map.putEncoded(key(1), value(1)));
+        assertNull(map.putEncoded(key(2), value(2)));
+        assertEquals(2, map.size());
+        assertArrayEquals(value(1), map.getEncoded(key(1)));
+        assertArrayEquals(value(2), map.getEncoded(key(2)));
+        assertNull(map.getEncoded(key(3)));
+
+        assertArrayEquals(value(1), map.removeEncoded(key(1)));
+        assertNull(map.removeEncoded(key(1)));
+        assertNull(map.getEncoded(key(1)));
+        assertArrayEquals(value(2), map.getEncoded(key(2)));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void overwrite() {
+        CompactMap map = new CompactMap();
+        map.putEncoded(key(1), value(1));
+        map.putEncoded(key(2), value(2));
+        int length = map.getBlockLength();
+
+        // Values of the same length are written in place
+        assertArrayEquals(value(1), map.putEncoded(key(1), value(3)));
+        assertEquals(length, map.getBlockLength());
+        assertArrayEquals(value(3), map.getEncoded(key(1)));
+
+        // Otherwise, the entry moves to the end of the block
+        byte[] longer = CompactCodec.encodeKey("a longer value");
+        assertArrayEquals(value(3), map.putEncoded(key(1), longer));
+        assertEquals(length + longer.length - value(1).length, map.getBlockLength());
+        assertArrayEquals(longer, map.getEncoded(key(1)));
+        assertArrayEquals(value(2), map.getEncoded(key(2)));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void growth() {
+        CompactMap map = new CompactMap();
+        int capacity = map.getBlockCapacity();
+        for (int i = 0; i < 1000; ++i) {
+            map.putEncoded(key(i), value(i));
+        }
+        assertEquals(1000, map.size());
+        assertTrue(map.getBlockCapacity() > capacity);
+        for (int i = 0; i < 1000; i += 2) {
+            assertArrayEquals(value(i), map.removeEncoded(key(i)));
+        }
+        assertEquals(500, map.size());
+        for (int i = 0; i < 1000; ++i) {
+            if (i % 2 == 0) {
+                assertNull(map.getEncoded(key(i)));
+            } else {
+                assertArrayEquals(value(i), map.getEncoded(key(i)));
+            }
+        }
+        assertEquals(500, map.getEncodedKeys().size());
+        assertEquals(500, map.getEncodedEntries().size());
+    }
+
+    @Test
+    public void externalize() throws Exception {
+        CompactMap map = new CompactMap();
+        for (int i = 0; i < 100; ++i) {
+            map.putEncoded(key(i), value(i));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(map);
+        output.close();
+
+        CompactMap copy = (CompactMap) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertEquals(100, copy.size());
+        assertEquals(map.getBlockLength(), copy.getBlockLength());
+        for (int i = 0; i < 100; ++i) {
+            assertArrayEquals(value(i), copy.getEncoded(key(i)));
+        }
+        // The table of the copy must accept further writes
+        copy.putEncoded(key(100), value(100));
+        assertArrayEquals(value(100), copy.getEncoded(key(100)));
+    }
+
+    @Test
+    public void merge() {
+        CompactMap map = new CompactMap();
+        map.putEncoded(key(1), value(1));
+        map.putEncoded(key(2), value(2));
+
+        CompactMapDelta delta = new CompactMapDelta();
+        delta.remove(key(1));
+        delta.put(key(3), value(3));
+
+        // Deltas patch the target in place
+        assertSame(map, delta.merge(map));
+        Set<String> keys = new HashSet<String>();
+        for (byte[] key: map.getEncodedKeys()) {
+            keys.add(new String(key, 1, key.length - 1));
+        }
+        assertEquals(new HashSet<String>(Arrays.asList("key-2", "key-3")), keys);
+
+        CompactMap created = (CompactMap) delta.merge(null);
+        assertEquals(1, created.size());
+        assertArrayEquals(value(3), created.getEncoded(key(3)));
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.compression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.commons.marshall.JavaSerializationMarshaller;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.interceptors.InvocationContextInterceptor;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompressionInterceptorTestCase {
+
+    private static final int THRESHOLD = 256;
+
+    private CompressionInterceptor interceptor;
+    private EmbeddedCacheManager manager;
+    private AdvancedCache<String, Object> cache;
+
+    @Before
+    public void init() {
+        // The cache marshaller requires JBoss Marshalling, so use Java serialization instead
+        this.interceptor = new CompressionInterceptor(THRESHOLD, new JavaSerializationMarshaller());
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.customInterceptors().addInterceptor().interceptor(this.interceptor).after(InvocationContextInterceptor.class);
+        builder.dataContainer().valueEquivalence(new CompressedValueEquivalence(this.interceptor));
+        this.manager = new DefaultCacheManager(builder.build());
+        Cache<String, Object> cache = this.manager.getCache();
+        this.cache = cache.getAdvancedCache();
+    }
+
+    @After
+    public void destroy() {
+        this.manager.stop();
+    }
+
+    private Object getStoredValue(String key) {
+        return this.cache.getDataContainer().get(key).getValue();
+    }
+
+    private static String text(String word) {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < THRESHOLD * 4) {
+            builder.append(word).append(' ');
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void compress() {
+        String value = text("compressible");
+
+        assertNull(this.cache.put("key", value));
+
+        assertTrue(this.getStoredValue("key") instanceof CompressedValue);
+        assertEquals(value, this.cache.get("key"));
+        assertEquals(value, this.cache.put("key", text("other")));
+        assertEquals(2, this.interceptor.getCompressions());
+        assertTrue(this.interceptor.getCompressionRatio() > 1);
+    }
+
+    @Test
+    public void small() {
+        this.cache.put("key", "small");
+
+        assertEquals("small", this.getStoredValue("key"));
+        assertEquals("small", this.cache.get("key"));
+        assertEquals(0, this.interceptor.getCompressions());
+    }
+
+    @Test
+    public void incompressible() {
+        byte[] value = new byte[THRESHOLD * 4];
+        new Random(0).nextBytes(value);
+
+        this.cache.put("key", value);
+
+        // Values that do not shrink are stored unwrapped
+        assertTrue(this.getStoredValue("key") instanceof byte[]);
+        assertArrayEquals(value, (byte[]) this.cache.get("key"));
+        assertEquals(0, this.interceptor.getCompressions());
+    }
+
+    @Test
+    public void conditionalReplace() {
+        String text = text("replace");
+        this.cache.put("key", new Value(text, 1));
+
+        // Equal values, whose marshalled forms differ
+        assertFalse(this.cache.replace("key", new Value(text("other"), 1), new Value(text, 3)));
+        assertTrue(this.cache.replace("key", new Value(text, 2), new Value(text("replaced"), 3)));
+
+        assertEquals(new Value(text("replaced"), 0), this.cache.get("key"));
+        assertTrue(this.getStoredValue("key") instanceof CompressedValue);
+    }
+
+    @Test
+    public void conditionalRemove() {
+        String text = text("remove");
+        this.cache.put("key", new Value(text, 1));
+
+        assertFalse(this.cache.remove("key", new Value(text("other"), 1)));
+        assertTrue(this.cache.remove("key", new Value(text, 2)));
+
+        assertNull(this.cache.get("key"));
+    }
+
+    @Test
+    public void cacheEntry() {
+        String value = text("entry");
+        this.cache.put("key", value);
+
+        CacheEntry entry = this.cache.getCacheEntry("key");
+
+        assertEquals("key", entry.getKey());
+        assertEquals(value, entry.getValue());
+        // The stored entry is not modified
+        assertTrue(this.getStoredValue("key") instanceof CompressedValue);
+        assertNull(this.cache.getCacheEntry("missing"));
+    }
+
+    @Test
+    public void bulk() {
+        String value = text("bulk");
+        this.cache.put("compressed", value);
+        this.cache.put("small", "small");
+
+        Collection<Object> values = this.cache.values();
+        assertEquals(2, values.size());
+        assertTrue(values.contains(value));
+        assertTrue(values.contains("small"));
+
+        Set<Map.Entry<String, Object>> entries = this.cache.entrySet();
+        assertEquals(2, entries.size());
+        for (Map.Entry<String, Object> entry: entries) {
+            assertEquals(entry.getKey().equals("small") ? "small" : value, entry.getValue());
+        }
+    }
+
+    static class Value implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+        // Not part of equality, but marshalled
+        private final int version;
+
+        Value(String text, int version) {
+            this.text = text;
+            this.version = version;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.text.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return (object instanceof Value) && this.text.equals(((Value) object).text);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[%d]", this.text.substring(0, 10), this.version);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.container;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.container.InternalEntryFactoryImpl;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.eviction.PassivationManager;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.Metadata;
+import org.infinispan.util.TimeService;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class BinaryDataContainerTestCase {
+    private static final Metadata METADATA = new EmbeddedMetadata.Builder().build();
+
+    private final EvictionManager evictionManager = mock(EvictionManager.class);
+    private final PassivationManager passivator = mock(PassivationManager.class);
+    private final TimeService timeService = mock(TimeService.class);
+    private final AtomicLong time = new AtomicLong();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void destroy() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void evict() {
+        BinaryDataContainer container = this.createContainer(false, 4, 0);
+        for (int i = 0; i < 5; ++i) {
+            container.put(key(i), value(i), METADATA);
+        }
+        // The least recently used entry is evicted
+        assertNull(container.peek(key(0)));
+        for (int i = 1; i < 5; ++i) {
+            assertArrayEquals(value(i), (byte[]) container.peek(key(i)).getValue());
+        }
+        verify(this.evictionManager).onEntryEviction(anyMapOf(Object.class, InternalCacheEntry.class));
+        verify(this.passivator, never()).passivate(any(InternalCacheEntry.class));
+    }
+
+    @Test
+    public void passivateWithoutLock() {
+        final BinaryDataContainer container = this.createContainer(true, 4, 0);
+        for (int i = 0; i < 4; ++i) {
+            container.put(key(i), value(i), METADATA);
+        }
+        final List<InternalCacheEntry> passivated = new ArrayList<InternalCacheEntry>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Exception {
+                passivated.add((InternalCacheEntry) invocation.getArguments()[0]);
+                // Another thread can read the segment, and still finds the entry being passivated
+                InternalCacheEntry entry = BinaryDataContainerTestCase.this.executor.submit(new Callable<InternalCacheEntry>() {
+                    @Override
+                    public InternalCacheEntry call() {
+                        return container.peek(key(0));
+                    }
+                }).get(10, TimeUnit.SECONDS);
+                assertNotNull(entry);
+                return null;
+            }
+        }).when(this.passivator).passivate(any(InternalCacheEntry.class));
+
+        container.put(key(4), value(4), METADATA);
+
+        assertEquals(1, passivated.size());
+        assertArrayEquals(key(0), (byte[]) passivated.get(0).getKey());
+        assertNull(container.peek(key(0)));
+        assertNotNull(container.peek(key(4)));
+        verify(this.evictionManager).onEntryEviction(anyMapOf(Object.class, InternalCacheEntry.class));
+    }
+
+    @Test
+    public void passivateReplaced() {
+        final BinaryDataContainer container = this.createContainer(true, 4, 0);
+        for (int i = 0; i < 4; ++i) {
+            container.put(key(i), value(i), METADATA);
+        }
+        final List<InternalCacheEntry> passivated = new ArrayList<InternalCacheEntry>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Exception {
+                passivated.add((InternalCacheEntry) invocation.getArguments()[0]);
+                if (passivated.size() == 1) {
+                    // Replace the entry while it is being passivated
+                    BinaryDataContainerTestCase.this.executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            container.put(key(0), value(10), METADATA);
+                            return null;
+                        }
+                    }).get(10, TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        }).when(this.passivator).passivate(any(InternalCacheEntry.class));
+
+        container.put(key(4), value(4), METADATA);
+
+        // The replacement is passivated in turn, so the store does not retain the stale value
+        verify(this.passivator, times(2)).passivate(any(InternalCacheEntry.class));
+        assertArrayEquals(value(0), (byte[]) passivated.get(0).getValue());
+        assertArrayEquals(value(10), (byte[]) passivated.get(1).getValue());
+        assertNull(container.peek(key(0)));
+        assertEquals(4, container.size());
+    }
+
+    @Test
+    public void replaceWithoutEviction() {
+        BinaryDataContainer container = this.createContainer(true, 4, 0);
+        for (int i = 0; i < 4; ++i) {
+            container.put(key(i), value(i), METADATA);
+        }
+        container.put(key(0), value(10), METADATA);
+
+        assertArrayEquals(value(10), (byte[]) container.peek(key(0)).getValue());
+        assertEquals(4, container.size());
+        verify(this.passivator, never()).passivate(any(InternalCacheEntry.class));
+    }
+
+    @Test
+    public void memoryUsed() {
+        BinaryDataContainer container = this.createContainer(false, 4, 0);
+        assertEquals(0, container.getMemoryUsed());
+        container.put(key(0), value(0), METADATA);
+        assertTrue(container.getMemoryUsed() > 0);
+        assertTrue(container.getAllocatedMemory() >= container.getMemoryUsed());
+        container.clear();
+        assertEquals(0, container.getMemoryUsed());
+    }
+
+    @Test
+    public void maxMemory() {
+        long maxMemory = 1 << 16;
+        BinaryDataContainer container = this.createContainer(false, 0, maxMemory);
+        Random random = new Random(1L);
+        for (int i = 0; i < 10000; ++i) {
+            // Values of varying size, replaced at random, leave removed entries in the pages
+            container.put(key(random.nextInt(1000)), new byte[random.nextInt(500)], METADATA);
+            assertTrue(container.getAllocatedMemory() <= maxMemory);
+        }
+        // Most of the budget holds live entries
+        assertTrue(container.getMemoryUsed() > maxMemory / 2);
+    }
+
+    @Test
+    public void maxMemoryLargeEntry() {
+        long maxMemory = 1 << 16;
+        BinaryDataContainer container = this.createContainer(false, 0, maxMemory);
+        for (int i = 0; i < 10; ++i) {
+            container.put(key(i), value(i), METADATA);
+        }
+        container.put(key(10), new byte[(int) maxMemory], METADATA);
+
+        // All other entries are evicted, though the entry alone exceeds max-memory
+        assertEquals(1, container.size());
+        assertNotNull(container.peek(key(10)));
+    }
+
+    private BinaryDataContainer createContainer(boolean passivation, int maxEntries, long maxMemory) {
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.locking().concurrencyLevel(1);
+        if (maxEntries > 0) {
+            builder.eviction().strategy(EvictionStrategy.LRU).maxEntries(maxEntries);
+        }
+        builder.persistence().passivation(passivation);
+        when(this.timeService.wallClockTime()).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                return BinaryDataContainerTestCase.this.time.incrementAndGet();
+            }
+        });
+        InternalEntryFactoryImpl entryFactory = new InternalEntryFactoryImpl();
+        entryFactory.injectTimeService(this.timeService);
+        BinaryDataContainer container = new BinaryDataContainer(false, maxMemory);
+        container.inject(builder.build(), entryFactory, this.evictionManager, this.passivator, mock(StreamingMarshaller.class), this.timeService);
+        container.start();
+        return container;
+    }
+
+    static byte[] key(int i) {
+        return ("key" + i).getBytes();
+    }
+
+    static byte[] value(int i) {
+        return ("value" + i).getBytes();
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.container;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class BinarySegmentTestCase {
+    private static final int MIN_PAGE_SIZE = 256;
+    private static final int MAX_PAGE_SIZE = 1024;
+
+    private final BinarySegment segment = new BinarySegment(MIN_PAGE_SIZE, MAX_PAGE_SIZE, Long.MAX_VALUE, false, 1);
+
+    @Test
+    public void putFind() {
+        BinarySegment.Entry entry = entry("key", "value", 1L);
+        this.segment.put(this.find(7, "key"), 7, entry);
+
+        assertEquals(1, this.segment.size());
+        int slot = this.find(7, "key");
+        assertTrue(slot >= 0);
+        BinarySegment.Entry result = this.segment.read(this.segment.address(slot), true);
+        assertArrayEquals(entry.key, result.key);
+        assertArrayEquals(entry.value, result.value);
+        assertEquals(1L, result.created);
+        assertEquals(-1L, result.lifespan);
+
+        // Same hash, different key
+        assertEquals(-1, this.find(7, "other"));
+        // Same key, different type
+        assertEquals(-1, this.segment.find(7, BinarySegment.BYTE_ARRAY_KEY, entry.key, null, null));
+    }
+
+    @Test
+    public void replace() {
+        this.segment.put(-1, 7, entry("key", "value", 1L));
+        long used = this.segment.getMemoryUsed();
+        BinarySegment.Entry entry = entry("key", "a longer value", 2L);
+        this.segment.put(this.find(7, "key"), 7, entry);
+
+        assertEquals(1, this.segment.size());
+        assertEquals(BinarySegment.length(entry), this.segment.getMemoryUsed());
+        assertTrue(this.segment.getMemoryUsed() > used);
+        assertArrayEquals(entry.value, this.segment.read(this.segment.address(this.find(7, "key")), false).value);
+    }
+
+    @Test
+    public void removeShiftsProbeSequence() {
+        // Colliding hashes occupy consecutive slots
+        for (int i = 0; i < 4; ++i) {
+            this.segment.put(-1, 3, entry("key" + i, "value" + i, i));
+        }
+        // A key whose ideal slot is occupied by the collisions
+        this.segment.put(-1, 4, entry("next", "value", 4L));
+
+        this.segment.remove(this.find(3, "key1"));
+
+        assertEquals(4, this.segment.size());
+        assertEquals(-1, this.find(3, "key1"));
+        for (int i: new int[] { 0, 2, 3 }) {
+            int slot = this.find(3, "key" + i);
+            assertTrue(slot >= 0);
+            assertArrayEquals(bytes("value" + i), this.segment.read(this.segment.address(slot), false).value);
+        }
+        assertTrue(this.find(4, "next") >= 0);
+
+        // No tombstones remain, so the probe sequence is contiguous
+        this.segment.remove(this.find(3, "key0"));
+        this.segment.remove(this.find(3, "key2"));
+        this.segment.remove(this.find(3, "key3"));
+        assertEquals(1, this.segment.size());
+        assertEquals(4 & (this.segment.capacity() - 1), this.find(4, "next"));
+    }
+
+    @Test
+    public void removeLastReleasesPages() {
+        this.segment.put(-1, 1, entry("key", "value", 1L));
+        this.segment.remove(this.find(1, "key"));
+
+        assertEquals(0, this.segment.size());
+        assertEquals(0, this.segment.getMemoryUsed());
+        assertEquals(this.segment.capacity() * 12L, this.segment.getAllocatedMemory());
+    }
+
+    @Test
+    public void growth() {
+        int initialCapacity = this.segment.capacity();
+        // Pages are only allocated on demand
+        assertEquals(initialCapacity * 12L, this.segment.getAllocatedMemory());
+
+        this.segment.put(-1, 0, entry("key", "value", 0L));
+        assertEquals(MIN_PAGE_SIZE + initialCapacity * 12L, this.segment.getAllocatedMemory());
+
+        for (int i = 1; i < 100; ++i) {
+            this.segment.put(-1, i * 31, entry("key" + i, "value" + i, i));
+        }
+        assertEquals(100, this.segment.size());
+        assertTrue(this.segment.capacity() > initialCapacity);
+        assertTrue(this.segment.capacity() * 3 >= this.segment.size() * 4);
+        for (int i = 1; i < 100; ++i) {
+            int slot = this.find(i * 31, "key" + i);
+            assertTrue(slot >= 0);
+            assertArrayEquals(bytes("value" + i), this.segment.read(this.segment.address(slot), false).value);
+        }
+        // Pages double in size, up to the maximum page size, so unused space is bounded
+        long pages = this.segment.getAllocatedMemory() - this.segment.capacity() * 12L;
+        assertTrue(pages < this.segment.getMemoryUsed() * 2 + MAX_PAGE_SIZE);
+    }
+
+    @Test
+    public void largeEntry() {
+        BinarySegment.Entry entry = entry("key", new String(new char[MAX_PAGE_SIZE * 2]), 0L);
+        this.segment.put(-1, 0, entry);
+
+        assertArrayEquals(entry.value, this.segment.read(this.segment.address(this.find(0, "key")), false).value);
+    }
+
+    @Test
+    public void compaction() {
+        for (int i = 0; i < 1000; ++i) {
+            this.segment.put(this.find(0, "key"), 0, entry("key", "value" + i, i));
+        }
+        this.segment.put(-1, 1, entry("other", "value", 0L));
+
+        // Without compaction, all 1000 versions would be retained
+        assertTrue(this.segment.getAllocatedMemory() < 4L * MAX_PAGE_SIZE);
+        assertArrayEquals(bytes("value999"), this.segment.read(this.segment.address(this.find(0, "key")), false).value);
+        assertArrayEquals(bytes("value"), this.segment.read(this.segment.address(this.find(1, "other")), false).value);
+    }
+
+    @Test
+    public void compactionBeyondMaxDeadMemory() {
+        BinarySegment segment = new BinarySegment(MIN_PAGE_SIZE, MAX_PAGE_SIZE, 4L * MIN_PAGE_SIZE, false, 1);
+        for (int i = 0; i < 100; ++i) {
+            segment.put(-1, i, entry("key" + i, "value", i));
+        }
+        for (int i = 0; i < 1000; ++i) {
+            int hash = i % 100;
+            segment.put(segment.find(hash, BinarySegment.BYTES, bytes("key" + hash), null, null), hash, entry("key" + hash, "value", i));
+            // Dead memory remains within the limit, though it never exceeds the memory of the live entries
+            assertTrue(segment.getAllocatedMemory() - segment.getIndexMemory(segment.size()) - segment.getMemoryUsed() <= 4L * MIN_PAGE_SIZE + MAX_PAGE_SIZE);
+        }
+    }
+
+    @Test
+    public void indexMemory() {
+        int capacity = this.segment.capacity();
+        assertEquals(capacity * 12L, this.segment.getIndexMemory(0));
+        assertEquals(capacity * 12L, this.segment.getIndexMemory(capacity * 3 / 4));
+        assertEquals(capacity * 24L, this.segment.getIndexMemory(capacity * 3 / 4 + 1));
+        for (int i = 0; i <= capacity * 3 / 4; ++i) {
+            this.segment.put(-1, i, entry("key" + i, "value", i));
+        }
+        assertEquals(capacity * 2, this.segment.capacity());
+        assertEquals(capacity * 24L, this.segment.getIndexMemory(this.segment.size()));
+    }
+
+    @Test
+    public void expiration() {
+        BinarySegment.Entry mortal = entry("mortal", "value", 100L);
+        mortal.lifespan = 10L;
+        BinarySegment.Entry idle = entry("idle", "value", 100L);
+        idle.maxIdle = 10L;
+        this.segment.put(-1, 1, mortal);
+        this.segment.put(-1, 2, idle);
+        this.segment.put(-1, 3, entry("immortal", "value", 100L));
+
+        long idleAddress = this.segment.address(this.find(2, "idle"));
+        assertFalse(this.segment.isExpired(this.segment.address(this.find(1, "mortal")), 110L));
+        assertTrue(this.segment.isExpired(this.segment.address(this.find(1, "mortal")), 111L));
+        assertTrue(this.segment.isExpired(idleAddress, 111L));
+        this.segment.setLastUsed(idleAddress, 105L);
+        assertFalse(this.segment.isExpired(idleAddress, 111L));
+
+        assertEquals(3, this.segment.count(110L));
+        assertEquals(2, this.segment.count(111L));
+        assertEquals(1, this.segment.count(116L));
+
+        assertEquals(1, this.segment.purge(111L));
+        assertEquals(2, this.segment.size());
+        assertEquals(-1, this.find(1, "mortal"));
+        assertEquals(1, this.segment.purge(116L));
+        assertEquals(1, this.segment.size());
+        assertTrue(this.find(3, "immortal") >= 0);
+    }
+
+    @Test
+    public void sample() {
+        assertEquals(-1, this.segment.sample(8, 0L, -1));
+
+        for (int i = 0; i < 3; ++i) {
+            this.segment.put(-1, i, entry("key" + i, "value", 10L - i));
+        }
+        // Least recently used
+        int oldest = this.find(2, "key2");
+        assertEquals(oldest, this.segment.sample(8, 20L, -1));
+        // Excluding the least recently used
+        assertEquals(this.find(1, "key1"), this.segment.sample(8, 20L, oldest));
+
+        // Expired entries are chosen first
+        BinarySegment.Entry mortal = entry("mortal", "value", 15L);
+        mortal.lifespan = 1L;
+        this.segment.put(-1, 3, mortal);
+        assertEquals(this.find(3, "mortal"), this.segment.sample(8, 20L, -1));
+
+        this.segment.clear();
+        this.segment.put(-1, 0, entry("key", "value", 0L));
+        assertEquals(-1, this.segment.sample(8, 0L, this.find(0, "key")));
+    }
+
+    @Test
+    public void matches() {
+        BinarySegment.Entry entry = entry("key", "value", 1L);
+        this.segment.put(-1, 0, entry);
+        long address = this.segment.address(this.find(0, "key"));
+        BinarySegment.Entry read = this.segment.read(address, true);
+        assertTrue(this.segment.matches(address, read));
+
+        this.segment.setLastUsed(address, 5L);
+        assertTrue(this.segment.matches(address, read));
+
+        this.segment.put(this.find(0, "key"), 0, entry("key", "other", 1L));
+        assertFalse(this.segment.matches(this.segment.address(this.find(0, "key")), read));
+    }
+
+    @Test
+    public void entries() {
+        for (int i = 0; i < 10; ++i) {
+            this.segment.put(-1, i, entry("key" + i, "value" + i, i));
+        }
+        List<BinarySegment.Entry> entries = this.segment.entries();
+        assertEquals(10, entries.size());
+        for (BinarySegment.Entry entry: entries) {
+            String key = new String(entry.key);
+            assertEquals("value" + key.substring(3), new String(entry.value));
+        }
+    }
+
+    private int find(int hash, String key) {
+        return this.segment.find(hash, BinarySegment.BYTES, bytes(key), null, null);
+    }
+
+    private static BinarySegment.Entry entry(String key, String value, long time) {
+        BinarySegment.Entry entry = new BinarySegment.Entry();
+        entry.keyType = BinarySegment.BYTES;
+        entry.key = bytes(key);
+        entry.valueType = BinarySegment.BYTES;
+        entry.value = bytes(value);
+        entry.metadataType = BinarySegment.EMBEDDED_METADATA;
+        entry.metadata = new byte[0];
+        entry.created = time;
+        entry.lastUsed = time;
+        entry.lifespan = -1L;
+        entry.maxIdle = -1L;
+        return entry;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes();
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.container;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.infinispan.commons.equivalence.AnyEquivalence;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.EvictionListener;
+import org.jboss.logging.Logger;
+import org.junit.Test;
+
+/**
+ * Trace-driven simulation comparing the hit ratio of {@link TinyLfuDataContainer} with those of Infinispan's LRU and LIRS implementations.
+ * Each policy is segmented as its data container would be, for the default lock concurrency level.
+ * The synthetic traces model a skewed working set, optionally interrupted by scans of keys that are never accessed again, as performed by batch jobs.
+ * Recorded traces, i.e. files containing one key per line, may also be simulated by pointing the eviction.traces system property at a file or directory.
+ */
+public class EvictionSimulatorTestCase {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Logger LOGGER = Logger.getLogger(EvictionSimulatorTestCase.class);
+    private static final int CAPACITY = 4096;
+    private static final int CONCURRENCY_LEVEL = new ConfigurationBuilder().build().locking().concurrencyLevel();
+    private static final int KEYS = 1 << 16;
+    private static final int ACCESSES = 1 << 20;
+    private static final double SKEW = 0.9;
+    // A scan of 32K unique keys every 256K accesses
+    private static final int SCAN_INTERVAL = 1 << 18;
+    private static final int SCAN_LENGTH = 1 << 15;
+
+    @Test
+    public void zipf() {
+        long[] trace = zipf(new Random(1L), 0);
+        Map<String, Double> ratios = simulate("zipf", trace);
+
+        assertTrue(ratios.toString(), ratios.get("W-TinyLFU") > ratios.get("LRU"));
+        assertTrue(ratios.toString(), ratios.get("W-TinyLFU") > ratios.get("LIRS"));
+    }
+
+    @Test
+    public void zipfWithScans() {
+        long[] trace = zipf(new Random(2L), SCAN_LENGTH);
+        Map<String, Double> ratios = simulate("zipf with scans", trace);
+
+        // Scans flush the working set from LRU, but not from W-TinyLFU
+        assertTrue(ratios.toString(), ratios.get("W-TinyLFU") > ratios.get("LRU") + 0.05);
+        assertTrue(ratios.toString(), ratios.get("W-TinyLFU") > ratios.get("LIRS"));
+    }
+
+    @Test
+    public void recorded() throws IOException {
+        String path = System.getProperty("eviction.traces");
+        if (path == null) {
+            return;
+        }
+        File file = new File(path);
+        File[] files = file.isDirectory() ? file.listFiles() : new File[] { file };
+        Arrays.sort(files);
+        for (File trace: files) {
+            if (trace.isFile()) {
+                simulate(trace.getName(), read(trace));
+            }
+        }
+    }
+
+    private static Map<String, Double> simulate(String name, long[] trace) {
+        List<Policy> policies = new ArrayList<Policy>();
+        policies.add(new BoundedPolicy("LRU", Eviction.LRU));
+        policies.add(new BoundedPolicy("LIRS", Eviction.LIRS));
+        policies.add(new TinyLfuPolicy());
+
+        Map<String, Double> ratios = new HashMap<String, Double>();
+        StringBuilder report = new StringBuilder(String.format("Hit ratios of %s trace (%d accesses, capacity %d):", name, trace.length, CAPACITY));
+        for (Policy policy: policies) {
+            int hits = 0;
+            for (long key: trace) {
+                if (policy.access(Long.valueOf(key))) {
+                    hits += 1;
+                }
+            }
+            double ratio = (double) hits / trace.length;
+            ratios.put(policy.getName(), ratio);
+            report.append(String.format(" %s=%.3f", policy.getName(), ratio));
+        }
+        LOGGER.info(report);
+        return ratios;
+    }
+
+    /**
+     * Generates a trace of keys following a Zipf distribution, interrupted periodically by a scan of the specified number of unique keys.
+     */
+    private static long[] zipf(Random random, int scanLength) {
+        double[] cumulative = new double[KEYS];
+        double sum = 0;
+        for (int i = 0; i < KEYS; ++i) {
+            sum += 1 / Math.pow(i + 1, SKEW);
+            cumulative[i] = sum;
+        }
+        long[] trace = new long[ACCESSES];
+        long scanKey = KEYS;
+        for (int i = 0; i < trace.length; ++i) {
+            // Scans run alongside regular traffic, accounting for every other access while in progress
+            if ((i % SCAN_INTERVAL < 2 * scanLength) && (i % 2 == 1)) {
+                trace[i] = scanKey++;
+            } else {
+                int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                // Scatter popular keys over the key space
+                trace[i] = ((index < 0) ? -(index + 1) : index) * 0x9e3779b9L % KEYS;
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Reads a recorded trace, with one key per line, where non-numeric keys are mapped to unique numbers.
+     */
+    private static long[] read(File file) throws IOException {
+        Map<String, Long> ids = new HashMap<String, Long>();
+        List<Long> keys = new ArrayList<Long>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+        try {
+            String line = reader.readLine();
+            while (line != null) {
+                String key = line.trim();
+                if (!key.isEmpty()) {
+                    Long id = ids.get(key);
+                    if (id == null) {
+                        id = Long.valueOf(ids.size());
+                        ids.put(key, id);
+                    }
+                    keys.add(id);
+                }
+                line = reader.readLine();
+            }
+        } finally {
+            reader.close();
+        }
+        long[] trace = new long[keys.size()];
+        for (int i = 0; i < trace.length; ++i) {
+            trace[i] = keys.get(i).longValue();
+        }
+        return trace;
+    }
+
+    interface Policy {
+        String getName();
+
+        /**
+         * Accesses the specified key, caching it upon a miss.
+         * @return true, if the key was cached, false otherwise
+         */
+        boolean access(Long key);
+    }
+
+    /**
+     * Infinispan's LRU or LIRS, as used by its default data container.
+     */
+    static class BoundedPolicy implements Policy, EvictionListener<Long, Long> {
+        private final String name;
+        private final Map<Long, Long> map;
+
+        BoundedPolicy(String name, Eviction eviction) {
+            this.name = name;
+            this.map = new BoundedConcurrentHashMap<Long, Long>(CAPACITY, CONCURRENCY_LEVEL, eviction, this, AnyEquivalence.<Long>getInstance(), AnyEquivalence.<Long>getInstance());
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public boolean access(Long key) {
+            if (this.map.get(key) != null) {
+                return true;
+            }
+            this.map.put(key, key);
+            return false;
+        }
+
+        @Override
+        public void onEntryEviction(Map<Long, Long> evicted) {
+        }
+
+        @Override
+        public void onEntryChosenForEviction(Long value) {
+        }
+
+        @Override
+        public void onEntryActivated(Object key) {
+        }
+
+        @Override
+        public void onEntryRemoved(Object key) {
+        }
+    }
+
+    /**
+     * The policy of {@link TinyLfuDataContainer}, applied to each of its segments.
+     */
+    static class TinyLfuPolicy implements Policy {
+        private final Map<Long, WindowTinyLfu.Node<Long>> nodes = new HashMap<Long, WindowTinyLfu.Node<Long>>();
+        private final List<WindowTinyLfu<Long>> segments = new ArrayList<WindowTinyLfu<Long>>();
+        private final int shift;
+
+        TinyLfuPolicy() {
+            int bits = TinyLfuDataContainer.segmentBits(CONCURRENCY_LEVEL, CAPACITY);
+            for (int i = 0; i < (1 << bits); ++i) {
+                this.segments.add(new WindowTinyLfu<Long>(CAPACITY >> bits));
+            }
+            this.shift = 32 - bits;
+        }
+
+        @Override
+        public String getName() {
+            return "W-TinyLFU";
+        }
+
+        @Override
+        public boolean access(Long key) {
+            int hash = BinaryDataContainer.spread(key.hashCode());
+            WindowTinyLfu<Long> policy = this.segments.get((hash >>> this.shift) & (this.segments.size() - 1));
+            WindowTinyLfu.Node<Long> node = this.nodes.get(key);
+            if (node != null) {
+                policy.access(node);
+                return true;
+            }
+            node = new WindowTinyLfu.Node<Long>(key, hash);
+            this.nodes.put(key, node);
+            WindowTinyLfu.Node<Long> evicted = policy.add(node);
+            if (evicted != null) {
+                this.nodes.remove(evicted.key);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.container.InternalEntryFactoryImpl;
+import org.infinispan.eviction.EvictionManager;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.eviction.PassivationManager;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.Metadata;
+import org.infinispan.util.TimeService;
+import org.junit.Test;
+
+public class TinyLfuDataContainerTestCase {
+    private static final Metadata METADATA = new EmbeddedMetadata.Builder().build();
+
+    @Test
+    public void segmentBits() {
+        // Limited by the concurrency level
+        assertEquals(5, TinyLfuDataContainer.segmentBits(32, 1 << 20));
+        // Limited by the minimum segment size, rounding down
+        assertEquals(4, TinyLfuDataContainer.segmentBits(32, 16 * TinyLfuDataContainer.MIN_SEGMENT_ENTRIES));
+        assertEquals(3, TinyLfuDataContainer.segmentBits(32, 15 * TinyLfuDataContainer.MIN_SEGMENT_ENTRIES));
+        // Small caches are not segmented
+        assertEquals(0, TinyLfuDataContainer.segmentBits(32, 100));
+        assertEquals(0, TinyLfuDataContainer.segmentBits(1, 1 << 20));
+    }
+
+    @Test
+    public void scanResistance() {
+        TinyLfuDataContainer container = createContainer(256);
+        for (int i = 0; i < 100; ++i) {
+            container.put(i, i, METADATA);
+        }
+        for (int round = 0; round < 10; ++round) {
+            for (int i = 0; i < 100; ++i) {
+                assertNotNull(container.get(i));
+            }
+        }
+        // Keys accessed only once
+        for (int i = 1000; i < 2000; ++i) {
+            container.put(i, i, METADATA);
+        }
+        assertTrue(container.size() <= 256);
+        int hits = 0;
+        for (int i = 0; i < 100; ++i) {
+            if (container.peek(i) != null) {
+                hits += 1;
+            }
+        }
+        assertTrue(String.valueOf(hits), hits >= 95);
+    }
+
+    @Test
+    public void remove() {
+        TinyLfuDataContainer container = createContainer(256);
+        container.put(1, "value", METADATA);
+        assertEquals("value", container.remove(1).getValue());
+        assertNull(container.get(1));
+        assertEquals(0, container.size());
+    }
+
+    private static TinyLfuDataContainer createContainer(int maxEntries) {
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.eviction().strategy(EvictionStrategy.LRU).maxEntries(maxEntries);
+        TimeService timeService = mock(TimeService.class);
+        when(timeService.wallClockTime()).thenReturn(1L);
+        InternalEntryFactoryImpl entryFactory = new InternalEntryFactoryImpl();
+        entryFactory.injectTimeService(timeService);
+        TinyLfuDataContainer container = new TinyLfuDataContainer();
+        container.inject(builder.build(), entryFactory, mock(EvictionManager.class), mock(PassivationManager.class), timeService);
+        container.start();
+        return container;
+    }
+}
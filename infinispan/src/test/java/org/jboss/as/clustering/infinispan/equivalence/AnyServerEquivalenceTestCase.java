@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.equivalence;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.infinispan.commons.equivalence.Equivalence;
+import org.junit.Test;
+
+/**
+ * Verifies the equivalence of byte[] keys and of {@link ByteArrayKey}s, and the distribution of the hash codes of {@link ByteArrayKey}s
+ * over key sets resembling those of Hot Rod and memcached clients.
+ */
+public class AnyServerEquivalenceTestCase {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int KEYS = 1 << 17;
+    private static final int BUCKETS = 1 << 10;
+    // Chi-square critical value for 1023 degrees of freedom, ~6 standard deviations above the mean
+    private static final double MAX_CHI_SQUARE = 1300;
+    // Expected number of collisions among 2^17 random 32-bit hashes is 2
+    private static final int MAX_COLLISIONS = 16;
+
+    private final Equivalence<Object> equivalence = new AnyServerEquivalence();
+
+    @Test
+    public void equivalence() {
+        byte[] bytes = string("key");
+        byte[] copy = bytes.clone();
+        ByteArrayKey key = new ByteArrayKey(copy);
+
+        // Raw byte[] keys are hashed as they always were
+        assertEquals(41 + Arrays.hashCode(bytes), this.equivalence.hashCode(bytes));
+        assertEquals(this.equivalence.hashCode(bytes), this.equivalence.hashCode(copy));
+        assertEquals(key.hashCode(), this.equivalence.hashCode(key));
+        assertEquals(key.hashCode(), ByteArrayKey.hashCode(bytes));
+        assertTrue(this.equivalence.equals(bytes, copy));
+        assertTrue(this.equivalence.equals(key, new ByteArrayKey(bytes)));
+        assertEquals(key, new ByteArrayKey(bytes));
+        assertEquals(key.hashCode(), new ByteArrayKey(bytes).hashCode());
+        // Wrapped and raw keys hash differently, so must not be equivalent
+        assertFalse(this.equivalence.equals(bytes, key));
+        assertFalse(this.equivalence.equals(key, bytes));
+
+        byte[] other = string("kez");
+        assertFalse(this.equivalence.equals(bytes, other));
+        assertFalse(this.equivalence.equals(key, other));
+        assertFalse(this.equivalence.equals(other, key));
+        assertFalse(this.equivalence.equals(key, new ByteArrayKey(other)));
+        assertFalse(this.equivalence.equals(key, "key"));
+        assertFalse(this.equivalence.equals("key", key));
+        assertFalse(this.equivalence.equals(bytes, null));
+    }
+
+    @Test
+    public void externalize() throws Exception {
+        ByteArrayKey key = new ByteArrayKey(string("key"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(key);
+        output.close();
+        ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        ByteArrayKey result = (ByteArrayKey) input.readObject();
+        input.close();
+
+        assertEquals(key, result);
+        assertEquals(key.hashCode(), result.hashCode());
+        assertArrayEquals(key.getBytes(), result.getBytes());
+    }
+
+    @Test
+    public void sequentialStringKeys() {
+        byte[][] keys = new byte[KEYS][];
+        for (int i = 0; i < KEYS; ++i) {
+            keys[i] = string(String.format("user:%08d", i));
+        }
+        this.verifyDistribution(keys);
+    }
+
+    @Test
+    public void uuidStringKeys() {
+        Random random = new Random(KEYS);
+        byte[][] keys = new byte[KEYS][];
+        for (int i = 0; i < KEYS; ++i) {
+            keys[i] = string("session-" + new UUID(random.nextLong(), random.nextLong()));
+        }
+        this.verifyDistribution(keys);
+    }
+
+    @Test
+    public void sequentialIntegerKeys() {
+        byte[][] keys = new byte[KEYS][];
+        for (int i = 0; i < KEYS; ++i) {
+            keys[i] = ByteBuffer.allocate(4).putInt(i).array();
+        }
+        this.verifyDistribution(keys);
+    }
+
+    @Test
+    public void sequentialLongKeys() {
+        byte[][] keys = new byte[KEYS][];
+        for (int i = 0; i < KEYS; ++i) {
+            // Large values share all but their last bytes
+            keys[i] = ByteBuffer.allocate(8).putLong(Long.MAX_VALUE - i).array();
+        }
+        this.verifyDistribution(keys);
+    }
+
+    private void verifyDistribution(byte[][] keys) {
+        Set<Integer> hashCodes = new HashSet<Integer>();
+        int[] buckets = new int[BUCKETS];
+        for (byte[] key: keys) {
+            int hashCode = this.equivalence.hashCode(new ByteArrayKey(key));
+            hashCodes.add(Integer.valueOf(hashCode));
+            // Data containers index their tables using the low order bits of the hash code
+            buckets[hashCode & (BUCKETS - 1)] += 1;
+        }
+        int collisions = keys.length - hashCodes.size();
+        assertTrue(String.format("%d collisions", collisions), collisions <= MAX_COLLISIONS);
+
+        double expected = (double) keys.length / BUCKETS;
+        double chiSquare = 0;
+        for (int count: buckets) {
+            double difference = count - expected;
+            chiSquare += difference * difference / expected;
+        }
+        assertTrue(String.format("chi-square = %f", chiSquare), chiSquare < MAX_CHI_SQUARE);
+    }
+
+    private static byte[] string(String value) {
+        byte[] bytes = value.getBytes(UTF8);
+        // Mimic the header written by the marshaller of a Hot Rod client
+        byte[] result = new byte[bytes.length + 3];
+        result[0] = 0x03;
+        result[1] = 0x3e;
+        result[2] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, result, 3, bytes.length);
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvoker.Operation;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class BatchAsyncCacheInvokerTestCase {
+
+    private static final Executor CALLER_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    private static AdvancedCache<String, String> mockCache() {
+        AdvancedCache<String, String> cache = mock(AdvancedCache.class);
+        when(cache.getAdvancedCache()).thenReturn(cache);
+        return cache;
+    }
+
+    @Test
+    public void success() throws Exception {
+        AdvancedCache<String, String> cache = mockCache();
+        when(cache.startBatch()).thenReturn(true);
+        when(cache.get("key")).thenReturn("value");
+        Operation<String, String, String> operation = new Operation<String, String, String>() {
+            @Override
+            public String invoke(Cache<String, String> cache) {
+                return cache.get("key");
+            }
+        };
+
+        assertEquals("value", new BatchAsyncCacheInvoker(CALLER_EXECUTOR).invokeAsync(cache, operation).get());
+
+        InOrder order = inOrder(cache);
+        order.verify(cache).startBatch();
+        order.verify(cache).get("key");
+        order.verify(cache).endBatch(true);
+    }
+
+    @Test
+    public void failed() throws Exception {
+        AdvancedCache<String, String> cache = mockCache();
+        when(cache.startBatch()).thenReturn(true);
+        Operation<String, String, String> operation = new Operation<String, String, String>() {
+            @Override
+            public String invoke(Cache<String, String> cache) {
+                throw new IllegalStateException();
+            }
+        };
+
+        try {
+            new BatchAsyncCacheInvoker(CALLER_EXECUTOR).invokeAsync(cache, operation).get();
+            fail();
+        } catch (ExecutionException e) {
+            verify(cache).endBatch(false);
+        }
+    }
+
+    @Test
+    public void existingBatch() throws Exception {
+        AdvancedCache<String, String> cache = mockCache();
+        when(cache.startBatch()).thenReturn(false);
+        Operation<String, String, String> operation = new Operation<String, String, String>() {
+            @Override
+            public String invoke(Cache<String, String> cache) {
+                return null;
+            }
+        };
+
+        new BatchAsyncCacheInvoker(CALLER_EXECUTOR).invokeAsync(cache, operation).get();
+
+        verify(cache, never()).endBatch(true);
+        verify(cache, never()).endBatch(false);
+    }
+}
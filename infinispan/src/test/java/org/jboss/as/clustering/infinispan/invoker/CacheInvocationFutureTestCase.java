@@ -0,0 +1,146 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.infinispan.util.concurrent.FutureListener;
+import org.junit.Test;
+
+public class CacheInvocationFutureTestCase {
+
+    @Test
+    public void completed() throws Exception {
+        CacheInvocationFuture<String> future = new CacheInvocationFuture<String>();
+        assertFalse(future.isDone());
+
+        assertTrue(future.complete("result"));
+        assertFalse(future.complete("other"));
+        assertFalse(future.fail(new Exception()));
+        assertFalse(future.cancel(true));
+
+        assertTrue(future.isDone());
+        assertFalse(future.isCancelled());
+        assertEquals("result", future.get());
+        assertEquals("result", future.get(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void failed() throws Exception {
+        CacheInvocationFuture<String> future = new CacheInvocationFuture<String>();
+        Exception exception = new Exception();
+
+        assertTrue(future.fail(exception));
+        assertFalse(future.complete("result"));
+
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(exception, e.getCause());
+        }
+    }
+
+    @Test
+    public void cancelled() throws Exception {
+        CacheInvocationFuture<String> future = new CacheInvocationFuture<String>();
+
+        assertTrue(future.cancel(false));
+        assertFalse(future.complete("result"));
+
+        assertTrue(future.isDone());
+        assertTrue(future.isCancelled());
+        try {
+            future.get();
+            fail();
+        } catch (CancellationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        CacheInvocationFuture<String> future = new CacheInvocationFuture<String>();
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException e) {
+            assertFalse(future.isDone());
+        }
+    }
+
+    @Test
+    public void getWaitsForCompletion() throws Exception {
+        final CacheInvocationFuture<String> future = new CacheInvocationFuture<String>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                future.complete("result");
+            }
+        };
+        thread.start();
+        try {
+            assertEquals("result", future.get(10, TimeUnit.SECONDS));
+        } finally {
+            thread.join();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void listeners() {
+        CacheInvocationFuture<String> future = new CacheInvocationFuture<String>();
+        FutureListener<String> before = mock(FutureListener.class);
+        FutureListener<String> after = mock(FutureListener.class);
+
+        future.attachListener(before);
+        verifyZeroInteractions(before);
+
+        future.complete("result");
+        future.complete("other");
+        verify(before, times(1)).futureDone(future);
+
+        // Listeners attached once done are notified immediately
+        future.attachListener(after);
+        verify(after, times(1)).futureDone(future);
+        verify(before, times(1)).futureDone(future);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CacheInvokerStatisticsTestCase {
+
+    private EmbeddedCacheManager manager;
+
+    @Before
+    public void start() {
+        this.manager = new DefaultCacheManager(new ConfigurationBuilder().build());
+    }
+
+    @After
+    public void stop() {
+        this.manager.stop();
+    }
+
+    @Test
+    public void registeredPerCache() {
+        Cache<Object, Object> cache = this.manager.getCache("cache");
+        Cache<Object, Object> otherCache = this.manager.getCache("other");
+
+        assertNull(CacheInvokerStatistics.findStatistics(cache));
+        CacheInvokerStatistics statistics = CacheInvokerStatistics.getStatistics(cache);
+        assertNotNull(statistics);
+        assertSame(statistics, CacheInvokerStatistics.getStatistics(cache));
+        assertSame(statistics, CacheInvokerStatistics.findStatistics(cache));
+        // Decorated caches share the statistics of the underlying cache
+        assertSame(statistics, CacheInvokerStatistics.getStatistics(cache.getAdvancedCache().withFlags()));
+        assertNotSame(statistics, CacheInvokerStatistics.getStatistics(otherCache));
+    }
+
+    @Test
+    public void circuitBreakersPerParameters() {
+        CacheInvokerStatistics statistics = CacheInvokerStatistics.getStatistics(this.manager.getCache());
+        assertNull(statistics.getCircuitBreakerState());
+
+        CircuitBreaker breaker = statistics.getCircuitBreaker(new CircuitBreaker.Parameters(1, Long.MAX_VALUE));
+        assertSame(breaker, statistics.getCircuitBreaker(new CircuitBreaker.Parameters(1, Long.MAX_VALUE)));
+        CircuitBreaker otherBreaker = statistics.getCircuitBreaker(new CircuitBreaker.Parameters(2, Long.MAX_VALUE));
+        assertNotSame(breaker, otherBreaker);
+        assertEquals(2, statistics.getCircuitBreakers().size());
+        assertEquals(CircuitBreaker.State.CLOSED, statistics.getCircuitBreakerState());
+
+        // The most restrictive state is reported
+        breaker.failure();
+        assertEquals(CircuitBreaker.State.OPEN, statistics.getCircuitBreakerState());
+        assertEquals(CircuitBreaker.State.CLOSED, otherBreaker.getState());
+        otherBreaker.failure();
+        otherBreaker.failure();
+        assertEquals(2, statistics.getCircuitBreakerTrips());
+    }
+
+    @Test
+    public void clear() {
+        CacheInvokerStatistics statistics = CacheInvokerStatistics.getStatistics(this.manager.getCache());
+        statistics.retried();
+        statistics.failed();
+        statistics.getCircuitBreaker(new CircuitBreaker.Parameters(1, 0)).failure();
+
+        statistics.clear();
+
+        assertEquals(0, statistics.getRetries());
+        assertEquals(0, statistics.getFailures());
+        assertNull(statistics.getCircuitBreakerState());
+        assertEquals(0, statistics.getCircuitBreakerTrips());
+    }
+}
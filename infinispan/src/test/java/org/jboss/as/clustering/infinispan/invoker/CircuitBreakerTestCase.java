@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CircuitBreakerTestCase {
+
+    @Test
+    public void opensAfterThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(3, Long.MAX_VALUE);
+        breaker.failure();
+        breaker.failure();
+        assertTrue(breaker.allowInvocation());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.failure();
+        assertFalse(breaker.allowInvocation());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getTrips());
+    }
+
+    @Test
+    public void successResetsFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(2, Long.MAX_VALUE);
+        breaker.failure();
+        breaker.success();
+        breaker.failure();
+        assertTrue(breaker.allowInvocation());
+        assertEquals(0, breaker.getTrips());
+    }
+
+    @Test
+    public void singleTrialAfterResetTimeout() {
+        CircuitBreaker breaker = new CircuitBreaker(new CircuitBreaker.Parameters(1, 0));
+        breaker.failure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        // Only one caller is granted the trial invocation
+        assertTrue(breaker.allowInvocation());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowInvocation());
+
+        breaker.success();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowInvocation());
+    }
+
+    @Test
+    public void failedTrialReopens() {
+        CircuitBreaker breaker = new CircuitBreaker(5, 0);
+        for (int i = 0; i < 5; ++i) {
+            breaker.failure();
+        }
+        assertTrue(breaker.allowInvocation());
+        // A single failure of the trial reopens the breaker
+        breaker.failure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getTrips());
+    }
+
+    @Test
+    public void releasedTrialReopensWithoutTrip() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        breaker.failure();
+        assertTrue(breaker.allowInvocation());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // A cancelled trial neither closes nor trips the breaker, but frees the trial for the next caller
+        breaker.release();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getTrips());
+        assertTrue(breaker.allowInvocation());
+
+        // Releasing a closed breaker has no effect
+        breaker.success();
+        breaker.release();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void parameters() {
+        assertEquals(new CircuitBreaker.Parameters(3, 1000), new CircuitBreaker.Parameters(3, 1000));
+        assertEquals(new CircuitBreaker.Parameters(3, 1000).hashCode(), new CircuitBreaker.Parameters(3, 1000).hashCode());
+        assertFalse(new CircuitBreaker.Parameters(3, 1000).equals(new CircuitBreaker.Parameters(3, 2000)));
+        assertFalse(new CircuitBreaker.Parameters(3, 1000).equals(new CircuitBreaker.Parameters(4, 1000)));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.context.Flag;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CoalescingCacheInvokerTestCase {
+
+    private EmbeddedCacheManager manager;
+    private Cache<String, String> cache;
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void start() {
+        this.manager = new DefaultCacheManager(new ConfigurationBuilder().build());
+        this.manager.defineConfiguration("batch", new ConfigurationBuilder().invocationBatching().enable().build());
+        this.cache = this.manager.getCache();
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void stop() {
+        this.executor.shutdownNow();
+        this.manager.stop();
+    }
+
+    @Test
+    public void coalescesWritesIntoOnePutAll() throws Exception {
+        CoalescingCacheInvoker invoker = new CoalescingCacheInvoker(this.executor, 2, Long.MAX_VALUE);
+
+        NotifyingFuture<String> first = invoker.invokeAsync(this.cache, new PutOperation<String, String>("a", "1"), Flag.IGNORE_RETURN_VALUES);
+        NotifyingFuture<String> second = invoker.invokeAsync(this.cache, new PutOperation<String, String>("a", "2"), Flag.IGNORE_RETURN_VALUES);
+        assertFalse(first.isDone());
+        assertFalse(this.cache.containsKey("a"));
+        // The write of a second key fills the window
+        NotifyingFuture<String> third = invoker.invokeAsync(this.cache, new PutOperation<String, String>("b", "3"), Flag.IGNORE_RETURN_VALUES);
+
+        assertNull(first.get(10, TimeUnit.SECONDS));
+        assertNull(second.get(10, TimeUnit.SECONDS));
+        assertNull(third.get(10, TimeUnit.SECONDS));
+        // Last write wins
+        assertEquals("2", this.cache.get("a"));
+        assertEquals("3", this.cache.get("b"));
+
+        CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(this.cache);
+        assertEquals(1, statistics.getCoalescedBatches());
+        assertEquals(3.0, statistics.getAverageCoalescedBatchSize(), 0);
+        assertEquals(1.5, statistics.getCoalescingRatio(), 0);
+    }
+
+    @Test
+    public void flushesAfterMaxDelay() throws Exception {
+        CoalescingCacheInvoker invoker = new CoalescingCacheInvoker(this.executor, Integer.MAX_VALUE, 10);
+
+        NotifyingFuture<String> future = invoker.invokeAsync(this.cache, new PutOperation<String, String>("a", "1"), Flag.IGNORE_RETURN_VALUES);
+
+        assertNull(future.get(10, TimeUnit.SECONDS));
+        assertEquals("1", this.cache.get("a"));
+    }
+
+    @Test
+    public void returnValueWritesAreNotCoalesced() throws Exception {
+        this.cache.put("a", "0");
+        CoalescingCacheInvoker invoker = new CoalescingCacheInvoker(this.executor, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+        assertEquals("0", invoker.invokeAsync(this.cache, new PutOperation<String, String>("a", "1")).get(10, TimeUnit.SECONDS));
+        assertEquals("1", invoker.invoke(this.cache, new PutOperation<String, String>("a", "2")));
+        assertEquals("2", this.cache.get("a"));
+        assertNull(CacheInvokerStatistics.findStatistics(this.cache));
+    }
+
+    @Test
+    public void synchronousInvocationWaitsForFlush() {
+        BulkCacheInvoker invoker = new RetryingCacheInvoker(new CoalescingCacheInvoker(this.executor, Integer.MAX_VALUE, 10), 0);
+
+        assertNull(invoker.invoke(this.cache, new PutOperation<String, String>("a", "1"), Flag.IGNORE_RETURN_VALUES));
+        assertEquals("1", this.cache.get("a"));
+
+        List<PutOperation<String, String>> operations = Arrays.asList(new PutOperation<String, String>("b", "2"), new PutOperation<String, String>("c", "3"));
+        assertEquals(Arrays.asList(null, null), invoker.invokeAll(this.cache, operations, Flag.IGNORE_RETURN_VALUES));
+        assertEquals("2", this.cache.get("b"));
+        assertEquals("3", this.cache.get("c"));
+        assertEquals(2, CacheInvokerStatistics.findStatistics(this.cache).getCoalescedBatches());
+    }
+
+    @Test
+    public void batchedInvocationsAreNotCoalesced() {
+        Cache<String, String> cache = this.manager.getCache("batch");
+        CacheInvoker invoker = new BatchCacheInvoker(new CoalescingCacheInvoker(this.executor, Integer.MAX_VALUE, Long.MAX_VALUE));
+
+        assertNull(invoker.invoke(cache, new PutOperation<String, String>("a", "1"), Flag.IGNORE_RETURN_VALUES));
+        assertEquals("1", cache.get("a"));
+        assertNull(CacheInvokerStatistics.findStatistics(cache));
+    }
+
+    @Test
+    public void writesFailWithTheirPutAll() throws Exception {
+        this.executor.shutdown();
+        CoalescingCacheInvoker invoker = new CoalescingCacheInvoker(this.executor, 1, Long.MAX_VALUE);
+        this.cache.stop();
+
+        NotifyingFuture<String> future = invoker.invokeAsync(this.cache, new PutOperation<String, String>("a", "1"), Flag.IGNORE_RETURN_VALUES);
+
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ExponentialRetryPolicyTestCase {
+
+    @Test
+    public void delayIsBoundedByCeiling() {
+        RetryPolicy policy = new ExponentialRetryPolicy(10, 100, 10, Long.MAX_VALUE);
+        for (int retry = 0; retry < 10; ++retry) {
+            long ceiling = Math.min(100, 10 << retry);
+            for (int i = 0; i < 1000; ++i) {
+                long delay = policy.getDelay(retry, 0);
+                assertTrue(String.valueOf(delay), (delay >= 0) && (delay <= ceiling));
+            }
+        }
+    }
+
+    @Test
+    public void delayIsJittered() {
+        RetryPolicy policy = new ExponentialRetryPolicy(1000, 1000, 1, Long.MAX_VALUE);
+        long first = policy.getDelay(0, 0);
+        for (int i = 0; i < 100; ++i) {
+            if (policy.getDelay(0, 0) != first) {
+                return;
+            }
+        }
+        throw new AssertionError("Delays are not randomized");
+    }
+
+    @Test
+    public void maxRetries() {
+        RetryPolicy policy = new ExponentialRetryPolicy(0, 0, 2, Long.MAX_VALUE);
+        assertEquals(0, policy.getDelay(0, 0));
+        assertEquals(0, policy.getDelay(1, 0));
+        assertEquals(-1, policy.getDelay(2, 0));
+    }
+
+    @Test
+    public void deadline() {
+        RetryPolicy policy = new ExponentialRetryPolicy(0, 0, 10, 100);
+        assertEquals(0, policy.getDelay(0, 99));
+        assertEquals(-1, policy.getDelay(0, 100));
+    }
+
+    @Test
+    public void noOverflow() {
+        RetryPolicy policy = new ExponentialRetryPolicy(Long.MAX_VALUE / 2, Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+        assertTrue(policy.getDelay(100, 0) >= 0);
+    }
+}
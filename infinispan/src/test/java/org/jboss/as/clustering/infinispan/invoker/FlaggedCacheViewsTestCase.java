@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.context.Flag;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlaggedCacheViewsTestCase {
+
+    private EmbeddedCacheManager manager;
+    private Cache<String, String> cache;
+
+    @Before
+    public void start() {
+        this.manager = new DefaultCacheManager(new ConfigurationBuilder().build());
+        this.cache = this.manager.getCache();
+    }
+
+    @After
+    public void stop() {
+        this.manager.stop();
+    }
+
+    @Test
+    public void unflagged() {
+        assertSame(this.cache.getAdvancedCache(), FlaggedCacheViews.getCache(this.cache));
+        assertSame(this.cache.getAdvancedCache(), FlaggedCacheViews.getCache(this.cache, (Flag[]) null));
+        // No views are registered for unflagged invocations
+        assertNull(this.cache.getAdvancedCache().getComponentRegistry().getComponent(FlaggedCacheViews.class));
+    }
+
+    @Test
+    public void viewsAreShared() {
+        AdvancedCache<String, String> view = FlaggedCacheViews.getCache(this.cache, Flag.SKIP_LOCKING, Flag.FAIL_SILENTLY);
+
+        assertNotSame(this.cache.getAdvancedCache(), view);
+        // Flag order is irrelevant
+        assertSame(view, FlaggedCacheViews.getCache(this.cache, Flag.FAIL_SILENTLY, Flag.SKIP_LOCKING));
+        assertNotSame(view, FlaggedCacheViews.getCache(this.cache, Flag.SKIP_LOCKING));
+        assertNotNull(this.cache.getAdvancedCache().getComponentRegistry().getComponent(FlaggedCacheViews.class));
+
+        // Flags apply to the view
+        view.put("a", "1");
+        assertSame("1", this.cache.get("a"));
+    }
+
+    @Test
+    public void viewsArePerCache() {
+        Cache<String, String> otherCache = this.manager.getCache("other");
+
+        AdvancedCache<String, String> view = FlaggedCacheViews.getCache(this.cache, Flag.SKIP_LOCKING);
+        AdvancedCache<String, String> otherView = FlaggedCacheViews.getCache(otherCache, Flag.SKIP_LOCKING);
+
+        assertNotSame(view, otherView);
+        otherView.put("a", "1");
+        assertNull(this.cache.get("a"));
+    }
+
+    @Test
+    public void viewsPerDecoration() {
+        AdvancedCache<String, String> decorated = this.cache.getAdvancedCache().with(this.getClass().getClassLoader());
+
+        AdvancedCache<String, String> view = FlaggedCacheViews.getCache(this.cache, Flag.SKIP_LOCKING);
+        AdvancedCache<String, String> decoratedView = FlaggedCacheViews.getCache(decorated, Flag.SKIP_LOCKING);
+
+        assertNotSame(view, decoratedView);
+        assertSame(decoratedView, FlaggedCacheViews.getCache(decorated, Flag.SKIP_LOCKING));
+    }
+
+    @Test
+    public void removeViews() {
+        AdvancedCache<String, String> view = FlaggedCacheViews.getCache(this.cache, Flag.SKIP_LOCKING);
+
+        FlaggedCacheViews.removeViews(this.cache);
+
+        assertNotSame(view, FlaggedCacheViews.getCache(this.cache, Flag.SKIP_LOCKING));
+    }
+
+    @Test
+    public void removeFlag() {
+        Flag[] flags = new Flag[] { Flag.SKIP_LOCKING };
+        assertSame(flags, FlaggedCacheViews.remove(flags, Flag.FAIL_SILENTLY));
+
+        Flag[] result = FlaggedCacheViews.remove(new Flag[] { Flag.FAIL_SILENTLY, Flag.SKIP_LOCKING }, Flag.FAIL_SILENTLY);
+        assertArrayEquals(new Flag[] { Flag.SKIP_LOCKING }, result);
+        assertSame(result, FlaggedCacheViews.remove(new Flag[] { Flag.SKIP_LOCKING, Flag.FAIL_SILENTLY }, Flag.FAIL_SILENTLY));
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.transaction.Transaction;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.batch.BatchContainer;
+import org.infinispan.context.Flag;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvoker.KeyOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelCacheInvokerTestCase {
+
+    private final Address owner1 = mock(Address.class);
+    private final Address owner2 = mock(Address.class);
+    private final AdvancedCache<String, String> cache = mock(AdvancedCache.class);
+    private final DistributionManager dist = mock(DistributionManager.class);
+    private final RecordingCacheInvoker recorder = new RecordingCacheInvoker();
+    private ExecutorService executor;
+
+    @Before
+    public void start() {
+        ConsistentHash hash = mock(ConsistentHash.class);
+        when(this.cache.getAdvancedCache()).thenReturn(this.cache);
+        when(this.cache.getDistributionManager()).thenReturn(this.dist);
+        when(this.dist.getConsistentHash()).thenReturn(hash);
+        when(hash.locatePrimaryOwner("a")).thenReturn(this.owner1);
+        when(hash.locatePrimaryOwner("b")).thenReturn(this.owner2);
+        when(hash.locatePrimaryOwner("c")).thenReturn(this.owner1);
+        when(hash.locatePrimaryOwner("d")).thenReturn(this.owner2);
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void stop() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void groupsByPrimaryOwner() {
+        ParallelCacheInvoker invoker = new ParallelCacheInvoker(this.recorder, this.executor);
+
+        List<String> results = invoker.invokeAll(this.cache, operations("a", "b", "c", "d"), Flag.SKIP_LOCKING);
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), results);
+        assertEquals(2, this.recorder.groups.size());
+        // The last group is invoked by the calling thread, the others by the executor
+        assertEquals(Arrays.asList("b", "d"), this.recorder.getGroup(Thread.currentThread()));
+        assertTrue(this.recorder.groups.contains(Arrays.asList("a", "c")));
+        assertNotSame(this.recorder.threads.get(0), this.recorder.threads.get(1));
+        assertEquals(Arrays.asList(Flag.SKIP_LOCKING), this.recorder.flags);
+    }
+
+    @Test
+    public void singleOwner() {
+        ParallelCacheInvoker invoker = new ParallelCacheInvoker(this.recorder, this.executor);
+
+        assertEquals(Arrays.asList("a", "c"), invoker.invokeAll(this.cache, operations("a", "c")));
+        assertEquals(Collections.singletonList(Arrays.asList("a", "c")), this.recorder.groups);
+        assertSame(Thread.currentThread(), this.recorder.threads.get(0));
+    }
+
+    @Test
+    public void nonDistributedCache() {
+        when(this.cache.getDistributionManager()).thenReturn(null);
+        ParallelCacheInvoker invoker = new ParallelCacheInvoker(this.recorder, this.executor);
+
+        assertEquals(Arrays.asList("a", "b"), invoker.invokeAll(this.cache, operations("a", "b")));
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b")), this.recorder.groups);
+        assertSame(Thread.currentThread(), this.recorder.threads.get(0));
+    }
+
+    @Test
+    public void withinBatch() {
+        BatchContainer batches = mock(BatchContainer.class);
+        when(batches.getBatchTransaction()).thenReturn(mock(Transaction.class));
+        when(this.cache.getBatchContainer()).thenReturn(batches);
+        ParallelCacheInvoker invoker = new ParallelCacheInvoker(this.recorder, this.executor);
+
+        assertEquals(Arrays.asList("a", "b"), invoker.invokeAll(this.cache, operations("a", "b")));
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b")), this.recorder.groups);
+        assertSame(Thread.currentThread(), this.recorder.threads.get(0));
+    }
+
+    @Test
+    public void rejectedGroupsRunOnCallingThread() {
+        Executor rejecting = new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                throw new RejectedExecutionException();
+            }
+        };
+        ParallelCacheInvoker invoker = new ParallelCacheInvoker(this.recorder, rejecting);
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), invoker.invokeAll(this.cache, operations("a", "b", "c", "d")));
+        assertEquals(2, this.recorder.groups.size());
+        assertSame(Thread.currentThread(), this.recorder.threads.get(0));
+        assertSame(Thread.currentThread(), this.recorder.threads.get(1));
+    }
+
+    @Test
+    public void failureOfConcurrentGroup() {
+        ParallelCacheInvoker invoker = new ParallelCacheInvoker(this.recorder, this.executor);
+        List<KeyOperation<String, String, String>> operations = new ArrayList<KeyOperation<String, String, String>>(operations("a", "c"));
+        // Fails in the first group, which is invoked by the executor
+        operations.add(0, new EchoOperation("b") {
+            @Override
+            public String invoke(Cache<String, String> cache) {
+                throw new IllegalStateException();
+            }
+        });
+
+        try {
+            invoker.invokeAll(this.cache, operations);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void undecoratedInvoker() {
+        // The decorated invoker need not support bulk invocations
+        CacheInvoker simple = new CacheInvoker() {
+            @Override
+            public <K, V, R> R invoke(Cache<K, V> cache, Operation<K, V, R> operation, Flag... flags) {
+                return operation.invoke(cache);
+            }
+        };
+        ParallelCacheInvoker invoker = new ParallelCacheInvoker(simple, this.executor);
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), invoker.invokeAll(this.cache, operations("a", "b", "c", "d")));
+    }
+
+    private static List<KeyOperation<String, String, String>> operations(String... keys) {
+        List<KeyOperation<String, String, String>> operations = new ArrayList<KeyOperation<String, String, String>>(keys.length);
+        for (String key: keys) {
+            operations.add(new EchoOperation(key));
+        }
+        return operations;
+    }
+
+    static class EchoOperation implements KeyOperation<String, String, String> {
+        private final String key;
+
+        EchoOperation(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return this.key;
+        }
+
+        @Override
+        public String invoke(Cache<String, String> cache) {
+            return this.key;
+        }
+    }
+
+    static class RecordingCacheInvoker extends AbstractCacheInvoker {
+        final List<List<String>> groups = Collections.synchronizedList(new ArrayList<List<String>>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        volatile List<Flag> flags;
+
+        @Override
+        public <K, V, R> R invoke(Cache<K, V> cache, Operation<K, V, R> operation, Flag... flags) {
+            return operation.invoke(cache);
+        }
+
+        @Override
+        public <K, V, R> List<R> invokeAll(Cache<K, V> cache, List<? extends Operation<K, V, R>> operations, Flag... flags) {
+            List<String> keys = new ArrayList<String>(operations.size());
+            for (Operation<K, V, R> operation: operations) {
+                keys.add((String) ((KeyOperation<K, V, R>) operation).getKey());
+            }
+            synchronized (this) {
+                this.groups.add(keys);
+                this.threads.add(Thread.currentThread());
+            }
+            this.flags = Arrays.asList(flags);
+            return super.invokeAll(cache, operations, flags);
+        }
+
+        synchronized List<String> getGroup(Thread thread) {
+            return this.groups.get(this.threads.indexOf(thread));
+        }
+    }
+}
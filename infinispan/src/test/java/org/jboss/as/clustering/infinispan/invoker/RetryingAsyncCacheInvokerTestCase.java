@@ -0,0 +1,156 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.context.Flag;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvoker.Operation;
+import org.jboss.as.clustering.infinispan.invoker.RetryingCacheInvokerTestCase.TimingOutOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RetryingAsyncCacheInvokerTestCase {
+
+    private EmbeddedCacheManager manager;
+    private Cache<String, String> cache;
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void start() {
+        this.manager = new DefaultCacheManager(new ConfigurationBuilder().build());
+        this.cache = this.manager.getCache();
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void stop() {
+        this.executor.shutdownNow();
+        this.manager.stop();
+    }
+
+    @Test
+    public void retriesUntilSuccess() throws Exception {
+        TimingOutOperation operation = new TimingOutOperation(2);
+
+        NotifyingFuture<String> future = new RetryingAsyncCacheInvoker(this.executor, 1, 1).invokeAsync(this.cache, operation);
+
+        assertEquals("value", future.get(10, TimeUnit.SECONDS));
+        assertEquals(3, operation.attempts.get());
+        assertEquals(2, CacheInvokerStatistics.findStatistics(this.cache).getRetries());
+    }
+
+    @Test
+    public void abortsOnceRetriesAreExhausted() throws Exception {
+        TimingOutOperation operation = new TimingOutOperation(Integer.MAX_VALUE);
+
+        NotifyingFuture<String> future = new RetryingAsyncCacheInvoker(this.executor, 1, 1).invokeAsync(this.cache, operation);
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(TimeoutException.class, e.getCause().getCause().getClass());
+        }
+        assertEquals(3, operation.attempts.get());
+        assertEquals(1, CacheInvokerStatistics.findStatistics(this.cache).getFailures());
+    }
+
+    @Test
+    public void circuitBreakerRejectsInvocations() throws Exception {
+        AsyncCacheInvoker invoker = new RetryingAsyncCacheInvoker(new SimpleAsyncCacheInvoker(this.executor), this.executor, new FixedRetryPolicy(1, 1, 1), 2, Long.MAX_VALUE);
+        TimingOutOperation operation = new TimingOutOperation(Integer.MAX_VALUE);
+
+        try {
+            invoker.invokeAsync(this.cache, operation).get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(TimeoutException.class, e.getCause().getCause().getClass());
+        }
+        assertEquals(2, operation.attempts.get());
+
+        TimingOutOperation nextOperation = new TimingOutOperation(0);
+        NotifyingFuture<String> future = invoker.invokeAsync(this.cache, nextOperation);
+        // Rejected without dispatching the operation
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(0, nextOperation.attempts.get());
+        }
+        assertEquals(1, CacheInvokerStatistics.findStatistics(this.cache).getRejections());
+    }
+
+    @Test
+    public void cancellationStopsRetries() throws Exception {
+        TimingOutOperation operation = new TimingOutOperation(Integer.MAX_VALUE);
+
+        NotifyingFuture<String> future = new RetryingAsyncCacheInvoker(this.executor, 200).invokeAsync(this.cache, operation);
+        future.cancel(false);
+        // Wait for the scheduled retry, which must be abandoned
+        Thread.sleep(400);
+
+        assertTrue(future.isCancelled());
+        // The first attempt may or may not have run before cancellation, but it is never retried
+        assertTrue(operation.attempts.get() <= 1);
+    }
+
+    @Test
+    public void cancelledTrialReleasesCircuitBreaker() throws Exception {
+        CircuitBreaker.Parameters parameters = new CircuitBreaker.Parameters(1, 0);
+        CircuitBreaker breaker = CacheInvokerStatistics.getStatistics(this.cache).getCircuitBreaker(parameters);
+        breaker.failure();
+        final CacheInvocationFuture<String> attempt = new CacheInvocationFuture<String>();
+        AsyncCacheInvoker pendingInvoker = new AsyncCacheInvoker() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public <K, V, R> NotifyingFuture<R> invokeAsync(Cache<K, V> cache, Operation<K, V, R> operation, Flag... flags) {
+                return (NotifyingFuture<R>) attempt;
+            }
+        };
+
+        NotifyingFuture<String> future = new RetryingAsyncCacheInvoker(pendingInvoker, this.executor, new FixedRetryPolicy(), 1, 0).invokeAsync(this.cache, new TimingOutOperation(0));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        attempt.cancel(false);
+
+        assertTrue(future.isCancelled());
+        // The trial is released without a trip, so the next caller may try again
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getTrips());
+        assertTrue(breaker.allowInvocation());
+    }
+}
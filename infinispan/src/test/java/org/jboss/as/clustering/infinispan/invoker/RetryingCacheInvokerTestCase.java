@@ -0,0 +1,219 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvoker.Operation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RetryingCacheInvokerTestCase {
+
+    private EmbeddedCacheManager manager;
+    private Cache<String, String> cache;
+
+    @Before
+    public void start() {
+        this.manager = new DefaultCacheManager(new ConfigurationBuilder().build());
+        this.cache = this.manager.getCache();
+    }
+
+    @After
+    public void stop() {
+        this.manager.stop();
+    }
+
+    @Test
+    public void retriesUntilSuccess() {
+        TimingOutOperation operation = new TimingOutOperation(2);
+
+        String result = new RetryingCacheInvoker(0, 0).invoke(this.cache, operation);
+
+        assertEquals("value", result);
+        assertEquals(3, operation.attempts.get());
+        CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(this.cache);
+        assertEquals(2, statistics.getRetries());
+        assertEquals(0, statistics.getFailures());
+    }
+
+    @Test
+    public void retriesBulkInvocationAsWhole() {
+        TimingOutOperation operation = new TimingOutOperation(1);
+        final AtomicInteger otherAttempts = new AtomicInteger();
+        Operation<String, String, String> otherOperation = new Operation<String, String, String>() {
+            @Override
+            public String invoke(Cache<String, String> cache) {
+                otherAttempts.incrementAndGet();
+                return "other";
+            }
+        };
+
+        List<String> results = new RetryingCacheInvoker(0).invokeAll(this.cache, Arrays.asList(otherOperation, operation));
+
+        assertEquals(Arrays.asList("other", "value"), results);
+        assertEquals(2, operation.attempts.get());
+        assertEquals(2, otherAttempts.get());
+    }
+
+    @Test
+    public void abortsOnceRetriesAreExhausted() {
+        TimingOutOperation operation = new TimingOutOperation(Integer.MAX_VALUE);
+
+        try {
+            new RetryingCacheInvoker(0, 0).invoke(this.cache, operation);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals(TimeoutException.class, e.getCause().getClass());
+        }
+        assertEquals(3, operation.attempts.get());
+        assertEquals(1, CacheInvokerStatistics.findStatistics(this.cache).getFailures());
+    }
+
+    @Test
+    public void doesNotRetryOtherFailures() {
+        final RuntimeException exception = new IllegalStateException();
+        final AtomicInteger attempts = new AtomicInteger();
+        Operation<String, String, String> operation = new Operation<String, String, String>() {
+            @Override
+            public String invoke(Cache<String, String> cache) {
+                attempts.incrementAndGet();
+                throw exception;
+            }
+        };
+
+        try {
+            new RetryingCacheInvoker(0, 0).invoke(this.cache, operation);
+            fail();
+        } catch (RuntimeException e) {
+            assertSame(exception, e);
+        }
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void circuitBreakerRejectsInvocations() {
+        CacheInvoker invoker = new RetryingCacheInvoker(new SimpleCacheInvoker(), new FixedRetryPolicy(0, 0, 0), 2, Long.MAX_VALUE);
+        TimingOutOperation operation = new TimingOutOperation(Integer.MAX_VALUE);
+
+        try {
+            invoker.invoke(this.cache, operation);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals(TimeoutException.class, e.getCause().getClass());
+        }
+        // Retries stop once the breaker opens
+        assertEquals(2, operation.attempts.get());
+
+        TimingOutOperation nextOperation = new TimingOutOperation(0);
+        try {
+            invoker.invoke(this.cache, nextOperation);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals(0, nextOperation.attempts.get());
+        }
+        CacheInvokerStatistics statistics = CacheInvokerStatistics.findStatistics(this.cache);
+        assertEquals(1, statistics.getRejections());
+        assertEquals(CircuitBreaker.State.OPEN, statistics.getCircuitBreakerState());
+    }
+
+    @Test
+    public void errorReleasesCircuitBreakerTrial() {
+        CircuitBreaker.Parameters parameters = new CircuitBreaker.Parameters(1, 0);
+        CircuitBreaker breaker = CacheInvokerStatistics.getStatistics(this.cache).getCircuitBreaker(parameters);
+        breaker.failure();
+        final Error error = new AssertionError();
+        Operation<String, String, String> operation = new Operation<String, String, String>() {
+            @Override
+            public String invoke(Cache<String, String> cache) {
+                throw error;
+            }
+        };
+
+        try {
+            new RetryingCacheInvoker(new SimpleCacheInvoker(), new FixedRetryPolicy(), 1, 0).invoke(this.cache, operation);
+            fail();
+        } catch (Error e) {
+            assertSame(error, e);
+        }
+        // The trial is released, so the next caller may try again
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals("value", new RetryingCacheInvoker(new SimpleCacheInvoker(), new FixedRetryPolicy(), 1, 0).invoke(this.cache, new TimingOutOperation(0)));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void circuitBreakerIsSharedByInvokersWithSameParameters() {
+        CacheInvoker invoker = new RetryingCacheInvoker(new SimpleCacheInvoker(), new FixedRetryPolicy(), 1, Long.MAX_VALUE);
+        CacheInvoker sameInvoker = new RetryingCacheInvoker(new SimpleCacheInvoker(), new FixedRetryPolicy(), 1, Long.MAX_VALUE);
+        CacheInvoker otherInvoker = new RetryingCacheInvoker(new SimpleCacheInvoker(), new FixedRetryPolicy(), 2, Long.MAX_VALUE);
+
+        try {
+            invoker.invoke(this.cache, new TimingOutOperation(1));
+            fail();
+        } catch (RuntimeException e) {
+            // Expected
+        }
+
+        TimingOutOperation operation = new TimingOutOperation(0);
+        try {
+            sameInvoker.invoke(this.cache, operation);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals(0, operation.attempts.get());
+        }
+        // An invoker with different parameters uses its own breaker
+        assertEquals("value", otherInvoker.invoke(this.cache, operation));
+    }
+
+    /**
+     * An operation that times out a number of times before succeeding.
+     */
+    static class TimingOutOperation implements Operation<String, String, String> {
+        final AtomicInteger attempts = new AtomicInteger();
+        private final int timeouts;
+
+        TimingOutOperation(int timeouts) {
+            this.timeouts = timeouts;
+        }
+
+        @Override
+        public String invoke(Cache<String, String> cache) {
+            if (this.attempts.incrementAndGet() <= this.timeouts) {
+                throw new TimeoutException("timeout");
+            }
+            return "value";
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.jboss.as.clustering.infinispan.invoker.CacheInvoker.Operation;
+import org.junit.Test;
+
+public class SimpleAsyncCacheInvokerTestCase {
+
+    private final Queue<Runnable> tasks = new LinkedList<Runnable>();
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            SimpleAsyncCacheInvokerTestCase.this.tasks.add(task);
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    private static AdvancedCache<String, String> mockCache() {
+        AdvancedCache<String, String> cache = mock(AdvancedCache.class);
+        when(cache.getAdvancedCache()).thenReturn(cache);
+        return cache;
+    }
+
+    @Test
+    public void blockingOperationRunsOnExecutor() throws Exception {
+        AdvancedCache<String, String> cache = mockCache();
+        when(cache.get("key")).thenReturn("value");
+        Operation<String, String, String> operation = new Operation<String, String, String>() {
+            @Override
+            public String invoke(Cache<String, String> cache) {
+                return cache.get("key");
+            }
+        };
+
+        NotifyingFuture<String> future = new SimpleAsyncCacheInvoker(this.executor).invokeAsync(cache, operation);
+
+        assertFalse(future.isDone());
+        assertEquals(1, this.tasks.size());
+        this.tasks.remove().run();
+        assertEquals("value", future.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void asyncOperationUsesCacheApi() throws Exception {
+        AdvancedCache<String, String> cache = mockCache();
+        NotifyingFuture<String> expected = mock(NotifyingFuture.class);
+        when(cache.putAsync("key", "value")).thenReturn(expected);
+
+        NotifyingFuture<String> future = new SimpleAsyncCacheInvoker(this.executor).invokeAsync(cache, new PutOperation<String, String>("key", "value"));
+
+        assertSame(expected, future);
+        assertTrue(this.tasks.isEmpty());
+        verify(cache).putAsync("key", "value");
+    }
+
+    @Test
+    public void failed() throws Exception {
+        AdvancedCache<String, String> cache = mockCache();
+        final RuntimeException exception = new IllegalStateException();
+        Operation<String, String, String> operation = new Operation<String, String, String>() {
+            @Override
+            public String invoke(Cache<String, String> cache) {
+                throw exception;
+            }
+        };
+
+        NotifyingFuture<String> future = new SimpleAsyncCacheInvoker(this.executor).invokeAsync(cache, operation);
+        this.tasks.remove().run();
+
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(exception, e.getCause());
+        }
+    }
+
+    @Test
+    public void rejected() throws Exception {
+        AdvancedCache<String, String> cache = mockCache();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                throw new RejectedExecutionException();
+            }
+        };
+        Operation<String, String, String> operation = new Operation<String, String, String>() {
+            @Override
+            public String invoke(Cache<String, String> cache) {
+                return null;
+            }
+        };
+
+        NotifyingFuture<String> future = new SimpleAsyncCacheInvoker(executor).invokeAsync(cache, operation);
+
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void cancelledBeforeRun() throws Exception {
+        AdvancedCache<String, String> cache = mockCache();
+        final boolean[] invoked = new boolean[1];
+        Operation<String, String, String> operation = new Operation<String, String, String>() {
+            @Override
+            public String invoke(Cache<String, String> cache) {
+                invoked[0] = true;
+                return null;
+            }
+        };
+
+        NotifyingFuture<String> future = new SimpleAsyncCacheInvoker(this.executor).invokeAsync(cache, operation);
+        future.cancel(false);
+        this.tasks.remove().run();
+
+        assertFalse(invoked[0]);
+    }
+}
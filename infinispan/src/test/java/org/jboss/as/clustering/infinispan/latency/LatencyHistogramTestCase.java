@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.latency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTestCase {
+
+    @Test
+    public void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 64; ++value) {
+            histogram.record(value);
+        }
+
+        assertEquals(64, histogram.getCount());
+        assertEquals(32, histogram.getPercentile(50));
+        assertEquals(64, histogram.getPercentile(100));
+        assertEquals(64, histogram.getMax());
+    }
+
+    @Test
+    public void percentilesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; ++value) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(100000, histogram.getCount());
+        assertWithinError(50000000L, histogram.getPercentile(50));
+        assertWithinError(90000000L, histogram.getPercentile(90));
+        assertWithinError(99000000L, histogram.getPercentile(99));
+        assertWithinError(99900000L, histogram.getPercentile(99.9));
+        assertEquals(100000000L, histogram.getPercentile(100));
+        assertEquals(100000000L, histogram.getMax());
+    }
+
+    @Test
+    public void skewedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 990; ++i) {
+            histogram.record(100000);
+        }
+        for (int i = 0; i < 10; ++i) {
+            histogram.record(50000000);
+        }
+
+        assertWithinError(100000, histogram.getPercentile(50));
+        assertWithinError(100000, histogram.getPercentile(99));
+        assertWithinError(50000000, histogram.getPercentile(99.9));
+        assertEquals(50000000, histogram.getMax());
+    }
+
+    @Test
+    public void valuesBeyondHighestTrackableValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long huge = Long.MAX_VALUE / 2;
+        histogram.record(huge);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(huge, histogram.getMax());
+        // Percentiles of untrackable values are bounded by the highest trackable value
+        assertTrue(histogram.getPercentile(50) >= (1L << 39));
+        assertTrue(histogram.getPercentile(50) <= huge);
+    }
+
+    @Test
+    public void negativeValuesIgnored() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void reset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(2000);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            final long offset = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; ++j) {
+                        histogram.record(j + offset);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+
+        assertEquals(40000, histogram.getCount());
+        assertEquals(9999 + threads.length - 1, histogram.getMax());
+    }
+
+    private static void assertWithinError(long expected, long actual) {
+        assertTrue(String.format("%d not within 1/32 of %d", actual, expected), Math.abs(actual - expected) <= (expected >> 5));
+    }
+}
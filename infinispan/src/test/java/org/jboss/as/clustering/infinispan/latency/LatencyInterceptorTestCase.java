@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.latency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.cache.InterceptorConfiguration;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LatencyInterceptorTestCase {
+
+    private EmbeddedCacheManager manager;
+
+    @Before
+    public void start() {
+        this.manager = new DefaultCacheManager(new ConfigurationBuilder().build());
+    }
+
+    @After
+    public void stop() {
+        this.manager.stop();
+    }
+
+    private LatencyInterceptor defineCache(String name, boolean statistics) {
+        LatencyInterceptor interceptor = new LatencyInterceptor();
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.jmxStatistics().enabled(statistics);
+        builder.customInterceptors().addInterceptor().interceptor(interceptor).position(InterceptorConfiguration.Position.FIRST);
+        this.manager.defineConfiguration(name, builder.build());
+        return interceptor;
+    }
+
+    @Test
+    public void recordsReadsAndWrites() {
+        LatencyInterceptor interceptor = this.defineCache("cache", true);
+        AdvancedCache<String, String> cache = this.manager.<String, String>getCache("cache").getAdvancedCache();
+
+        cache.put("a", "1");
+        cache.putAll(Collections.singletonMap("b", "2"));
+        cache.replace("a", "3");
+        cache.get("a");
+        cache.get("missing");
+        cache.getCacheEntry("b");
+        cache.remove("b");
+
+        assertEquals(3, interceptor.getReadLatency().getCount());
+        assertEquals(4, interceptor.getWriteLatency().getCount());
+        assertTrue(interceptor.getReadLatency().getMax() > 0);
+        assertTrue(interceptor.getWriteLatency().getMax() > 0);
+
+        interceptor.resetStatistics();
+
+        assertEquals(0, interceptor.getReadLatency().getCount());
+        assertEquals(0, interceptor.getWriteLatency().getCount());
+    }
+
+    @Test
+    public void disabledWithoutStatistics() {
+        LatencyInterceptor interceptor = this.defineCache("cache", false);
+        AdvancedCache<String, String> cache = this.manager.<String, String>getCache("cache").getAdvancedCache();
+
+        cache.put("a", "1");
+        cache.get("a");
+
+        assertEquals(0, interceptor.getReadLatency().getCount());
+        assertEquals(0, interceptor.getWriteLatency().getCount());
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BackgroundPreloaderTestCase {
+
+    private static final int MAX_ENTRIES = 16;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<EmbeddedCacheManager> managers = new ArrayList<EmbeddedCacheManager>();
+    private File hotKeys;
+
+    @Before
+    public void init() throws Exception {
+        this.hotKeys = File.createTempFile("cache", ".keys");
+        this.hotKeys.delete();
+    }
+
+    @After
+    public void destroy() {
+        for (EmbeddedCacheManager manager : this.managers) {
+            manager.stop();
+        }
+        this.executor.shutdownNow();
+        this.hotKeys.delete();
+    }
+
+    private Cache<Object, Object> createCache() {
+        GlobalConfigurationBuilder global = new GlobalConfigurationBuilder();
+        global.serialization().marshaller(new JavaStreamingMarshaller());
+        // The hot keys test runs two cache managers at once
+        global.globalJmxStatistics().allowDuplicateDomains(true);
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.eviction().strategy(EvictionStrategy.LRU).maxEntries(MAX_ENTRIES);
+        builder.persistence().addStore(InMemoryStoreConfigurationBuilder.class);
+        EmbeddedCacheManager manager = new DefaultCacheManager(global.build(), builder.build());
+        this.managers.add(manager);
+        return manager.getCache();
+    }
+
+    private static InMemoryStore getStore(Cache<?, ?> cache) {
+        return (InMemoryStore) StoreLocator.findWriter(cache, 0);
+    }
+
+    private static void await(BackgroundPreloader preloader) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (preloader.getRemainingTime() != 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void hotKeys() throws InterruptedException {
+        Cache<Object, Object> cache = this.createCache();
+        BackgroundPreloader preloader = new BackgroundPreloader(0, 2, this.executor, this.hotKeys);
+        preloader.start(cache);
+        await(preloader);
+        for (int i = 0; i < 100; ++i) {
+            cache.put(i, "value" + i);
+        }
+        // The keys resident once the cache stops, i.e. the most recently written, are the hot keys
+        Set<Object> hot = new HashSet<Object>(cache.getAdvancedCache().getDataContainer().keySet());
+        assertFalse(hot.isEmpty());
+        preloader.stop(cache);
+        assertTrue(this.hotKeys.isFile());
+
+        // Preload a new cache from the same entries
+        Cache<Object, Object> newCache = this.createCache();
+        InMemoryStore store = getStore(newCache);
+        for (MarshalledEntry<Object, Object> entry : getStore(cache).getEntries().values()) {
+            store.add(entry.getKey(), entry.getValue());
+        }
+        InsertionListener listener = new InsertionListener();
+        newCache.addListener(listener);
+        BackgroundPreloader newPreloader = new BackgroundPreloader(0, 2, this.executor, this.hotKeys);
+        newPreloader.start(newCache);
+        await(newPreloader);
+
+        // Hot keys are preloaded before the remaining entries
+        List<Object> inserted = listener.getKeys();
+        assertTrue(inserted.size() >= hot.size());
+        assertEquals(hot, new HashSet<Object>(inserted.subList(0, hot.size())));
+        for (Object key : hot) {
+            assertEquals(store.getEntries().get(key).getValue(), newCache.get(key));
+        }
+    }
+
+    @Test
+    public void modifiedKeys() throws InterruptedException {
+        Cache<Object, Object> cache = this.createCache();
+        InMemoryStore store = getStore(cache);
+        final CountDownLatch loaded = new CountDownLatch(1);
+        final CountDownLatch modified = new CountDownLatch(1);
+        // Removes the entry of a key after the preloader loaded it from the store, but before it inserts it
+        BackgroundPreloader preloader = new BackgroundPreloader(0, 1, this.executor, this.hotKeys) {
+            @Override
+            <K, V> void insert(Cache<K, V> cache, MarshalledEntry<Object, Object> entry) {
+                if (entry.getKey().equals("removed")) {
+                    loaded.countDown();
+                    try {
+                        modified.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.insert(cache, entry);
+            }
+        };
+        store.add("removed", "stale");
+        preloader.start(cache);
+        assertTrue(loaded.await(10, TimeUnit.SECONDS));
+        cache.remove("removed");
+        modified.countDown();
+        await(preloader);
+
+        // The stale entry was not resurrected
+        assertNull(cache.getAdvancedCache().getDataContainer().get("removed"));
+        assertNull(cache.get("removed"));
+        assertEquals(0, preloader.getEntries());
+        preloader.stop(cache);
+    }
+
+    @Test
+    public void existingEntry() throws InterruptedException {
+        Cache<Object, Object> cache = this.createCache();
+        InMemoryStore store = getStore(cache);
+        cache.put("key", "new");
+        store.add("key", "old");
+        store.add("other", "other");
+
+        BackgroundPreloader preloader = new BackgroundPreloader(0, 2, this.executor, this.hotKeys);
+        preloader.start(cache);
+        await(preloader);
+
+        assertEquals("new", cache.get("key"));
+        assertEquals("other", cache.getAdvancedCache().getDataContainer().get("other").getValue());
+        assertEquals(1, preloader.getEntries());
+        preloader.stop(cache);
+    }
+
+    @Test
+    public void overflow() throws InterruptedException {
+        Cache<Object, Object> cache = this.createCache();
+        InMemoryStore store = getStore(cache);
+        for (int i = 0; i < 10; ++i) {
+            store.add("stored" + i, "value");
+        }
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        BackgroundPreloader preloader = new BackgroundPreloader(0, 1, this.executor, this.hotKeys) {
+            @Override
+            <K, V> void insert(Cache<K, V> cache, MarshalledEntry<Object, Object> entry) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.insert(cache, entry);
+            }
+        };
+        preloader.start(cache);
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        // Modify more keys than are tracked while preloading
+        for (int i = 0; i <= (1 << 16); ++i) {
+            cache.put(i, i);
+        }
+        release.countDown();
+        await(preloader);
+
+        // Preload was cancelled, and nothing inserted once modified keys were no longer tracked
+        assertEquals(0, preloader.getEntries());
+        preloader.stop(cache);
+    }
+
+    @Listener(sync = true)
+    public static class InsertionListener {
+        private final List<Object> keys = Collections.synchronizedList(new ArrayList<Object>());
+
+        @CacheEntryCreated
+        public void created(CacheEntryEvent<?, ?> event) {
+            if (!event.isPre()) {
+                this.keys.add(event.getKey());
+            }
+        }
+
+        List<Object> getKeys() {
+            synchronized (this.keys) {
+                return new ArrayList<Object>(this.keys);
+            }
+        }
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.interceptors.EntryWrappingInterceptor;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.marshall.core.MarshalledEntryImpl;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.InternalMetadata;
+import org.infinispan.metadata.InternalMetadataImpl;
+import org.infinispan.persistence.jdbc.TableManipulation;
+import org.infinispan.persistence.jdbc.configuration.AbstractJdbcStoreConfigurationBuilder;
+import org.infinispan.persistence.jdbc.configuration.ConnectionFactoryConfiguration;
+import org.infinispan.persistence.jdbc.configuration.JdbcStringBasedStoreConfiguration;
+import org.infinispan.persistence.jdbc.configuration.TableManipulationConfigurationBuilder;
+import org.infinispan.persistence.jdbc.connectionfactory.ConnectionFactory;
+import org.infinispan.persistence.keymappers.DefaultTwoWayKey2StringMapper;
+import org.infinispan.persistence.spi.AdvancedCacheWriter;
+import org.infinispan.persistence.spi.PersistenceException;
+import org.infinispan.util.DefaultTimeService;
+import org.junit.After;
+import org.junit.Test;
+
+public class BatchingJdbcStoreTestCase {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private final String url = "jdbc:h2:mem:" + this.getClass().getSimpleName() + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+    private final JavaStreamingMarshaller marshaller = new JavaStreamingMarshaller();
+    private EmbeddedCacheManager manager;
+    private Cache<Object, Object> cache;
+
+    @After
+    public void destroy() throws SQLException {
+        if (this.manager != null) {
+            this.manager.stop();
+        }
+        Connection connection = this.connect();
+        try {
+            connection.createStatement().execute("SHUTDOWN");
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void start(ConfigurationBuilder builder) {
+        GlobalConfigurationBuilder global = new GlobalConfigurationBuilder();
+        global.serialization().marshaller(this.marshaller);
+        this.manager = new DefaultCacheManager(global.build(), builder.build());
+        this.cache = this.manager.getCache();
+    }
+
+    private void configure(AbstractJdbcStoreConfigurationBuilder<?, ?> store) {
+        store.simpleConnection().connectionUrl(this.url).driverClass("org.h2.Driver").username("sa");
+    }
+
+    private static void configure(TableManipulationConfigurationBuilder<?, ?> table, String prefix, String idColumnType) {
+        table.tableNamePrefix(prefix).idColumnName("id").idColumnType(idColumnType).dataColumnName("datum").dataColumnType("BINARY")
+                .timestampColumnName("version").timestampColumnType("BIGINT").batchSize(2);
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(this.url, "sa", "");
+    }
+
+    private int count(TableManipulation table) throws SQLException {
+        Connection connection = this.connect();
+        try {
+            ResultSet results = connection.createStatement().executeQuery("SELECT COUNT(*) FROM " + table.getTableName());
+            assertTrue(results.next());
+            return results.getInt(1);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private MarshalledEntry<Object, Object> entry(Object key, Object value) {
+        return new MarshalledEntryImpl<Object, Object>(key, value, null, this.marshaller);
+    }
+
+    private BatchingJdbcStringBasedStore startStringKeyedStore() {
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        BatchingJdbcStringBasedStoreConfigurationBuilder store = builder.persistence().addStore(BatchingJdbcStringBasedStoreConfigurationBuilder.class);
+        this.configure(store);
+        configure(store.table(), "ispn_entry", "VARCHAR(255)");
+        this.start(builder);
+        return (BatchingJdbcStringBasedStore) StoreLocator.findStoreWriter(this.cache, 0);
+    }
+
+    private JdbcBatchWriter createWriter(BatchingJdbcStringBasedStore store, ConnectionFactory connectionFactory, JdbcDialect dialect) {
+        JdbcStringBasedStoreConfiguration configuration = (JdbcStringBasedStoreConfiguration) this.cache.getCacheConfiguration().persistence().stores().get(0);
+        TableManipulation table = store.getTableManipulation();
+        return new JdbcBatchWriter(connectionFactory, new DefaultTwoWayKey2StringMapper(), this.marshaller, new DefaultTimeService(), table.getTableName(), table.getIdentifierQuoteString(), configuration.table(), dialect);
+    }
+
+    @Test
+    public void stringKeyedWriteThrough() throws SQLException {
+        BatchingJdbcStringBasedStore store = this.startStringKeyedStore();
+        TableManipulation table = store.getTableManipulation();
+
+        this.cache.put("key", "value1");
+        this.cache.put("key", "value2");
+        assertEquals(1, this.count(table));
+        assertEquals("value2", store.load("key").getValue());
+
+        Map<Object, Object> entries = new HashMap<Object, Object>();
+        for (int i = 0; i < 5; ++i) {
+            entries.put("key" + i, "value" + i);
+        }
+        entries.put("key", "value3");
+        this.cache.putAll(entries);
+        assertEquals(6, this.count(table));
+        assertEquals("value3", store.load("key").getValue());
+        assertEquals("value4", store.load("key4").getValue());
+
+        this.cache.remove("key");
+        assertEquals(5, this.count(table));
+        assertNull(store.load("key"));
+    }
+
+    @Test
+    public void stringKeyedBatch() throws SQLException {
+        BatchingJdbcStringBasedStore store = this.startStringKeyedStore();
+        TableManipulation table = store.getTableManipulation();
+        store.write(this.entry("key0", "old"));
+
+        List<MarshalledEntry<Object, Object>> entries = new ArrayList<MarshalledEntry<Object, Object>>();
+        List<Object> keys = new ArrayList<Object>();
+        for (int i = 0; i < 5; ++i) {
+            entries.add(this.entry("key" + i, "value" + i));
+            keys.add("key" + i);
+        }
+        store.writeBatch(entries);
+        assertEquals(5, this.count(table));
+        assertEquals("value0", store.load("key0").getValue());
+        assertEquals("value4", store.load("key4").getValue());
+
+        store.deleteBatch(keys.subList(0, 3));
+        assertEquals(2, this.count(table));
+        assertNull(store.load("key0"));
+        assertEquals("value3", store.load("key3").getValue());
+
+        // Keys not supported by the key mapper are rejected, as by Infinispan's own store
+        try {
+            store.writeBatch(Collections.singletonList(this.entry(UUID.randomUUID(), "value")));
+            fail();
+        } catch (PersistenceException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void genericDialect() throws SQLException {
+        BatchingJdbcStringBasedStore store = this.startStringKeyedStore();
+        TableManipulation table = store.getTableManipulation();
+        CountingConnectionFactory connectionFactory = new CountingConnectionFactory(store.getConnectionFactory());
+        // Updates existing rows, then inserts the others, within one transaction, without querying any row
+        JdbcBatchWriter writer = this.createWriter(store, connectionFactory, JdbcDialect.GENERIC);
+        store.write(this.entry("key0", "old"));
+
+        List<MarshalledEntry<Object, Object>> entries = new ArrayList<MarshalledEntry<Object, Object>>();
+        for (int i = 0; i < 5; ++i) {
+            entries.add(this.entry("key" + i, "value" + i));
+        }
+        writer.write(entries);
+        assertEquals(1, connectionFactory.getConnections());
+        assertEquals(5, this.count(table));
+        for (int i = 0; i < 5; ++i) {
+            assertEquals("value" + i, store.load("key" + i).getValue());
+        }
+    }
+
+    @Test
+    public void purge() throws SQLException {
+        BatchingJdbcStringBasedStore store = this.startStringKeyedStore();
+        TableManipulation table = store.getTableManipulation();
+        DefaultTwoWayKey2StringMapper mapper = new DefaultTwoWayKey2StringMapper();
+        long now = System.currentTimeMillis();
+        Connection connection = this.connect();
+        try {
+            PreparedStatement statement = connection.prepareStatement(String.format("INSERT INTO %s (id, datum, version) VALUES (?, ?, ?)", table.getTableName()));
+            for (int i = 0; i < 5; ++i) {
+                insert(statement, mapper.getStringMapping("expired" + i), now - 1000 - i);
+            }
+            insert(statement, mapper.getStringMapping("live"), now + 60000);
+            insert(statement, mapper.getStringMapping("immortal"), -1);
+        } finally {
+            connection.close();
+        }
+        assertEquals(7, this.count(table));
+
+        CountingConnectionFactory connectionFactory = new CountingConnectionFactory(store.getConnectionFactory());
+        JdbcBatchWriter writer = this.createWriter(store, connectionFactory, null);
+        final Set<Object> purged = new HashSet<Object>();
+        writer.purge(new AdvancedCacheWriter.PurgeListener<Object>() {
+            @Override
+            public void entryPurged(Object key) {
+                purged.add(key);
+            }
+        });
+        // Chunks of 2, 2 and 1 expired rows, each in its own transaction
+        assertEquals(3, connectionFactory.getConnections());
+        assertEquals(2, this.count(table));
+        assertEquals(5, purged.size());
+        for (int i = 0; i < 5; ++i) {
+            assertTrue(purged.contains("expired" + i));
+        }
+    }
+
+    private static void insert(PreparedStatement statement, String id, long timestamp) throws SQLException {
+        statement.setString(1, id);
+        statement.setBytes(2, new byte[0]);
+        statement.setLong(3, timestamp);
+        statement.executeUpdate();
+    }
+
+    @Test
+    public void timestampIndex() throws SQLException {
+        BatchingJdbcStringBasedStore store = this.startStringKeyedStore();
+        assertEquals(1, this.countTimestampIndexes(store.getTableManipulation()));
+        // An existing index is not duplicated
+        this.createWriter(store, store.getConnectionFactory(), null).createTimestampIndex();
+        assertEquals(1, this.countTimestampIndexes(store.getTableManipulation()));
+    }
+
+    private int countTimestampIndexes(TableManipulation table) throws SQLException {
+        Connection connection = this.connect();
+        try {
+            // The quoted table name is stored as written, whereas the unquoted column name may be stored in upper case
+            ResultSet indexes = connection.getMetaData().getIndexInfo(null, null, table.getTableName().getName(), false, true);
+            int count = 0;
+            while (indexes.next()) {
+                if ("version".equalsIgnoreCase(indexes.getString("COLUMN_NAME"))) {
+                    count += 1;
+                }
+            }
+            return count;
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void binaryKeyed() throws SQLException {
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        BatchingJdbcBinaryStoreConfigurationBuilder configuration = builder.persistence().addStore(BatchingJdbcBinaryStoreConfigurationBuilder.class);
+        this.configure(configuration);
+        // Infinispan selects a bucket by an integer id, which H2 fails to match against some VARCHAR ids
+        configure(configuration.table(), "ispn_bucket", "INT");
+        this.start(builder);
+        BatchingJdbcBinaryStore store = (BatchingJdbcBinaryStore) StoreLocator.findStoreWriter(this.cache, 0);
+
+        UUID key = UUID.randomUUID();
+        this.cache.put(key, "value");
+        assertEquals("value", store.load(key).getValue());
+
+        List<MarshalledEntry<Object, Object>> entries = new ArrayList<MarshalledEntry<Object, Object>>();
+        List<Object> keys = new ArrayList<Object>();
+        for (int i = 0; i < 20; ++i) {
+            UUID batchKey = UUID.randomUUID();
+            entries.add(this.entry(batchKey, "value" + i));
+            keys.add(batchKey);
+        }
+        store.writeBatch(entries);
+        assertEquals(21, store.size());
+        for (int i = 0; i < 20; ++i) {
+            assertEquals("value" + i, store.load(keys.get(i)).getValue());
+        }
+        // Each bucket holds every entry written to it
+        assertTrue(this.count(store.getTableManipulation()) <= 21);
+
+        store.deleteBatch(keys.subList(0, 10));
+        assertEquals(11, store.size());
+        assertNull(store.load(keys.get(0)));
+        assertEquals("value10", store.load(keys.get(10)).getValue());
+        assertEquals("value", store.load(key).getValue());
+
+        // As with Infinispan's own store, an expired entry removes its key
+        long created = System.currentTimeMillis() - 10000;
+        InternalMetadata metadata = new InternalMetadataImpl(new EmbeddedMetadata.Builder().lifespan(1000).build(), created, created);
+        store.writeBatch(Collections.singletonList(new MarshalledEntryImpl<Object, Object>(keys.get(10), "expired", metadata, this.marshaller)));
+        assertNull(store.load(keys.get(10)));
+        assertEquals(10, store.size());
+    }
+
+    @Test
+    public void mixedKeyedWriteBehind() throws Exception {
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        BatchingJdbcMixedStoreConfigurationBuilder configuration = builder.persistence().addStore(BatchingJdbcMixedStoreConfigurationBuilder.class);
+        configuration.ignoreModifications(true);
+        this.configure(configuration);
+        configure(configuration.stringTable(), "ispn_entry", "VARCHAR(255)");
+        configure(configuration.binaryTable(), "ispn_bucket", "INT");
+        builder.customInterceptors().addInterceptor().interceptor(new CoalescingWriteBehindInterceptor(0, 100, 100, 1000, 100, 1, 5000)).after(EntryWrappingInterceptor.class);
+        this.start(builder);
+        BatchingJdbcMixedStore store = (BatchingJdbcMixedStore) StoreLocator.findStoreWriter(this.cache, 0);
+
+        UUID key = UUID.randomUUID();
+        Map<Object, Object> entries = new HashMap<Object, Object>();
+        for (int i = 0; i < 5; ++i) {
+            entries.put("key" + i, "value" + i);
+        }
+        entries.put(key, "value");
+        this.cache.putAll(entries);
+        this.cache.put("key0", "updated");
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((store.load(key) == null) || (store.load("key0") == null) || !"updated".equals(store.load("key0").getValue())) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals(5, this.count(store.getStringStore().getTableManipulation()));
+        assertEquals(1, this.count(store.getBinaryStore().getTableManipulation()));
+        assertEquals(6, store.size());
+        assertEquals("value", store.load(key).getValue());
+        assertEquals("value4", store.load("key4").getValue());
+
+        this.cache.remove(key);
+        this.cache.remove("key1");
+        deadline = System.currentTimeMillis() + 10000;
+        while (store.size() > 4) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertFalse(store.contains(key));
+        assertFalse(store.contains("key1"));
+        assertEquals(4, this.count(store.getStringStore().getTableManipulation()));
+    }
+
+    /**
+     * Counts the connections obtained from a connection factory, i.e. the transactions of a {@link JdbcBatchWriter}.
+     */
+    private static class CountingConnectionFactory extends ConnectionFactory {
+        private final ConnectionFactory factory;
+        private final AtomicInteger connections = new AtomicInteger();
+
+        CountingConnectionFactory(ConnectionFactory factory) {
+            this.factory = factory;
+        }
+
+        int getConnections() {
+            return this.connections.get();
+        }
+
+        @Override
+        public void start(ConnectionFactoryConfiguration configuration, ClassLoader classLoader) {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public Connection getConnection() {
+            this.connections.incrementAndGet();
+            return this.factory.getConnection();
+        }
+
+        @Override
+        public void releaseConnection(Connection connection) {
+            this.factory.releaseConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.interceptors.EntryWrappingInterceptor;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.persistence.spi.PersistenceException;
+import org.infinispan.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Test;
+
+public class CoalescingWriteBehindInterceptorTestCase {
+
+    private EmbeddedCacheManager manager;
+    private Cache<Object, Object> cache;
+
+    @After
+    public void destroy() {
+        if (this.manager != null) {
+            this.manager.stop();
+        }
+    }
+
+    /**
+     * Starts a cache whose first store is written behind by the interceptor, as configured by the subsystem, followed by an ordinary store, if requested.
+     */
+    private void start(CoalescingWriteBehindInterceptor interceptor, boolean ordinaryStore) {
+        GlobalConfigurationBuilder global = new GlobalConfigurationBuilder();
+        global.serialization().marshaller(new JavaStreamingMarshaller());
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.persistence().addStore(InMemoryStoreConfigurationBuilder.class).ignoreModifications(true).addProperty("name", "coalesced");
+        if (ordinaryStore) {
+            builder.persistence().addStore(InMemoryStoreConfigurationBuilder.class).addProperty("name", "ordinary");
+        }
+        builder.customInterceptors().addInterceptor().interceptor(interceptor).after(EntryWrappingInterceptor.class);
+        this.manager = new DefaultCacheManager(global.build(), builder.build());
+        this.cache = this.manager.getCache();
+    }
+
+    private InMemoryStore getStore(int index) {
+        return (InMemoryStore) StoreLocator.findStoreWriter(this.cache, index);
+    }
+
+    private static void awaitWrites(InMemoryStore store, int writes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (store.getWrites() < writes) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void coalesce() throws InterruptedException {
+        this.start(new CoalescingWriteBehindInterceptor(0, 100, 100, 1000, 100, 1, 5000), true);
+        InMemoryStore coalesced = this.getStore(0);
+        InMemoryStore ordinary = this.getStore(1);
+        for (int i = 0; i < 10; ++i) {
+            this.cache.put("key", "value" + i);
+        }
+        awaitWrites(coalesced, 1);
+        assertEquals("value9", coalesced.load("key").getValue());
+        // The ordinary store is written by Infinispan alone
+        assertEquals(10, ordinary.getWrites());
+        Thread.sleep(200);
+        assertEquals(1, coalesced.getWrites());
+
+        // Only the store of the interceptor is cleared by it
+        this.cache.clear();
+        assertEquals(0, coalesced.size());
+        assertEquals(1, coalesced.getClears());
+        assertEquals(1, ordinary.getClears());
+    }
+
+    @Test
+    public void flushIfAbsentFailure() {
+        this.start(new CoalescingWriteBehindInterceptor(0, 100, 60000, 1000, 100, 1, 0), false);
+        InMemoryStore store = this.getStore(0);
+        this.cache.put("key", "value");
+        this.cache.evict("key");
+        store.setFailing(true);
+        try {
+            this.cache.get("key");
+            fail();
+        } catch (PersistenceException e) {
+            // expected
+        }
+        // The modification was kept, so the entry is not lost
+        store.setFailing(false);
+        assertEquals("value", this.cache.get("key"));
+        assertEquals("value", store.load("key").getValue());
+    }
+
+    @Test
+    public void flushLockTimeout() throws InterruptedException {
+        this.start(new CoalescingWriteBehindInterceptor(0, 2, 10, 100, 1, 1, 5000), false);
+        InMemoryStore store = this.getStore(0);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        store.setBlocking(entered, released);
+        this.cache.put("key1", "value1");
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        // The flush of key1 is in progress, and key2 fills the queue
+        this.cache.put("key2", "value2");
+        long start = System.nanoTime();
+        try {
+            this.cache.put("key3", "value3");
+            fail();
+        } catch (TimeoutException e) {
+            // expected
+        }
+        // Waited for the flush lock timeout, rather than the lock acquisition timeout
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertFalse(this.cache.containsKey("key3"));
+
+        store.setBlocking(null, null);
+        released.countDown();
+        awaitWrites(store, 2);
+        assertEquals("value2", store.load("key2").getValue());
+        assertNull(store.load("key3"));
+    }
+
+    @Test
+    public void shutdownRetry() throws InterruptedException {
+        this.start(new CoalescingWriteBehindInterceptor(0, 100, 100, 1000, 100, 1, 10000), false);
+        final InMemoryStore store = this.getStore(0);
+        store.setFailing(true);
+        this.cache.put("key", "value");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (store.getFailures() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        // The store recovers while the cache stops
+        Thread recovery = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                store.setFailing(false);
+            }
+        };
+        recovery.start();
+        this.manager.stop();
+        this.manager = null;
+        recovery.join();
+        assertEquals("value", store.load("key").getValue());
+    }
+
+    @Test
+    public void shutdownTimeout() {
+        this.start(new CoalescingWriteBehindInterceptor(0, 100, 100, 1000, 100, 1, 300), false);
+        InMemoryStore store = this.getStore(0);
+        store.setFailing(true);
+        this.cache.put("key", "value");
+        long start = System.nanoTime();
+        this.manager.stop();
+        this.manager = null;
+        // Retries stop at the shutdown timeout, and the modification is discarded
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertNull(store.load("key"));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.marshall.core.MarshalledEntryImpl;
+import org.infinispan.metadata.InternalMetadata;
+import org.infinispan.persistence.TaskContextImpl;
+import org.infinispan.persistence.spi.AdvancedLoadWriteStore;
+import org.infinispan.persistence.spi.InitializationContext;
+import org.infinispan.persistence.spi.PersistenceException;
+
+/**
+ * Store that holds its entries in memory, as written, and counts its writes, which may be made to fail or block.
+ */
+public class InMemoryStore implements AdvancedLoadWriteStore<Object, Object> {
+
+    private final ConcurrentMap<Object, MarshalledEntry<Object, Object>> entries = new ConcurrentHashMap<Object, MarshalledEntry<Object, Object>>();
+    private final AtomicInteger writes = new AtomicInteger();
+    private final AtomicInteger deletes = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger clears = new AtomicInteger();
+    private volatile InitializationContext context;
+    private volatile boolean failing = false;
+    private volatile CountDownLatch entered;
+    private volatile CountDownLatch released;
+
+    @Override
+    public void init(InitializationContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    /**
+     * Adds an entry directly, i.e. bypassing the cache.
+     */
+    public void add(Object key, Object value) {
+        this.entries.put(key, new MarshalledEntryImpl<Object, Object>(key, value, (InternalMetadata) null, this.context.getMarshaller()));
+    }
+
+    /**
+     * Returns the name property of this store, by which tests tell stores apart.
+     */
+    public String getName() {
+        return this.context.getConfiguration().properties().getProperty("name");
+    }
+
+    public Map<Object, MarshalledEntry<Object, Object>> getEntries() {
+        return this.entries;
+    }
+
+    public int getWrites() {
+        return this.writes.get();
+    }
+
+    public int getDeletes() {
+        return this.deletes.get();
+    }
+
+    public int getClears() {
+        return this.clears.get();
+    }
+
+    /**
+     * Returns the number of writes and deletes that failed.
+     */
+    public int getFailures() {
+        return this.failures.get();
+    }
+
+    /**
+     * Makes subsequent writes and deletes fail, or succeed again.
+     */
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    /**
+     * Makes subsequent writes and deletes wait for the specified latch, once they have counted down the entered latch, or no longer wait, if null.
+     */
+    public void setBlocking(CountDownLatch entered, CountDownLatch released) {
+        this.entered = entered;
+        this.released = released;
+    }
+
+    @Override
+    public MarshalledEntry<Object, Object> load(Object key) {
+        return this.entries.get(key);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return this.entries.containsKey(key);
+    }
+
+    @Override
+    public void write(MarshalledEntry<Object, Object> entry) {
+        this.checkFailing();
+        this.writes.incrementAndGet();
+        this.entries.put(entry.getKey(), entry);
+    }
+
+    @Override
+    public boolean delete(Object key) {
+        this.checkFailing();
+        this.deletes.incrementAndGet();
+        return this.entries.remove(key) != null;
+    }
+
+    private void checkFailing() {
+        CountDownLatch released = this.released;
+        if (released != null) {
+            this.entered.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PersistenceException(e);
+            }
+        }
+        if (this.failing) {
+            this.failures.incrementAndGet();
+            throw new PersistenceException("failing");
+        }
+    }
+
+    @Override
+    public void process(KeyFilter<Object> filter, final CacheLoaderTask<Object, Object> task, Executor executor, boolean fetchValue, boolean fetchMetadata) {
+        final TaskContextImpl context = new TaskContextImpl();
+        List<MarshalledEntry<Object, Object>> entries = new ArrayList<MarshalledEntry<Object, Object>>(this.entries.values());
+        final CountDownLatch latch = new CountDownLatch(entries.size());
+        for (final MarshalledEntry<Object, Object> entry : entries) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!context.isStopped()) {
+                            task.processEntry(entry, context);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.entries.size();
+    }
+
+    @Override
+    public void clear() {
+        this.clears.incrementAndGet();
+        this.entries.clear();
+    }
+
+    @Override
+    public void purge(Executor executor, PurgeListener listener) {
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import java.util.Properties;
+
+import org.infinispan.commons.configuration.Builder;
+import org.infinispan.configuration.cache.AbstractStoreConfigurationBuilder;
+import org.infinispan.configuration.cache.PersistenceConfigurationBuilder;
+
+public class InMemoryStoreConfigurationBuilder extends AbstractStoreConfigurationBuilder<InMemoryStoreConfiguration, InMemoryStoreConfigurationBuilder> {
+
+    public InMemoryStoreConfigurationBuilder(PersistenceConfigurationBuilder builder) {
+        super(builder);
+        this.properties = new Properties();
+    }
+
+    @Override
+    public InMemoryStoreConfiguration create() {
+        return new InMemoryStoreConfiguration(this.purgeOnStartup, this.fetchPersistentState, this.ignoreModifications, this.async.create(),
+                this.singletonStore.create(), this.preload, this.shared, this.properties);
+    }
+
+    @Override
+    public Builder<?> read(InMemoryStoreConfiguration template) {
+        this.fetchPersistentState = template.fetchPersistentState();
+        this.ignoreModifications = template.ignoreModifications();
+        this.properties = template.properties();
+        this.purgeOnStartup = template.purgeOnStartup();
+        this.async.read(template.async());
+        this.singletonStore.read(template.singletonStore());
+        this.preload = template.preload();
+        this.shared = template.shared();
+        return this;
+    }
+
+    @Override
+    public InMemoryStoreConfigurationBuilder self() {
+        return this;
+    }
+}
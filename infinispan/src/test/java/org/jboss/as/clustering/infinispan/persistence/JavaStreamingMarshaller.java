@@ -0,0 +1,219 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.infinispan.commons.io.ByteBuffer;
+import org.infinispan.commons.io.ByteBufferImpl;
+import org.infinispan.commons.marshall.JavaSerializationMarshaller;
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.marshall.core.MarshalledEntryImpl;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.InternalMetadata;
+import org.infinispan.metadata.InternalMetadataImpl;
+import org.infinispan.util.KeyValuePair;
+
+/**
+ * Streaming marshaller using Java serialization, for use by tests in lieu of the default marshaller, which requires JBoss Marshalling.
+ * Marshalled entries, e.g. within the buckets of a binary-keyed JDBC store, are serialized as their bytes,
+ * and the byte buffers, key/value pairs and internal metadata stored by the JDBC stores as their contents.
+ */
+public class JavaStreamingMarshaller extends JavaSerializationMarshaller implements StreamingMarshaller {
+
+    @Override
+    protected ByteBuffer objectToBuffer(Object object, int estimatedSize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new EntryReplacingOutputStream(bytes);
+        output.writeObject(object);
+        output.close();
+        return new ByteBufferImpl(bytes.toByteArray(), 0, bytes.size());
+    }
+
+    @Override
+    public Object objectFromByteBuffer(byte[] buffer, int offset, int length) throws IOException, ClassNotFoundException {
+        return new EntryResolvingInputStream(new ByteArrayInputStream(buffer, offset, length)).readObject();
+    }
+
+    @Override
+    public ObjectOutput startObjectOutput(OutputStream output, boolean appending, int estimatedSize) throws IOException {
+        return new EntryReplacingOutputStream(output);
+    }
+
+    @Override
+    public void finishObjectOutput(ObjectOutput output) {
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void objectToObjectStream(Object object, ObjectOutput output) throws IOException {
+        output.writeObject(object);
+    }
+
+    @Override
+    public ObjectInput startObjectInput(InputStream input, boolean appending) throws IOException {
+        return new EntryResolvingInputStream(input);
+    }
+
+    @Override
+    public void finishObjectInput(ObjectInput input) {
+    }
+
+    @Override
+    public Object objectFromObjectStream(ObjectInput input) throws IOException, ClassNotFoundException {
+        return input.readObject();
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    private static class SerializedEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final byte[] key;
+        final byte[] value;
+        final byte[] metadata;
+
+        SerializedEntry(MarshalledEntry<?, ?> entry) {
+            this.key = toBytes(entry.getKeyBytes());
+            this.value = toBytes(entry.getValueBytes());
+            this.metadata = toBytes(entry.getMetadataBytes());
+        }
+
+        private static byte[] toBytes(ByteBuffer buffer) {
+            return (buffer != null) ? Arrays.copyOfRange(buffer.getBuf(), buffer.getOffset(), buffer.getOffset() + buffer.getLength()) : null;
+        }
+    }
+
+    private static class SerializedBuffer implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final byte[] bytes;
+
+        SerializedBuffer(ByteBuffer buffer) {
+            this.bytes = SerializedEntry.toBytes(buffer);
+        }
+    }
+
+    private static class SerializedPair implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final Object key;
+        final Object value;
+
+        SerializedPair(KeyValuePair<?, ?> pair) {
+            this.key = pair.getKey();
+            this.value = pair.getValue();
+        }
+    }
+
+    private static class SerializedMetadata implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final long lifespan;
+        final long maxIdle;
+        final long created;
+        final long lastUsed;
+
+        SerializedMetadata(InternalMetadata metadata) {
+            this.lifespan = metadata.lifespan();
+            this.maxIdle = metadata.maxIdle();
+            this.created = metadata.created();
+            this.lastUsed = metadata.lastUsed();
+        }
+    }
+
+    private static class EntryReplacingOutputStream extends ObjectOutputStream {
+        EntryReplacingOutputStream(OutputStream output) throws IOException {
+            super(output);
+            this.enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object object) {
+            if (object instanceof MarshalledEntry) {
+                return new SerializedEntry((MarshalledEntry<?, ?>) object);
+            }
+            if (object instanceof ByteBuffer) {
+                return new SerializedBuffer((ByteBuffer) object);
+            }
+            if (object instanceof KeyValuePair) {
+                return new SerializedPair((KeyValuePair<?, ?>) object);
+            }
+            if (object instanceof InternalMetadata) {
+                return new SerializedMetadata((InternalMetadata) object);
+            }
+            return object;
+        }
+    }
+
+    private class EntryResolvingInputStream extends ObjectInputStream {
+        EntryResolvingInputStream(InputStream input) throws IOException {
+            super(input);
+            this.enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object object) {
+            if (object instanceof SerializedEntry) {
+                SerializedEntry entry = (SerializedEntry) object;
+                return new MarshalledEntryImpl<Object, Object>(this.toBuffer(entry.key), this.toBuffer(entry.value), this.toBuffer(entry.metadata), JavaStreamingMarshaller.this);
+            }
+            if (object instanceof SerializedBuffer) {
+                return this.toBuffer(((SerializedBuffer) object).bytes);
+            }
+            if (object instanceof SerializedPair) {
+                SerializedPair pair = (SerializedPair) object;
+                return new KeyValuePair<Object, Object>(pair.key, pair.value);
+            }
+            if (object instanceof SerializedMetadata) {
+                SerializedMetadata metadata = (SerializedMetadata) object;
+                return new InternalMetadataImpl(new EmbeddedMetadata.Builder().lifespan(metadata.lifespan).maxIdle(metadata.maxIdle).build(), metadata.created, metadata.lastUsed);
+            }
+            return object;
+        }
+
+        private ByteBuffer toBuffer(byte[] bytes) {
+            return (bytes != null) ? new ByteBufferImpl(bytes, 0, bytes.length) : null;
+        }
+    }
+}
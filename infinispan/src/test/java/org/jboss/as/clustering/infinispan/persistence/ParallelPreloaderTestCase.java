@@ -0,0 +1,239 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
+import org.junit.After;
+import org.junit.Test;
+
+public class ParallelPreloaderTestCase {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private EmbeddedCacheManager manager;
+
+    @After
+    public void destroy() {
+        if (this.manager != null) {
+            this.manager.stop();
+        }
+        this.executor.shutdownNow();
+    }
+
+    private Cache<Object, Object> createCache(int maxEntries) {
+        GlobalConfigurationBuilder global = new GlobalConfigurationBuilder();
+        global.serialization().marshaller(new JavaStreamingMarshaller());
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        if (maxEntries > 0) {
+            builder.eviction().strategy(EvictionStrategy.LRU).maxEntries(maxEntries);
+        }
+        builder.persistence().addStore(InMemoryStoreConfigurationBuilder.class).addProperty("name", "other");
+        builder.persistence().addStore(InMemoryStoreConfigurationBuilder.class).addProperty("name", "preload");
+        this.manager = new DefaultCacheManager(global.build(), builder.build());
+        return this.manager.getCache();
+    }
+
+    private static InMemoryStore getStore(Cache<?, ?> cache, int index) {
+        return (InMemoryStore) StoreLocator.findWriter(cache, index);
+    }
+
+    @Test
+    public void preload() {
+        Cache<Object, Object> cache = this.createCache(0);
+        InMemoryStore other = getStore(cache, 0);
+        InMemoryStore store = getStore(cache, 1);
+        for (int i = 0; i < 100; ++i) {
+            store.add(i, "value" + i);
+        }
+        other.add("other", "other");
+
+        ParallelPreloader preloader = new ParallelPreloader(1, 4, this.executor);
+        preloader.preload(cache);
+
+        assertEquals(100, preloader.getEntries());
+        assertEquals(1, preloader.getProgress(), 0);
+        assertEquals(0, preloader.getRemainingTime());
+        assertTrue(preloader.getBytes() > 0);
+        // Only the preload store is preloaded
+        assertEquals(100, cache.getAdvancedCache().getDataContainer().size());
+        assertNull(cache.getAdvancedCache().getDataContainer().get("other"));
+        for (int i = 0; i < 100; ++i) {
+            assertEquals("value" + i, cache.getAdvancedCache().getDataContainer().get(i).getValue());
+        }
+        // Preloaded entries are not written back
+        assertEquals(0, store.getWrites());
+        assertEquals(0, other.getWrites());
+    }
+
+    @Test
+    public void existingEntry() {
+        Cache<Object, Object> cache = this.createCache(0);
+        InMemoryStore store = getStore(cache, 1);
+        cache.put("key", "new");
+        // e.g. a store shared with a node that has since stopped
+        store.add("key", "old");
+        store.add("other", "other");
+
+        ParallelPreloader preloader = new ParallelPreloader(1, 2, this.executor);
+        preloader.preload(cache);
+
+        // Entries already in the cache, e.g. received via state transfer, are not replaced
+        assertEquals("new", cache.getAdvancedCache().getDataContainer().get("key").getValue());
+        assertEquals("other", cache.getAdvancedCache().getDataContainer().get("other").getValue());
+        assertEquals(1, preloader.getEntries());
+    }
+
+    @Test
+    public void evictionLimit() {
+        Cache<Object, Object> cache = this.createCache(16);
+        InMemoryStore store = getStore(cache, 1);
+        for (int i = 0; i < 100; ++i) {
+            store.add(i, "value" + i);
+        }
+
+        ParallelPreloader preloader = new ParallelPreloader(1, 4, this.executor);
+        preloader.preload(cache);
+
+        assertTrue(preloader.getEntries() <= 16);
+        assertEquals(1, preloader.getProgress(), 0);
+    }
+
+    @Test
+    public void noStore() {
+        Cache<Object, Object> cache = this.createCache(0);
+
+        ParallelPreloader preloader = new ParallelPreloader(2, 4, this.executor);
+        preloader.preload(cache);
+
+        assertEquals(0, preloader.getEntries());
+        assertEquals(0, cache.getAdvancedCache().getDataContainer().size());
+    }
+
+    @Test
+    public void remainingTime() throws InterruptedException {
+        final Cache<Object, Object> cache = this.createCache(0);
+        InMemoryStore store = getStore(cache, 1);
+        for (int i = 0; i < 100; ++i) {
+            store.add(i, "value" + i);
+        }
+        BlockingListener listener = new BlockingListener(100);
+        cache.addListener(listener);
+
+        final ParallelPreloader preloader = new ParallelPreloader(1, 1, this.executor);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                preloader.preload(cache);
+            }
+        };
+        thread.start();
+        assertTrue(listener.blocked.await(10, TimeUnit.SECONDS));
+        // An estimate rounded down to 0 would indicate a complete preload
+        assertEquals(99, preloader.getEntries());
+        assertTrue(preloader.getRemainingTime() > 0);
+
+        listener.released.countDown();
+        thread.join(10000);
+        assertEquals(0, preloader.getRemainingTime());
+    }
+
+    @Test
+    public void boundedExecutor() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        Executor executor = new ParallelPreloader.BoundedExecutor(this.executor, 2);
+        executor.execute(blocked);
+        executor.execute(blocked);
+
+        // Beyond the bound, the submitting thread runs the task itself
+        final Thread caller = Thread.currentThread();
+        final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                thread.set(Thread.currentThread());
+            }
+        };
+        executor.execute(task);
+        assertSame(caller, thread.get());
+
+        release.countDown();
+        // A rejected task also runs on the submitting thread
+        ExecutorService shutdown = Executors.newSingleThreadExecutor();
+        shutdown.shutdown();
+        thread.set(null);
+        new ParallelPreloader.BoundedExecutor(shutdown, 2).execute(task);
+        assertSame(caller, thread.get());
+    }
+
+    /**
+     * Blocks the specified insertion into the cache, until released.
+     */
+    @Listener
+    public static class BlockingListener {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        private final AtomicInteger insertions = new AtomicInteger();
+        private final int insertion;
+
+        BlockingListener(int insertion) {
+            this.insertion = insertion;
+        }
+
+        @CacheEntryCreated
+        public void created(CacheEntryEvent<?, ?> event) throws InterruptedException {
+            if (event.isPre() && (this.insertions.incrementAndGet() == this.insertion)) {
+                this.blocked.countDown();
+                this.released.await();
+            }
+        }
+    }
+}
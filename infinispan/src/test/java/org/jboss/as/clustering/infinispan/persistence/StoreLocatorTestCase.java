@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.persistence.spi.CacheLoader;
+import org.infinispan.persistence.support.DelegatingCacheLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StoreLocatorTestCase {
+
+    private EmbeddedCacheManager manager;
+    private Cache<Object, Object> cache;
+
+    @Before
+    public void init() {
+        GlobalConfigurationBuilder global = new GlobalConfigurationBuilder();
+        global.serialization().marshaller(new JavaStreamingMarshaller());
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.persistence().addStore(InMemoryStoreConfigurationBuilder.class).ignoreModifications(true).addProperty("name", "read-only");
+        builder.persistence().addStore(InMemoryStoreConfigurationBuilder.class).async().enable().addProperty("name", "async");
+        builder.persistence().addStore(InMemoryStoreConfigurationBuilder.class).addProperty("name", "sync");
+        this.manager = new DefaultCacheManager(global.build(), builder.build());
+        this.cache = this.manager.getCache();
+    }
+
+    @After
+    public void destroy() {
+        this.manager.stop();
+    }
+
+    private static String getName(CacheLoader<?, ?> loader) {
+        CacheLoader<?, ?> store = (loader instanceof DelegatingCacheLoader) ? ((DelegatingCacheLoader) loader).undelegate() : loader;
+        return ((InMemoryStore) store).getName();
+    }
+
+    @Test
+    public void findLoader() {
+        assertEquals("read-only", getName(StoreLocator.findLoader(this.cache, 0)));
+        // The loader of an async store sees modifications not yet written
+        CacheLoader<?, ?> loader = StoreLocator.findLoader(this.cache, 1);
+        assertTrue(loader instanceof DelegatingCacheLoader);
+        assertEquals("async", getName(loader));
+        assertEquals("sync", getName(StoreLocator.findLoader(this.cache, 2)));
+        assertNull(StoreLocator.findLoader(this.cache, 3));
+        assertNull(StoreLocator.findLoader(this.cache, -1));
+    }
+
+    @Test
+    public void findWriter() {
+        // A store that ignores modifications has no writer
+        assertNull(StoreLocator.findWriter(this.cache, 0));
+        assertEquals("async", ((InMemoryStore) StoreLocator.findWriter(this.cache, 1)).getName());
+        assertEquals("sync", ((InMemoryStore) StoreLocator.findWriter(this.cache, 2)).getName());
+        assertNull(StoreLocator.findWriter(this.cache, 3));
+    }
+
+    @Test
+    public void findStoreWriter() {
+        // A store that ignores modifications is still written by a coalescing write-behind
+        assertEquals("read-only", ((InMemoryStore) StoreLocator.findStoreWriter(this.cache, 0)).getName());
+        assertEquals("async", ((InMemoryStore) StoreLocator.findStoreWriter(this.cache, 1)).getName());
+        assertEquals("sync", ((InMemoryStore) StoreLocator.findStoreWriter(this.cache, 2)).getName());
+        assertNull(StoreLocator.findStoreWriter(this.cache, 3));
+    }
+}
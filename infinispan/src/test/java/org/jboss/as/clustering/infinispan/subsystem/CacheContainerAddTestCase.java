@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.subsystem;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.infinispan.marshall.core.Ids;
+import org.jboss.as.controller.OperationFailedException;
+import org.jboss.dmr.ModelNode;
+import org.junit.Test;
+
+public class CacheContainerAddTestCase {
+
+    @Test
+    public void validAffinity() throws OperationFailedException {
+        CacheContainerAdd.validateAffinity(10, 5);
+        CacheContainerAdd.validateAffinity(1, 0);
+    }
+
+    @Test(expected = OperationFailedException.class)
+    public void refillThresholdEqualToBufferSize() throws OperationFailedException {
+        CacheContainerAdd.validateAffinity(10, 10);
+    }
+
+    @Test(expected = OperationFailedException.class)
+    public void refillThresholdAboveBufferSize() throws OperationFailedException {
+        CacheContainerAdd.validateAffinity(10, 20);
+    }
+
+    @Test
+    public void externalizerIds() throws OperationFailedException {
+        ModelNode externalizers = new ModelNode();
+        externalizers.get("org.example.First").set(Ids.MAX_ID);
+        externalizers.get("org.example.Second").set(" 1000 ");
+
+        Map<String, Integer> ids = CacheContainerAdd.getExternalizerIds(externalizers);
+
+        assertEquals(2, ids.size());
+        assertEquals(Integer.valueOf(Ids.MAX_ID), ids.get("org.example.First"));
+        assertEquals(Integer.valueOf(1000), ids.get("org.example.Second"));
+        assertTrue(CacheContainerAdd.getExternalizerIds(new ModelNode()).isEmpty());
+    }
+
+    @Test(expected = OperationFailedException.class)
+    public void reservedExternalizerId() throws OperationFailedException {
+        ModelNode externalizers = new ModelNode();
+        externalizers.get("org.example.First").set(Ids.MAX_ID - 1);
+        CacheContainerAdd.getExternalizerIds(externalizers);
+    }
+
+    @Test(expected = OperationFailedException.class)
+    public void negativeExternalizerId() throws OperationFailedException {
+        ModelNode externalizers = new ModelNode();
+        externalizers.get("org.example.First").set(-1);
+        CacheContainerAdd.getExternalizerIds(externalizers);
+    }
+
+    @Test(expected = OperationFailedException.class)
+    public void nonNumericExternalizerId() throws OperationFailedException {
+        ModelNode externalizers = new ModelNode();
+        externalizers.get("org.example.First").set("first");
+        CacheContainerAdd.getExternalizerIds(externalizers);
+    }
+
+    @Test(expected = OperationFailedException.class)
+    public void duplicateExternalizerId() throws OperationFailedException {
+        ModelNode externalizers = new ModelNode();
+        externalizers.get("org.example.First").set(1000);
+        externalizers.get("org.example.Second").set(1000);
+        CacheContainerAdd.getExternalizerIds(externalizers);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.subsystem;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.infinispan.Cache;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StartException;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class CacheServiceTestCase {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    private final CacheService.Dependencies dependencies = mock(CacheService.Dependencies.class);
+    private final EmbeddedCacheManager container = mock(EmbeddedCacheManager.class);
+    private final StartContext context = mock(StartContext.class);
+
+    @Test
+    public void asyncStart() {
+        @SuppressWarnings("unchecked")
+        Cache<Object, Object> cache = mock(Cache.class);
+        when(this.dependencies.getStartExecutor()).thenReturn(DIRECT);
+        when(this.dependencies.getCacheContainer()).thenReturn(this.container);
+        when(this.container.<Object, Object>getCache("cache")).thenReturn(cache);
+        CacheService<Object, Object> service = new CacheService<Object, Object>("cache", this.dependencies);
+
+        service.start(this.context);
+
+        verify(this.context).asynchronous();
+        verify(cache).start();
+        verify(this.context).complete();
+        verify(this.context, never()).failed(any(StartException.class));
+        assertSame(cache, service.getValue());
+    }
+
+    @Test
+    public void asyncStartError() {
+        Error error = new NoClassDefFoundError();
+        when(this.dependencies.getStartExecutor()).thenReturn(DIRECT);
+        when(this.dependencies.getCacheContainer()).thenReturn(this.container);
+        when(this.container.getCache("cache")).thenThrow(error);
+        CacheService<Object, Object> service = new CacheService<Object, Object>("cache", this.dependencies);
+
+        service.start(this.context);
+
+        // Errors must fail the service, rather than leave it starting
+        ArgumentCaptor<StartException> exception = ArgumentCaptor.forClass(StartException.class);
+        verify(this.context).failed(exception.capture());
+        assertSame(error, exception.getValue().getCause());
+        verify(this.context, never()).complete();
+    }
+
+    @Test
+    public void asyncStartRejected() {
+        @SuppressWarnings("unchecked")
+        Cache<Object, Object> cache = mock(Cache.class);
+        Executor executor = mock(Executor.class);
+        doThrow(new RejectedExecutionException()).when(executor).execute(any(Runnable.class));
+        when(this.dependencies.getStartExecutor()).thenReturn(executor);
+        when(this.dependencies.getCacheContainer()).thenReturn(this.container);
+        when(this.container.<Object, Object>getCache("cache")).thenReturn(cache);
+        CacheService<Object, Object> service = new CacheService<Object, Object>("cache", this.dependencies);
+
+        service.start(this.context);
+
+        // Starts on the calling thread instead
+        verify(cache).start();
+        verify(this.context).complete();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.subsystem;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.marshall.core.Ids;
+import org.jboss.as.clustering.HashableMarshalledValue;
+import org.jboss.as.clustering.SimpleMarshalledValue;
+import org.jboss.as.clustering.infinispan.compression.CompressedValue;
+import org.jboss.as.clustering.infinispan.equivalence.ByteArrayKey;
+import org.jboss.as.clustering.infinispan.io.ExternalizableExternalizer;
+import org.jboss.msc.service.StartException;
+import org.junit.Test;
+
+public class EmbeddedCacheManagerConfigurationServiceTestCase {
+
+    @Test
+    public void externalizerIds() throws StartException {
+        Map<String, Integer> ids = Collections.singletonMap(CompressedValue.class.getName(), Integer.valueOf(Ids.MAX_ID));
+        EmbeddedCacheManagerConfigurationService service = new EmbeddedCacheManagerConfigurationService("container", null, null, ids, null);
+        GlobalConfigurationBuilder builder = new GlobalConfigurationBuilder();
+
+        service.addExternalizers(builder, this.getClass().getClassLoader());
+
+        Map<Integer, Class<?>> targets = new HashMap<Integer, Class<?>>();
+        for (Map.Entry<Integer, AdvancedExternalizer<?>> entry: builder.build().serialization().advancedExternalizers().entrySet()) {
+            targets.put(entry.getKey(), entry.getValue().getTypeClasses().iterator().next());
+        }
+        // Remaining externalizers are numbered in the order of their target class names, skipping configured ids
+        assertEquals(CompressedValue.class, targets.get(Integer.valueOf(Ids.MAX_ID)));
+        assertEquals(HashableMarshalledValue.class, targets.get(Integer.valueOf(Ids.MAX_ID + 1)));
+        assertEquals(SimpleMarshalledValue.class, targets.get(Integer.valueOf(Ids.MAX_ID + 2)));
+        assertEquals(ByteArrayKey.class, targets.get(Integer.valueOf(Ids.MAX_ID + 3)));
+        assertEquals(4, targets.size());
+    }
+
+    @Test
+    public void duplicateTargetClass() throws IOException {
+        File directory = File.createTempFile("services", "");
+        assertTrue(directory.delete());
+        File file = new File(directory, "META-INF/services/org.jboss.as.clustering.infinispan.io.SimpleExternalizer");
+        assertTrue(file.getParentFile().mkdirs());
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(DuplicateExternalizer.class.getName().getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+        URLClassLoader loader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, this.getClass().getClassLoader());
+        EmbeddedCacheManagerConfigurationService service = new EmbeddedCacheManagerConfigurationService("container", null, null, Collections.<String, Integer>emptyMap(), null);
+        try {
+            service.addExternalizers(new GlobalConfigurationBuilder(), loader);
+            fail("Expected StartException");
+        } catch (StartException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(DuplicateExternalizer.class.getName()));
+        } finally {
+            file.delete();
+            file.getParentFile().delete();
+            file.getParentFile().getParentFile().delete();
+            directory.delete();
+        }
+    }
+
+    public static class DuplicateExternalizer extends ExternalizableExternalizer<ByteArrayKey> {
+        private static final long serialVersionUID = 1L;
+
+        public DuplicateExternalizer() {
+            super(ByteArrayKey.class);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.subsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.infinispan.notifications.cachemanagerlistener.event.CacheStartedEvent;
+import org.jboss.msc.value.Value;
+import org.junit.Test;
+
+public class EmbeddedCacheManagerServiceTestCase {
+
+    @Test
+    public void startDuration() {
+        @SuppressWarnings("unchecked")
+        Value<EmbeddedCacheManagerConfiguration> config = mock(Value.class);
+        when(config.getValue()).thenReturn(mock(EmbeddedCacheManagerConfiguration.class));
+        EmbeddedCacheManagerService service = new EmbeddedCacheManagerService(config);
+        service.addBootCache("boot");
+
+        // Caches started after boot do not count
+        service.cacheStarted(event("lazy"));
+        assertEquals(0, service.getStartDuration());
+
+        service.cacheStarted(event("boot"));
+        assertTrue(service.getStartDuration() > 0);
+    }
+
+    private static CacheStartedEvent event(String cacheName) {
+        CacheStartedEvent event = mock(CacheStartedEvent.class);
+        when(event.getCacheName()).thenReturn(cacheName);
+        return event;
+    }
+}
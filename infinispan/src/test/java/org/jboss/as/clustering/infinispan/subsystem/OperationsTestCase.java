@@ -1,6 +1,11 @@
 package org.jboss.as.clustering.infinispan.subsystem;
 
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ATTRIBUTES;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.DESCRIPTION;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP_ADDR;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OUTCOME;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.READ_RESOURCE_DESCRIPTION_OPERATION;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.RESULT;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUCCESS;
 
@@ -127,6 +132,29 @@ public class OperationsTestCase extends OperationTestCaseBase {
         Assert.assertEquals(stringKeyedTable.asString(), result.get(RESULT).asString());
     }
 
+    /*
+     * Tests that the write-behind attributes of a JDBC store resolve their own descriptions
+     */
+    @Test
+    public void testDistributedCacheMixedJDBCStoreWriteBehindDescription() throws Exception {
+
+        // Parse and install the XML into the controller
+        String subsystemXml = getSubsystemXml() ;
+        KernelServices servicesA = createKernelServicesBuilder(null).setSubsystemXml(subsystemXml).build();
+
+        // read the description of the mixed-keyed-jdbc-store write-behind
+        ModelNode readOp = new ModelNode() ;
+        readOp.get(OP).set(READ_RESOURCE_DESCRIPTION_OPERATION);
+        readOp.get(OP_ADDR).set(getMixedKeyedJDBCCacheStoreAddress("maximal", ModelKeys.DISTRIBUTED_CACHE, "dist").append(ModelKeys.WRITE_BEHIND, ModelKeys.WRITE_BEHIND_NAME).toModelNode());
+        ModelNode result = servicesA.executeOperation(readOp);
+        Assert.assertEquals(SUCCESS, result.get(OUTCOME).asString());
+
+        ModelNode attributes = result.get(RESULT, ATTRIBUTES);
+        Assert.assertTrue(attributes.hasDefined(ModelKeys.FLUSH_BATCH_SIZE));
+        Assert.assertFalse(attributes.hasDefined(ModelKeys.BATCH_SIZE));
+        Assert.assertEquals("The maximum number of coalesced modifications written to the cache store at once.", attributes.get(ModelKeys.FLUSH_BATCH_SIZE, DESCRIPTION).asString());
+    }
+
     private ModelNode createStringKeyedTable() {
 
         // create a string-keyed-table complex attribute
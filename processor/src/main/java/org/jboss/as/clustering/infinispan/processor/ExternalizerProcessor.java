@@ -0,0 +1,198 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates an externalizer for each class listed by an {@code org.jboss.as.clustering.infinispan.io.Externalizers} annotation.
+ * Each generated externalizer extends {@code ExternalizableExternalizer}, creating instances via their public no-arg constructor, rather than via reflection,
+ * and declares the serialVersionUID given by its {@code Externalizers.Externalizer} annotation.
+ * Generated externalizers are placed in the package of the annotated element, and registered as {@code SimpleExternalizer} services,
+ * so that they are discovered by the cache manager via {@link java.util.ServiceLoader}.
+ */
+@SupportedAnnotationTypes(ExternalizerProcessor.ANNOTATION)
+public class ExternalizerProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "org.jboss.as.clustering.infinispan.io.Externalizers";
+    private static final String SUPERCLASS = "org.jboss.as.clustering.infinispan.io.ExternalizableExternalizer";
+    private static final String[] GENERATED_ANNOTATIONS = { "javax.annotation.Generated", "javax.annotation.processing.Generated" };
+    private static final String SERVICE = "META-INF/services/org.jboss.as.clustering.infinispan.io.SimpleExternalizer";
+
+    private final Set<String> externalizers = new TreeSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (TypeElement annotation: annotations) {
+            for (Element element: round.getElementsAnnotatedWith(annotation)) {
+                for (Map.Entry<TypeElement, Long> entry: getTargets(element, annotation).entrySet()) {
+                    this.generate(element, entry.getKey(), entry.getValue().longValue());
+                }
+            }
+        }
+        if (round.processingOver() && !this.externalizers.isEmpty()) {
+            this.register();
+        }
+        return true;
+    }
+
+    private static Map<TypeElement, Long> getTargets(Element element, TypeElement annotation) {
+        Map<TypeElement, Long> targets = new LinkedHashMap<TypeElement, Long>();
+        for (AnnotationMirror mirror: element.getAnnotationMirrors()) {
+            if (mirror.getAnnotationType().asElement().equals(annotation)) {
+                AnnotationValue value = getValue(mirror, "value");
+                if (value != null) {
+                    @SuppressWarnings("unchecked")
+                    List<? extends AnnotationValue> externalizers = (List<? extends AnnotationValue>) value.getValue();
+                    for (AnnotationValue externalizer: externalizers) {
+                        AnnotationMirror externalizerMirror = (AnnotationMirror) externalizer.getValue();
+                        TypeElement target = (TypeElement) ((DeclaredType) getValue(externalizerMirror, "value").getValue()).asElement();
+                        targets.put(target, (Long) getValue(externalizerMirror, "serialVersionUID").getValue());
+                    }
+                }
+            }
+        }
+        return targets;
+    }
+
+    private static AnnotationValue getValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry: mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void generate(Element element, TypeElement target, long serialVersionUID) {
+        if (!this.validate(element, target)) {
+            return;
+        }
+        String packageName = this.processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+        String simpleName = target.getSimpleName() + "Externalizer";
+        String name = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        String targetName = target.getQualifiedName().toString();
+        if (!this.externalizers.add(name)) {
+            this.error(element, "Duplicate externalizer %s for %s", name, targetName);
+            return;
+        }
+        try {
+            PrintWriter writer = new PrintWriter(this.processingEnv.getFiler().createSourceFile(name, element).openWriter());
+            try {
+                if (!packageName.isEmpty()) {
+                    writer.printf("package %s;%n%n", packageName);
+                }
+                writer.printf("/**%n * Externalizer for {@link %s}, which creates instances without reflection.%n */%n", targetName);
+                String generated = this.getGeneratedAnnotation();
+                if (generated != null) {
+                    writer.printf("@%s(\"%s\")%n", generated, this.getClass().getName());
+                }
+                // The class literal of a generic target is raw, so is the type argument of its externalizer
+                if (!target.getTypeParameters().isEmpty()) {
+                    writer.printf("@SuppressWarnings(\"rawtypes\")%n");
+                }
+                writer.printf("public class %s extends %s<%s> {%n", simpleName, SUPERCLASS, targetName);
+                writer.printf("    private static final long serialVersionUID = %dL;%n%n", Long.valueOf(serialVersionUID));
+                writer.printf("    public %s() {%n        super(%s.class);%n    }%n%n", simpleName, targetName);
+                writer.printf("    @Override%n    protected %s newInstance() {%n        return new %s();%n    }%n", targetName, targetName);
+                writer.printf("}%n");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format("Failed to generate %s: %s", name, e), element);
+        }
+    }
+
+    private String getGeneratedAnnotation() {
+        // javax.annotation.Generated was moved to javax.annotation.processing in JDK 9
+        for (String annotation: GENERATED_ANNOTATIONS) {
+            if (this.processingEnv.getElementUtils().getTypeElement(annotation) != null) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private boolean validate(Element element, TypeElement target) {
+        TypeMirror externalizable = this.processingEnv.getElementUtils().getTypeElement("java.io.Externalizable").asType();
+        if (!this.processingEnv.getTypeUtils().isAssignable(this.processingEnv.getTypeUtils().erasure(target.asType()), externalizable)) {
+            return this.error(element, "%s does not implement java.io.Externalizable", target);
+        }
+        if (!target.getModifiers().contains(Modifier.PUBLIC) || target.getModifiers().contains(Modifier.ABSTRACT)) {
+            return this.error(element, "%s must be a public, concrete class", target);
+        }
+        for (ExecutableElement constructor: ElementFilter.constructorsIn(target.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return this.error(element, "%s does not declare a public no-arg constructor", target);
+    }
+
+    private boolean error(Element element, String format, Object... arguments) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format(format, arguments), element);
+        return false;
+    }
+
+    private void register() {
+        try {
+            PrintWriter writer = new PrintWriter(this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE).openWriter());
+            try {
+                for (String externalizer: this.externalizers) {
+                    writer.println(externalizer);
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format("Failed to register externalizers: %s", e));
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.as.clustering.infinispan.processor;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExternalizerProcessorTestCase {
+
+    private static final JavaFileObject EXTERNALIZERS = source("org.jboss.as.clustering.infinispan.io.Externalizers",
+            "package org.jboss.as.clustering.infinispan.io;",
+            "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.SOURCE)",
+            "public @interface Externalizers {",
+            "    Externalizer[] value();",
+            "    @interface Externalizer {",
+            "        Class<? extends java.io.Externalizable> value();",
+            "        long serialVersionUID();",
+            "    }",
+            "}");
+    private static final JavaFileObject EXTERNALIZABLE_EXTERNALIZER = source("org.jboss.as.clustering.infinispan.io.ExternalizableExternalizer",
+            "package org.jboss.as.clustering.infinispan.io;",
+            "public class ExternalizableExternalizer<T extends java.io.Externalizable> implements java.io.Serializable {",
+            "    private static final long serialVersionUID = 1L;",
+            "    public ExternalizableExternalizer(Class<T> targetClass) {",
+            "    }",
+            "    protected T newInstance() throws java.io.IOException {",
+            "        return null;",
+            "    }",
+            "}");
+
+    private File sources;
+    private File classes;
+
+    @Before
+    public void init() throws IOException {
+        this.sources = createDirectory("sources");
+        this.classes = createDirectory("classes");
+    }
+
+    @After
+    public void destroy() {
+        delete(this.sources);
+        delete(this.classes);
+    }
+
+    @Test
+    public void generate() throws IOException {
+        JavaFileObject target = source("test.Valid",
+                "package test;",
+                "public class Valid implements java.io.Externalizable {",
+                "    public void writeExternal(java.io.ObjectOutput output) {}",
+                "    public void readExternal(java.io.ObjectInput input) {}",
+                "}");
+        JavaFileObject annotated = source("test.Annotated",
+                "package test;",
+                "import org.jboss.as.clustering.infinispan.io.Externalizers;",
+                "@Externalizers(@Externalizers.Externalizer(value = Valid.class, serialVersionUID = -6027536540791428501L))",
+                "public class Annotated {}");
+
+        List<Diagnostic<? extends JavaFileObject>> errors = this.compile(target, annotated);
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        String externalizer = read(new File(this.sources, "test/ValidExternalizer.java"));
+        assertTrue(externalizer, externalizer.contains("public class ValidExternalizer extends org.jboss.as.clustering.infinispan.io.ExternalizableExternalizer<test.Valid>"));
+        assertTrue(externalizer, externalizer.contains("serialVersionUID = -6027536540791428501L;"));
+        assertTrue(externalizer, externalizer.contains("return new test.Valid();"));
+        assertTrue(new File(this.classes, "test/ValidExternalizer.class").exists());
+        assertEquals("test.ValidExternalizer", read(new File(this.classes, "META-INF/services/org.jboss.as.clustering.infinispan.io.SimpleExternalizer")).trim());
+    }
+
+    @Test
+    public void generateGeneric() throws IOException {
+        JavaFileObject target = source("test.Generic",
+                "package test;",
+                "public class Generic<T> implements java.io.Externalizable {",
+                "    public void writeExternal(java.io.ObjectOutput output) {}",
+                "    public void readExternal(java.io.ObjectInput input) {}",
+                "}");
+        JavaFileObject annotated = source("test.Annotated",
+                "package test;",
+                "import org.jboss.as.clustering.infinispan.io.Externalizers;",
+                "@Externalizers(@Externalizers.Externalizer(value = Generic.class, serialVersionUID = 1L))",
+                "public class Annotated {}");
+
+        List<Diagnostic<? extends JavaFileObject>> warnings = this.compile(Diagnostic.Kind.WARNING, target, annotated);
+
+        // The generated externalizer compiles without rawtypes warnings
+        assertTrue(warnings.toString(), warnings.isEmpty());
+        String externalizer = read(new File(this.sources, "test/GenericExternalizer.java"));
+        assertTrue(externalizer, externalizer.contains("@SuppressWarnings(\"rawtypes\")"));
+        assertTrue(new File(this.classes, "test/GenericExternalizer.class").exists());
+    }
+
+    @Test
+    public void missingConstructor() throws IOException {
+        JavaFileObject target = source("test.Invalid",
+                "package test;",
+                "public class Invalid implements java.io.Externalizable {",
+                "    public Invalid(String value) {}",
+                "    public void writeExternal(java.io.ObjectOutput output) {}",
+                "    public void readExternal(java.io.ObjectInput input) {}",
+                "}");
+        JavaFileObject annotated = source("test.Annotated",
+                "package test;",
+                "import org.jboss.as.clustering.infinispan.io.Externalizers;",
+                "@Externalizers(@Externalizers.Externalizer(value = Invalid.class, serialVersionUID = 1L))",
+                "public class Annotated {}");
+
+        List<Diagnostic<? extends JavaFileObject>> errors = this.compile(target, annotated);
+
+        assertEquals(errors.toString(), 1, errors.size());
+        assertTrue(errors.toString(), errors.get(0).getMessage(null).contains("test.Invalid does not declare a public no-arg constructor"));
+        assertFalse(new File(this.sources, "test/InvalidExternalizer.java").exists());
+    }
+
+    @Test
+    public void abstractClass() throws IOException {
+        JavaFileObject target = source("test.Invalid",
+                "package test;",
+                "public abstract class Invalid implements java.io.Externalizable {",
+                "}");
+        JavaFileObject annotated = source("test.Annotated",
+                "package test;",
+                "import org.jboss.as.clustering.infinispan.io.Externalizers;",
+                "@Externalizers(@Externalizers.Externalizer(value = Invalid.class, serialVersionUID = 1L))",
+                "public class Annotated {}");
+
+        List<Diagnostic<? extends JavaFileObject>> errors = this.compile(target, annotated);
+
+        assertEquals(errors.toString(), 1, errors.size());
+        assertTrue(errors.toString(), errors.get(0).getMessage(null).contains("test.Invalid must be a public, concrete class"));
+    }
+
+    @Test
+    public void duplicate() throws IOException {
+        JavaFileObject first = source("test.first.Valid",
+                "package test.first;",
+                "public class Valid implements java.io.Externalizable {",
+                "    public void writeExternal(java.io.ObjectOutput output) {}",
+                "    public void readExternal(java.io.ObjectInput input) {}",
+                "}");
+        JavaFileObject second = source("test.second.Valid",
+                "package test.second;",
+                "public class Valid implements java.io.Externalizable {",
+                "    public void writeExternal(java.io.ObjectOutput output) {}",
+                "    public void readExternal(java.io.ObjectInput input) {}",
+                "}");
+        JavaFileObject annotated = source("test.Annotated",
+                "package test;",
+                "import org.jboss.as.clustering.infinispan.io.Externalizers;",
+                "@Externalizers({ @Externalizers.Externalizer(value = test.first.Valid.class, serialVersionUID = 1L), @Externalizers.Externalizer(value = test.second.Valid.class, serialVersionUID = 2L) })",
+                "public class Annotated {}");
+
+        List<Diagnostic<? extends JavaFileObject>> errors = this.compile(first, second, annotated);
+
+        assertEquals(errors.toString(), 1, errors.size());
+        assertTrue(errors.toString(), errors.get(0).getMessage(null).contains("Duplicate externalizer test.ValidExternalizer for test.second.Valid"));
+    }
+
+    private List<Diagnostic<? extends JavaFileObject>> compile(JavaFileObject... sources) throws IOException {
+        return this.compile(Diagnostic.Kind.ERROR, sources);
+    }
+
+    private List<Diagnostic<? extends JavaFileObject>> compile(Diagnostic.Kind kind, JavaFileObject... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager manager = compiler.getStandardFileManager(diagnostics, null, null);
+        try {
+            List<JavaFileObject> units = new ArrayList<JavaFileObject>(Arrays.asList(sources));
+            units.add(EXTERNALIZERS);
+            units.add(EXTERNALIZABLE_EXTERNALIZER);
+            List<String> options = Arrays.asList("-Xlint:rawtypes", "-d", this.classes.getPath(), "-s", this.sources.getPath());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, manager, diagnostics, options, null, units);
+            task.setProcessors(Collections.singletonList(new ExternalizerProcessor()));
+            task.call();
+        } finally {
+            manager.close();
+        }
+        List<Diagnostic<? extends JavaFileObject>> result = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic: diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == kind) {
+                result.add(diagnostic);
+            }
+        }
+        return result;
+    }
+
+    private static JavaFileObject source(String name, String... lines) {
+        StringBuilder builder = new StringBuilder();
+        for (String line: lines) {
+            builder.append(line).append('\n');
+        }
+        final String content = builder.toString();
+        return new SimpleJavaFileObject(URI.create("string:///" + name.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+
+    private static String read(File file) throws IOException {
+        Scanner scanner = new Scanner(file, "UTF-8");
+        try {
+            return scanner.useDelimiter("\\A").next();
+        } finally {
+            scanner.close();
+        }
+    }
+
+    private static File createDirectory(String prefix) throws IOException {
+        File directory = File.createTempFile(prefix, "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException(directory.getPath());
+        }
+        return directory;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child: files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}